@@ -0,0 +1,63 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.api.repository2.unified;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Ordering and paging of deleted files, shared by the repositories that build the full list of deleted files before
+ * returning one page of it.
+ */
+public final class DeletedFilePages {
+
+  /**
+   * Most recently deleted first; files without a deleted date come last.
+   */
+  public static final Comparator<RepositoryFile> MOST_RECENTLY_DELETED_FIRST =
+      Comparator.comparing( RepositoryFile::getDeletedDate, Comparator.nullsFirst( Comparator.<Date>naturalOrder() ) )
+          .reversed();
+
+  private DeletedFilePages() {
+  }
+
+  /**
+   * Returns a sorted copy of the requested page of {@code deletedFiles}.
+   *
+   * @param offset
+   *          number of deleted files to skip
+   * @param limit
+   *          maximum number of deleted files to return, or a negative number for no limit
+   */
+  public static List<RepositoryFile> page( final List<RepositoryFile> deletedFiles, final int offset,
+      final int limit ) {
+    List<RepositoryFile> sorted = new ArrayList<RepositoryFile>( deletedFiles );
+    Collections.sort( sorted, MOST_RECENTLY_DELETED_FIRST );
+    int fromIndex = Math.min( Math.max( offset, 0 ), sorted.size() );
+    int toIndex = limit < 0 ? sorted.size() : (int) Math.min( (long) fromIndex + limit, sorted.size() );
+    return fromIndex == 0 && toIndex == sorted.size() ? sorted
+        : new ArrayList<RepositoryFile>( sorted.subList( fromIndex, toIndex ) );
+  }
+
+}
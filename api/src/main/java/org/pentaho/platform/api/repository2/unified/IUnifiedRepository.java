@@ -22,6 +22,7 @@ package org.pentaho.platform.api.repository2.unified;
 
 import java.io.Serializable;
 import java.util.EnumSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -176,6 +177,29 @@ public interface IUnifiedRepository {
    */
   RepositoryFile getFileById( final Serializable fileId, final boolean loadLocaleMaps, final IPentahoLocale locale );
 
+  /**
+   * Gets the titles of many files at once, localized for the given locale. Meant for listings that only need titles;
+   * implementations should resolve all files in one go instead of building a full {@link RepositoryFile} for each.
+   * 
+   * @param fileIds
+   *          ids of the files
+   * @param locale
+   *          {@link IPentahoLocale} locale of the titles, or {@code null} for the locale of the current session
+   * @return map of file id to title, in the order of {@code fileIds}, without files that do not exist or cannot be
+   *         read
+   */
+  default Map<Serializable, String> getLocalizedTitles( final List<Serializable> fileIds,
+      final IPentahoLocale locale ) {
+    Map<Serializable, String> titles = new LinkedHashMap<Serializable, String>();
+    for ( Serializable fileId : fileIds ) {
+      RepositoryFile file = getFileById( fileId, locale );
+      if ( file != null ) {
+        titles.put( fileId, file.getTitle() );
+      }
+    }
+    return titles;
+  }
+
   /**
    * Gets data at base version for read.
    * 
@@ -459,6 +483,60 @@ public interface IUnifiedRepository {
    */
   void undeleteFile( final Serializable fileId, final String versionMessage );
 
+  /**
+   * Applies a sequence of creates and updates, each optionally with an ACL, metadata and locale properties. An
+   * operation that fails is reported in the result and does not stop the others. Implementations should group the
+   * writes of many operations into few saves and create a single version per file; this default simply applies the
+   * operations one call at a time.
+   * 
+   * @param batch
+   *          operations to apply, in order
+   * @return outcome of each operation
+   */
+  default RepositoryFileBatchResult applyBatch( final RepositoryFileBatch batch ) {
+    RepositoryFileBatchResult result = new RepositoryFileBatchResult( batch.size() );
+    List<RepositoryFileBatch.Operation> operations = batch.getOperations();
+    for ( int i = 0; i < operations.size(); i++ ) {
+      RepositoryFileBatch.Operation operation = operations.get( i );
+      try {
+        RepositoryFile file = operation.getFile();
+        switch ( operation.getType() ) {
+          case CREATE_FILE:
+            file = createFile( operation.getParentFolderId(), file, operation.getData(), operation.getAcl(),
+                batch.getVersionMessage() );
+            break;
+          case CREATE_FOLDER:
+            file = createFolder( operation.getParentFolderId(), file, operation.getAcl(), batch.getVersionMessage() );
+            break;
+          case UPDATE_FILE:
+            file = updateFile( file, operation.getData(), batch.getVersionMessage() );
+            break;
+          default:
+            break;
+        }
+        if ( file == null ) {
+          throw new UnifiedRepositoryAccessDeniedException( operation.getFile().getName() );
+        }
+        boolean created =
+            operation.getType() == RepositoryFileBatch.Type.CREATE_FILE
+                || operation.getType() == RepositoryFileBatch.Type.CREATE_FOLDER;
+        if ( operation.getAcl() != null && !created ) {
+          updateAcl( new RepositoryFileAcl.Builder( operation.getAcl() ).id( file.getId() ).build() );
+        }
+        if ( operation.getMetadata() != null ) {
+          setFileMetadata( file.getId(), operation.getMetadata() );
+        }
+        for ( Map.Entry<String, Properties> locale : operation.getLocaleProperties().entrySet() ) {
+          setLocalePropertiesForFile( file, locale.getKey(), locale.getValue() );
+        }
+        result.succeeded( i, file );
+      } catch ( RuntimeException e ) {
+        result.failed( i, e );
+      }
+    }
+    return result;
+  }
+
   /**
    * Gets all deleted files for the current user in this folder.
    * 
@@ -495,6 +573,20 @@ public interface IUnifiedRepository {
   default List<RepositoryFile> getAllDeletedFiles() {
     return getDeletedFiles();
   }
+
+  /**
+   * Gets one page of all deleted files, most recently deleted first. Implementations backed by a query should apply
+   * the offset and limit there instead of building the full list.
+   * 
+   * @param offset
+   *          number of deleted files to skip
+   * @param limit
+   *          maximum number of deleted files to return, or a negative number for no limit
+   * @return page of deleted files
+   */
+  default List<RepositoryFile> getAllDeletedFiles( final int offset, final int limit ) {
+    return DeletedFilePages.page( getAllDeletedFiles(), offset, limit );
+  }
   // ~ Lock methods
   // ====================================================================================================
 
@@ -558,6 +650,34 @@ public interface IUnifiedRepository {
    */
   boolean hasAccess( final String path, final EnumSet<RepositoryFilePermission> permissions );
 
+  /**
+   * Returns, for each path, which of the given permissions the user has. Each permission is decided as
+   * {@link #hasAccess(String, EnumSet)} would decide it on its own. Meant for screens that need the permissions of
+   * many files at once; implementations should evaluate all paths in one go.
+   * 
+   * @param paths
+   *          paths to files or folders
+   * @param permissions
+   *          permissions to check
+   * @return map of path to the permissions held, in the order of {@code paths}; a path that does not exist maps to
+   *         an empty set
+   */
+  default Map<String, EnumSet<RepositoryFilePermission>> getAccess( final List<String> paths,
+      final EnumSet<RepositoryFilePermission> permissions ) {
+    Map<String, EnumSet<RepositoryFilePermission>> access =
+        new LinkedHashMap<String, EnumSet<RepositoryFilePermission>>();
+    for ( String path : paths ) {
+      EnumSet<RepositoryFilePermission> granted = EnumSet.noneOf( RepositoryFilePermission.class );
+      for ( RepositoryFilePermission permission : permissions ) {
+        if ( hasAccess( path, EnumSet.of( permission ) ) ) {
+          granted.add( permission );
+        }
+      }
+      access.put( path, granted );
+    }
+    return access;
+  }
+
   /**
    * Returns the list of access control entries (ACEs) that will be used to make an access control decision. This
    * method is equivalent to {@code getEffectiveAces(fileId, false)}.
@@ -20,13 +20,16 @@
 
 package org.pentaho.platform.api.repository2.unified;
 
+import java.io.ObjectStreamException;
 import java.io.Serializable;
+import java.lang.reflect.Field;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Properties;
 
-import org.apache.commons.lang.builder.ToStringBuilder;
+import org.apache.commons.lang.builder.ReflectionToStringBuilder;
 
 /**
  * Immutable repository file. Use the {@link Builder} to create instances.
@@ -63,6 +66,13 @@ public class RepositoryFile implements Comparable<RepositoryFile>, Serializable
   public static final String HIDDEN_KEY = "_PERM_HIDDEN";
   public static final String SCHEDULABLE_KEY = "_PERM_SCHEDULABLE";
 
+  /**
+   * Held instead of a locale map that only has the required, empty default locale. {@link #getLocalePropertiesMap()}
+   * builds the actual map, with its own properties, when it is asked for.
+   */
+  private static final Map<String, Properties> DEFAULT_LOCALE_ONLY =
+      Collections.singletonMap( DEFAULT_LOCALE, new Properties() );
+
   private final String name;
 
   private final Serializable id;
@@ -82,9 +92,16 @@ public class RepositoryFile implements Comparable<RepositoryFile>, Serializable
   private final boolean folder;
 
   /**
-   * Read-only.
+   * Read-only. Null while the path is held as {@link #parentPath} plus {@link #name}; {@link #getPath()} composes it
+   * once and keeps it, the same way {@link String#hashCode()} caches its value.
+   */
+  private String path;
+
+  /**
+   * Pooled path of the parent folder, shared by all siblings. Only set for files built with a
+   * {@link RepositoryFileInterner} whose path ends with their name.
    */
-  private final String path;
+  private final transient String parentPath;
 
   private final Boolean hidden;
 
@@ -173,6 +190,16 @@ public class RepositoryFile implements Comparable<RepositoryFile>, Serializable
       String lockMessage, Date lockDate, String locale, String title, String description,
       String originalParentFolderPath, Date deletedDate, long fileSize, String creatorId,
       Map<String, Properties> localePropertiesMap, boolean aclNode ) {
+    this( id, name, folder, hidden, schedulable, versioned, versionId, path, createdDate, lastModifiedDate, locked,
+        lockOwner, lockMessage, lockDate, locale, title, description, originalParentFolderPath, deletedDate, fileSize,
+        creatorId, localePropertiesMap, aclNode, null );
+  }
+
+  private RepositoryFile( Serializable id, String name, boolean folder, Boolean hidden, Boolean schedulable,
+      boolean versioned, Serializable versionId, String path, Date createdDate, Date lastModifiedDate, boolean locked,
+      String lockOwner, String lockMessage, Date lockDate, String locale, String title, String description,
+      String originalParentFolderPath, Date deletedDate, long fileSize, String creatorId,
+      Map<String, Properties> localePropertiesMap, boolean aclNode, RepositoryFileInterner interner ) {
     super();
     this.id = id;
     this.name = name;
@@ -181,14 +208,16 @@ public class RepositoryFile implements Comparable<RepositoryFile>, Serializable
     this.schedulable = schedulable;
     this.versioned = versioned;
     this.versionId = versionId;
-    this.path = path;
+    String parent = interner != null ? parentPathOf( path, name ) : null;
+    this.parentPath = parent != null ? interner.intern( parent ) : null;
+    this.path = parentPath != null ? null : path;
     this.createdDate = createdDate != null ? new Date( createdDate.getTime() ) : null;
     this.lastModifiedDate = lastModifiedDate != null ? new Date( lastModifiedDate.getTime() ) : null;
     this.locked = locked;
-    this.lockOwner = lockOwner;
+    this.lockOwner = intern( interner, lockOwner );
     this.lockMessage = lockMessage;
     this.lockDate = lockDate != null ? new Date( lockDate.getTime() ) : null;
-    this.locale = locale;
+    this.locale = intern( interner, locale );
     this.title = title;
     // this.titleMap = titleMap != null ? new HashMap<String, String>(titleMap) : null;
     this.description = description;
@@ -196,9 +225,8 @@ public class RepositoryFile implements Comparable<RepositoryFile>, Serializable
     this.originalParentFolderPath = originalParentFolderPath;
     this.deletedDate = deletedDate != null ? new Date( deletedDate.getTime() ) : null;
     this.fileSize = fileSize;
-    this.creatorId = creatorId;
-    this.localePropertiesMap =
-        localePropertiesMap != null ? new HashMap<String, Properties>( localePropertiesMap ) : null;
+    this.creatorId = intern( interner, creatorId );
+    this.localePropertiesMap = compactLocalePropertiesMap( interner, localePropertiesMap );
     this.aclNode = aclNode;
   }
 
@@ -231,6 +259,57 @@ public class RepositoryFile implements Comparable<RepositoryFile>, Serializable
   // ~ Methods
   // =========================================================================================================
 
+  /**
+   * Returns the parent part of {@code path} when it ends with {@code SEPARATOR + name}, otherwise {@code null}. The
+   * root folder's children get an empty parent path.
+   */
+  private static String parentPathOf( final String path, final String name ) {
+    if ( path == null || name == null || name.isEmpty() ) {
+      return null;
+    }
+    int parentLength = path.length() - name.length() - SEPARATOR.length();
+    if ( parentLength < 0 || !path.endsWith( name ) || !path.startsWith( SEPARATOR, parentLength ) ) {
+      return null;
+    }
+    return path.substring( 0, parentLength );
+  }
+
+  private static String intern( final RepositoryFileInterner interner, final String value ) {
+    return interner != null ? interner.intern( value ) : value;
+  }
+
+  /**
+   * Copies the locale map. Most files only carry the required, empty default locale, which is not copied at all but
+   * built by {@link #getLocalePropertiesMap()} when needed; any other single entry is held in a singleton map rather
+   * than a full hash table.
+   */
+  private static Map<String, Properties> compactLocalePropertiesMap( final RepositoryFileInterner interner,
+      final Map<String, Properties> map ) {
+    if ( map == null ) {
+      return null;
+    }
+    if ( map.size() == 1 ) {
+      Map.Entry<String, Properties> entry = map.entrySet().iterator().next();
+      if ( DEFAULT_LOCALE.equals( entry.getKey() ) && entry.getValue() != null && entry.getValue().isEmpty() ) {
+        return DEFAULT_LOCALE_ONLY;
+      }
+      return Collections.singletonMap( intern( interner, entry.getKey() ), entry.getValue() );
+    }
+    Map<String, Properties> copy = new HashMap<String, Properties>( map.size() * 4 / 3 + 1 );
+    for ( Map.Entry<String, Properties> entry : map.entrySet() ) {
+      copy.put( intern( interner, entry.getKey() ), entry.getValue() );
+    }
+    return copy;
+  }
+
+  /**
+   * Composes the path before the file is written, so that the serialized form always carries the full path.
+   */
+  protected Object writeReplace() throws ObjectStreamException {
+    getPath();
+    return this;
+  }
+
   public String getName() {
     return name;
   }
@@ -262,7 +341,13 @@ public class RepositoryFile implements Comparable<RepositoryFile>, Serializable
   }
 
   public String getPath() {
-    return path;
+    String p = path;
+    if ( p == null && parentPath != null ) {
+      // racing threads compose the same value, so there is nothing to lock
+      p = parentPath + SEPARATOR + name;
+      path = p;
+    }
+    return p;
   }
 
   public Boolean isHidden() {
@@ -310,6 +395,11 @@ public class RepositoryFile implements Comparable<RepositoryFile>, Serializable
   }
 
   public Map<String, Properties> getLocalePropertiesMap() {
+    if ( localePropertiesMap == DEFAULT_LOCALE_ONLY ) {
+      Map<String, Properties> map = new HashMap<String, Properties>();
+      map.put( DEFAULT_LOCALE, new Properties() );
+      return map;
+    }
     // defensive copy
     return localePropertiesMap == null ? null : new HashMap<String, Properties>( localePropertiesMap );
   }
@@ -340,7 +430,17 @@ public class RepositoryFile implements Comparable<RepositoryFile>, Serializable
 
   @Override
   public String toString() {
-    return ToStringBuilder.reflectionToString( this );
+    getPath();
+    return new ReflectionToStringBuilder( this ) {
+      @Override
+      protected Object getValue( final Field field ) throws IllegalAccessException {
+        if ( field.getDeclaringClass() == RepositoryFile.class
+            && "localePropertiesMap".equals( field.getName() ) ) { //$NON-NLS-1$
+          return RepositoryFile.this.getLocalePropertiesMap();
+        }
+        return super.getValue( field );
+      }
+    }.toString();
   }
 
   public static class Builder {
@@ -391,6 +491,8 @@ public class RepositoryFile implements Comparable<RepositoryFile>, Serializable
 
     private boolean aclNode;
 
+    private RepositoryFileInterner interner;
+
     public Builder( final String name ) {
       this.name = name;
     }
@@ -422,7 +524,7 @@ public class RepositoryFile implements Comparable<RepositoryFile>, Serializable
           this.path,
           this.createdDate, this.lastModifiedDate, this.locked, this.lockOwner, this.lockMessage, this.lockDate,
           this.locale, this.title, this.description, this.originalParentFolderPath, this.deletedDate, this.fileSize,
-          this.creatorId, this.localePropertiesMap, this.aclNode );
+          this.creatorId, this.localePropertiesMap, this.aclNode, this.interner );
     }
 
     public Builder createdDate( final Date createdDate1 ) {
@@ -598,6 +700,15 @@ public class RepositoryFile implements Comparable<RepositoryFile>, Serializable
       return this;
     }
 
+    /**
+     * Pools the parent path, owners and locales of the built file in {@code interner}, so that files of the same
+     * repository share them. Without an interner the file keeps its own copies.
+     */
+    public Builder interner( final RepositoryFileInterner interner1 ) {
+      this.interner = interner1;
+      return this;
+    }
+
     private void notNull( final Object in ) {
       if ( in == null ) {
         throw new IllegalArgumentException();
@@ -643,8 +754,8 @@ public class RepositoryFile implements Comparable<RepositoryFile>, Serializable
     if ( id == null ) {
       if ( other.id != null ) {
         return false;
-      } else if ( this.path != null ) {
-        if ( !other.path.equals( this.path ) ) {
+      } else if ( this.getPath() != null ) {
+        if ( !this.getPath().equals( other.getPath() ) ) {
           return false;
         }
       }
@@ -670,10 +781,8 @@ public class RepositoryFile implements Comparable<RepositoryFile>, Serializable
 
   @Override
   public RepositoryFile clone() {
-    RepositoryFile.Builder builder = new RepositoryFile.Builder( this );
-    builder.localePropertiesMap( localePropertiesMap != null ? new HashMap<String, Properties>( localePropertiesMap )
-        : null );
-    return builder.build();
+    // the builder already holds a copy of the locale map
+    return new RepositoryFile.Builder( this ).build();
   }
 
 }
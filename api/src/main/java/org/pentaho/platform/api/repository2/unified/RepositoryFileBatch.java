@@ -0,0 +1,268 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.api.repository2.unified;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * An ordered list of writes for {@link IUnifiedRepository#applyBatch(RepositoryFileBatch)}. Each operation creates or
+ * updates one file or folder, and may also replace its ACL and metadata and set locale properties. All changes in one
+ * operation become a single version of the file.
+ * 
+ * <pre>
+ * RepositoryFileBatch batch = new RepositoryFileBatch( &quot;import&quot; );
+ * batch.createFile( folderId, file, data, null ).metadata( metadata ).localeProperties( &quot;de&quot;, properties );
+ * batch.updateFile( existingFile, newData ).acl( acl );
+ * RepositoryFileBatchResult result = repository.applyBatch( batch );
+ * </pre>
+ * 
+ * Not thread-safe.
+ */
+public class RepositoryFileBatch {
+
+  /**
+   * What an {@link Operation} does to its file before the ACL, metadata and locale properties are applied.
+   */
+  public enum Type {
+    /** Creates a file with content. */
+    CREATE_FILE,
+    /** Creates a folder. */
+    CREATE_FOLDER,
+    /** Replaces the content of an existing file. */
+    UPDATE_FILE,
+    /** Only applies the ACL, metadata and locale properties to an existing file or folder. */
+    UPDATE
+  }
+
+  private final String versionMessage;
+
+  private final List<Operation> operations = new ArrayList<Operation>();
+
+  /**
+   * @param versionMessage
+   *          message of the versions created by this batch; may be {@code null}
+   */
+  public RepositoryFileBatch( final String versionMessage ) {
+    this.versionMessage = versionMessage;
+  }
+
+  /**
+   * Adds the creation of a file.
+   * 
+   * @param parentFolderId
+   *          id of the folder that will contain the file
+   * @param file
+   *          file to create
+   * @param data
+   *          content of the file
+   * @param acl
+   *          ACL of the new file, or {@code null} for the default ACL
+   * @return the operation, to add an ACL, metadata or locale properties to
+   */
+  public Operation createFile( final Serializable parentFolderId, final RepositoryFile file,
+      final IRepositoryFileData data, final RepositoryFileAcl acl ) {
+    checkNotNull( file, "file" ); //$NON-NLS-1$
+    checkNotNull( data, "data" ); //$NON-NLS-1$
+    if ( file.isFolder() ) {
+      throw new IllegalArgumentException( "file must not be a folder" ); //$NON-NLS-1$
+    }
+    return add( new Operation( Type.CREATE_FILE, parentFolderId, file, data ).acl( acl ) );
+  }
+
+  /**
+   * Adds the creation of a folder. Files of the same batch cannot be created in it, as its id is not known yet.
+   * 
+   * @param parentFolderId
+   *          id of the folder that will contain the folder
+   * @param folder
+   *          folder to create
+   * @param acl
+   *          ACL of the new folder, or {@code null} for the default ACL
+   * @return the operation, to add metadata or locale properties to
+   */
+  public Operation createFolder( final Serializable parentFolderId, final RepositoryFile folder,
+      final RepositoryFileAcl acl ) {
+    checkNotNull( folder, "folder" ); //$NON-NLS-1$
+    if ( !folder.isFolder() ) {
+      throw new IllegalArgumentException( "folder must be a folder" ); //$NON-NLS-1$
+    }
+    return add( new Operation( Type.CREATE_FOLDER, parentFolderId, folder, null ).acl( acl ) );
+  }
+
+  /**
+   * Adds an update of the content of an existing file.
+   * 
+   * @param file
+   *          file to update; its id is required
+   * @param data
+   *          new content of the file
+   * @return the operation, to add an ACL, metadata or locale properties to
+   */
+  public Operation updateFile( final RepositoryFile file, final IRepositoryFileData data ) {
+    checkNotNull( file, "file" ); //$NON-NLS-1$
+    checkNotNull( file.getId(), "file id" ); //$NON-NLS-1$
+    checkNotNull( data, "data" ); //$NON-NLS-1$
+    if ( file.isFolder() ) {
+      throw new IllegalArgumentException( "file must not be a folder" ); //$NON-NLS-1$
+    }
+    return add( new Operation( Type.UPDATE_FILE, null, file, data ) );
+  }
+
+  /**
+   * Adds an operation that leaves the content of an existing file or folder alone.
+   * 
+   * @param file
+   *          file or folder to update; its id is required
+   * @return the operation, to add an ACL, metadata or locale properties to
+   */
+  public Operation update( final RepositoryFile file ) {
+    checkNotNull( file, "file" ); //$NON-NLS-1$
+    checkNotNull( file.getId(), "file id" ); //$NON-NLS-1$
+    return add( new Operation( Type.UPDATE, null, file, null ) );
+  }
+
+  public String getVersionMessage() {
+    return versionMessage;
+  }
+
+  public List<Operation> getOperations() {
+    return Collections.unmodifiableList( operations );
+  }
+
+  public int size() {
+    return operations.size();
+  }
+
+  private Operation add( final Operation operation ) {
+    operations.add( operation );
+    return operation;
+  }
+
+  private static void checkNotNull( final Object value, final String name ) {
+    if ( value == null ) {
+      throw new IllegalArgumentException( name + " must not be null" ); //$NON-NLS-1$
+    }
+  }
+
+  /**
+   * One write of a {@link RepositoryFileBatch}.
+   */
+  public static class Operation {
+
+    private final Type type;
+
+    private final Serializable parentFolderId;
+
+    private final RepositoryFile file;
+
+    private final IRepositoryFileData data;
+
+    private RepositoryFileAcl acl;
+
+    private Map<String, Serializable> metadata;
+
+    private final Map<String, Properties> localeProperties = new LinkedHashMap<String, Properties>();
+
+    Operation( final Type type, final Serializable parentFolderId, final RepositoryFile file,
+        final IRepositoryFileData data ) {
+      this.type = type;
+      this.parentFolderId = parentFolderId;
+      this.file = file;
+      this.data = data;
+    }
+
+    /**
+     * Sets the ACL of the file. For a new file, this is the ACL it is created with.
+     */
+    public Operation acl( final RepositoryFileAcl acl ) {
+      this.acl = acl;
+      return this;
+    }
+
+    /**
+     * Replaces the metadata of the file, like {@link IUnifiedRepository#setFileMetadata(Serializable, Map)}.
+     */
+    public Operation metadata( final Map<String, Serializable> metadata ) {
+      this.metadata = metadata;
+      return this;
+    }
+
+    /**
+     * Sets the properties of one locale, like
+     * {@link IUnifiedRepository#setLocalePropertiesForFile(RepositoryFile, String, Properties)}.
+     */
+    public Operation localeProperties( final String locale, final Properties properties ) {
+      checkNotNull( locale, "locale" ); //$NON-NLS-1$
+      checkNotNull( properties, "properties" ); //$NON-NLS-1$
+      localeProperties.put( locale, properties );
+      return this;
+    }
+
+    public Type getType() {
+      return type;
+    }
+
+    /**
+     * @return id of the parent folder of a new file or folder
+     */
+    public Serializable getParentFolderId() {
+      return parentFolderId;
+    }
+
+    public RepositoryFile getFile() {
+      return file;
+    }
+
+    /**
+     * @return new content, or {@code null} for folders and {@link Type#UPDATE}
+     */
+    public IRepositoryFileData getData() {
+      return data;
+    }
+
+    /**
+     * @return ACL to apply, or {@code null} to leave it alone (or use the default ACL for a new file)
+     */
+    public RepositoryFileAcl getAcl() {
+      return acl;
+    }
+
+    /**
+     * @return metadata to set, or {@code null} to leave it alone
+     */
+    public Map<String, Serializable> getMetadata() {
+      return metadata;
+    }
+
+    /**
+     * @return properties by locale, possibly empty
+     */
+    public Map<String, Properties> getLocaleProperties() {
+      return Collections.unmodifiableMap( localeProperties );
+    }
+  }
+}
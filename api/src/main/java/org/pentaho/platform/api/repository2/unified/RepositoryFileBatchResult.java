@@ -0,0 +1,96 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.api.repository2.unified;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Outcome of {@link IUnifiedRepository#applyBatch(RepositoryFileBatch)}, by the index of each operation in the batch.
+ * A failed operation leaves its file as it was, unless only the new version could not be created after its changes
+ * were saved; the other operations of the batch are applied regardless.
+ */
+public class RepositoryFileBatchResult {
+
+  private final RepositoryFile[] files;
+
+  private final Exception[] errors;
+
+  public RepositoryFileBatchResult( final int size ) {
+    this.files = new RepositoryFile[size];
+    this.errors = new Exception[size];
+  }
+
+  public void succeeded( final int index, final RepositoryFile file ) {
+    files[index] = file;
+    errors[index] = null;
+  }
+
+  public void failed( final int index, final Exception error ) {
+    files[index] = null;
+    errors[index] = error;
+  }
+
+  public int size() {
+    return files.length;
+  }
+
+  public boolean isSucceeded( final int index ) {
+    return errors[index] == null;
+  }
+
+  /**
+   * @return the file as it is after the operation, or {@code null} if the operation failed
+   */
+  public RepositoryFile getFile( final int index ) {
+    return files[index];
+  }
+
+  /**
+   * @return why the operation failed, or {@code null} if it succeeded
+   */
+  public Exception getError( final int index ) {
+    return errors[index];
+  }
+
+  /**
+   * @return indexes of the operations that failed, in ascending order
+   */
+  public List<Integer> getFailedIndexes() {
+    List<Integer> failed = new ArrayList<Integer>();
+    for ( int i = 0; i < errors.length; i++ ) {
+      if ( errors[i] != null ) {
+        failed.add( i );
+      }
+    }
+    return failed;
+  }
+
+  public int getFailureCount() {
+    int count = 0;
+    for ( Exception error : errors ) {
+      if ( error != null ) {
+        count++;
+      }
+    }
+    return count;
+  }
+}
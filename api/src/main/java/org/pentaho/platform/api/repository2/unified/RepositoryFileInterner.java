@@ -0,0 +1,75 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.api.repository2.unified;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Bounded pool of the strings that repeat across the files of a repository, such as parent folder paths, owners and
+ * locales. A {@link RepositoryFile} built with an interner keeps the pooled copy of these strings, so loading a large
+ * tree holds a single copy of each parent path instead of one per file.
+ * <p>
+ * Unlike {@link String#intern()}, the pool belongs to a repository and never grows past {@code maxEntries}: once it is
+ * full it is emptied and starts over. Strings handed out before that stay valid; later files just stop sharing them.
+ */
+public class RepositoryFileInterner {
+
+  private final ConcurrentMap<String, String> pool;
+
+  private final int maxEntries;
+
+  /**
+   * @param maxEntries
+   *          maximum number of strings pooled, or 0 to disable pooling
+   */
+  public RepositoryFileInterner( final int maxEntries ) {
+    this.maxEntries = Math.max( maxEntries, 0 );
+    this.pool = new ConcurrentHashMap<String, String>();
+  }
+
+  /**
+   * Returns the pooled string equal to {@code value}, pooling {@code value} itself if there is none yet.
+   */
+  public String intern( final String value ) {
+    if ( value == null || maxEntries == 0 ) {
+      return value;
+    }
+    String pooled = pool.get( value );
+    if ( pooled != null ) {
+      return pooled;
+    }
+    if ( pool.size() >= maxEntries ) {
+      pool.clear();
+    }
+    pooled = pool.putIfAbsent( value, value );
+    return pooled != null ? pooled : value;
+  }
+
+  public int getSize() {
+    return pool.size();
+  }
+
+  public void clear() {
+    pool.clear();
+  }
+
+}
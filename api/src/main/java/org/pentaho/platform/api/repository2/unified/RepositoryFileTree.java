@@ -64,8 +64,14 @@ public class RepositoryFileTree implements Comparable<RepositoryFileTree>, Seria
     super();
     notNull( file );
     this.file = file;
-    // defensive copy
-    this.children = children != null ? new ArrayList<RepositoryFileTree>( children ) : null;
+    // defensive copy; leaves share the immutable empty list instead of each holding an empty array list
+    if ( children == null ) {
+      this.children = null;
+    } else if ( children.isEmpty() ) {
+      this.children = Collections.emptyList();
+    } else {
+      this.children = new ArrayList<RepositoryFileTree>( children );
+    }
   }
 
   // ~ Methods
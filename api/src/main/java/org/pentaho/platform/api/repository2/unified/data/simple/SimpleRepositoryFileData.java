@@ -51,6 +51,8 @@ public class SimpleRepositoryFileData implements IRepositoryFileData {
 
   private String mimeType;
 
+  private long dataSize = -1;
+
   // ~ Constructors
   // ====================================================================================================
 
@@ -61,6 +63,15 @@ public class SimpleRepositoryFileData implements IRepositoryFileData {
     this.mimeType = mimeType;
   }
 
+  /**
+   * @param dataSize the exact number of bytes in {@code stream}, as known by the repository that stored them
+   */
+  public SimpleRepositoryFileData( final InputStream stream, final String encoding, final String mimeType,
+      final long dataSize ) {
+    this( stream, encoding, mimeType );
+    this.dataSize = dataSize;
+  }
+
   // ~ Methods
   // =========================================================================================================
 
@@ -110,6 +121,9 @@ public class SimpleRepositoryFileData implements IRepositoryFileData {
    */
   @Override
   public long getDataSize() {
+    if ( dataSize >= 0 ) {
+      return dataSize;
+    }
     try {
       return stream.available();
     } catch ( IOException e ) {
@@ -117,6 +131,14 @@ public class SimpleRepositoryFileData implements IRepositoryFileData {
     }
   }
 
+  /**
+   * Returns {@code true} if {@link #getDataSize()} is the exact number of bytes in the stream rather than the estimate
+   * of {@link InputStream#available()}.
+   */
+  public boolean isDataSizeExact() {
+    return dataSize >= 0;
+  }
+
   @Override
   @SuppressWarnings( "nls" )
   public String toString() {
@@ -0,0 +1,108 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.api.repository2.unified;
+
+import org.junit.Test;
+import org.pentaho.platform.api.repository2.unified.data.simple.SimpleRepositoryFileData;
+
+import java.io.ByteArrayInputStream;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class RepositoryFileBatchTest {
+
+  private static final RepositoryFile FILE = new RepositoryFile.Builder( "id", "file.xml" ).build();
+  private static final RepositoryFile FOLDER = new RepositoryFile.Builder( "folderId", "folder" ).folder( true ).build();
+  private static final SimpleRepositoryFileData DATA =
+      new SimpleRepositoryFileData( new ByteArrayInputStream( new byte[0] ), "UTF-8", "text/xml" );
+
+  @Test
+  public void testOperations() {
+    RepositoryFileBatch batch = new RepositoryFileBatch( "import" );
+    Map<String, Serializable> metadata = Collections.<String, Serializable>singletonMap( "key", "value" );
+    Properties properties = new Properties();
+    RepositoryFileAcl acl = new RepositoryFileAcl.Builder( "admin" ).build();
+
+    batch.createFile( "parentId", FILE, DATA, null ).metadata( metadata ).localeProperties( "de", properties );
+    batch.createFolder( "parentId", FOLDER, acl );
+    batch.updateFile( FILE, DATA ).acl( acl );
+    batch.update( FOLDER );
+
+    assertEquals( "import", batch.getVersionMessage() );
+    assertEquals( 4, batch.size() );
+    RepositoryFileBatch.Operation create = batch.getOperations().get( 0 );
+    assertEquals( RepositoryFileBatch.Type.CREATE_FILE, create.getType() );
+    assertEquals( "parentId", create.getParentFolderId() );
+    assertSame( DATA, create.getData() );
+    assertNull( create.getAcl() );
+    assertSame( metadata, create.getMetadata() );
+    assertSame( properties, create.getLocaleProperties().get( "de" ) );
+    assertSame( acl, batch.getOperations().get( 1 ).getAcl() );
+    assertEquals( RepositoryFileBatch.Type.UPDATE_FILE, batch.getOperations().get( 2 ).getType() );
+    assertNull( batch.getOperations().get( 2 ).getParentFolderId() );
+    assertEquals( RepositoryFileBatch.Type.UPDATE, batch.getOperations().get( 3 ).getType() );
+    assertTrue( batch.getOperations().get( 3 ).getLocaleProperties().isEmpty() );
+  }
+
+  @Test( expected = IllegalArgumentException.class )
+  public void testCreateFileRejectsFolder() {
+    new RepositoryFileBatch( null ).createFile( "parentId", FOLDER, DATA, null );
+  }
+
+  @Test( expected = IllegalArgumentException.class )
+  public void testUpdateRequiresId() {
+    new RepositoryFileBatch( null ).update( new RepositoryFile.Builder( "file.xml" ).build() );
+  }
+
+  @Test( expected = UnsupportedOperationException.class )
+  public void testOperationsAreReadOnly() {
+    new RepositoryFileBatch( null ).getOperations().clear();
+  }
+
+  @Test
+  public void testResult() {
+    RepositoryFileBatchResult result = new RepositoryFileBatchResult( 3 );
+    Exception error = new UnifiedRepositoryAccessDeniedException( "file.xml" );
+    result.succeeded( 0, FILE );
+    result.failed( 1, error );
+    result.failed( 2, error );
+    result.succeeded( 2, FOLDER );
+
+    assertEquals( 3, result.size() );
+    assertTrue( result.isSucceeded( 0 ) );
+    assertSame( FILE, result.getFile( 0 ) );
+    assertFalse( result.isSucceeded( 1 ) );
+    assertNull( result.getFile( 1 ) );
+    assertSame( error, result.getError( 1 ) );
+    assertTrue( result.isSucceeded( 2 ) );
+    assertEquals( Arrays.asList( 1 ), result.getFailedIndexes() );
+    assertEquals( 1, result.getFailureCount() );
+  }
+}
@@ -0,0 +1,64 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.api.repository2.unified;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class RepositoryFileInternerTest {
+
+  @Test
+  public void testEqualStringsArePooled() {
+    RepositoryFileInterner interner = new RepositoryFileInterner( 10 );
+    String first = new String( "/public/reports" );
+    String second = new String( "/public/reports" );
+
+    assertSame( first, interner.intern( first ) );
+    assertSame( first, interner.intern( second ) );
+    assertEquals( 1, interner.getSize() );
+    assertNull( interner.intern( null ) );
+  }
+
+  @Test
+  public void testPoolStaysBounded() {
+    RepositoryFileInterner interner = new RepositoryFileInterner( 3 );
+    for ( int i = 0; i < 10; i++ ) {
+      interner.intern( "/public/folder" + i );
+      assertEquals( i % 3 + 1, interner.getSize() );
+    }
+  }
+
+  @Test
+  public void testZeroDisablesPooling() {
+    RepositoryFileInterner interner = new RepositoryFileInterner( 0 );
+    String first = new String( "admin" );
+    String second = new String( "admin" );
+
+    assertSame( first, interner.intern( first ) );
+    assertNotSame( first, interner.intern( second ) );
+    assertEquals( 0, interner.getSize() );
+  }
+
+}
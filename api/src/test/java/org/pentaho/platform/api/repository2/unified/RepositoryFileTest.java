@@ -25,9 +25,15 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.lang.reflect.Field;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
@@ -259,6 +265,89 @@ public class RepositoryFileTest {
     assertEquals( newDesc, newFile.getLocalePropertiesMap().get( LOCALE ).getProperty( RepositoryFile.DESCRIPTION ) );
   }
 
+  @Test
+  public void testSiblingsShareParentPath() throws Exception {
+    RepositoryFileInterner interner = new RepositoryFileInterner( 100 );
+    RepositoryFile first = new RepositoryFile.Builder( "a.prpt" ).path( new String( "/public/reports/a.prpt" ) )
+        .interner( interner ).build();
+    RepositoryFile second = new RepositoryFile.Builder( "b.prpt" ).path( new String( "/public/reports/b.prpt" ) )
+        .creatorId( new String( "admin" ) ).interner( interner ).build();
+    RepositoryFile third = new RepositoryFile.Builder( "c.prpt" ).path( "/public/reports/c.prpt" )
+        .creatorId( new String( "admin" ) ).interner( interner ).build();
+
+    assertNotNull( parentPathOf( first ) );
+    assertSame( parentPathOf( first ), parentPathOf( second ) );
+    assertSame( second.getCreatorId(), third.getCreatorId() );
+    assertEquals( "/public/reports/a.prpt", first.getPath() );
+    assertEquals( "/public/reports/b.prpt", second.getPath() );
+    assertSame( first.getPath(), first.getPath() );
+    assertTrue( third.toString().contains( "path=/public/reports/c.prpt" ) );
+
+    RepositoryFile rootChild =
+        new RepositoryFile.Builder( "public" ).path( "/public" ).folder( true ).interner( interner ).build();
+    assertEquals( "/public", rootChild.getPath() );
+    RepositoryFile root =
+        new RepositoryFile.Builder( "" ).path( RepositoryFile.SEPARATOR ).folder( true ).interner( interner ).build();
+    assertEquals( RepositoryFile.SEPARATOR, root.getPath() );
+    RepositoryFile unrelated = new RepositoryFile.Builder( "name" ).path( "/other/label" ).interner( interner ).build();
+    assertEquals( "/other/label", unrelated.getPath() );
+  }
+
+  @Test
+  public void testWithoutInternerFileKeepsItsOwnPath() throws Exception {
+    String path = new String( "/public/reports/a.prpt" );
+    RepositoryFile theFile = new RepositoryFile.Builder( "a.prpt" ).path( path ).build();
+
+    assertNull( parentPathOf( theFile ) );
+    assertSame( path, theFile.getPath() );
+  }
+
+  @Test
+  public void testSerializationKeepsFullPath() throws Exception {
+    RepositoryFile original = new RepositoryFile.Builder( ID, "a.prpt" ).path( "/public/reports/a.prpt" ).title( "A" )
+        .interner( new RepositoryFileInterner( 100 ) ).build();
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    ObjectOutputStream out = new ObjectOutputStream( bytes );
+    out.writeObject( original );
+    out.close();
+    RepositoryFile copy =
+        (RepositoryFile) new ObjectInputStream( new ByteArrayInputStream( bytes.toByteArray() ) ).readObject();
+
+    assertEquals( original, copy );
+    assertEquals( "/public/reports/a.prpt", copy.getPath() );
+    assertEquals( original.getLocalePropertiesMap(), copy.getLocalePropertiesMap() );
+  }
+
+  @Test
+  public void testLocalePropertiesMapIsCopiedOnRead() {
+    RepositoryFile theFile = new RepositoryFile.Builder( NAME ).title( "default", "title" ).build();
+    Map<String, Properties> map = theFile.getLocalePropertiesMap();
+    assertEquals( 1, map.size() );
+    map.put( "fr", new Properties() );
+    assertEquals( 1, theFile.getLocalePropertiesMap().size() );
+  }
+
+  @Test
+  public void testDefaultLocaleOnlyIsBuiltOnRead() {
+    RepositoryFile theFile =
+        new RepositoryFile.Builder( NAME ).localePropertiesMap( new HashMap<String, Properties>() ).build();
+
+    Map<String, Properties> map = theFile.getLocalePropertiesMap();
+    assertEquals( 1, map.size() );
+    assertTrue( map.get( RepositoryFile.DEFAULT_LOCALE ).isEmpty() );
+    map.get( RepositoryFile.DEFAULT_LOCALE ).setProperty( RepositoryFile.TITLE, "changed" );
+
+    assertTrue( theFile.getLocalePropertiesMap().get( RepositoryFile.DEFAULT_LOCALE ).isEmpty() );
+    assertNull( new RepositoryFile.Builder( NAME ).build().getLocalePropertiesMap() );
+  }
+
+  private static Object parentPathOf( RepositoryFile theFile ) throws Exception {
+    Field field = RepositoryFile.class.getDeclaredField( "parentPath" );
+    field.setAccessible( true );
+    return field.get( theFile );
+  }
+
   private void checkRepositoryFile( RepositoryFile theFile ) {
     assertEquals( NAME, theFile.getName() );
     assertEquals( ID, theFile.getId() );
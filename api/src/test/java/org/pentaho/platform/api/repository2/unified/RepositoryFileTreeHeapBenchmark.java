@@ -0,0 +1,122 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.api.repository2.unified;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Properties;
+import java.util.UUID;
+
+/**
+ * Measures the heap retained by a tree of about 100,000 files, laid out like a repository read through
+ * {@code getTree}: 100 folders of 10 subfolders of 99 files each. The tree is built without an interner, with a
+ * {@link RepositoryFileInterner}, and with an interner after every path has been read once. Not run by the build; run
+ * it from the test classpath, e.g. with {@code java -Xmx1g}.
+ */
+public class RepositoryFileTreeHeapBenchmark {
+
+  private static final int FOLDERS = 100;
+
+  private static final int SUBFOLDERS = 10;
+
+  private static final int FILES = 99;
+
+  public static void main( final String[] args ) {
+    // warm up so that class loading does not count against the first run
+    build( null );
+    report( "no interner", null, false );
+    report( "interner", new RepositoryFileInterner( 100000 ), false );
+    report( "interner, every path read", new RepositoryFileInterner( 100000 ), true );
+  }
+
+  private static void report( final String label, final RepositoryFileInterner interner, final boolean readPaths ) {
+    long before = usedHeap();
+    RepositoryFileTree tree = build( interner );
+    if ( readPaths ) {
+      readPaths( tree );
+    }
+    long after = usedHeap();
+    System.out.println( String.format( "%-28s %,d nodes %,12d bytes", //$NON-NLS-1$
+        label, count( tree ), after - before ) );
+  }
+
+  private static RepositoryFileTree build( final RepositoryFileInterner interner ) {
+    List<RepositoryFileTree> folders = new ArrayList<RepositoryFileTree>();
+    for ( int i = 0; i < FOLDERS; i++ ) {
+      String folderPath = "/public/folder" + i; //$NON-NLS-1$
+      List<RepositoryFileTree> subfolders = new ArrayList<RepositoryFileTree>();
+      for ( int j = 0; j < SUBFOLDERS; j++ ) {
+        String subfolderPath = folderPath + "/subfolder" + j; //$NON-NLS-1$
+        List<RepositoryFileTree> files = new ArrayList<RepositoryFileTree>();
+        for ( int k = 0; k < FILES; k++ ) {
+          String name = "report" + k + ".prpt"; //$NON-NLS-1$ //$NON-NLS-2$
+          files.add( new RepositoryFileTree( file( name, subfolderPath + "/" + name, false, interner ), //$NON-NLS-1$
+              null ) );
+        }
+        subfolders.add( new RepositoryFileTree( file( "subfolder" + j, subfolderPath, true, interner ), files ) );
+      }
+      folders.add( new RepositoryFileTree( file( "folder" + i, folderPath, true, interner ), subfolders ) );
+    }
+    return new RepositoryFileTree( file( "public", "/public", true, interner ), folders ); //$NON-NLS-1$
+  }
+
+  /**
+   * Builds a file the way the JCR repository does: with an id, owner, dates, title and the default locale.
+   */
+  private static RepositoryFile file( final String name, final String path, final boolean folder,
+      final RepositoryFileInterner interner ) {
+    Date now = new Date();
+    return new RepositoryFile.Builder( UUID.randomUUID().toString(), name ).path( path ).folder( folder ).versioned(
+        !folder ).creatorId( new String( "admin" ) ).createdDate( now ).lastModificationDate( now ).title( //$NON-NLS-1$
+            name ).locale( new String( RepositoryFile.DEFAULT_LOCALE ) ).localePropertiesMap(
+            new HashMap<String, Properties>() ).interner( interner ).build();
+  }
+
+  private static void readPaths( final RepositoryFileTree tree ) {
+    tree.getFile().getPath();
+    if ( tree.getChildren() != null ) {
+      for ( RepositoryFileTree child : tree.getChildren() ) {
+        readPaths( child );
+      }
+    }
+  }
+
+  private static int count( final RepositoryFileTree tree ) {
+    int count = 1;
+    if ( tree.getChildren() != null ) {
+      for ( RepositoryFileTree child : tree.getChildren() ) {
+        count += count( child );
+      }
+    }
+    return count;
+  }
+
+  private static long usedHeap() {
+    Runtime runtime = Runtime.getRuntime();
+    for ( int i = 0; i < 5; i++ ) {
+      System.gc();
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+
+}
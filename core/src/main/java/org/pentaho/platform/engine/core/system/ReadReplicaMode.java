@@ -0,0 +1,46 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.engine.core.system;
+
+/**
+ * Tells whether this server is a read replica: an extra node of a repository cluster that serves browsing, report
+ * execution and downloads, and leaves writes to the other nodes. On a read replica the scheduler does not fire jobs,
+ * repository maintenance, default content import and home folder creation do not run, and repository writes are
+ * rejected. Plugins that write at startup or on login should check {@link #isEnabled()} as well.
+ * 
+ * <p>
+ * Set {@value #SETTING} to {@code true} in pentaho.xml to make a server a read replica.
+ * </p>
+ */
+public class ReadReplicaMode {
+
+  public static final String SETTING = "read-replica"; //$NON-NLS-1$
+
+  private ReadReplicaMode() {
+  }
+
+  /**
+   * @return {@code true} if this server is a read replica
+   */
+  public static boolean isEnabled() {
+    return "true".equals( PentahoSystem.getSystemSetting( SETTING, "false" ) ); //$NON-NLS-1$ //$NON-NLS-2$
+  }
+}
@@ -0,0 +1,118 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.engine.core.system;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Remembers the results of lookups for the duration of one HTTP request or action execution on the current thread,
+ * so that a file resolved many times while serving a request is only read once. A scope is opened with
+ * {@link #begin()} and closed with {@link #end()} by whoever owns the request; code that memoizes through
+ * {@link #current()} must work unchanged when no scope is open.
+ * 
+ * <p>
+ * The scope is bound to a plain (not inheritable) thread local, so worker threads started by a request do not share
+ * it. Set {@value #SETTING} to {@code false} in pentaho.xml to turn it off.
+ * </p>
+ */
+public class RequestScopedCache {
+
+  public static final String SETTING = "request-scoped-cache"; //$NON-NLS-1$
+
+  /**
+   * Entries kept by one scope before it starts over, so that a long running action does not grow without bound.
+   */
+  public static final int MAX_ENTRIES = 10000;
+
+  private static final ThreadLocal<RequestScopedCache> CURRENT = new ThreadLocal<RequestScopedCache>();
+
+  private final Map<Object, Object> entries = new HashMap<Object, Object>();
+
+  RequestScopedCache() {
+  }
+
+  /**
+   * Opens a scope on the current thread unless one is already open or the cache is turned off.
+   * 
+   * @return {@code true} if this call opened the scope, in which case the caller must {@link #end()} it
+   */
+  public static boolean begin() {
+    if ( CURRENT.get() != null || !isEnabled() ) {
+      return false;
+    }
+    CURRENT.set( new RequestScopedCache() );
+    return true;
+  }
+
+  /**
+   * Closes the scope of the current thread and drops what it remembered.
+   */
+  public static void end() {
+    CURRENT.remove();
+  }
+
+  /**
+   * @return the scope of the current thread, or {@code null} if none is open
+   */
+  public static RequestScopedCache current() {
+    return CURRENT.get();
+  }
+
+  private static boolean isEnabled() {
+    if ( PentahoSystem.getInitializedOK() ) {
+      return !"false".equals( PentahoSystem.getSystemSetting( SETTING, "true" ) ); //$NON-NLS-1$ //$NON-NLS-2$
+    }
+    return true;
+  }
+
+  /**
+   * @return the value remembered for {@code key}, or {@code null}
+   */
+  public Object get( final Object key ) {
+    return entries.get( key );
+  }
+
+  /**
+   * Remembers a non-null value. Keys must implement {@code equals} and {@code hashCode}, and should include everything
+   * the value depends on, such as the user it was looked up for.
+   */
+  public void put( final Object key, final Object value ) {
+    if ( value == null ) {
+      return;
+    }
+    if ( entries.size() >= MAX_ENTRIES ) {
+      entries.clear();
+    }
+    entries.put( key, value );
+  }
+
+  /**
+   * Forgets everything, typically after a write that may change what was looked up.
+   */
+  public void clear() {
+    entries.clear();
+  }
+
+  public int size() {
+    return entries.size();
+  }
+}
@@ -0,0 +1,56 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.engine.core.system;
+
+import org.junit.After;
+import org.junit.Test;
+import org.pentaho.platform.api.engine.ISystemSettings;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ReadReplicaModeTest {
+
+  @After
+  public void tearDown() {
+    PentahoSystem.setSystemSettingsService( null );
+  }
+
+  @Test
+  public void testDisabledWithoutSettings() {
+    PentahoSystem.setSystemSettingsService( null );
+    assertFalse( ReadReplicaMode.isEnabled() );
+  }
+
+  @Test
+  public void testSetting() {
+    ISystemSettings settings = mock( ISystemSettings.class );
+    PentahoSystem.setSystemSettingsService( settings );
+
+    when( settings.getSystemSetting( ReadReplicaMode.SETTING, "false" ) ).thenReturn( "false" );
+    assertFalse( ReadReplicaMode.isEnabled() );
+
+    when( settings.getSystemSetting( ReadReplicaMode.SETTING, "false" ) ).thenReturn( "true" );
+    assertTrue( ReadReplicaMode.isEnabled() );
+  }
+}
@@ -0,0 +1,96 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.engine.core.system;
+
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class RequestScopedCacheTest {
+
+  @After
+  public void tearDown() {
+    RequestScopedCache.end();
+  }
+
+  @Test
+  public void testScope() {
+    assertNull( RequestScopedCache.current() );
+    assertTrue( RequestScopedCache.begin() );
+    RequestScopedCache cache = RequestScopedCache.current();
+    assertNotNull( cache );
+
+    // a nested begin joins the open scope
+    assertFalse( RequestScopedCache.begin() );
+    assertSame( cache, RequestScopedCache.current() );
+
+    RequestScopedCache.end();
+    assertNull( RequestScopedCache.current() );
+  }
+
+  @Test
+  public void testScopeIsPerThread() throws Exception {
+    RequestScopedCache.begin();
+    final RequestScopedCache[] other = new RequestScopedCache[1];
+    Thread thread = new Thread() {
+      public void run() {
+        other[0] = RequestScopedCache.current();
+      }
+    };
+    thread.start();
+    thread.join();
+    assertNull( other[0] );
+  }
+
+  @Test
+  public void testPutGetClear() {
+    RequestScopedCache.begin();
+    RequestScopedCache cache = RequestScopedCache.current();
+    cache.put( "key", "value" );
+    cache.put( "missing", null );
+
+    assertEquals( "value", cache.get( "key" ) );
+    assertNull( cache.get( "missing" ) );
+    assertEquals( 1, cache.size() );
+
+    cache.clear();
+    assertNull( cache.get( "key" ) );
+  }
+
+  @Test
+  public void testStartsOverWhenFull() {
+    RequestScopedCache.begin();
+    RequestScopedCache cache = RequestScopedCache.current();
+    for ( int i = 0; i < RequestScopedCache.MAX_ENTRIES; i++ ) {
+      cache.put( i, i );
+    }
+    assertEquals( RequestScopedCache.MAX_ENTRIES, cache.size() );
+
+    cache.put( "one more", 1 );
+    assertEquals( 1, cache.size() );
+  }
+}
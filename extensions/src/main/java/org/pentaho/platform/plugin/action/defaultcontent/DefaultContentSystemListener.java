@@ -24,6 +24,7 @@ import org.pentaho.platform.api.engine.IPentahoSession;
 import org.pentaho.platform.api.engine.IPentahoSystemListener;
 import org.pentaho.platform.api.engine.ISystemConfig;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
+import org.pentaho.platform.engine.core.system.ReadReplicaMode;
 import org.pentaho.platform.engine.security.SecurityHelper;
 import org.pentaho.platform.plugin.services.importer.ArchiveLoader;
 import org.pentaho.platform.plugin.services.importer.IPlatformImporter;
@@ -42,6 +43,10 @@ public class DefaultContentSystemListener implements IPentahoSystemListener {
 
   @Override
   public boolean startup( IPentahoSession arg0 ) {
+    if ( ReadReplicaMode.isEnabled() ) {
+      // default content is imported by the other servers
+      return true;
+    }
 
     // By default we'll run in a separate thread. This checks to see if someone has disabled this.
     ISystemConfig systemSettings = PentahoSystem.get( ISystemConfig.class );
@@ -0,0 +1,379 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.plugin.services.exporter;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.io.IOUtils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Describes the repository content held by a system backup. Every backup archive carries one of these next to its
+ * export manifest. It lists every file that was live when the backup was taken, together with its last modified
+ * date, size, SHA-256 checksum, the fingerprint of its ACL, locale properties and manifest metadata, and the id of
+ * the backup whose archive holds its content.
+ * <p/>
+ * A full backup holds the content of every file it lists. An incremental backup names the backup it was taken
+ * against in {@link #getBaseBackupId()} and only holds the files whose content or fingerprint changed since then.
+ * Unchanged entries are carried over from the base index and still point at the archive that holds their content.
+ */
+public class BackupIndex {
+
+  public static final String BACKUP_INDEX_FILENAME = "backupIndex.bkidx";
+
+  private static final String HEADER = "# Pentaho system backup index, version 2";
+
+  /**
+   * Indexes written before fingerprints were recorded; none of their entries count as unchanged.
+   */
+  private static final String HEADER_VERSION_1 = "# Pentaho system backup index, version 1";
+
+  private static final String NO_FINGERPRINT = "-";
+
+  private static final String BACKUP_ID = "backupId=";
+
+  private static final String BASE_BACKUP_ID = "baseBackupId=";
+
+  private static final String CREATED = "created=";
+
+  private static final String CONTENT_COUNT = "contentCount=";
+
+  private static final String FILE_COUNT = "fileCount=";
+
+  private static final String CHECKSUM_ALGORITHM = "SHA-256";
+
+  private final String backupId;
+
+  private final String baseBackupId;
+
+  private final long created;
+
+  private final Map<String, Entry> entries = new TreeMap<String, Entry>();
+
+  /**
+   * Starts the index of a new backup.
+   *
+   * @param base the index of the backup this one is taken against, or <code>null</code> for a full backup
+   */
+  public BackupIndex( BackupIndex base ) {
+    this( UUID.randomUUID().toString(), base != null ? base.getBackupId() : null, System.currentTimeMillis() );
+  }
+
+  private BackupIndex( String backupId, String baseBackupId, long created ) {
+    this.backupId = backupId;
+    this.baseBackupId = baseBackupId;
+    this.created = created;
+  }
+
+  public String getBackupId() {
+    return backupId;
+  }
+
+  public String getBaseBackupId() {
+    return baseBackupId;
+  }
+
+  public boolean isIncremental() {
+    return baseBackupId != null;
+  }
+
+  public long getCreated() {
+    return created;
+  }
+
+  public Entry getEntry( String path ) {
+    return entries.get( path );
+  }
+
+  public Collection<Entry> getEntries() {
+    return Collections.unmodifiableCollection( entries.values() );
+  }
+
+  /**
+   * @return the number of files this index lists, whether or not their content is held by this backup
+   */
+  public int getFileCount() {
+    return entries.size();
+  }
+
+  /**
+   * @return the number of files whose content is held by this backup
+   */
+  public int getContentCount() {
+    int count = 0;
+    for ( Entry entry : entries.values() ) {
+      if ( backupId.equals( entry.getBackupId() ) ) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Records a file whose content is written to this backup.
+   *
+   * @param fingerprint the checksum of the ACL, locale properties and manifest metadata written with the file
+   */
+  public void add( String path, String zipEntryName, long lastModified, long size, String checksum,
+                   String fingerprint ) {
+    entries.put( path, new Entry( path, zipEntryName, lastModified, size, checksum, fingerprint, backupId ) );
+  }
+
+  /**
+   * Records a file that did not change since the base backup; its content stays in the archive that already holds
+   * it.
+   */
+  public void carryOver( Entry entry ) {
+    entries.put( entry.getPath(), entry );
+  }
+
+  /**
+   * @return <code>true</code> if this index lists the file with the given last modified date and fingerprint, which
+   * means that the backup it describes already holds the current content, ACL and locale properties of the file
+   */
+  public boolean isUnchanged( String path, long lastModified, String fingerprint ) {
+    Entry entry = entries.get( path );
+    return entry != null && lastModified > 0 && entry.getLastModified() == lastModified
+      && entry.getFingerprint() != null && entry.getFingerprint().equals( fingerprint );
+  }
+
+  public void write( OutputStream outputStream ) throws IOException {
+    Writer writer = new OutputStreamWriter( outputStream, StandardCharsets.UTF_8 );
+    writer.write( HEADER + "\n" );
+    writer.write( BACKUP_ID + backupId + "\n" );
+    if ( baseBackupId != null ) {
+      writer.write( BASE_BACKUP_ID + baseBackupId + "\n" );
+    }
+    writer.write( CREATED + created + "\n" );
+    writer.write( CONTENT_COUNT + getContentCount() + "\n" );
+    writer.write( FILE_COUNT + getFileCount() + "\n" );
+    for ( Entry entry : entries.values() ) {
+      String fingerprint = entry.getFingerprint() != null ? entry.getFingerprint() : NO_FINGERPRINT;
+      writer.write( entry.getBackupId() + "\t" + entry.getLastModified() + "\t" + entry.getSize() + "\t"
+        + entry.getChecksum() + "\t" + fingerprint + "\t" + encode( entry.getZipEntryName() ) + "\t"
+        + encode( entry.getPath() ) + "\n" );
+    }
+    // the caller owns the stream, which is usually a zip entry
+    writer.flush();
+  }
+
+  /**
+   * Reads an index, either on its own or from the backup archive that carries it.
+   *
+   * @throws IOException if the stream holds neither, or the index is damaged
+   */
+  public static BackupIndex read( InputStream inputStream ) throws IOException {
+    InputStream in = new BufferedInputStream( inputStream );
+    in.mark( 4 );
+    byte[] magic = new byte[ 4 ];
+    int read = IOUtils.read( in, magic );
+    in.reset();
+    if ( read == 4 && magic[ 0 ] == 'P' && magic[ 1 ] == 'K' && magic[ 2 ] == 3 && magic[ 3 ] == 4 ) {
+      ZipInputStream zis = new ZipInputStream( in );
+      for ( ZipEntry entry = zis.getNextEntry(); entry != null; entry = zis.getNextEntry() ) {
+        if ( BACKUP_INDEX_FILENAME.equals( entry.getName() ) ) {
+          return parse( zis );
+        }
+      }
+      throw new IOException( "The archive does not contain a " + BACKUP_INDEX_FILENAME ); //$NON-NLS-1$
+    }
+    return parse( in );
+  }
+
+  private static BackupIndex parse( InputStream in ) throws IOException {
+    BufferedReader reader = new BufferedReader( new InputStreamReader( in, StandardCharsets.UTF_8 ) );
+    String header = reader.readLine();
+    boolean withFingerprints = HEADER.equals( header );
+    if ( !withFingerprints && !HEADER_VERSION_1.equals( header ) ) {
+      throw new IOException( "Not a backup index" ); //$NON-NLS-1$
+    }
+    String backupId = null;
+    String baseBackupId = null;
+    long created = 0;
+    int contentCount = -1;
+    int fileCount = -1;
+    BackupIndex index = null;
+    try {
+      for ( String line = reader.readLine(); line != null; line = reader.readLine() ) {
+        if ( line.isEmpty() ) {
+          continue;
+        }
+        if ( index == null ) {
+          if ( line.startsWith( BACKUP_ID ) ) {
+            backupId = line.substring( BACKUP_ID.length() );
+            continue;
+          } else if ( line.startsWith( BASE_BACKUP_ID ) ) {
+            baseBackupId = line.substring( BASE_BACKUP_ID.length() );
+            continue;
+          } else if ( line.startsWith( CREATED ) ) {
+            created = Long.parseLong( line.substring( CREATED.length() ) );
+            continue;
+          } else if ( line.startsWith( CONTENT_COUNT ) ) {
+            contentCount = Integer.parseInt( line.substring( CONTENT_COUNT.length() ) );
+            continue;
+          } else if ( line.startsWith( FILE_COUNT ) ) {
+            fileCount = Integer.parseInt( line.substring( FILE_COUNT.length() ) );
+            continue;
+          }
+          if ( backupId == null ) {
+            throw new IOException( "The backup index has no backup id" ); //$NON-NLS-1$
+          }
+          index = new BackupIndex( backupId, baseBackupId, created );
+        }
+        String[] fields = line.split( "\t" );
+        if ( fields.length != ( withFingerprints ? 7 : 6 ) ) {
+          throw new IOException( "Malformed backup index entry: " + line ); //$NON-NLS-1$
+        }
+        String fingerprint = withFingerprints && !NO_FINGERPRINT.equals( fields[ 4 ] ) ? fields[ 4 ] : null;
+        int names = withFingerprints ? 5 : 4;
+        index.carryOver( new Entry( decode( fields[ names + 1 ] ), decode( fields[ names ] ),
+          Long.parseLong( fields[ 1 ] ), Long.parseLong( fields[ 2 ] ), fields[ 3 ], fingerprint, fields[ 0 ] ) );
+      }
+    } catch ( NumberFormatException e ) {
+      throw new IOException( "Malformed backup index", e ); //$NON-NLS-1$
+    }
+    if ( index == null ) {
+      if ( backupId == null ) {
+        throw new IOException( "The backup index has no backup id" ); //$NON-NLS-1$
+      }
+      index = new BackupIndex( backupId, baseBackupId, created );
+    }
+    if ( index.getFileCount() != fileCount || index.getContentCount() != contentCount ) {
+      throw new IOException( "The backup index " + backupId + " is truncated" ); //$NON-NLS-1$ //$NON-NLS-2$
+    }
+    return index;
+  }
+
+  /**
+   * @return a digest that produces the checksums stored in this index
+   */
+  public static MessageDigest createDigest() {
+    try {
+      return MessageDigest.getInstance( CHECKSUM_ALGORITHM );
+    } catch ( NoSuchAlgorithmException e ) {
+      // every Java platform is required to support SHA-256
+      throw new IllegalStateException( e );
+    }
+  }
+
+  public static String toChecksum( MessageDigest digest ) {
+    return Hex.encodeHexString( digest.digest() );
+  }
+
+  private static String encode( String value ) throws IOException {
+    return URLEncoder.encode( value, "UTF-8" ); //$NON-NLS-1$
+  }
+
+  private static String decode( String value ) throws IOException {
+    return URLDecoder.decode( value, "UTF-8" ); //$NON-NLS-1$
+  }
+
+  /**
+   * A file listed by a backup index.
+   */
+  public static class Entry {
+
+    private final String path;
+
+    private final String zipEntryName;
+
+    private final long lastModified;
+
+    private final long size;
+
+    private final String checksum;
+
+    private final String fingerprint;
+
+    private final String backupId;
+
+    Entry( String path, String zipEntryName, long lastModified, long size, String checksum, String fingerprint,
+           String backupId ) {
+      this.path = path;
+      this.zipEntryName = zipEntryName;
+      this.lastModified = lastModified;
+      this.size = size;
+      this.checksum = checksum;
+      this.fingerprint = fingerprint;
+      this.backupId = backupId;
+    }
+
+    /**
+     * @return the repository path of the file
+     */
+    public String getPath() {
+      return path;
+    }
+
+    /**
+     * @return the name of the zip entry that holds the content in the archive of {@link #getBackupId()}
+     */
+    public String getZipEntryName() {
+      return zipEntryName;
+    }
+
+    public long getLastModified() {
+      return lastModified;
+    }
+
+    public long getSize() {
+      return size;
+    }
+
+    public String getChecksum() {
+      return checksum;
+    }
+
+    /**
+     * @return the checksum of the ACL, locale properties and manifest metadata of the file, or <code>null</code> if
+     * the index that recorded it predates fingerprints
+     */
+    public String getFingerprint() {
+      return fingerprint;
+    }
+
+    /**
+     * @return the id of the backup whose archive holds the content of the file
+     */
+    public String getBackupId() {
+      return backupId;
+    }
+  }
+}
@@ -29,18 +29,23 @@ import org.pentaho.metadata.repository.IMetadataDomainRepository;
 import org.pentaho.metastore.api.IMetaStore;
 import org.pentaho.metastore.stores.xml.XmlMetaStore;
 import org.pentaho.metastore.util.MetaStoreUtil;
+import org.pentaho.platform.api.engine.IPentahoSession;
 import org.pentaho.platform.api.engine.IUserRoleListService;
 import org.pentaho.platform.api.mt.ITenant;
 import org.pentaho.platform.api.repository.datasource.DatasourceMgmtServiceException;
 import org.pentaho.platform.api.repository.datasource.IDatasourceMgmtService;
 import org.pentaho.platform.api.repository2.unified.IUnifiedRepository;
 import org.pentaho.platform.api.repository2.unified.RepositoryFile;
+import org.pentaho.platform.api.repository2.unified.RepositoryFileAce;
+import org.pentaho.platform.api.repository2.unified.RepositoryFileAcl;
+import org.pentaho.platform.api.repository2.unified.RepositoryFileSid;
 import org.pentaho.platform.api.scheduler2.IScheduler;
 import org.pentaho.platform.api.scheduler2.Job;
 import org.pentaho.platform.api.scheduler2.SchedulerException;
 import org.pentaho.platform.api.usersettings.IAnyUserSettingService;
 import org.pentaho.platform.api.usersettings.IUserSettingService;
 import org.pentaho.platform.api.usersettings.pojo.IUserSetting;
+import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
 import org.pentaho.platform.engine.core.system.TenantUtils;
 import org.pentaho.platform.plugin.action.mondrian.catalog.IMondrianCatalogService;
@@ -48,6 +53,7 @@ import org.pentaho.platform.plugin.action.mondrian.catalog.MondrianCatalog;
 import org.pentaho.platform.plugin.services.importexport.DefaultExportHandler;
 import org.pentaho.platform.plugin.services.importexport.ExportException;
 import org.pentaho.platform.plugin.services.importexport.ExportFileNameEncoder;
+import org.pentaho.platform.plugin.services.importexport.ExportHandler;
 import org.pentaho.platform.plugin.services.importexport.ExportManifestUserSetting;
 import org.pentaho.platform.plugin.services.importexport.RoleExport;
 import org.pentaho.platform.plugin.services.importexport.UserExport;
@@ -66,6 +72,8 @@ import org.pentaho.platform.security.policy.rolebased.IRoleAuthorizationPolicyRo
 import org.pentaho.platform.web.http.api.resources.JobScheduleRequest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetailsService;
 
 import java.io.File;
@@ -74,13 +82,32 @@ import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Properties;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.StreamSupport;
 import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
 import java.util.zip.ZipOutputStream;
 
 public class PentahoPlatformExporter extends ZipExportProcessor {
@@ -94,10 +121,16 @@ public class PentahoPlatformExporter extends ZipExportProcessor {
   public static final String CONNECTIONS_PATH_IN_ZIP = DATA_SOURCES_PATH_IN_ZIP + "connections/";
   public static final String METASTORE = "metastore";
   public static final String METASTORE_BACKUP_EXT = ".mzip";
+  public static final int DEFAULT_EXPORT_THREADS = 4;
 
   private File exportFile;
   protected ZipOutputStream zos;
 
+  private int exportThreads = DEFAULT_EXPORT_THREADS;
+  private BackupIndex baseIndex;
+  private BackupIndex backupIndex;
+  private ExportPipeline exportPipeline;
+
   private IScheduler scheduler;
   private IMetadataDomainRepository metadataDomainRepository;
   private IDatasourceMgmtService datasourceMgmtService;
@@ -117,12 +150,13 @@ public class PentahoPlatformExporter extends ZipExportProcessor {
   }
 
   /**
-   * Performs the export process, returns a zip File object
+   * Performs the export process, returns a zip File object. An exporter runs one export at a time; concurrent backups
+   * should each use their own exporter.
    *
    * @throws ExportException indicates an error in import processing
    */
   @Override
-  public File performExport( RepositoryFile exportRepositoryFile ) throws ExportException, IOException {
+  public synchronized File performExport( RepositoryFile exportRepositoryFile ) throws ExportException, IOException {
 
     // always export root
     exportRepositoryFile = getUnifiedRepository().getFile( ROOT );
@@ -132,6 +166,7 @@ public class PentahoPlatformExporter extends ZipExportProcessor {
     exportFile.deleteOnExit();
 
     zos = new ZipOutputStream( new FileOutputStream( exportFile ) );
+    backupIndex = new BackupIndex( baseIndex );
 
     exportFileContent( exportRepositoryFile );
     exportDatasources();
@@ -140,6 +175,7 @@ public class PentahoPlatformExporter extends ZipExportProcessor {
     exportSchedules();
     exportUsersAndRoles();
     exportMetastore();
+    exportBackupIndex();
 
     if ( this.withManifest ) {
       // write manifest to zip output stream
@@ -491,18 +527,319 @@ public class PentahoPlatformExporter extends ZipExportProcessor {
       throw new FileNotFoundException( "JCR file not found: " + this.path );
     }
 
-    if ( exportRepositoryFile.isFolder() ) { // Handle recursive export
-      getExportManifest().getManifestInformation().setRootFolder( path.substring( 0, path.lastIndexOf( "/" ) + 1 ) );
+    // the walk below stays on this thread and only hands files to the pipeline, which reads them on the worker
+    // threads and writes them back here in the order they were handed in
+    exportPipeline = new ExportPipeline( Math.max( 1, exportThreads ) );
+    try {
+      if ( exportRepositoryFile.isFolder() ) { // Handle recursive export
+        getExportManifest().getManifestInformation().setRootFolder( path.substring( 0, path.lastIndexOf( "/" ) + 1 ) );
+
+        // don't zip root folder without name
+        if ( !ClientRepositoryPaths.getRootFolderPath().equals( exportRepositoryFile.getPath() ) ) {
+          zos.putNextEntry( new ZipEntry( getFixedZipEntryName( exportRepositoryFile, filePath ) ) );
+        }
+        exportDirectory( exportRepositoryFile, zos, filePath );
+
+      } else {
+        getExportManifest().getManifestInformation().setRootFolder( path.substring( 0, path.lastIndexOf( "/" ) + 1 ) );
+        exportFile( exportRepositoryFile, zos, filePath );
+      }
+      exportPipeline.finish();
+    } finally {
+      exportPipeline.shutdown();
+      exportPipeline = null;
+    }
+  }
+
+  /**
+   * While the repository content is being exported, files are handed to the export pipeline instead of being written
+   * right away. In an incremental backup, files whose last modified date and {@link #getFingerprint fingerprint} did
+   * not change since the base backup are only carried over in the backup index.
+   */
+  @Override
+  public void exportFile( RepositoryFile repositoryFile, OutputStream outputStream, String filePath )
+    throws ExportException, IOException {
+    if ( exportPipeline == null ) {
+      super.exportFile( repositoryFile, outputStream, filePath );
+      return;
+    }
+    exportPipeline.submit( repositoryFile, filePath );
+  }
 
-      // don't zip root folder without name
-      if ( !ClientRepositoryPaths.getRootFolderPath().equals( exportRepositoryFile.getPath() ) ) {
-        zos.putNextEntry( new ZipEntry( getFixedZipEntryName( exportRepositoryFile, filePath ) ) );
+  /**
+   * Computes the checksum of what the backup writes alongside the content of a file: its ACL, its locale properties
+   * and the metadata the export manifest records. None of these change the last modified date of a file, so an
+   * incremental backup compares this fingerprint as well before it skips a file.
+   *
+   * @param acl the ACL written to the manifest, or <code>null</code> when there is no manifest
+   */
+  protected String getFingerprint( RepositoryFile repositoryFile, RepositoryFileAcl acl ) {
+    StringBuilder text = new StringBuilder();
+    text.append( "title=" ).append( repositoryFile.getTitle() ).append( '\n' );
+    text.append( "description=" ).append( repositoryFile.getDescription() ).append( '\n' );
+    text.append( "creator=" ).append( repositoryFile.getCreatorId() ).append( '\n' );
+    text.append( "hidden=" ).append( repositoryFile.isHidden() ).append( '\n' );
+    text.append( "schedulable=" ).append( repositoryFile.isSchedulable() ).append( '\n' );
+    if ( acl != null ) {
+      text.append( "owner=" ).append( toString( acl.getOwner() ) ).append( '\n' );
+      text.append( "inheriting=" ).append( acl.isEntriesInheriting() ).append( '\n' );
+      for ( RepositoryFileAce ace : acl.getAces() ) {
+        // permissions are an EnumSet, which lists them in a fixed order
+        text.append( "ace=" ).append( toString( ace.getSid() ) ).append( ace.getPermissions() ).append( '\n' );
+      }
+    }
+    if ( supportedLocaleFileExt( repositoryFile ) ) {
+      Map<String, Properties> locales = new TreeMap<String, Properties>();
+      List<Locale> available = getUnifiedRepository().getAvailableLocalesForFileById( repositoryFile.getId() );
+      if ( available != null ) {
+        for ( Locale locale : available ) {
+          locales.put( locale.toString(),
+            getUnifiedRepository().getLocalePropertiesForFileById( repositoryFile.getId(), locale.toString() ) );
+        }
+      }
+      for ( Map.Entry<String, Properties> locale : locales.entrySet() ) {
+        text.append( "locale=" ).append( locale.getKey() ).append( '\n' );
+        if ( locale.getValue() != null ) {
+          for ( String key : new TreeSet<String>( locale.getValue().stringPropertyNames() ) ) {
+            if ( !"jcr:primaryType".equals( key ) ) { // not exported, see getLocaleEntries
+              text.append( key ).append( '=' ).append( locale.getValue().getProperty( key ) ).append( '\n' );
+            }
+          }
+        }
       }
-      exportDirectory( exportRepositoryFile, zos, filePath );
+    }
+    MessageDigest digest = BackupIndex.createDigest();
+    digest.update( text.toString().getBytes( StandardCharsets.UTF_8 ) );
+    return BackupIndex.toChecksum( digest );
+  }
+
+  private static String toString( RepositoryFileSid sid ) {
+    return sid != null ? sid.getType() + ":" + sid.getName() : null;
+  }
 
-    } else {
-      getExportManifest().getManifestInformation().setRootFolder( path.substring( 0, path.lastIndexOf( "/" ) + 1 ) );
-      exportFile( exportRepositoryFile, zos, filePath );
+  protected void exportBackupIndex() throws IOException {
+    log.debug( "export the backup index" );
+    zos.putNextEntry( new ZipEntry( BackupIndex.BACKUP_INDEX_FILENAME ) );
+    try {
+      backupIndex.write( zos );
+    } finally {
+      zos.closeEntry();
+    }
+  }
+
+  /**
+   * Reads the content, ACL and locale files of repository files on a bounded pool of worker threads, which also
+   * decide what an incremental backup carries over, while the zip stream, the export manifest and the backup index
+   * are only ever touched by the thread that runs the export. At most a few files per worker are read ahead, each
+   * spooled to a temporary file, so memory use does not grow with the repository.
+   */
+  private class ExportPipeline {
+
+    private final ExecutorService executor;
+
+    private final int readAhead;
+
+    private final Deque<Future<ExportedFile>> pending = new ArrayDeque<Future<ExportedFile>>();
+
+    private final IPentahoSession session = PentahoSessionHolder.getSession();
+
+    private final Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+
+    ExportPipeline( int threads ) {
+      this.readAhead = threads * 4;
+      this.executor = Executors.newFixedThreadPool( threads, new ThreadFactory() {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread( Runnable r ) {
+          Thread t = new Thread( r, "System Backup Export " + count.incrementAndGet() ); //$NON-NLS-1$
+          t.setDaemon( true );
+          return t;
+        }
+      } );
+      // resolve the locale export list up front instead of racing for it on the workers
+      getLocaleExportList();
+    }
+
+    void submit( final RepositoryFile repositoryFile, final String filePath ) throws ExportException, IOException {
+      pending.add( executor.submit( new Callable<ExportedFile>() {
+        @Override
+        public ExportedFile call() throws Exception {
+          PentahoSessionHolder.setSession( session );
+          SecurityContextHolder.clearContext();
+          SecurityContextHolder.getContext().setAuthentication( authentication );
+          try {
+            return read( repositoryFile, filePath );
+          } finally {
+            SecurityContextHolder.clearContext();
+            PentahoSessionHolder.removeSession();
+          }
+        }
+      } ) );
+      while ( pending.size() > readAhead ) {
+        write( pending.poll() );
+      }
+    }
+
+    void finish() throws ExportException, IOException {
+      while ( !pending.isEmpty() ) {
+        write( pending.poll() );
+      }
+    }
+
+    void shutdown() {
+      executor.shutdownNow();
+      for ( Future<ExportedFile> future : pending ) {
+        if ( !future.cancel( true ) ) {
+          try {
+            future.get().discard();
+          } catch ( Exception e ) {
+            // nothing to clean up
+          }
+        }
+      }
+      pending.clear();
+    }
+
+    private ExportedFile read( RepositoryFile repositoryFile, String filePath ) throws Exception {
+      ExportedFile exported = new ExportedFile( repositoryFile, filePath );
+      try {
+        if ( withManifest ) {
+          exported.acl = getUnifiedRepository().getAcl( repositoryFile.getId() );
+        }
+        exported.fingerprint = getFingerprint( repositoryFile, exported.acl );
+        long lastModified =
+          repositoryFile.getLastModifiedDate() != null ? repositoryFile.getLastModifiedDate().getTime() : 0;
+        if ( baseIndex != null && baseIndex.isUnchanged( repositoryFile.getPath(), lastModified,
+          exported.fingerprint ) ) {
+          exported.carriedOver = baseIndex.getEntry( repositoryFile.getPath() );
+          return exported;
+        }
+        for ( ExportHandler exportHandler : getExportHandlers() ) {
+          InputStream is = exportHandler.doExport( repositoryFile, filePath );
+          if ( is != null ) {
+            exported.spool( is );
+            break;
+          }
+        }
+        if ( exported.content != null ) {
+          exported.locales = getLocaleEntries( repositoryFile, filePath, repositoryFile.isFolder() );
+        }
+        return exported;
+      } catch ( Exception e ) {
+        exported.discard();
+        throw e;
+      }
+    }
+
+    private void write( Future<ExportedFile> future ) throws ExportException, IOException {
+      ExportedFile exported;
+      try {
+        exported = future.get();
+      } catch ( InterruptedException e ) {
+        Thread.currentThread().interrupt();
+        throw new ExportException( e.getMessage() );
+      } catch ( ExecutionException e ) {
+        Throwable cause = e.getCause();
+        if ( cause instanceof ExportException ) {
+          throw (ExportException) cause;
+        } else if ( cause instanceof IOException ) {
+          throw (IOException) cause;
+        } else if ( cause instanceof RuntimeException ) {
+          throw (RuntimeException) cause;
+        }
+        throw new ExportException( String.valueOf( cause ) );
+      }
+      try {
+        if ( exported.carriedOver != null ) {
+          backupIndex.carryOver( exported.carriedOver );
+          return;
+        }
+        if ( exported.content == null ) {
+          return;
+        }
+        RepositoryFile repositoryFile = exported.repositoryFile;
+        addToManifest( repositoryFile, exported.acl );
+        String zipEntryName = getFixedZipEntryName( repositoryFile, exported.filePath );
+        try {
+          zos.putNextEntry( new ZipEntry( zipEntryName ) );
+        } catch ( ZipException e ) {
+          // possible duplicate entry, log it and continue on with the other files
+          log.debug( e.getMessage(), e );
+          return;
+        }
+        InputStream is = new FileInputStream( exported.content );
+        try {
+          IOUtils.copy( is, zos );
+        } finally {
+          is.close();
+        }
+        zos.closeEntry();
+        long lastModified =
+          repositoryFile.getLastModifiedDate() != null ? repositoryFile.getLastModifiedDate().getTime() : 0;
+        backupIndex.add( repositoryFile.getPath(), zipEntryName, lastModified, exported.size, exported.checksum,
+          exported.fingerprint );
+        writeLocales( exported.locales, zos );
+        exported.locales = Collections.emptyMap();
+      } finally {
+        exported.discard();
+      }
+    }
+  }
+
+  /**
+   * A repository file read by a worker and waiting to be written to the zip.
+   */
+  private static class ExportedFile {
+
+    private final RepositoryFile repositoryFile;
+
+    private final String filePath;
+
+    private File content;
+
+    private long size;
+
+    private String checksum;
+
+    private RepositoryFileAcl acl;
+
+    private String fingerprint;
+
+    /**
+     * The base backup entry of a file that did not change, in which case nothing was read
+     */
+    private BackupIndex.Entry carriedOver;
+
+    private Map<String, InputStream> locales = Collections.emptyMap();
+
+    ExportedFile( RepositoryFile repositoryFile, String filePath ) {
+      this.repositoryFile = repositoryFile;
+      this.filePath = filePath;
+    }
+
+    void spool( InputStream is ) throws IOException {
+      content = File.createTempFile( EXPORT_TEMP_FILENAME_PREFIX, null );
+      content.deleteOnExit();
+      MessageDigest digest = BackupIndex.createDigest();
+      OutputStream out = new DigestOutputStream( new FileOutputStream( content ), digest );
+      try {
+        size = IOUtils.copyLarge( is, out );
+      } finally {
+        out.close();
+        is.close();
+      }
+      checksum = BackupIndex.toChecksum( digest );
+    }
+
+    void discard() {
+      for ( InputStream is : locales.values() ) {
+        IOUtils.closeQuietly( is );
+      }
+      locales = Collections.emptyMap();
+      if ( content != null ) {
+        content.delete();
+      }
     }
   }
 
@@ -510,6 +847,36 @@ public class PentahoPlatformExporter extends ZipExportProcessor {
     return ( (IPentahoMetadataDomainRepositoryExporter) metadataDomainRepository ).getDomainFilesData( domainId );
   }
 
+  public int getExportThreads() {
+    return exportThreads;
+  }
+
+  /**
+   * @param exportThreads the number of threads that read repository files during the export
+   */
+  public void setExportThreads( int exportThreads ) {
+    this.exportThreads = exportThreads;
+  }
+
+  public BackupIndex getBaseIndex() {
+    return baseIndex;
+  }
+
+  /**
+   * Makes the next export an incremental backup that only holds the files that changed since the backup described
+   * by the given index. Pass <code>null</code> for a full backup.
+   */
+  public void setBaseIndex( BackupIndex baseIndex ) {
+    this.baseIndex = baseIndex;
+  }
+
+  /**
+   * @return the index of the last backup this exporter produced
+   */
+  public BackupIndex getBackupIndex() {
+    return backupIndex;
+  }
+
   public IScheduler getScheduler() {
     if ( scheduler == null ) {
       scheduler = PentahoSystem.get( IScheduler.class, "IScheduler2", null ); //$NON-NLS-1$
@@ -0,0 +1,199 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.plugin.services.importer;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.pentaho.platform.api.repository2.unified.IUnifiedRepository;
+import org.pentaho.platform.api.repository2.unified.RepositoryFile;
+import org.pentaho.platform.plugin.services.exporter.BackupIndex;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Restores a full system backup followed by the incremental backups taken against it. Before anything is imported,
+ * every archive is checked against its {@link BackupIndex}: the archives must form one unbroken chain starting at a
+ * full backup, and each must hold exactly the files its index says it holds, with matching sizes and checksums.
+ * The archives are then imported oldest first, and files that were deleted between backups are moved to the trash.
+ */
+public class BackupChainImporter {
+
+  private static final Log log = LogFactory.getLog( BackupChainImporter.class );
+
+  private final IUnifiedRepository repository;
+
+  /**
+   * Imports a single, verified backup archive.
+   */
+  public interface ArchiveImporter {
+    void importArchive( File archive ) throws PlatformImportException;
+  }
+
+  public BackupChainImporter( IUnifiedRepository repository ) {
+    this.repository = repository;
+  }
+
+  /**
+   * @param archives the backup archives, in any order
+   * @param importer imports one archive
+   * @return the number of files restored
+   * @throws PlatformImportException if the archives are not a complete chain or fail verification, in which case
+   *                                 nothing has been imported
+   */
+  public int restore( List<File> archives, ArchiveImporter importer ) throws PlatformImportException {
+    Map<File, BackupIndex> chain = verify( archives );
+    List<BackupIndex> indexes = new ArrayList<BackupIndex>( chain.values() );
+    for ( Map.Entry<File, BackupIndex> link : chain.entrySet() ) {
+      log.info( "Restoring backup " + link.getValue().getBackupId() ); //$NON-NLS-1$
+      importer.importArchive( link.getKey() );
+    }
+    BackupIndex last = indexes.get( indexes.size() - 1 );
+    removeDeletedFiles( indexes, last );
+    return last.getFileCount();
+  }
+
+  /**
+   * Orders the archives from the full backup to the newest incremental and checks every one of them.
+   *
+   * @return the archives in restore order, with their indexes
+   */
+  public Map<File, BackupIndex> verify( List<File> archives ) throws PlatformImportException {
+    if ( archives.isEmpty() ) {
+      throw new PlatformImportException( "No backup to restore" ); //$NON-NLS-1$
+    }
+    Map<String, File> byBase = new HashMap<String, File>();
+    Map<File, BackupIndex> indexes = new HashMap<File, BackupIndex>();
+    File full = null;
+    for ( File archive : archives ) {
+      BackupIndex index = readIndex( archive );
+      indexes.put( archive, index );
+      if ( !index.isIncremental() ) {
+        if ( full != null ) {
+          throw new PlatformImportException( "More than one full backup was supplied" ); //$NON-NLS-1$
+        }
+        full = archive;
+      } else if ( byBase.put( index.getBaseBackupId(), archive ) != null ) {
+        throw new PlatformImportException( "More than one backup was taken against backup "
+          + index.getBaseBackupId() ); //$NON-NLS-1$
+      }
+    }
+    if ( full == null ) {
+      throw new PlatformImportException(
+        "The backups do not include the full backup they were taken against" ); //$NON-NLS-1$
+    }
+
+    Map<File, BackupIndex> chain = new LinkedHashMap<File, BackupIndex>();
+    for ( File archive = full; archive != null; archive = byBase.get( indexes.get( archive ).getBackupId() ) ) {
+      chain.put( archive, indexes.get( archive ) );
+    }
+    if ( chain.size() != archives.size() ) {
+      throw new PlatformImportException( "The backups do not form a single chain; " + ( archives.size() - chain.size() )
+        + " of them do not follow on from the full backup" ); //$NON-NLS-1$
+    }
+    for ( Map.Entry<File, BackupIndex> link : chain.entrySet() ) {
+      verifyContent( link.getKey(), link.getValue() );
+    }
+    return chain;
+  }
+
+  protected BackupIndex readIndex( File archive ) throws PlatformImportException {
+    try ( ZipFile zip = new ZipFile( archive ) ) {
+      ZipEntry entry = zip.getEntry( BackupIndex.BACKUP_INDEX_FILENAME );
+      if ( entry == null ) {
+        throw new PlatformImportException( archive.getName() + " has no " + BackupIndex.BACKUP_INDEX_FILENAME
+          + "; it was not produced by a system backup" ); //$NON-NLS-1$
+      }
+      try ( InputStream is = zip.getInputStream( entry ) ) {
+        return BackupIndex.read( is );
+      }
+    } catch ( IOException e ) {
+      throw new PlatformImportException( "Could not read the backup index of " + archive.getName(), e ); //$NON-NLS-1$
+    }
+  }
+
+  /**
+   * Checks that the archive holds the content of exactly the files its index assigns to it, byte for byte.
+   */
+  protected void verifyContent( File archive, BackupIndex index ) throws PlatformImportException {
+    int verified = 0;
+    try ( ZipFile zip = new ZipFile( archive ) ) {
+      for ( BackupIndex.Entry entry : index.getEntries() ) {
+        if ( !index.getBackupId().equals( entry.getBackupId() ) ) {
+          continue;
+        }
+        ZipEntry zipEntry = zip.getEntry( entry.getZipEntryName() );
+        if ( zipEntry == null ) {
+          throw new PlatformImportException( "Backup " + index.getBackupId() + " is missing "
+            + entry.getPath() ); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        MessageDigest digest = BackupIndex.createDigest();
+        long size;
+        try ( InputStream is = new DigestInputStream( zip.getInputStream( zipEntry ), digest ) ) {
+          size = IOUtils.skip( is, Long.MAX_VALUE );
+        }
+        if ( size != entry.getSize() || !BackupIndex.toChecksum( digest ).equals( entry.getChecksum() ) ) {
+          throw new PlatformImportException( "Backup " + index.getBackupId() + " holds a damaged copy of "
+            + entry.getPath() ); //$NON-NLS-1$
+        }
+        verified++;
+      }
+    } catch ( IOException e ) {
+      throw new PlatformImportException( "Could not verify " + archive.getName(), e ); //$NON-NLS-1$
+    }
+    if ( verified != index.getContentCount() ) {
+      throw new PlatformImportException( "Backup " + index.getBackupId() + " holds " + verified + " files, expected "
+        + index.getContentCount() ); //$NON-NLS-1$ //$NON-NLS-2$
+    }
+  }
+
+  /**
+   * Files listed by an earlier backup of the chain but not by the last one were deleted while the chain was taken.
+   */
+  protected void removeDeletedFiles( List<BackupIndex> chain, BackupIndex last ) {
+    TreeSet<String> deleted = new TreeSet<String>();
+    for ( BackupIndex index : chain ) {
+      for ( BackupIndex.Entry entry : index.getEntries() ) {
+        if ( last.getEntry( entry.getPath() ) == null ) {
+          deleted.add( entry.getPath() );
+        }
+      }
+    }
+    for ( String path : deleted ) {
+      RepositoryFile file = repository.getFile( path );
+      if ( file != null && !file.isFolder() ) {
+        repository.deleteFile( file.getId(), "Deleted before backup " + last.getBackupId() ); //$NON-NLS-1$
+      }
+    }
+  }
+}
@@ -33,7 +33,10 @@ import org.pentaho.platform.api.repository2.unified.IRepositoryFileData;
 import org.pentaho.platform.api.repository2.unified.IUnifiedRepository;
 import org.pentaho.platform.api.repository2.unified.RepositoryFile;
 import org.pentaho.platform.api.repository2.unified.RepositoryFileAcl;
+import org.pentaho.platform.api.repository2.unified.RepositoryFileBatch;
+import org.pentaho.platform.api.repository2.unified.RepositoryFileBatchResult;
 import org.pentaho.platform.api.repository2.unified.RepositoryFileSid;
+import org.pentaho.platform.api.repository2.unified.UnifiedRepositoryException;
 import org.pentaho.platform.plugin.services.importexport.ImportSession;
 import org.pentaho.platform.plugin.services.importexport.exportManifest.ExportManifestFormatException;
 import org.pentaho.platform.plugin.services.messages.Messages;
@@ -215,6 +218,11 @@ public class RepositoryFileImportFileHandler implements IPlatformImportHandler {
 
       } else {
         repositoryFile = updateFile( bundle, file, data );
+        if ( isUnchanged( file, repositoryFile ) ) {
+          getLogger().trace( "Content of [" + repositoryPath + "] is unchanged, no new version created" );
+          getImportSession().getUnchangedFiles().add( repositoryPath );
+        }
+        // nothing left to do unless a subclass updated the file without its ACL
         updateAclFromBundle( false, bundle, repositoryFile );
       }
 
@@ -232,6 +240,15 @@ public class RepositoryFileImportFileHandler implements IPlatformImportHandler {
     }
   }
 
+  /**
+   * The repository skips writing content that is identical to what is stored, in which case the version of the file is
+   * left as it was before the update.
+   */
+  private boolean isUnchanged( RepositoryFile original, RepositoryFile updated ) {
+    return updated != null && original.getVersionId() != null
+        && original.getVersionId().equals( updated.getVersionId() );
+  }
+
   /**
    * Create a formal <code>RepositoryFileAcl</code> object for import.
    * 
@@ -257,6 +274,17 @@ public class RepositoryFileImportFileHandler implements IPlatformImportHandler {
    *          The <code>RepositoryFile</code> of the target file
    */
   private void updateAcl( boolean newFile, RepositoryFile repositoryFile, RepositoryFileAcl repositoryFileAcl ) {
+    RepositoryFileAcl updatedAcl = getUpdatedAcl( newFile, repositoryFile, repositoryFileAcl );
+    if ( updatedAcl != null ) {
+      repository.updateAcl( updatedAcl );
+    }
+  }
+
+  /**
+   * @return the ACL the target file must get, or <code>null</code> if its current ACL is kept
+   */
+  private RepositoryFileAcl getUpdatedAcl( boolean newFile, RepositoryFile repositoryFile,
+      RepositoryFileAcl repositoryFileAcl ) {
     getLogger().debug( "File " + ( newFile ? "is new" : "already exists" ) );
     if ( repositoryFileAcl != null
         && ( getImportSession().isApplyAclSettings() || !getImportSession().isRetainOwnership() ) ) {
@@ -295,12 +323,11 @@ public class RepositoryFileImportFileHandler implements IPlatformImportHandler {
 
       // Make the new Acl if it has changed from the orignal
       if ( !newOwner.equals( originalAcl.getOwner() ) || !useAclForPermissions.equals( originalAcl ) ) {
-        RepositoryFileAcl updatedAcl =
-            new RepositoryFileAcl( repositoryFile.getId(), newOwner, useAclForPermissions.isEntriesInheriting(),
-                useAclForPermissions.getAces() );
-        repository.updateAcl( updatedAcl );
+        return new RepositoryFileAcl( repositoryFile.getId(), newOwner, useAclForPermissions.isEntriesInheriting(),
+            useAclForPermissions.getAces() );
       }
     }
+    return null;
   }
 
   private RepositoryFileAcl getDefaultAcl( RepositoryFile repositoryFile ) {
@@ -341,12 +368,23 @@ public class RepositoryFileImportFileHandler implements IPlatformImportHandler {
   }
 
   /**
-   * Updates a file in the repository
+   * Updates a file in the repository. The ACL from the bundle is written with the content in a batch of this one
+   * file, so that both end up in one version of the file. Imports write one file at a time; the writes of several
+   * files are not grouped into one batch, as every file is converted, logged and reported on its own.
    * 
    */
   protected RepositoryFile updateFile( final RepositoryFileImportBundle bundle, final RepositoryFile file,
       final IRepositoryFileData data ) throws PlatformImportException {
-    return repository.updateFile( file, data, bundle.getComment() );
+    RepositoryFileBatch batch = new RepositoryFileBatch( bundle.getComment() );
+    batch.updateFile( file, data ).acl( getUpdatedAcl( false, file, bundle.getAcl() ) );
+    RepositoryFileBatchResult result = repository.applyBatch( batch );
+    Exception error = result.getError( 0 );
+    if ( error instanceof RuntimeException ) {
+      throw (RuntimeException) error;
+    } else if ( error != null ) {
+      throw new UnifiedRepositoryException( error.getMessage(), error );
+    }
+    return result.getFile( 0 );
   }
 
   /**
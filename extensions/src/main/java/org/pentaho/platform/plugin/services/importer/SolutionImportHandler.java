@@ -26,12 +26,22 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Serializable;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 
@@ -46,6 +56,7 @@ import org.pentaho.database.model.IDatabaseConnection;
 import org.pentaho.metadata.repository.DomainAlreadyExistsException;
 import org.pentaho.metadata.repository.DomainIdNullException;
 import org.pentaho.metadata.repository.DomainStorageException;
+import org.pentaho.platform.api.engine.IPentahoSession;
 import org.pentaho.platform.api.engine.security.userroledao.AlreadyExistsException;
 import org.pentaho.platform.api.engine.security.userroledao.IPentahoRole;
 import org.pentaho.platform.api.engine.security.userroledao.IUserRoleDao;
@@ -55,16 +66,20 @@ import org.pentaho.platform.api.repository.datasource.IDatasourceMgmtService;
 import org.pentaho.platform.api.repository2.unified.IPlatformImportBundle;
 import org.pentaho.platform.api.repository2.unified.IUnifiedRepository;
 import org.pentaho.platform.api.repository2.unified.RepositoryFile;
+import org.pentaho.platform.api.repository2.unified.UnifiedRepositoryAccessDeniedException;
 import org.pentaho.platform.api.scheduler2.Job;
 import org.pentaho.platform.api.scheduler2.Job.JobState;
 import org.pentaho.platform.api.usersettings.IAnyUserSettingService;
 import org.pentaho.platform.api.usersettings.IUserSettingService;
 import org.pentaho.platform.api.usersettings.pojo.IUserSetting;
 import org.pentaho.platform.core.mt.Tenant;
+import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
+import org.pentaho.platform.engine.core.system.StandaloneSession;
 import org.pentaho.platform.engine.core.system.TenantUtils;
 import org.pentaho.platform.plugin.services.importexport.ExportFileNameEncoder;
 import org.pentaho.platform.plugin.services.importexport.ExportManifestUserSetting;
+import org.pentaho.platform.plugin.services.importexport.IRepositoryImportLogger;
 import org.pentaho.platform.plugin.services.importexport.ImportSession;
 import org.pentaho.platform.plugin.services.importexport.ImportSession.ManifestFile;
 import org.pentaho.platform.plugin.services.importexport.ImportSource.IRepositoryFileBundle;
@@ -84,6 +99,8 @@ import org.pentaho.platform.web.http.api.resources.JobRequest;
 import org.pentaho.platform.web.http.api.resources.JobScheduleParam;
 import org.pentaho.platform.web.http.api.resources.JobScheduleRequest;
 import org.pentaho.platform.web.http.api.resources.SchedulerResource;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
 
 public class SolutionImportHandler implements IPlatformImportHandler {
 
@@ -95,11 +112,16 @@ public class SolutionImportHandler implements IPlatformImportHandler {
 
   private static final String sep = ";";
 
+  public static final String IMPORT_THREADS_SETTING = "solution-import-threads"; //$NON-NLS-1$
+
+  public static final int DEFAULT_IMPORT_THREADS = 4;
+
   private IUnifiedRepository repository; // TODO inject via Spring
   protected Map<String, RepositoryFileImportBundle.Builder> cachedImports;
   private SolutionFileImportHelper solutionHelper;
   private List<IMimeType> mimeTypes;
   private boolean overwriteFile;
+  private Integer importThreads;
 
   public SolutionImportHandler( List<IMimeType> mimeTypes ) {
     this.mimeTypes = mimeTypes;
@@ -202,103 +224,23 @@ public class SolutionImportHandler implements IPlatformImportHandler {
 
     importMetaStore( manifest, bundle.overwriteInRepository() );
 
-    for ( IRepositoryFileBundle fileBundle : importSource.getFiles() ) {
-      String fileName = fileBundle.getFile().getName();
-      String actualFilePath = fileBundle.getPath();
-      if ( manifestVersion != null ) {
-        fileName = ExportFileNameEncoder.decodeZipFileName( fileName );
-        actualFilePath = ExportFileNameEncoder.decodeZipFileName( actualFilePath );
-      }
-      String repositoryFilePath =
-        RepositoryFilenameUtils.concat( PentahoPlatformImporter.computeBundlePath( actualFilePath ), fileName );
-
-      if ( this.cachedImports.containsKey( repositoryFilePath ) ) {
-
-        byte[] bytes = IOUtils.toByteArray( fileBundle.getInputStream() );
-        RepositoryFileImportBundle.Builder builder = cachedImports.get( repositoryFilePath );
-        builder.input( new ByteArrayInputStream( bytes ) );
-
-        importer.importFile( build( builder ) );
-        continue;
-      }
-      RepositoryFileImportBundle.Builder bundleBuilder = new RepositoryFileImportBundle.Builder();
-
-      InputStream bundleInputStream = null;
-
-      String decodedFilePath = fileBundle.getPath();
-      RepositoryFile decodedFile = fileBundle.getFile();
-      if ( manifestVersion != null ) {
-        decodedFile = new RepositoryFile.Builder( decodedFile ).path( decodedFilePath ).name( fileName ).title( fileName ).build();
-        decodedFilePath = ExportFileNameEncoder.decodeZipFileName( fileBundle.getPath() );
-      }
-
-      if ( fileBundle.getFile().isFolder() ) {
-        bundleBuilder.mime( "text/directory" );
-        bundleBuilder.file( decodedFile );
-        fileName = repositoryFilePath;
-        repositoryFilePath = importBundle.getPath();
-      } else {
-        byte[] bytes = IOUtils.toByteArray( fileBundle.getInputStream() );
-        bundleInputStream = new ByteArrayInputStream( bytes );
-        // If is locale file store it for later processing.
-        if ( localeFilesProcessor.isLocaleFile( fileBundle, importBundle.getPath(), bytes ) ) {
-          log.trace( "Skipping [" + repositoryFilePath + "], it is a locale property file" );
-          continue;
+    // folders are created first and in the order of the archive, so the files that follow only ever write into
+    // folders that already exist and can be handed to the import pipeline
+    ImportPipeline pipeline = new ImportPipeline( importer, Math.max( 1, getImportThreads() ) );
+    try {
+      for ( IRepositoryFileBundle fileBundle : importSource.getFiles() ) {
+        if ( fileBundle.getFile().isFolder() ) {
+          importFileBundle( fileBundle, importBundle, manifest, manifestVersion, localeFilesProcessor, pipeline );
         }
-        bundleBuilder.input( bundleInputStream );
-        bundleBuilder.mime( solutionHelper.getMime( fileName ) );
-
-        String filePath =
-          ( decodedFilePath.equals( "/" ) || decodedFilePath.equals( "\\" ) ) ? "" : decodedFilePath;
-        repositoryFilePath = RepositoryFilenameUtils.concat( importBundle.getPath(), filePath );
-      }
-
-      bundleBuilder.name( fileName );
-      bundleBuilder.path( repositoryFilePath );
-
-      String sourcePath;
-      if ( fileBundle.getFile().isFolder() ) {
-        sourcePath = fileName;
-      } else {
-        sourcePath =
-            RepositoryFilenameUtils.concat( PentahoPlatformImporter.computeBundlePath( actualFilePath ), fileName );
       }
-
-      //This clause was added for processing ivb files so that it would not try process acls on folders that the user
-      //may not have rights to such as /home or /public
-      if ( manifest != null && manifest.getExportManifestEntity( sourcePath ) == null && fileBundle.getFile()
-          .isFolder() ) {
-        continue;
-      }
-
-      getImportSession().setCurrentManifestKey( sourcePath );
-
-      bundleBuilder.charSet( bundle.getCharset() );
-      bundleBuilder.overwriteFile( bundle.overwriteInRepository() );
-      bundleBuilder.applyAclSettings( bundle.isApplyAclSettings() );
-      bundleBuilder.retainOwnership( bundle.isRetainOwnership() );
-      bundleBuilder.overwriteAclSettings( bundle.isOverwriteAclSettings() );
-      bundleBuilder.acl( getImportSession().processAclForFile( sourcePath ) );
-
-      RepositoryFile file = getFile( importBundle, fileBundle );
-      ManifestFile manifestFile = getImportSession().getManifestFile( sourcePath, file != null );
-
-      bundleBuilder.hidden( isFileHidden( file, manifestFile, sourcePath ) );
-      boolean isSchedulable = isSchedulable( file, manifestFile );
-
-      if ( isSchedulable ) {
-        bundleBuilder.schedulable( isSchedulable );
-      } else {
-        bundleBuilder.schedulable( fileIsScheduleInputSource( manifest, sourcePath ) );
-      }
-
-      IPlatformImportBundle platformImportBundle = build( bundleBuilder );
-      importer.importFile( platformImportBundle );
-
-      if ( bundleInputStream != null ) {
-        bundleInputStream.close();
-        bundleInputStream = null;
+      for ( IRepositoryFileBundle fileBundle : importSource.getFiles() ) {
+        if ( !fileBundle.getFile().isFolder() ) {
+          importFileBundle( fileBundle, importBundle, manifest, manifestVersion, localeFilesProcessor, pipeline );
+        }
       }
+      pipeline.finish();
+    } finally {
+      pipeline.shutdown();
     }
     if ( manifest != null ) {
       importSchedules( manifest.getScheduleList() );
@@ -334,6 +276,124 @@ public class SolutionImportHandler implements IPlatformImportHandler {
     }
     // Process locale files.
     localeFilesProcessor.processLocaleFiles( importer );
+    reportUnchangedFiles( importer );
+  }
+
+  /**
+   * Tells how many files of the archive already had the imported content, so no new version was written for them.
+   */
+  void reportUnchangedFiles( IPlatformImporter importer ) {
+    int unchanged = getImportSession().getUnchangedFiles().size();
+    if ( unchanged == 0 ) {
+      return;
+    }
+    String message = unchanged + " file(s) already had the imported content and were left unchanged"; //$NON-NLS-1$
+    log.info( message );
+    IRepositoryImportLogger importLogger = importer.getRepositoryImportLogger();
+    if ( importLogger != null && importLogger.hasLogger() ) {
+      importLogger.info( message );
+    }
+  }
+
+  private void importFileBundle( IRepositoryFileBundle fileBundle, RepositoryFileImportBundle importBundle,
+                                 ExportManifest manifest, String manifestVersion,
+                                 LocaleFilesProcessor localeFilesProcessor, ImportPipeline pipeline )
+    throws IOException, PlatformImportException {
+    String fileName = fileBundle.getFile().getName();
+    String actualFilePath = fileBundle.getPath();
+    if ( manifestVersion != null ) {
+      fileName = ExportFileNameEncoder.decodeZipFileName( fileName );
+      actualFilePath = ExportFileNameEncoder.decodeZipFileName( actualFilePath );
+    }
+    String repositoryFilePath =
+      RepositoryFilenameUtils.concat( PentahoPlatformImporter.computeBundlePath( actualFilePath ), fileName );
+
+    if ( this.cachedImports.containsKey( repositoryFilePath ) ) {
+
+      byte[] bytes = IOUtils.toByteArray( fileBundle.getInputStream() );
+      RepositoryFileImportBundle.Builder builder = cachedImports.get( repositoryFilePath );
+      builder.input( new ByteArrayInputStream( bytes ) );
+
+      pipeline.importInline( build( builder ) );
+      return;
+    }
+    RepositoryFileImportBundle.Builder bundleBuilder = new RepositoryFileImportBundle.Builder();
+
+    InputStream bundleInputStream = null;
+
+    String decodedFilePath = fileBundle.getPath();
+    RepositoryFile decodedFile = fileBundle.getFile();
+    if ( manifestVersion != null ) {
+      decodedFile = new RepositoryFile.Builder( decodedFile ).path( decodedFilePath ).name( fileName ).title( fileName ).build();
+      decodedFilePath = ExportFileNameEncoder.decodeZipFileName( fileBundle.getPath() );
+    }
+
+    if ( fileBundle.getFile().isFolder() ) {
+      bundleBuilder.mime( "text/directory" );
+      bundleBuilder.file( decodedFile );
+      fileName = repositoryFilePath;
+      repositoryFilePath = importBundle.getPath();
+    } else {
+      byte[] bytes = IOUtils.toByteArray( fileBundle.getInputStream() );
+      bundleInputStream = new ByteArrayInputStream( bytes );
+      // If is locale file store it for later processing.
+      if ( localeFilesProcessor.isLocaleFile( fileBundle, importBundle.getPath(), bytes ) ) {
+        log.trace( "Skipping [" + repositoryFilePath + "], it is a locale property file" );
+        return;
+      }
+      bundleBuilder.input( bundleInputStream );
+      bundleBuilder.mime( solutionHelper.getMime( fileName ) );
+
+      String filePath =
+        ( decodedFilePath.equals( "/" ) || decodedFilePath.equals( "\\" ) ) ? "" : decodedFilePath;
+      repositoryFilePath = RepositoryFilenameUtils.concat( importBundle.getPath(), filePath );
+    }
+
+    bundleBuilder.name( fileName );
+    bundleBuilder.path( repositoryFilePath );
+
+    String sourcePath;
+    if ( fileBundle.getFile().isFolder() ) {
+      sourcePath = fileName;
+    } else {
+      sourcePath =
+          RepositoryFilenameUtils.concat( PentahoPlatformImporter.computeBundlePath( actualFilePath ), fileName );
+    }
+
+    //This clause was added for processing ivb files so that it would not try process acls on folders that the user
+    //may not have rights to such as /home or /public
+    if ( manifest != null && manifest.getExportManifestEntity( sourcePath ) == null && fileBundle.getFile()
+        .isFolder() ) {
+      return;
+    }
+
+    getImportSession().setCurrentManifestKey( sourcePath );
+
+    bundleBuilder.charSet( importBundle.getCharset() );
+    bundleBuilder.overwriteFile( importBundle.overwriteInRepository() );
+    bundleBuilder.applyAclSettings( importBundle.isApplyAclSettings() );
+    bundleBuilder.retainOwnership( importBundle.isRetainOwnership() );
+    bundleBuilder.overwriteAclSettings( importBundle.isOverwriteAclSettings() );
+    bundleBuilder.acl( getImportSession().processAclForFile( sourcePath ) );
+
+    RepositoryFile file = getFile( importBundle, fileBundle );
+    ManifestFile manifestFile = getImportSession().getManifestFile( sourcePath, file != null );
+
+    bundleBuilder.hidden( isFileHidden( file, manifestFile, sourcePath ) );
+    boolean isSchedulable = isSchedulable( file, manifestFile );
+
+    if ( isSchedulable ) {
+      bundleBuilder.schedulable( isSchedulable );
+    } else {
+      bundleBuilder.schedulable( fileIsScheduleInputSource( manifest, sourcePath ) );
+    }
+
+    IPlatformImportBundle platformImportBundle = build( bundleBuilder );
+    if ( fileBundle.getFile().isFolder() ) {
+      pipeline.importInline( platformImportBundle );
+    } else {
+      pipeline.submit( platformImportBundle );
+    }
   }
 
   List<Job> getAllJobs( SchedulerResource schedulerResource ) {
@@ -732,6 +792,312 @@ public class SolutionImportHandler implements IPlatformImportHandler {
     }
   }
 
+  /**
+   * Writes the files of a solution archive to the repository on a bounded pool of worker threads, while bundles that
+   * have to be imported in order (folders, data sources and files whose folder does not exist yet) are imported on
+   * the thread that runs the import, once the files handed out before them are done. Each worker works against its
+   * own import session, which is merged back together with the outcome of the file in the order the files were
+   * handed out, so the import log, the reported errors and the session state do not depend on the thread timing.
+   * Every worker writes its file through the importer on its own; files are written in parallel, not grouped into
+   * repository batches.
+   * <p>
+   * Workers run as the user of the import, each with its own copy of the caller's {@link IPentahoSession}: sessions
+   * are not thread safe, and objects looked up with session scope are stored in them. Attributes a worker sets are
+   * not copied back.
+   * <p>
+   * When a file fails in a way that ends the import (any error without an import log, or a denied access), no file
+   * handed out after it is started any more. The files handed out before the failed one are written and reported. Of
+   * the files handed out after it, only those a worker had already started, at most one per other worker, can still
+   * be written; they are not reported. With an import log, other errors are logged and the import goes on.
+   */
+  class ImportPipeline {
+
+    private final IPlatformImporter importer;
+
+    private final ExecutorService executor;
+
+    private final int readAhead;
+
+    private final Deque<PendingImport> pending = new ArrayDeque<PendingImport>();
+
+    private final Set<String> existingFolders = new HashSet<String>();
+
+    private final IPentahoSession session = PentahoSessionHolder.getSession();
+
+    private final Map<String, Object> sessionAttributes = getAttributes( session );
+
+    private final Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+
+    private int submitted;
+
+    /**
+     * The position of the first file that ended the import; files handed out after it are not started.
+     */
+    private final AtomicInteger failedAt = new AtomicInteger( Integer.MAX_VALUE );
+
+    ImportPipeline( IPlatformImporter importer, int threads ) {
+      this.importer = importer;
+      this.readAhead = threads * 4;
+      this.executor = Executors.newFixedThreadPool( threads, new ThreadFactory() {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread( Runnable r ) {
+          Thread t = new Thread( r, "Solution Import " + count.incrementAndGet() ); //$NON-NLS-1$
+          t.setDaemon( true );
+          return t;
+        }
+      } );
+    }
+
+    /**
+     * Hands the bundle to a worker thread if it can be imported independently of the others, or else imports it
+     * right away. Blocks while too many files are waiting to be written.
+     */
+    void submit( final IPlatformImportBundle bundle ) throws PlatformImportException {
+      if ( !isIndependent( bundle ) ) {
+        importInline( bundle );
+        return;
+      }
+      final ImportSession workerSession = getImportSession().createWorkerSession();
+      final boolean logged = hasImportLog();
+      final int position = submitted++;
+      Future<Boolean> future = executor.submit( new Callable<Boolean>() {
+        @Override
+        public Boolean call() throws Exception {
+          if ( failedAt.get() < position ) {
+            // an earlier file ended the import
+            return Boolean.FALSE;
+          }
+          PentahoSessionHolder.setSession( createWorkerPentahoSession() );
+          SecurityContextHolder.clearContext();
+          SecurityContextHolder.getContext().setAuthentication( authentication );
+          ImportSession.setSession( workerSession );
+          try {
+            importer.importFile( bundle );
+            return Boolean.TRUE;
+          } catch ( Throwable t ) {
+            if ( endsImport( t, logged ) ) {
+              failedAt.accumulateAndGet( position, Math::min );
+            }
+            throw t;
+          } finally {
+            ImportSession.clearSession();
+            SecurityContextHolder.clearContext();
+            PentahoSessionHolder.removeSession();
+          }
+        }
+      } );
+      pending.add( new PendingImport( (RepositoryFileImportBundle) bundle, workerSession, future ) );
+      while ( pending.size() > readAhead ) {
+        complete( pending.poll() );
+      }
+    }
+
+    /**
+     * Imports the bundle on the current thread, after the files handed out before it are done.
+     */
+    void importInline( IPlatformImportBundle bundle ) throws PlatformImportException {
+      finish();
+      importer.importFile( bundle );
+    }
+
+    void finish() throws PlatformImportException {
+      while ( !pending.isEmpty() ) {
+        complete( pending.poll() );
+      }
+    }
+
+    /**
+     * Drops the files that were not started yet, e.g. after an error ended the import, and waits for the ones that
+     * are being written.
+     */
+    void shutdown() {
+      failedAt.set( Integer.MIN_VALUE );
+      for ( PendingImport pendingImport : pending ) {
+        if ( !pendingImport.future.cancel( false ) ) {
+          try {
+            pendingImport.future.get();
+          } catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            break;
+          } catch ( Exception e ) {
+            // the import already ended with an error
+          }
+        }
+      }
+      pending.clear();
+      executor.shutdown();
+    }
+
+    /**
+     * Only files that go to the repository file handlers, into a folder that already exists, are written in
+     * parallel. Other handlers update shared catalogs, and creating missing folders on several threads would race.
+     */
+    private boolean isIndependent( IPlatformImportBundle bundle ) {
+      String mime = bundle.getMimeType();
+      Map<String, IPlatformImportHandler> handlers = importer.getHandlers();
+      if ( mime == null || handlers == null || repository == null ) {
+        return false;
+      }
+      IPlatformImportHandler handler = handlers.get( mime );
+      if ( handler == null && importer instanceof PentahoPlatformImporter ) {
+        handler = ( (PentahoPlatformImporter) importer ).getDefaultHandler();
+      }
+      if ( !( handler instanceof RepositoryFileImportFileHandler ) || handler instanceof LocaleImportHandler ) {
+        return false;
+      }
+      String folderPath = ( (RepositoryFileImportBundle) bundle ).getPath();
+      if ( !existingFolders.contains( folderPath ) ) {
+        RepositoryFile folder = repository.getFile( folderPath );
+        if ( folder == null || !folder.isFolder() ) {
+          return false;
+        }
+        existingFolders.add( folderPath );
+      }
+      return true;
+    }
+
+    /**
+     * Waits for the file, then logs it and merges its session as if it had been imported on this thread. Errors are
+     * written to the import log if there is one, or else end the import, the same way a single import reports them.
+     * Like a single import, a denied access ends the import even when it is logged.
+     */
+    private void complete( PendingImport pendingImport ) throws PlatformImportException {
+      Throwable error = null;
+      try {
+        if ( Boolean.FALSE.equals( pendingImport.future.get() ) ) {
+          // not started since an earlier file ended the import; that file reports the error
+          return;
+        }
+      } catch ( InterruptedException e ) {
+        Thread.currentThread().interrupt();
+        throw new PlatformImportException( e.getMessage(), e );
+      } catch ( ExecutionException e ) {
+        error = e.getCause();
+      }
+      IRepositoryImportLogger importLogger = importer.getRepositoryImportLogger();
+      boolean hasLogger = hasImportLog();
+      RepositoryFileImportBundle bundle = pendingImport.bundle;
+      if ( hasLogger ) {
+        importLogger.setCurrentFilePath( RepositoryFilenameUtils.concat( bundle.getPath(), bundle.getName() ) );
+        importLogger.warn( bundle.getName() );
+      }
+      getImportSession().mergeWorkerSession( pendingImport.session );
+      if ( error == null ) {
+        return;
+      }
+      if ( hasLogger && error instanceof Exception ) {
+        importLogger.error( (Exception) error );
+        if ( isAccessDenied( error ) ) {
+          throw new UnifiedRepositoryAccessDeniedException();
+        }
+      } else if ( error instanceof PlatformImportException ) {
+        throw (PlatformImportException) error;
+      } else if ( error instanceof RuntimeException ) {
+        throw (RuntimeException) error;
+      } else if ( error instanceof Error ) {
+        throw (Error) error;
+      } else {
+        throw new PlatformImportException( error.getMessage(), error );
+      }
+    }
+
+    private boolean hasImportLog() {
+      IRepositoryImportLogger importLogger = importer.getRepositoryImportLogger();
+      return importLogger != null && importLogger.hasLogger();
+    }
+
+    /**
+     * Whether {@link #complete} ends the import with this error.
+     */
+    private boolean endsImport( Throwable error, boolean logged ) {
+      return !logged || !( error instanceof Exception ) || isAccessDenied( error );
+    }
+
+    /**
+     * A session for one file, with the name, id, locale and attributes the caller's session had when the import
+     * started.
+     */
+    private IPentahoSession createWorkerPentahoSession() {
+      if ( session == null ) {
+        return null;
+      }
+      StandaloneSession workerSession =
+          new StandaloneSession( session.getName(), session.getId(), session.getLocale() );
+      if ( session.isAuthenticated() ) {
+        workerSession.setAuthenticated( session.getName() );
+      }
+      for ( Map.Entry<String, Object> attribute : sessionAttributes.entrySet() ) {
+        workerSession.setAttribute( attribute.getKey(), attribute.getValue() );
+      }
+      return workerSession;
+    }
+
+    private Map<String, Object> getAttributes( IPentahoSession session ) {
+      Map<String, Object> attributes = new HashMap<String, Object>();
+      if ( session != null ) {
+        Iterator<?> names = session.getAttributeNames();
+        while ( names != null && names.hasNext() ) {
+          String name = (String) names.next();
+          attributes.put( name, session.getAttribute( name ) );
+        }
+      }
+      return attributes;
+    }
+
+    /**
+     * The importer may report a denied access itself or wrapped, at any depth, in the error of a handler.
+     */
+    private boolean isAccessDenied( Throwable error ) {
+      for ( Throwable cause = error; cause != null; cause = cause.getCause() == cause ? null : cause.getCause() ) {
+        if ( cause instanceof UnifiedRepositoryAccessDeniedException ) {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+
+  private static class PendingImport {
+    private final RepositoryFileImportBundle bundle;
+    private final ImportSession session;
+    private final Future<Boolean> future;
+
+    PendingImport( RepositoryFileImportBundle bundle, ImportSession session, Future<Boolean> future ) {
+      this.bundle = bundle;
+      this.session = session;
+      this.future = future;
+    }
+  }
+
+  /**
+   * @return the number of threads that write files to the repository during a solution import, taken from the
+   * {@value #IMPORT_THREADS_SETTING} system setting unless it was set explicitly
+   */
+  public int getImportThreads() {
+    if ( importThreads == null ) {
+      int threads = DEFAULT_IMPORT_THREADS;
+      String setting = PentahoSystem.getSystemSetting( IMPORT_THREADS_SETTING, null );
+      if ( setting != null ) {
+        try {
+          threads = Integer.parseInt( setting.trim() );
+        } catch ( NumberFormatException e ) {
+          log.warn( "Ignoring invalid " + IMPORT_THREADS_SETTING + " setting: " + setting ); //$NON-NLS-1$
+        }
+      }
+      importThreads = threads;
+    }
+    return importThreads;
+  }
+
+  /**
+   * @param importThreads the number of threads that write files to the repository during a solution import
+   */
+  public void setImportThreads( int importThreads ) {
+    this.importThreads = importThreads;
+  }
+
   @Override
   public List<IMimeType> getMimeTypes() {
     return mimeTypes;
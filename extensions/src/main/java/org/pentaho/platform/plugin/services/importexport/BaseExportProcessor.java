@@ -85,6 +85,13 @@ public abstract class BaseExportProcessor {
     exportHandlerList.add( exportHandler );
   }
 
+  /**
+   * @return the registered Export Handlers, in the order they get a chance to process the data
+   */
+  protected List<ExportHandler> getExportHandlers() {
+    return exportHandlerList;
+  }
+
   /**
    * @return
    */
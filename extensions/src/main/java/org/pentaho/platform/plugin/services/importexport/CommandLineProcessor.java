@@ -36,7 +36,6 @@ import javax.ws.rs.core.MediaType;
 import javax.xml.namespace.QName;
 import javax.xml.ws.BindingProvider;
 import javax.xml.ws.Service;
-import javax.xml.ws.soap.SOAPBinding;
 
 import com.google.common.annotations.VisibleForTesting;
 import org.apache.commons.cli.CommandLine;
@@ -69,7 +68,6 @@ import com.sun.jersey.api.client.filter.HTTPBasicAuthFilter;
 import com.sun.jersey.api.json.JSONConfiguration;
 import com.sun.jersey.core.header.FormDataContentDisposition;
 import com.sun.jersey.multipart.FormDataMultiPart;
-import com.sun.xml.ws.developer.JAXWSProperties;
 
 /**
  * Handles the parsing of command line arguments and creates an import process based upon them
@@ -976,12 +974,7 @@ public class CommandLineProcessor {
     ( (BindingProvider) port ).getRequestContext().put( BindingProvider.PASSWORD_PROPERTY, getPassword() );
     // accept cookies to maintain session on server
     ( (BindingProvider) port ).getRequestContext().put( BindingProvider.SESSION_MAINTAIN_PROPERTY, true );
-    // support streaming binary data
-    // TODO mlowery this is not portable between JAX-WS implementations
-    // (uses com.sun)
-    ( (BindingProvider) port ).getRequestContext().put( JAXWSProperties.HTTP_CLIENT_STREAMING_CHUNK_SIZE, 8192 );
-    SOAPBinding binding = (SOAPBinding) ( (BindingProvider) port ).getBinding();
-    binding.setMTOMEnabled( true );
+    // binary data is streamed (MTOM, chunked requests) by the adapter
     final UnifiedRepositoryToWebServiceAdapter unifiedRepositoryToWebServiceAdapter =
         new UnifiedRepositoryToWebServiceAdapter( port );
     repository = unifiedRepositoryToWebServiceAdapter;
@@ -0,0 +1,190 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.plugin.services.importexport;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.logging.Log;
+
+/**
+ * Holds on to the messages a worker thread of a parallel import logs, so they can be written to the import log by the
+ * thread that runs the import, in the order the files were handed out. The enabled levels are taken from the target
+ * log when the worker session is created, since the import log is bound to the thread that started the import job.
+ */
+class DeferredImportLog implements Log {
+
+  private static final int TRACE = 0;
+  private static final int DEBUG = 1;
+  private static final int INFO = 2;
+  private static final int WARN = 3;
+  private static final int ERROR = 4;
+  private static final int FATAL = 5;
+
+  private final boolean[] enabled = new boolean[ 6 ];
+
+  private final List<Entry> entries = new ArrayList<Entry>();
+
+  DeferredImportLog( Log target ) {
+    enabled[ TRACE ] = target.isTraceEnabled();
+    enabled[ DEBUG ] = target.isDebugEnabled();
+    enabled[ INFO ] = target.isInfoEnabled();
+    enabled[ WARN ] = target.isWarnEnabled();
+    enabled[ ERROR ] = target.isErrorEnabled();
+    enabled[ FATAL ] = target.isFatalEnabled();
+  }
+
+  /**
+   * Writes the messages logged so far to the given log and forgets them.
+   */
+  synchronized void replay( Log target ) {
+    for ( Entry entry : entries ) {
+      switch ( entry.level ) {
+        case TRACE:
+          target.trace( entry.message, entry.t );
+          break;
+        case DEBUG:
+          target.debug( entry.message, entry.t );
+          break;
+        case INFO:
+          target.info( entry.message, entry.t );
+          break;
+        case WARN:
+          target.warn( entry.message, entry.t );
+          break;
+        case ERROR:
+          target.error( entry.message, entry.t );
+          break;
+        default:
+          target.fatal( entry.message, entry.t );
+      }
+    }
+    entries.clear();
+  }
+
+  private synchronized void add( int level, Object message, Throwable t ) {
+    if ( enabled[ level ] ) {
+      entries.add( new Entry( level, message, t ) );
+    }
+  }
+
+  @Override
+  public boolean isTraceEnabled() {
+    return enabled[ TRACE ];
+  }
+
+  @Override
+  public boolean isDebugEnabled() {
+    return enabled[ DEBUG ];
+  }
+
+  @Override
+  public boolean isInfoEnabled() {
+    return enabled[ INFO ];
+  }
+
+  @Override
+  public boolean isWarnEnabled() {
+    return enabled[ WARN ];
+  }
+
+  @Override
+  public boolean isErrorEnabled() {
+    return enabled[ ERROR ];
+  }
+
+  @Override
+  public boolean isFatalEnabled() {
+    return enabled[ FATAL ];
+  }
+
+  @Override
+  public void trace( Object message ) {
+    add( TRACE, message, null );
+  }
+
+  @Override
+  public void trace( Object message, Throwable t ) {
+    add( TRACE, message, t );
+  }
+
+  @Override
+  public void debug( Object message ) {
+    add( DEBUG, message, null );
+  }
+
+  @Override
+  public void debug( Object message, Throwable t ) {
+    add( DEBUG, message, t );
+  }
+
+  @Override
+  public void info( Object message ) {
+    add( INFO, message, null );
+  }
+
+  @Override
+  public void info( Object message, Throwable t ) {
+    add( INFO, message, t );
+  }
+
+  @Override
+  public void warn( Object message ) {
+    add( WARN, message, null );
+  }
+
+  @Override
+  public void warn( Object message, Throwable t ) {
+    add( WARN, message, t );
+  }
+
+  @Override
+  public void error( Object message ) {
+    add( ERROR, message, null );
+  }
+
+  @Override
+  public void error( Object message, Throwable t ) {
+    add( ERROR, message, t );
+  }
+
+  @Override
+  public void fatal( Object message ) {
+    add( FATAL, message, null );
+  }
+
+  @Override
+  public void fatal( Object message, Throwable t ) {
+    add( FATAL, message, t );
+  }
+
+  private static class Entry {
+    private final int level;
+    private final Object message;
+    private final Throwable t;
+
+    Entry( int level, Object message, Throwable t ) {
+      this.level = level;
+      this.message = message;
+      this.t = t;
+    }
+  }
+}
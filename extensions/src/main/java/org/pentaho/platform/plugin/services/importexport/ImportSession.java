@@ -45,6 +45,7 @@ public class ImportSession {
 
   private HashSet<String> skippedFiles = new HashSet<String>(); // Files skipped due to overwriteFlag = false
   private final HashSet<String> foldersCreatedImplicitly = new HashSet<String>(); // Folders created implicitly
+  private final HashSet<String> unchangedFiles = new HashSet<String>(); // Files whose content was already up to date
 
   private Log log;
   private Boolean isNotRunningImport = true;
@@ -68,6 +69,44 @@ public class ImportSession {
     return session;
   }
 
+  /**
+   * Makes the given session the session of the current thread, e.g. on a worker thread of a parallel import.
+   */
+  public static void setSession( ImportSession session ) {
+    sessions.set( session );
+  }
+
+  /**
+   * Creates a session for a worker thread of a parallel import. It shares the manifest and the ACL settings of this
+   * session, but collects the files it touches and the messages it logs on its own until it is handed back to
+   * {@link #mergeWorkerSession(ImportSession)} on the thread that runs the import.
+   */
+  public ImportSession createWorkerSession() {
+    ImportSession worker = new ImportSession();
+    worker.log = new DeferredImportLog( getLogger() );
+    worker.isNotRunningImport = isNotRunningImport;
+    worker.manifest = manifest;
+    worker.applyAclSettings = applyAclSettings;
+    worker.retainOwnership = retainOwnership;
+    worker.overwriteAclSettings = overwriteAclSettings;
+    worker.currentManifestKey = currentManifestKey;
+    return worker;
+  }
+
+  /**
+   * Adds what a worker session collected to this session and writes its log messages to the log of this session.
+   */
+  public void mergeWorkerSession( ImportSession worker ) {
+    skippedFiles.addAll( worker.skippedFiles );
+    foldersCreatedImplicitly.addAll( worker.foldersCreatedImplicitly );
+    unchangedFiles.addAll( worker.unchangedFiles );
+    importedRepositoryFiles.addAll( worker.importedRepositoryFiles );
+    importedScheduleJobIds.addAll( worker.importedScheduleJobIds );
+    if ( worker.log instanceof DeferredImportLog ) {
+      ( (DeferredImportLog) worker.log ).replay( getLogger() );
+    }
+  }
+
   /**
    * Clear out any collections, most likely before starting a new import
    */
@@ -76,6 +115,7 @@ public class ImportSession {
     importedScheduleJobIds.clear();
     skippedFiles.clear();
     foldersCreatedImplicitly.clear();
+    unchangedFiles.clear();
   }
 
   public Log getLogger() {
@@ -172,6 +212,13 @@ public class ImportSession {
     this.skippedFiles = skippedFiles;
   }
 
+  /**
+   * @return paths of existing files that were overwritten with identical content, so no new version was created
+   */
+  public HashSet<String> getUnchangedFiles() {
+    return unchangedFiles;
+  }
+
   /**
    * @return the isNotRunningImport
    */
@@ -68,8 +68,10 @@ import java.io.Serializable;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Properties;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipException;
@@ -227,9 +229,21 @@ public class ZipExportProcessor extends BaseExportProcessor {
    * @throws ExportException
    */
   protected void addToManifest( RepositoryFile repositoryFile ) throws ExportException {
+    if ( this.withManifest ) {
+      addToManifest( repositoryFile, getUnifiedRepository().getAcl( repositoryFile.getId() ) );
+    }
+  }
+
+  /**
+   * create an entry in the export manifest for this file or folder using an ACL that was already read
+   *
+   * @param repositoryFile
+   * @param fileAcl
+   * @throws ExportException
+   */
+  protected void addToManifest( RepositoryFile repositoryFile, RepositoryFileAcl fileAcl ) throws ExportException {
     if ( this.withManifest ) {
       // add this entity to the manifest
-      RepositoryFileAcl fileAcl = getUnifiedRepository().getAcl( repositoryFile.getId() );
       try {
         getExportManifest().add( repositoryFile, fileAcl );
       } catch ( ExportManifestFormatException e ) {
@@ -322,12 +336,48 @@ public class ZipExportProcessor extends BaseExportProcessor {
    */
   protected void createLocales( RepositoryFile repositoryFile, String filePath, boolean isFolder,
                               OutputStream outputStrean ) throws IOException {
-    ZipEntry entry;
+    writeLocales( getLocaleEntries( repositoryFile, filePath, isFolder ), outputStrean );
+  }
+
+  /**
+   * write the .locale entries returned by {@link #getLocaleEntries(RepositoryFile, String, boolean)} to the zip
+   *
+   * @param localeEntries
+   * @param outputStrean
+   * @throws IOException
+   */
+  protected void writeLocales( Map<String, InputStream> localeEntries, OutputStream outputStrean )
+    throws IOException {
+    ZipOutputStream zos = (ZipOutputStream) outputStrean;
+    for ( Map.Entry<String, InputStream> localeEntry : localeEntries.entrySet() ) {
+      InputStream is = localeEntry.getValue();
+      try {
+        zos.putNextEntry( new ZipEntry( localeEntry.getKey() ) );
+        IOUtils.copy( is, outputStrean );
+        zos.closeEntry();
+      } finally {
+        is.close();
+      }
+    }
+  }
+
+  /**
+   * read the locale properties stored in Jcr for a file or folder, keyed by the name of the .locale zip entry that
+   * holds them
+   *
+   * @param repositoryFile
+   * @param filePath
+   * @param isFolder
+   * @return the locale files in the order they are written to the zip
+   * @throws IOException
+   */
+  protected Map<String, InputStream> getLocaleEntries( RepositoryFile repositoryFile, String filePath,
+                                                       boolean isFolder ) throws IOException {
+    Map<String, InputStream> localeEntries = new LinkedHashMap<String, InputStream>();
     String zipEntryName;
     String name;
     String localeName;
     Properties properties;
-    ZipOutputStream zos = (ZipOutputStream) outputStrean;
     // only process files and folders that we know will have locale settings
     if ( supportedLocaleFileExt( repositoryFile ) ) {
       List<LocaleMapDto> locales = getAvailableLocales( repositoryFile.getId() );
@@ -345,15 +395,12 @@ public class ZipExportProcessor extends BaseExportProcessor {
           properties.remove( "jcr:primaryType" ); // Pentaho Type
           InputStream is = createLocaleFile( name + localeName, properties, locale.getLocale() );
           if ( is != null ) {
-            entry = new ZipEntry( zipEntryName + localeName + LOCALE_EXT );
-            zos.putNextEntry( entry );
-            IOUtils.copy( is, outputStrean );
-            zos.closeEntry();
-            is.close();
+            localeEntries.put( zipEntryName + localeName + LOCALE_EXT, is );
           }
         }
       }
     }
+    return localeEntries;
   }
 
   /**
@@ -363,7 +410,7 @@ public class ZipExportProcessor extends BaseExportProcessor {
    * @param repositoryFile
    * @return true if supported
    */
-  private boolean supportedLocaleFileExt( RepositoryFile repositoryFile ) {
+  protected boolean supportedLocaleFileExt( RepositoryFile repositoryFile ) {
     boolean ans = true;
     String ext = repositoryFile.getName();
     if ( !repositoryFile.isFolder() ) {
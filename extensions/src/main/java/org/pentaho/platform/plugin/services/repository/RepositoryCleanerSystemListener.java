@@ -32,6 +32,8 @@ import org.pentaho.platform.api.scheduler2.JobTrigger;
 import org.pentaho.platform.api.scheduler2.SchedulerException;
 import org.pentaho.platform.api.scheduler2.SimpleJobTrigger;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
+import org.pentaho.platform.engine.core.system.ReadReplicaMode;
+import org.pentaho.platform.repository2.unified.jcr.RepositoryCleaner;
 import org.pentaho.platform.util.StringUtil;
 
 import java.util.ArrayList;
@@ -112,6 +114,15 @@ public class RepositoryCleanerSystemListener implements IPentahoSystemListener,
 
   @Override
   public boolean startup( IPentahoSession session ) {
+    if ( ReadReplicaMode.isEnabled() ) {
+      logger.info( "Read replica; repository GC is left to the other servers" );
+      return true;
+    }
+    RepositoryCleaner cleaner = PentahoSystem.get( RepositoryCleaner.class );
+    if ( cleaner != null && cleaner.resumeInterrupted() ) {
+      logger.info( "Resuming interrupted repository GC" );
+    }
+
     IScheduler scheduler = PentahoSystem.get( IScheduler.class, "IScheduler2", session );
     if ( scheduler == null ) {
       logger.error( "Cannot obtain an instance of IScheduler2" );
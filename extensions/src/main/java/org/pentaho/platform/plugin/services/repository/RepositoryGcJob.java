@@ -23,6 +23,7 @@ package org.pentaho.platform.plugin.services.repository;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.pentaho.platform.api.action.IAction;
+import org.pentaho.platform.engine.core.system.PentahoSystem;
 import org.pentaho.platform.repository2.unified.jcr.RepositoryCleaner;
 
 /**
@@ -36,7 +37,11 @@ public class RepositoryGcJob implements IAction {
   @Override
   public void execute() throws Exception {
     logger.info( "Starting repository GC" );
-    new RepositoryCleaner().gc();
+    RepositoryCleaner cleaner = PentahoSystem.get( RepositoryCleaner.class );
+    if ( cleaner == null ) {
+      cleaner = new RepositoryCleaner();
+    }
+    cleaner.gc();
     logger.info( "Repository GC has been finished" );
   }
 }
@@ -0,0 +1,51 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.plugin.services.repository;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.pentaho.platform.api.action.IAction;
+import org.pentaho.platform.engine.core.system.PentahoSystem;
+import org.pentaho.platform.repository2.unified.jcr.JcrVersionPruner;
+
+/**
+ * Applies the configured version retention policies. Can be scheduled like {@link RepositoryGcJob}; running the GC
+ * after pruning frees the binaries of the removed versions.
+ */
+public class VersionPruneJob implements IAction {
+  public static final String JOB_NAME = "VersionPruneJob";
+
+  private static final Log logger = LogFactory.getLog( VersionPruneJob.class );
+
+  @Override
+  public void execute() throws Exception {
+    JcrVersionPruner pruner = PentahoSystem.get( JcrVersionPruner.class );
+    if ( pruner == null ) {
+      logger.error( "Cannot obtain the version pruner. Exiting" );
+      return;
+    }
+    if ( pruner.isRunning() ) {
+      logger.info( "Version pruning is already running" );
+      return;
+    }
+    pruner.prune( false );
+  }
+}
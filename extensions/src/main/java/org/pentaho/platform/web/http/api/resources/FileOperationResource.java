@@ -0,0 +1,250 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.web.http.api.resources;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.codehaus.enunciate.Facet;
+import org.codehaus.enunciate.jaxrs.ResponseCode;
+import org.codehaus.enunciate.jaxrs.StatusCodes;
+import org.pentaho.platform.api.engine.IPentahoSession;
+import org.pentaho.platform.api.engine.PentahoAccessControlException;
+import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
+import org.pentaho.platform.web.http.api.resources.operations.BulkFileOperation;
+import org.pentaho.platform.web.http.api.resources.operations.BulkFileOperationManager;
+import org.pentaho.platform.web.http.api.resources.services.FileService;
+
+import javax.ws.rs.Consumes;
+import javax.ws.rs.DELETE;
+import javax.ws.rs.GET;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.io.FileNotFoundException;
+import java.util.concurrent.RejectedExecutionException;
+
+import static javax.ws.rs.core.MediaType.APPLICATION_JSON;
+import static javax.ws.rs.core.MediaType.APPLICATION_XML;
+
+/**
+ * Runs bulk file operations (delete, move, copy and restore) in the background. Each submission returns immediately
+ * with an operation id that can be polled for progress and cancelled. The synchronous equivalents in
+ * {@link FileResource} remain the better choice for a handful of files.
+ */
+@Path ( "/repo/operations/" )
+@Facet ( name = "Unsupported" )
+public class FileOperationResource extends AbstractJaxRSResource {
+
+  private static final Log logger = LogFactory.getLog( FileOperationResource.class );
+
+  protected FileService fileService;
+
+  protected BulkFileOperationManager operationManager;
+
+  public FileOperationResource( BulkFileOperationManager operationManager ) {
+    this.fileService = new FileService();
+    this.operationManager = operationManager;
+  }
+
+  /**
+   * Moves a list of files to the user's trash folder in the background.
+   *
+   * <p><b>Example Request:</b><br />
+   *    POST pentaho/api/repo/operations/delete
+   * </p>
+   *
+   * @param params Comma separated list of the files to be moved to trash folder.
+   *
+   * @return The status of the submitted operation, including its id.
+   */
+  @POST
+  @Path ( "/delete" )
+  @Consumes ( { MediaType.WILDCARD } )
+  @Produces ( { APPLICATION_XML, APPLICATION_JSON } )
+  @StatusCodes ( {
+      @ResponseCode ( code = 202, condition = "Operation submitted." ),
+      @ResponseCode ( code = 400, condition = "No files were given." ),
+      @ResponseCode ( code = 503, condition = "Too many operations are waiting to run." ) } )
+  public Response doDeleteFiles( String params ) {
+    return submit( BulkFileOperation.Type.DELETE, null, null, params );
+  }
+
+  /**
+   * Restores a list of files from the user's trash folder to their previous locations in the background.
+   *
+   * <p><b>Example Request:</b><br />
+   *    POST pentaho/api/repo/operations/restore
+   * </p>
+   *
+   * @param params Comma separated list of the files to be restored.
+   *
+   * @return The status of the submitted operation, including its id.
+   */
+  @POST
+  @Path ( "/restore" )
+  @Consumes ( { MediaType.WILDCARD } )
+  @Produces ( { APPLICATION_XML, APPLICATION_JSON } )
+  @StatusCodes ( {
+      @ResponseCode ( code = 202, condition = "Operation submitted." ),
+      @ResponseCode ( code = 400, condition = "No files were given." ),
+      @ResponseCode ( code = 503, condition = "Too many operations are waiting to run." ) } )
+  public Response doRestoreFiles( String params ) {
+    return submit( BulkFileOperation.Type.RESTORE, null, null, params );
+  }
+
+  /**
+   * Moves a list of files to another folder in the background.
+   *
+   * <p><b>Example Request:</b><br />
+   *    POST pentaho/api/repo/operations/:public:target/move
+   * </p>
+   *
+   * @param destPathId Colon separated path for the destination folder.
+   * @param params     Comma separated list of files to be moved.
+   *
+   * @return The status of the submitted operation, including its id.
+   */
+  @POST
+  @Path ( "{pathId : .+}/move" )
+  @Consumes ( { MediaType.WILDCARD } )
+  @Produces ( { APPLICATION_XML, APPLICATION_JSON } )
+  @StatusCodes ( {
+      @ResponseCode ( code = 202, condition = "Operation submitted." ),
+      @ResponseCode ( code = 400, condition = "No files were given." ),
+      @ResponseCode ( code = 404, condition = "The destination folder does not exist." ),
+      @ResponseCode ( code = 503, condition = "Too many operations are waiting to run." ) } )
+  public Response doMoveFiles( @PathParam ( "pathId" ) String destPathId, String params ) {
+    return submit( BulkFileOperation.Type.MOVE, destPathId, null, params );
+  }
+
+  /**
+   * Copies a list of files to another folder in the background.
+   *
+   * <p><b>Example Request:</b><br />
+   *    POST pentaho/api/repo/operations/:public:target/copy?mode=2
+   * </p>
+   *
+   * @param destPathId Colon separated path for the destination folder.
+   * @param mode       MODE_OVERWRITE (1), MODE_RENAME (2, default) or MODE_NO_OVERWRITE (3).
+   * @param params     Comma separated list of files to be copied.
+   *
+   * @return The status of the submitted operation, including its id.
+   */
+  @POST
+  @Path ( "{pathId : .+}/copy" )
+  @Consumes ( { MediaType.WILDCARD } )
+  @Produces ( { APPLICATION_XML, APPLICATION_JSON } )
+  @StatusCodes ( {
+      @ResponseCode ( code = 202, condition = "Operation submitted." ),
+      @ResponseCode ( code = 400, condition = "No files were given." ),
+      @ResponseCode ( code = 403, condition = "The user is not allowed to create content." ),
+      @ResponseCode ( code = 404, condition = "The destination folder does not exist." ),
+      @ResponseCode ( code = 503, condition = "Too many operations are waiting to run." ) } )
+  public Response doCopyFiles( @PathParam ( "pathId" ) String destPathId, @QueryParam ( "mode" ) Integer mode,
+                               String params ) {
+    return submit( BulkFileOperation.Type.COPY, destPathId, mode, params );
+  }
+
+  /**
+   * Returns the progress of an operation submitted by the current user.
+   *
+   * <p><b>Example Request:</b><br />
+   *    GET pentaho/api/repo/operations/8d1f3c5e-4b1a-4a8e-9d4e-2f3b6a7c9e01
+   * </p>
+   *
+   * @param id The operation id.
+   *
+   * @return The status, the number of files processed and failed, and the recorded failures.
+   */
+  @GET
+  @Path ( "{id}" )
+  @Produces ( { APPLICATION_XML, APPLICATION_JSON } )
+  @StatusCodes ( {
+      @ResponseCode ( code = 200, condition = "Operation found." ),
+      @ResponseCode ( code = 404, condition = "Unknown or expired operation." ) } )
+  public Response getOperation( @PathParam ( "id" ) String id ) {
+    BulkFileOperation operation = getOwnOperation( id );
+    if ( operation == null ) {
+      return Response.status( Response.Status.NOT_FOUND ).build();
+    }
+    return Response.ok( new FileOperationStatus( operation ) ).build();
+  }
+
+  /**
+   * Cancels an operation submitted by the current user. Files that were already processed stay processed.
+   *
+   * <p><b>Example Request:</b><br />
+   *    DELETE pentaho/api/repo/operations/8d1f3c5e-4b1a-4a8e-9d4e-2f3b6a7c9e01
+   * </p>
+   *
+   * @param id The operation id.
+   *
+   * @return The status of the operation at the time of the request.
+   */
+  @DELETE
+  @Path ( "{id}" )
+  @Produces ( { APPLICATION_XML, APPLICATION_JSON } )
+  @StatusCodes ( {
+      @ResponseCode ( code = 200, condition = "Cancellation requested." ),
+      @ResponseCode ( code = 404, condition = "Unknown or expired operation." ) } )
+  public Response cancelOperation( @PathParam ( "id" ) String id ) {
+    BulkFileOperation operation = getOwnOperation( id );
+    if ( operation == null ) {
+      return Response.status( Response.Status.NOT_FOUND ).build();
+    }
+    operation.cancel();
+    return Response.ok( new FileOperationStatus( operation ) ).build();
+  }
+
+  protected Response submit( BulkFileOperation.Type type, String destPathId, Integer mode, String params ) {
+    try {
+      BulkFileOperation operation =
+        operationManager.submit( fileService.createBulkFileOperation( type, destPathId, mode, params ) );
+      return Response.status( Response.Status.ACCEPTED ).entity( new FileOperationStatus( operation ) ).build();
+    } catch ( FileNotFoundException e ) {
+      return Response.status( Response.Status.NOT_FOUND ).build();
+    } catch ( PentahoAccessControlException e ) {
+      return Response.status( Response.Status.FORBIDDEN ).build();
+    } catch ( IllegalArgumentException e ) {
+      return Response.status( Response.Status.BAD_REQUEST ).build();
+    } catch ( RejectedExecutionException e ) {
+      logger.warn( "Bulk file operation rejected, too many operations are waiting to run" );
+      return Response.status( Response.Status.SERVICE_UNAVAILABLE ).build();
+    }
+  }
+
+  /**
+   * Operations are only visible to the user that submitted them; anybody else gets the same answer as for an unknown
+   * id.
+   */
+  protected BulkFileOperation getOwnOperation( String id ) {
+    BulkFileOperation operation = operationManager.get( id );
+    IPentahoSession session = PentahoSessionHolder.getSession();
+    if ( operation == null || session == null || !session.getName().equals( operation.getOwner() ) ) {
+      return null;
+    }
+    return operation;
+  }
+}
@@ -0,0 +1,114 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.web.http.api.resources;
+
+import org.pentaho.platform.web.http.api.resources.operations.BulkFileOperation;
+
+import javax.xml.bind.annotation.XmlRootElement;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+@XmlRootElement
+public class FileOperationStatus implements Serializable {
+
+  private static final long serialVersionUID = -2402377455011427410L;
+
+  private String id;
+  private String type;
+  private String status;
+  private int total;
+  private int done;
+  private int failed;
+  private List<Setting> failures = new ArrayList<Setting>();
+
+  public FileOperationStatus() {
+  }
+
+  public FileOperationStatus( BulkFileOperation operation ) {
+    this.id = operation.getId();
+    this.type = operation.getType().name();
+    this.status = operation.getStatus().name();
+    this.total = operation.getTotal();
+    this.done = operation.getDone();
+    this.failed = operation.getFailed();
+    for ( Map.Entry<String, String> failure : operation.getFailures().entrySet() ) {
+      failures.add( new Setting( failure.getKey(), failure.getValue() ) );
+    }
+  }
+
+  public String getId() {
+    return id;
+  }
+
+  public void setId( String id ) {
+    this.id = id;
+  }
+
+  public String getType() {
+    return type;
+  }
+
+  public void setType( String type ) {
+    this.type = type;
+  }
+
+  public String getStatus() {
+    return status;
+  }
+
+  public void setStatus( String status ) {
+    this.status = status;
+  }
+
+  public int getTotal() {
+    return total;
+  }
+
+  public void setTotal( int total ) {
+    this.total = total;
+  }
+
+  public int getDone() {
+    return done;
+  }
+
+  public void setDone( int done ) {
+    this.done = done;
+  }
+
+  public int getFailed() {
+    return failed;
+  }
+
+  public void setFailed( int failed ) {
+    this.failed = failed;
+  }
+
+  public List<Setting> getFailures() {
+    return failures;
+  }
+
+  public void setFailures( List<Setting> failures ) {
+    this.failures = failures;
+  }
+}
@@ -21,6 +21,7 @@
 package org.pentaho.platform.web.http.api.resources;
 
 import com.google.gwt.safehtml.shared.SafeHtmlBuilder;
+import com.sun.jersey.multipart.FormDataBodyPart;
 import com.sun.jersey.multipart.FormDataParam;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.logging.Log;
@@ -66,6 +67,8 @@ import org.pentaho.platform.api.repository2.unified.webservices.StringKeyStringV
 import org.pentaho.platform.security.policy.rolebased.actions.PublishAction;
 import org.pentaho.platform.util.xml.XMLParserFactoryProducer;
 import org.pentaho.platform.web.http.api.resources.services.FileService;
+import org.pentaho.platform.web.http.api.resources.utils.ByteRange;
+import org.pentaho.platform.web.http.api.resources.utils.ByteRangeStreamingOutput;
 import org.pentaho.platform.web.http.api.resources.utils.FileUtils;
 import org.pentaho.platform.web.http.api.resources.utils.SystemUtils;
 import org.pentaho.platform.web.http.messages.Messages;
@@ -100,6 +103,7 @@ import java.nio.channels.IllegalSelectorException;
 import java.security.GeneralSecurityException;
 import java.security.InvalidParameterException;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -183,6 +187,49 @@ public class FileResource extends AbstractJaxRSResource {
     }
   }
 
+  /**
+   * Performs an incremental system back up of the Pentaho system. Only the repository files that changed since an earlier
+   * backup are included; schedules, users, roles, datasources, and the metastore are always included in full.
+   *
+   * <p><b>Example Request:</b><br />
+   *    POST pentaho/api/repo/files/backup/incremental
+   * </p>
+   *
+   * @param userAgent       A string representing the type of browser to use.  Currently only applicable if contains 'FireFox' as FireFox
+   *                        requires a header with encoding information (UTF-8) and a quoted filename, otherwise encoding information is not
+   *                        supplied and the filename is not quoted.
+   * @param baseBackup      The backupIndex.bkidx entry of the backup to compare against, or that whole backup zip file.
+   *
+   * @return A jax-rs Response object with the appropriate status code, header, and body.
+   *
+   * <p><b>Example Response:</b></p>
+   *    <pre function="syntax.xml">
+   *      Encrypted file stream
+   *    </pre>
+   */
+  @POST
+  @Path( "/backup/incremental" )
+  @Consumes( MediaType.MULTIPART_FORM_DATA )
+  @StatusCodes( {
+    @ResponseCode( code = 200, condition = "Successfully exported the changes to the Pentaho System" ),
+    @ResponseCode( code = 400, condition = "The base backup could not be read" ),
+    @ResponseCode( code = 403, condition = "User does not have administrative permissions" ),
+    @ResponseCode( code = 500, condition = "Failure to complete the export." ) } )
+  public Response systemBackupIncremental( @HeaderParam ( "user-agent" ) String userAgent,
+                                           @FormDataParam( "baseBackup" ) InputStream baseBackup ) {
+    FileService.DownloadFileWrapper wrapper;
+    try {
+      wrapper = fileService.systemBackupIncremental( userAgent, baseBackup );
+      return buildZipOkResponse( wrapper );
+    } catch ( IOException e ) {
+      throw new WebApplicationException( Response.Status.BAD_REQUEST );
+    } catch ( ExportException e ) {
+      throw new WebApplicationException( Response.Status.INTERNAL_SERVER_ERROR );
+    } catch ( SecurityException e ) {
+      throw new WebApplicationException( Response.Status.FORBIDDEN );
+    }
+  }
+
   /**
    * Performs a system restore of the Hitachi Vantara system. This includes content, schedules, users, roles, datasources, and
    * the metastore.
@@ -211,6 +258,49 @@ public class FileResource extends AbstractJaxRSResource {
     }
   }
 
+  /**
+   * Restores a full system backup followed by the incremental backups taken against it. Every archive is checked
+   * against its backup index before anything is imported: the archives must form one chain starting at the full backup,
+   * and each must hold the expected number of files with matching checksums. The archives are then imported oldest first.
+   * <p/>
+   * <p><b>Example Request:</b><br /> POST pentaho/api/repo/files/systemRestore/chain </p>
+   *
+   * @param fileUploads The full backup zip file and the incremental backup zip files, as repeated fileUpload fields in any order.
+   * @return A jax-rs Response object with the appropriate status code, header, and body.
+   *
+   * <p><b>Example Response:</b></p>
+   *    <pre function="syntax.xml">
+   *      412
+   *    </pre>
+   */
+  @POST
+  @Path( "/systemRestore/chain" )
+  @Consumes( MediaType.MULTIPART_FORM_DATA )
+  @Produces( MediaType.TEXT_PLAIN )
+  @StatusCodes( {
+    @ResponseCode( code = 200, condition = "Successfully imported the Pentaho System, returns the number of restored files" ),
+    @ResponseCode( code = 403, condition = "User does not have administrative permissions" ),
+    @ResponseCode( code = 500, condition = "The backups failed verification or could not be imported." ) } )
+  public Response systemRestoreChain( @FormDataParam( "fileUpload" ) List<FormDataBodyPart> fileUploads,
+                                      @FormDataParam ( "overwriteFile" ) String overwriteFile,
+                                      @FormDataParam ( "applyAclSettings" ) String applyAclSettings,
+                                      @FormDataParam ( "overwriteAclSettings" ) String overwriteAclSettings ) {
+    List<InputStream> archives = new ArrayList<InputStream>();
+    if ( fileUploads != null ) {
+      for ( FormDataBodyPart fileUpload : fileUploads ) {
+        archives.add( fileUpload.getValueAs( InputStream.class ) );
+      }
+    }
+    try {
+      int restored = fileService.systemRestoreChain( archives, overwriteFile, applyAclSettings, overwriteAclSettings );
+      return Response.ok( String.valueOf( restored ) ).build();
+    } catch ( PlatformImportException e ) {
+      throw new WebApplicationException( Response.Status.INTERNAL_SERVER_ERROR );
+    } catch ( SecurityException e ) {
+      throw new WebApplicationException( Response.Status.FORBIDDEN );
+    }
+  }
+
   /**
    * Move a list of files to the user's trash folder.
    *
@@ -461,7 +551,10 @@ public class FileResource extends AbstractJaxRSResource {
   @Produces ( { MediaType.WILDCARD } )
   @StatusCodes ( {
       @ResponseCode ( code = 200, condition = "Successfully get the file or directory." ),
+      @ResponseCode ( code = 206, condition = "Successfully get the requested byte ranges of the file." ),
+      @ResponseCode ( code = 304, condition = "The file has not been modified since the version held by the client." ),
       @ResponseCode ( code = 404, condition = "Failed to find the file or resource." ),
+      @ResponseCode ( code = 416, condition = "None of the requested byte ranges can be satisfied." ),
       @ResponseCode ( code = 500, condition = "Failed to open content." ) } )
   public Response doGetFileOrDir( @PathParam ( "pathId" ) String pathId ) {
     try {
@@ -680,8 +773,11 @@ public class FileResource extends AbstractJaxRSResource {
   @Produces ( MediaType.WILDCARD )
   @StatusCodes ( {
       @ResponseCode ( code = 200, condition = "Successfully retrieved file." ),
+      @ResponseCode ( code = 206, condition = "Successfully retrieved the requested byte ranges of the file." ),
+      @ResponseCode ( code = 304, condition = "The file has not been modified since the version held by the client." ),
       @ResponseCode ( code = 403, condition = "Failed to retrieve file due to permission problem." ),
       @ResponseCode ( code = 404, condition = "Failed to retrieve file due because file was not found." ),
+      @ResponseCode ( code = 416, condition = "None of the requested byte ranges can be satisfied." ),
       @ResponseCode ( code = 500, condition = "Failed to download file because of some other error." ) } )
   public Response doGetFileAsInline( @PathParam ( "pathId" ) String pathId ) {
     try {
@@ -1100,6 +1196,87 @@ public class FileResource extends AbstractJaxRSResource {
     return fileService.doGetPathsAccessList( pathsWrapper );
   }
 
+  /**
+   * Checks several permissions on several files in one call. Each file gets a bit mask in which bit n is set when the
+   * current user has the permission with ordinal n (READ = 1, WRITE = 2, DELETE = 4, ACL_MANAGEMENT = 8, ALL = 16).
+   * Meant for screens that would otherwise call canAccessMap once per file.
+   *
+   * <p><b>Example Request:</b><br />
+   *    POST pentaho/api/repo/files/accessMasks?permissions=1|2
+   * <br /><b>POST data:</b>
+   *  <pre function="syntax.xml">
+   *    &lt;stringListWrapper&gt;
+   *    &lt;strings&gt;:public:Steel Wheels:Sales Report.prpt&lt;/strings&gt;
+   *    &lt;strings&gt;:public:Steel Wheels&lt;/strings&gt;
+   *    &lt;/stringListWrapper&gt;
+   *  </pre>
+   * </p>
+   *
+   * @param permissions  Pipe separated permissions to be checked; all permissions when not set.
+   * @param pathsWrapper Colon separated paths of the repository files.
+   *
+   * @return The mask of each path, in the order given. Files that do not exist get 0.
+   *
+   * <p><b>Example Response:</b></p>
+   *  <pre function="syntax.xml">
+   *    {"setting":[{"name":":public:Steel Wheels:Sales Report.prpt","value":"6"},
+   *    {"name":":public:Steel Wheels","value":"2"}]}
+   *  </pre>
+   */
+  @POST
+  @Path ( "/accessMasks" )
+  @Consumes ( { MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON } )
+  @Produces ( { MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON } )
+  @StatusCodes ( {
+      @ResponseCode ( code = 200, condition = "Successfully retrieved the permissions of the given paths." ),
+      @ResponseCode ( code = 500, condition = "Unable to retrieve the permissions of the given paths due to some other error." ) } )
+  public List<Setting> doGetAccessMasks( @QueryParam ( "permissions" ) String permissions,
+                                         StringListWrapper pathsWrapper ) {
+    return fileService.doGetAccessMasks( pathsWrapper, permissions );
+  }
+
+  /**
+   * Retrieves the titles of many repository files at once, localized for the given locale. Meant for listings that
+   * only need titles, such as the browse perspective.
+   *
+   * <p><b>Example Request:</b><br />
+   *    POST pentaho/api/repo/files/localizedTitles?locale=ja
+   * </p>
+   * <br /><b>POST data:</b>
+   *  <pre function="syntax.xml">
+   *    &lt;stringListWrapper&gt;
+   *    &lt;strings&gt;3fd4b7b4-e8d6-4f1a-8f1c-6f0e7c1f9a2b&lt;/strings&gt;
+   *    &lt;strings&gt;8a2c7e7e-0b6c-4b61-9c7a-2a1d5b5e4f10&lt;/strings&gt;
+   *    &lt;/stringListWrapper&gt;
+   *  </pre>
+   *
+   * @param locale  Locale of the titles; the locale of the session when not set.
+   * @param fileIds Ids of the repository files.
+   *
+   * @return List of file id and title pairs. Files that do not exist or cannot be read are left out.
+   *
+   * <p><b>Example Response:</b></p>
+   *    <pre function="syntax.xml">
+   *      &lt;stringKeyStringValueDtoes&gt;
+   *      &lt;stringKeyStringValueDto&gt;
+   *      &lt;key&gt;3fd4b7b4-e8d6-4f1a-8f1c-6f0e7c1f9a2b&lt;/key&gt;
+   *      &lt;value&gt;Sales Report&lt;/value&gt;
+   *      &lt;/stringKeyStringValueDto&gt;
+   *      &lt;/stringKeyStringValueDtoes&gt;
+   *    </pre>
+   */
+  @POST
+  @Path ( "/localizedTitles" )
+  @Consumes ( { MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON } )
+  @Produces ( { MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON } )
+  @StatusCodes ( {
+      @ResponseCode ( code = 200, condition = "Successfully retrieved the titles of the given files." ),
+      @ResponseCode ( code = 500, condition = "Unable to retrieve the titles of the given files due to some other error." ) } )
+  public List<StringKeyStringValueDto> doGetLocalizedTitles( @QueryParam ( "locale" ) String locale,
+      StringListWrapper fileIds ) {
+    return fileService.doGetLocalizedTitles( fileIds, locale );
+  }
+
   /**
    * Check whether the current user has specific permission on the selected repository file.
    *
@@ -1765,6 +1942,67 @@ public class FileResource extends AbstractJaxRSResource {
     return fileService.doGetChildren( pathId, filter, showHidden, includeAcls );
   }
 
+  /**
+   * Retrieve the recursive list of children of the selected repository file as XML, written as it is read from the
+   * repository. The response is the same XML document as the one of the tree endpoint, without permission information;
+   * use it for large trees. JSON is not available here; use the tree endpoint for JSON.
+   *
+   * <p><b>Example Request:</b><br />
+   *    GET pentaho/api/repo/files/:public/tree/xmlstream?showHidden=false&filter=*|FILES
+   * </p>
+   *
+   * @param pathId      The path from the root folder to the root node of the tree to return using colon characters in
+   *                    place of / or \ characters. To clarify /path/to/file, the encoded pathId would be :path:to:file.
+   * @param depth       How many level should the search go.
+   * @param filter      Filter to be applied for search, as for the tree endpoint.
+   * @param showHidden  Include or exclude hidden files from the file list.
+   *
+   * @return A repositoryFileTreeDto document with the files at and below the selected repository path.
+   */
+  @GET
+  @Path ( "{pathId : .+}/tree/xmlstream" )
+  @Produces ( { MediaType.APPLICATION_XML } )
+  @StatusCodes ( {
+    @ResponseCode ( code = 200, condition = "Successfully retrieved the tree of files." ),
+    @ResponseCode ( code = 500, condition = "Server Error." ) } )
+  public Response doGetTreeXmlStream( @PathParam ( "pathId" ) String pathId, @QueryParam ( "depth" ) Integer depth,
+                                      @QueryParam ( "filter" ) String filter,
+                                      @QueryParam ( "showHidden" ) Boolean showHidden,
+                                      @DefaultValue ( "false" ) @QueryParam ( "includeSysDirs" )
+                                        Boolean includeSystemFolders ) {
+    return buildOkResponse( fileService.doGetTreeXmlStream( pathId, depth, filter, showHidden, includeSystemFolders ),
+      MediaType.APPLICATION_XML );
+  }
+
+  /**
+   * Retrieve a list of child files from the selected repository path as XML, written as they are read from the
+   * repository. The response is the same XML document as the one of the children endpoint, without permission
+   * information. JSON is not available here; use the children endpoint for JSON.
+   *
+   * <p><b>Example Request:</b><br />
+   *    GET pentaho/api/repo/files/:public/children/xmlstream
+   * </p>
+   *
+   * @param pathId      The path from the root folder to the folder whose children to return using colon characters in
+   *                    place of / or \ characters. To clarify /path/to/file, the encoded pathId would be :path:to:file.
+   * @param filter      Filter to be applied for search, as for the children endpoint.
+   * @param showHidden  Include or exclude hidden files from the file list.
+   *
+   * @return A repositoryFileDtoes document with the children of the selected repository path.
+   */
+  @GET
+  @Path ( "{pathId : .+}/children/xmlstream" )
+  @Produces ( { MediaType.APPLICATION_XML } )
+  @StatusCodes ( {
+    @ResponseCode ( code = 200, condition = "Successfully retrieved the list of child files." ),
+    @ResponseCode ( code = 500, condition = "Server Error." ) } )
+  public Response doGetChildrenXmlStream( @PathParam ( "pathId" ) String pathId,
+                                          @QueryParam ( "filter" ) String filter,
+                                          @QueryParam ( "showHidden" ) Boolean showHidden ) {
+    return buildOkResponse( fileService.doGetChildrenXmlStream( pathId, filter, showHidden ),
+      MediaType.APPLICATION_XML );
+  }
+
   /**
    * Retrieve the list of files in the user's trash folder.
    *
@@ -1827,6 +2065,31 @@ public class FileResource extends AbstractJaxRSResource {
     return fileService.doGetDeletedFiles();
   }
 
+  /**
+   * Retrieve one page of the deleted files of all users, most recently deleted first. This is the administrator trash
+   * view; users without administrator privileges only get the files in their own trash folder.
+   *
+   * <p><b>Example Request:</b><br />
+   *    GET pentaho/api/repo/files/deleted/all?offset=0&amp;limit=50
+   * </p>
+   *
+   * @param offset Number of deleted files to skip. Defaults to 0.
+   * @param limit  Maximum number of deleted files to return. Defaults to -1, which returns all of them.
+   *
+   * @return A list of RepositoryDto objects with the same content as <code>GET pentaho/api/repo/files/deleted</code>.
+   * The owner of each trash folder is returned as the creatorId.
+   */
+  @GET
+  @Path ( "/deleted/all" )
+  @Produces ( {MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON } )
+  @StatusCodes ( {
+    @ResponseCode ( code = 200, condition = "Successfully retrieved the page of files from the trash folders of the repository." ),
+    @ResponseCode ( code = 500, condition = "Server Error." ) } )
+  public List<RepositoryFileDto> doGetAllDeletedFiles( @DefaultValue ( "0" ) @QueryParam ( "offset" ) Integer offset,
+                                                       @DefaultValue ( "-1" ) @QueryParam ( "limit" ) Integer limit ) {
+    return fileService.doGetAllDeletedFiles( offset, limit );
+  }
+
   /**
    * Retrieve the metadata of the selected file. Even though the hidden flag is a property of the file node itself, and not
    * the metadata child, it is considered metadata from PUC and is included in the setMetadata call.
@@ -2151,11 +2414,8 @@ public class FileResource extends AbstractJaxRSResource {
   }
 
   protected Response buildOkResponse( FileService.RepositoryFileToStreamWrapper wrapper ) {
-    Response.ResponseBuilder builder = Response.ok( wrapper.getOutputStream() );
-
+    MediaType mediaType = null;
     if ( wrapper.getMimetype() != null ) {
-
-      MediaType mediaType;
       try {
         mediaType = MediaType.valueOf( wrapper.getMimetype() );
       } catch ( IllegalArgumentException e ) {
@@ -2163,12 +2423,140 @@ public class FileResource extends AbstractJaxRSResource {
         //Downloadable type
         mediaType = MediaType.APPLICATION_OCTET_STREAM_TYPE;
       }
+    }
+
+    RepositoryFile repositoryFile = wrapper.getRepositoryFile();
+    String eTag = getETag( repositoryFile );
+    Date lastModified = repositoryFile.getLastModifiedDate();
+
+    if ( isNotModified( eTag, lastModified ) ) {
+      IOUtils.closeQuietly( wrapper.getInputStream() );
+      return addValidators( Response.notModified(), eTag, lastModified ).build();
+    }
+
+    // byte ranges can only be served when the raw content stream and its exact length are known; pho:fileSize is not
+    // used as it only holds an estimate for files stored before their size was counted
+    long length = wrapper.getContentLength();
+    boolean rangesSupported = wrapper.getInputStream() != null && length > 0;
+    List<ByteRange> ranges = null;
+    if ( rangesSupported && isRangeApplicable( eTag, lastModified ) ) {
+      ranges = ByteRange.parse( getRequestHeader( "Range" ), length );
+    }
 
+    Response.ResponseBuilder builder;
+    if ( ranges != null && ranges.isEmpty() ) {
+      IOUtils.closeQuietly( wrapper.getInputStream() );
+      builder = Response.status( HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE )
+          .header( "Content-Range", "bytes */" + length );
+    } else if ( ranges != null ) {
+      ByteRangeStreamingOutput rangeOutput =
+          new ByteRangeStreamingOutput( wrapper.getInputStream(), ranges, length, mediaType == null ? null : mediaType
+              .toString() );
+      builder = Response.status( HttpServletResponse.SC_PARTIAL_CONTENT ).entity( rangeOutput );
+      if ( rangeOutput.getResponseContentType() != null ) {
+        builder.type( rangeOutput.getResponseContentType() );
+      }
+      if ( !rangeOutput.isMultipart() ) {
+        builder.header( "Content-Range", ranges.get( 0 ).toContentRange( length ) )
+            .header( "Content-Length", ranges.get( 0 ).getLength() );
+      }
+    } else if ( mediaType != null ) {
       builder = Response.ok( wrapper.getOutputStream(), mediaType );
+    } else {
+      builder = Response.ok( wrapper.getOutputStream() );
+    }
+
+    if ( rangesSupported ) {
+      builder.header( "Accept-Ranges", "bytes" );
+    }
+    return addValidators( builder, eTag, lastModified )
+        .header( "Content-Disposition", "inline; filename=\"" + repositoryFile.getName() + "\"" ).build();
+  }
+
+  /**
+   * Builds a strong entity tag from the file id and its version (or last modification date for unversioned files).
+   *
+   * @return the quoted entity tag, or {@code null} if the file does not carry enough information
+   */
+  protected String getETag( RepositoryFile repositoryFile ) {
+    if ( repositoryFile.getId() == null ) {
+      return null;
     }
+    Object version = repositoryFile.getVersionId();
+    if ( version == null && repositoryFile.getLastModifiedDate() != null ) {
+      version = repositoryFile.getLastModifiedDate().getTime();
+    }
+    return version == null ? null : "\"" + repositoryFile.getId() + "-" + version + "\"";
+  }
 
-    return builder.header( "Content-Disposition", "inline; filename=\"" + wrapper.getRepositoryFile().getName() + "\"" )
-        .build();
+  /**
+   * Evaluates {@code If-None-Match}, falling back to {@code If-Modified-Since} when no entity tags were sent.
+   */
+  protected boolean isNotModified( String eTag, Date lastModified ) {
+    String ifNoneMatch = getRequestHeader( "If-None-Match" );
+    if ( ifNoneMatch != null ) {
+      return eTag != null && matchesETag( ifNoneMatch, eTag );
+    }
+    long ifModifiedSince = getRequestDateHeader( "If-Modified-Since" );
+    return lastModified != null && ifModifiedSince >= 0 && lastModified.getTime() / 1000 <= ifModifiedSince / 1000;
+  }
+
+  /**
+   * Evaluates {@code If-Range}: a range is only served if the representation the client holds is still current.
+   */
+  protected boolean isRangeApplicable( String eTag, Date lastModified ) {
+    String ifRange = getRequestHeader( "If-Range" );
+    if ( ifRange == null ) {
+      return true;
+    }
+    if ( ifRange.startsWith( "\"" ) ) {
+      return ifRange.equals( eTag );
+    }
+    if ( ifRange.startsWith( "W/" ) ) {
+      // weak tags never satisfy If-Range
+      return false;
+    }
+    long ifRangeDate = getRequestDateHeader( "If-Range" );
+    return lastModified != null && ifRangeDate >= 0 && lastModified.getTime() / 1000 == ifRangeDate / 1000;
+  }
+
+  private boolean matchesETag( String header, String eTag ) {
+    for ( String candidate : header.split( "," ) ) {
+      candidate = candidate.trim();
+      if ( candidate.startsWith( "W/" ) ) {
+        candidate = candidate.substring( 2 );
+      }
+      if ( candidate.equals( "*" ) || candidate.equals( eTag ) ) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private Response.ResponseBuilder addValidators( Response.ResponseBuilder builder, String eTag, Date lastModified ) {
+    if ( eTag != null ) {
+      builder.header( "ETag", eTag );
+    }
+    if ( lastModified != null ) {
+      builder.lastModified( lastModified );
+    }
+    return builder;
+  }
+
+  protected String getRequestHeader( String name ) {
+    return httpServletRequest == null ? null : httpServletRequest.getHeader( name );
+  }
+
+  protected long getRequestDateHeader( String name ) {
+    if ( httpServletRequest == null ) {
+      return -1;
+    }
+    try {
+      return httpServletRequest.getDateHeader( name );
+    } catch ( IllegalArgumentException e ) {
+      // malformed dates are ignored, as required for conditional headers
+      return -1;
+    }
   }
 
   protected Response buildZipOkResponse( FileService.DownloadFileWrapper wrapper ) {
@@ -0,0 +1,82 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.web.http.api.resources;
+
+import org.codehaus.enunciate.Facet;
+import org.codehaus.enunciate.jaxrs.ResponseCode;
+import org.codehaus.enunciate.jaxrs.StatusCodes;
+import org.pentaho.platform.engine.core.system.PentahoSystem;
+import org.pentaho.platform.repository2.unified.jcr.RepositoryCleaner;
+import org.pentaho.platform.repository2.unified.jcr.RepositoryGcStatus;
+import org.pentaho.platform.web.http.api.resources.utils.SystemUtils;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.Response;
+
+import static javax.ws.rs.core.MediaType.APPLICATION_JSON;
+import static javax.ws.rs.core.MediaType.APPLICATION_XML;
+
+/**
+ * Reports on the repository garbage collection run by
+ * {@link org.pentaho.platform.plugin.services.repository.RepositoryGcJob}.
+ */
+@Path ( "/repo/gc/" )
+@Facet ( name = "Unsupported" )
+public class RepositoryGcResource extends AbstractJaxRSResource {
+
+  /**
+   * Reports the progress of the current garbage collection, or the outcome of the last one.
+   *
+   * <p><b>Example Request:</b><br />
+   *    GET pentaho/api/repo/gc/status
+   * </p>
+   *
+   * @return Phase of the run, nodes scanned, binaries marked and deleted, and bytes reclaimed.
+   */
+  @GET
+  @Path ( "/status" )
+  @Produces ( { APPLICATION_XML, APPLICATION_JSON } )
+  @StatusCodes ( {
+      @ResponseCode ( code = 200, condition = "Status returned." ),
+      @ResponseCode ( code = 403, condition = "The user is not an administrator." ),
+      @ResponseCode ( code = 404, condition = "The garbage collection has not run since the server started." ) } )
+  public Response getStatus() {
+    if ( !canAdminister() ) {
+      return Response.status( Response.Status.FORBIDDEN ).build();
+    }
+    RepositoryCleaner cleaner = getCleaner();
+    RepositoryGcStatus status = cleaner == null ? null : cleaner.getStatus();
+    if ( status == null ) {
+      return Response.status( Response.Status.NOT_FOUND ).build();
+    }
+    return Response.ok( status ).build();
+  }
+
+  protected boolean canAdminister() {
+    return SystemUtils.canAdminister();
+  }
+
+  protected RepositoryCleaner getCleaner() {
+    return PentahoSystem.get( RepositoryCleaner.class );
+  }
+}
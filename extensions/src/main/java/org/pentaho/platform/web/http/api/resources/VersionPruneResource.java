@@ -0,0 +1,113 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.web.http.api.resources;
+
+import org.codehaus.enunciate.Facet;
+import org.codehaus.enunciate.jaxrs.ResponseCode;
+import org.codehaus.enunciate.jaxrs.StatusCodes;
+import org.pentaho.platform.engine.core.system.PentahoSystem;
+import org.pentaho.platform.repository2.unified.jcr.JcrVersionPruner;
+import org.pentaho.platform.repository2.unified.jcr.VersionPruneReport;
+import org.pentaho.platform.web.http.api.resources.utils.SystemUtils;
+
+import javax.ws.rs.DefaultValue;
+import javax.ws.rs.GET;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.Response;
+
+import static javax.ws.rs.core.MediaType.APPLICATION_JSON;
+import static javax.ws.rs.core.MediaType.APPLICATION_XML;
+
+/**
+ * Triggers the version retention pruner and reports on its last run. Retention policies are configured on the
+ * <code>versionPruner</code> bean in repository.spring.xml.
+ */
+@Path ( "/repo/versions/" )
+@Facet ( name = "Unsupported" )
+public class VersionPruneResource extends AbstractJaxRSResource {
+
+  /**
+   * Starts removing old file versions in the background, as configured by the retention policies.
+   *
+   * <p><b>Example Request:</b><br />
+   *    POST pentaho/api/repo/versions/prune?dryRun=true
+   * </p>
+   *
+   * @param dryRun When true, only report which versions would be removed.
+   *
+   * @return The report of the run that was started.
+   */
+  @POST
+  @Path ( "/prune" )
+  @Produces ( { APPLICATION_XML, APPLICATION_JSON } )
+  @StatusCodes ( {
+      @ResponseCode ( code = 202, condition = "Pruning started." ),
+      @ResponseCode ( code = 403, condition = "The user is not an administrator." ),
+      @ResponseCode ( code = 409, condition = "Pruning is already running." ) } )
+  public Response prune( @DefaultValue ( "false" ) @QueryParam ( "dryRun" ) Boolean dryRun ) {
+    if ( !canAdminister() ) {
+      return Response.status( Response.Status.FORBIDDEN ).build();
+    }
+    JcrVersionPruner pruner = getPruner();
+    if ( !pruner.pruneInBackground( dryRun ) ) {
+      return Response.status( Response.Status.CONFLICT ).entity( pruner.getLastReport() ).build();
+    }
+    return Response.status( Response.Status.ACCEPTED ).entity( pruner.getLastReport() ).build();
+  }
+
+  /**
+   * Reports the progress of the current run, or the outcome of the last one.
+   *
+   * <p><b>Example Request:</b><br />
+   *    GET pentaho/api/repo/versions/prune
+   * </p>
+   *
+   * @return Counts of scanned files and removed versions, and the first removed versions.
+   */
+  @GET
+  @Path ( "/prune" )
+  @Produces ( { APPLICATION_XML, APPLICATION_JSON } )
+  @StatusCodes ( {
+      @ResponseCode ( code = 200, condition = "Report returned." ),
+      @ResponseCode ( code = 403, condition = "The user is not an administrator." ),
+      @ResponseCode ( code = 404, condition = "The pruner has not run since the server started." ) } )
+  public Response getReport() {
+    if ( !canAdminister() ) {
+      return Response.status( Response.Status.FORBIDDEN ).build();
+    }
+    VersionPruneReport report = getPruner().getLastReport();
+    if ( report == null ) {
+      return Response.status( Response.Status.NOT_FOUND ).build();
+    }
+    return Response.ok( report ).build();
+  }
+
+  protected boolean canAdminister() {
+    return SystemUtils.canAdminister();
+  }
+
+  protected JcrVersionPruner getPruner() {
+    return PentahoSystem.get( JcrVersionPruner.class );
+  }
+}
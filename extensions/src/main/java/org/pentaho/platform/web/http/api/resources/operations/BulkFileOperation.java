@@ -0,0 +1,212 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.web.http.api.resources.operations;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.pentaho.platform.api.repository2.unified.IUnifiedRepository;
+import org.pentaho.platform.repository2.unified.webservices.DefaultUnifiedRepositoryWebService;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * A delete, move, copy or restore of a list of repository files that runs in the background. Files are processed one
+ * at a time so that progress can be reported and the operation can be cancelled between files. Unlike the synchronous
+ * endpoints, a file that fails does not stop the operation; it is recorded and the remaining files are processed.
+ */
+public class BulkFileOperation implements Runnable {
+
+  public enum Type {
+    DELETE, MOVE, COPY, RESTORE
+  }
+
+  public enum Status {
+    QUEUED, RUNNING, COMPLETED, CANCELLED
+  }
+
+  /**
+   * Upper bound on the number of failures kept with their messages, so a failing operation on a huge folder does not
+   * hold on to an unbounded amount of memory. The failed count is always exact.
+   */
+  public static final int MAX_REPORTED_FAILURES = 100;
+
+  private static final Log logger = LogFactory.getLog( BulkFileOperation.class );
+
+  private final String id = UUID.randomUUID().toString();
+
+  private final Type type;
+
+  private final String owner;
+
+  private final List<String> sourceFileIds;
+
+  private final String destDirPath;
+
+  private final int mode;
+
+  private final IUnifiedRepository repository;
+
+  private final DefaultUnifiedRepositoryWebService defaultUnifiedRepositoryWebService;
+
+  private final Map<String, String> failures = new LinkedHashMap<String, String>();
+
+  private volatile Status status = Status.QUEUED;
+
+  private volatile boolean cancelRequested;
+
+  private volatile int done;
+
+  private volatile int failed;
+
+  private volatile long finishedTime;
+
+  public BulkFileOperation( Type type, String owner, List<String> sourceFileIds, String destDirPath, int mode,
+                            IUnifiedRepository repository,
+                            DefaultUnifiedRepositoryWebService defaultUnifiedRepositoryWebService ) {
+    if ( type == null ) {
+      throw new IllegalArgumentException( "type cannot be null" );
+    }
+    if ( sourceFileIds == null || sourceFileIds.isEmpty() ) {
+      throw new IllegalArgumentException( "Nothing to process, list of files shouldn't be empty" );
+    }
+    if ( ( type == Type.MOVE || type == Type.COPY ) && destDirPath == null ) {
+      throw new IllegalArgumentException( "destDirPath cannot be null" );
+    }
+    this.type = type;
+    this.owner = owner;
+    this.sourceFileIds = new ArrayList<String>( sourceFileIds );
+    this.destDirPath = destDirPath;
+    this.mode = mode;
+    this.repository = repository;
+    this.defaultUnifiedRepositoryWebService = defaultUnifiedRepositoryWebService;
+  }
+
+  @Override
+  public void run() {
+    if ( cancelRequested ) {
+      finish( Status.CANCELLED );
+      return;
+    }
+    status = Status.RUNNING;
+    for ( String sourceFileId : sourceFileIds ) {
+      if ( cancelRequested ) {
+        finish( Status.CANCELLED );
+        return;
+      }
+      try {
+        process( sourceFileId );
+      } catch ( Exception e ) {
+        logger.warn( "Bulk " + type + " of file " + sourceFileId + " failed", e );
+        recordFailure( sourceFileId, e );
+      }
+      done++;
+    }
+    finish( Status.COMPLETED );
+  }
+
+  protected void process( String sourceFileId ) {
+    switch ( type ) {
+      case DELETE:
+        defaultUnifiedRepositoryWebService.deleteFile( sourceFileId, null );
+        break;
+      case MOVE:
+        defaultUnifiedRepositoryWebService.moveFile( sourceFileId, destDirPath, null );
+        break;
+      case RESTORE:
+        defaultUnifiedRepositoryWebService.undeleteFile( sourceFileId, null );
+        break;
+      case COPY:
+        new CopyFilesOperation( repository, defaultUnifiedRepositoryWebService,
+          Collections.singletonList( sourceFileId ), destDirPath, mode ).execute();
+        break;
+      default:
+        throw new IllegalStateException( String.valueOf( type ) );
+    }
+  }
+
+  /**
+   * Asks the operation to stop. Files already processed are not rolled back; the file being processed when the request
+   * arrives is completed.
+   */
+  public void cancel() {
+    cancelRequested = true;
+  }
+
+  public boolean isFinished() {
+    return status == Status.COMPLETED || status == Status.CANCELLED;
+  }
+
+  private synchronized void recordFailure( String sourceFileId, Exception e ) {
+    failed++;
+    if ( failures.size() < MAX_REPORTED_FAILURES ) {
+      failures.put( sourceFileId, String.valueOf( e.getMessage() ) );
+    }
+  }
+
+  private void finish( Status finalStatus ) {
+    finishedTime = System.currentTimeMillis();
+    status = finalStatus;
+  }
+
+  public String getId() {
+    return id;
+  }
+
+  public Type getType() {
+    return type;
+  }
+
+  public String getOwner() {
+    return owner;
+  }
+
+  public Status getStatus() {
+    return status;
+  }
+
+  public int getTotal() {
+    return sourceFileIds.size();
+  }
+
+  public int getDone() {
+    return done;
+  }
+
+  public int getFailed() {
+    return failed;
+  }
+
+  public long getFinishedTime() {
+    return finishedTime;
+  }
+
+  /**
+   * @return a copy of the recorded failures, keyed by file id, in the order they occurred
+   */
+  public synchronized Map<String, String> getFailures() {
+    return new LinkedHashMap<String, String>( failures );
+  }
+}
@@ -0,0 +1,146 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.web.http.api.resources.operations;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.pentaho.platform.api.engine.IPentahoSession;
+import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs {@link BulkFileOperation}s on a small, bounded pool of background threads and keeps track of them so that
+ * clients can poll for progress or cancel them. Each operation runs with the Pentaho session and Spring Security
+ * authentication of the user that submitted it, so repository permissions are enforced exactly as they would be for
+ * the synchronous endpoints. Finished operations are kept for a retention period and then forgotten.
+ */
+public class BulkFileOperationManager {
+
+  private static final Log logger = LogFactory.getLog( BulkFileOperationManager.class );
+
+  private final Map<String, BulkFileOperation> operations = new ConcurrentHashMap<String, BulkFileOperation>();
+
+  private final ThreadPoolExecutor executor;
+
+  private final long retentionMillis;
+
+  /**
+   * @param concurrency     number of operations that may run at the same time
+   * @param maxQueued       number of operations that may wait for a free thread before submissions are rejected
+   * @param retentionMillis how long a finished operation can still be queried
+   */
+  public BulkFileOperationManager( int concurrency, int maxQueued, long retentionMillis ) {
+    this.retentionMillis = retentionMillis;
+    this.executor = new ThreadPoolExecutor( concurrency, concurrency, 0L, TimeUnit.MILLISECONDS,
+      new LinkedBlockingQueue<Runnable>( maxQueued ), new ThreadFactory() {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread( Runnable r ) {
+          Thread t = new Thread( r, "Bulk File Operation " + count.incrementAndGet() ); //$NON-NLS-1$
+          t.setDaemon( true );
+          return t;
+        }
+      } );
+  }
+
+  /**
+   * Queues the operation to run as the current user.
+   *
+   * @throws java.util.concurrent.RejectedExecutionException if too many operations are already waiting
+   */
+  public BulkFileOperation submit( final BulkFileOperation operation ) {
+    purgeExpired();
+    final IPentahoSession session = PentahoSessionHolder.getSession();
+    final Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+    operations.put( operation.getId(), operation );
+    try {
+      executor.execute( new Runnable() {
+        @Override
+        public void run() {
+          PentahoSessionHolder.setSession( session );
+          SecurityContextHolder.clearContext();
+          SecurityContextHolder.getContext().setAuthentication( authentication );
+          try {
+            operation.run();
+          } catch ( RuntimeException e ) {
+            logger.error( "Bulk file operation " + operation.getId() + " failed", e );
+          } finally {
+            SecurityContextHolder.clearContext();
+            PentahoSessionHolder.removeSession();
+          }
+        }
+      } );
+    } catch ( RuntimeException e ) {
+      operations.remove( operation.getId() );
+      throw e;
+    }
+    return operation;
+  }
+
+  /**
+   * @return the operation, or <code>null</code> if it is unknown or has expired
+   */
+  public BulkFileOperation get( String id ) {
+    purgeExpired();
+    return operations.get( id );
+  }
+
+  /**
+   * Requests cancellation of the operation.
+   *
+   * @return the operation, or <code>null</code> if it is unknown or has expired
+   */
+  public BulkFileOperation cancel( String id ) {
+    BulkFileOperation operation = get( id );
+    if ( operation != null ) {
+      operation.cancel();
+    }
+    return operation;
+  }
+
+  public void shutdown() {
+    for ( BulkFileOperation operation : operations.values() ) {
+      operation.cancel();
+    }
+    executor.shutdown();
+  }
+
+  private void purgeExpired() {
+    long cutoff = System.currentTimeMillis() - retentionMillis;
+    for ( Iterator<BulkFileOperation> it = operations.values().iterator(); it.hasNext(); ) {
+      BulkFileOperation operation = it.next();
+      if ( operation.isFinished() && operation.getFinishedTime() < cutoff ) {
+        it.remove();
+      }
+    }
+  }
+}
@@ -24,14 +24,17 @@ import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.Serializable;
 import java.io.UnsupportedEncodingException;
 import java.net.URLDecoder;
 import java.net.URLEncoder;
 import java.nio.channels.IllegalSelectorException;
+import java.nio.charset.StandardCharsets;
 import java.security.GeneralSecurityException;
 import java.security.InvalidParameterException;
 import java.text.Collator;
@@ -44,6 +47,7 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
@@ -67,12 +71,15 @@ import org.pentaho.platform.api.repository2.unified.IUnifiedRepository;
 import org.pentaho.platform.api.repository2.unified.RepositoryFile;
 import org.pentaho.platform.api.repository2.unified.RepositoryFileAcl;
 import org.pentaho.platform.api.repository2.unified.RepositoryFilePermission;
+import org.pentaho.platform.api.repository2.unified.RepositoryFileTree;
 import org.pentaho.platform.api.repository2.unified.RepositoryRequest;
 import org.pentaho.platform.api.repository2.unified.UnifiedRepositoryAccessDeniedException;
 import org.pentaho.platform.api.repository2.unified.data.simple.SimpleRepositoryFileData;
 import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
+import org.pentaho.platform.plugin.services.exporter.BackupIndex;
 import org.pentaho.platform.plugin.services.exporter.PentahoPlatformExporter;
+import org.pentaho.platform.plugin.services.importer.BackupChainImporter;
 import org.pentaho.platform.plugin.services.importer.IPlatformImporter;
 import org.pentaho.platform.plugin.services.importer.PlatformImportException;
 import org.pentaho.platform.plugin.services.importer.RepositoryFileImportBundle;
@@ -96,6 +103,7 @@ import org.pentaho.platform.repository2.unified.webservices.PropertiesWrapper;
 import org.pentaho.platform.api.repository2.unified.webservices.RepositoryFileAclAceDto;
 import org.pentaho.platform.api.repository2.unified.webservices.RepositoryFileAclDto;
 import org.pentaho.platform.repository2.unified.webservices.RepositoryFileAdapter;
+import org.pentaho.platform.repository2.unified.webservices.RepositoryFileXmlWriter;
 import org.pentaho.platform.api.repository2.unified.webservices.RepositoryFileDto;
 import org.pentaho.platform.api.repository2.unified.webservices.RepositoryFileTreeDto;
 import org.pentaho.platform.api.repository2.unified.webservices.StringKeyStringValueDto;
@@ -106,7 +114,9 @@ import org.pentaho.platform.security.policy.rolebased.actions.RepositoryReadActi
 import org.pentaho.platform.web.http.api.resources.SessionResource;
 import org.pentaho.platform.web.http.api.resources.Setting;
 import org.pentaho.platform.web.http.api.resources.StringListWrapper;
+import org.pentaho.platform.web.http.api.resources.operations.BulkFileOperation;
 import org.pentaho.platform.web.http.api.resources.operations.CopyFilesOperation;
+import org.pentaho.platform.web.http.api.resources.utils.ByteRangeStreamingOutput;
 import org.pentaho.platform.web.http.api.resources.utils.FileUtils;
 import org.pentaho.platform.web.http.api.resources.utils.RepositoryFileHelper;
 import org.pentaho.platform.web.http.api.resources.utils.SystemUtils;
@@ -132,15 +142,38 @@ public class FileService {
 
   protected SessionResource sessionResource;
 
-  private PentahoPlatformExporter backupExporter;
-
   public DownloadFileWrapper systemBackup( String userAgent ) throws IOException, ExportException {
     if ( doCanAdminister() ) {
       String originalFileName, quotedFileName, encodedFileName;
       originalFileName = "SystemBackup.zip";
       encodedFileName = makeEncodedFileName( originalFileName );
       quotedFileName = makeQuotedFileName( originalFileName );
-      StreamingOutput streamingOutput = getBackupStream();
+      StreamingOutput streamingOutput = getBackupStream( null );
+      final String attachment = makeAttachment( userAgent, encodedFileName, quotedFileName );
+
+      return new DownloadFileWrapper( streamingOutput, attachment, encodedFileName );
+    } else {
+      throw new SecurityException();
+    }
+  }
+
+  /**
+   * Backs up only the repository files that changed since an earlier backup. Datasources, schedules, users, roles and
+   * the metastore are always included in full.
+   *
+   * @param userAgent  the user agent of the client, used to build the attachment header
+   * @param baseBackup the backup index of the earlier backup, or the earlier backup archive itself
+   * @throws IOException if the base backup cannot be read
+   */
+  public DownloadFileWrapper systemBackupIncremental( String userAgent, InputStream baseBackup )
+    throws IOException, ExportException {
+    if ( doCanAdminister() ) {
+      BackupIndex baseIndex = BackupIndex.read( baseBackup );
+      String originalFileName, quotedFileName, encodedFileName;
+      originalFileName = "SystemBackup-incremental.zip";
+      encodedFileName = makeEncodedFileName( originalFileName );
+      quotedFileName = makeQuotedFileName( originalFileName );
+      StreamingOutput streamingOutput = getBackupStream( baseIndex );
       final String attachment = makeAttachment( userAgent, encodedFileName, quotedFileName );
 
       return new DownloadFileWrapper( streamingOutput, attachment, encodedFileName );
@@ -152,43 +185,98 @@ public class FileService {
   public void systemRestore( final InputStream fileUpload, String overwriteFile,
                              String applyAclSettings, String overwriteAclSettings ) throws PlatformImportException, SecurityException {
     if ( doCanAdminister() ) {
-      boolean overwriteFileFlag = !"false".equals( overwriteFile );
-      boolean applyAclSettingsFlag = !"false".equals( applyAclSettings );
-      boolean overwriteAclSettingsFlag = "true".equals( overwriteAclSettings );
-      IRepositoryImportLogger importLogger = null;
-      Level level = Level.ERROR;
-      ByteArrayOutputStream importLoggerStream = new ByteArrayOutputStream();
-      String importDirectory = "/";
-      RepositoryFileImportBundle.Builder bundleBuilder = new RepositoryFileImportBundle.Builder();
-      bundleBuilder.input( fileUpload );
-      bundleBuilder.charSet( "UTF-8" );
-      bundleBuilder.hidden( RepositoryFile.HIDDEN_BY_DEFAULT );
-      bundleBuilder.schedulable( RepositoryFile.SCHEDULABLE_BY_DEFAULT );
-      bundleBuilder.path( importDirectory );
-      bundleBuilder.overwriteFile( overwriteFileFlag );
-      bundleBuilder.name( "SystemBackup.zip" );
-      bundleBuilder.applyAclSettings( applyAclSettingsFlag );
-      bundleBuilder.overwriteAclSettings( overwriteAclSettingsFlag );
-      bundleBuilder.retainOwnership( true );
-      bundleBuilder.preserveDsw( true );
-
-      ImportSession.getSession().setAclProperties( applyAclSettingsFlag, true, overwriteAclSettingsFlag );
-
-      IPlatformImporter importer = PentahoSystem.get( IPlatformImporter.class );
-      importLogger = importer.getRepositoryImportLogger();
-      importLogger.startJob( importLoggerStream, importDirectory, level );
+      importSystemBackup( fileUpload, !"false".equals( overwriteFile ), !"false".equals( applyAclSettings ),
+        "true".equals( overwriteAclSettings ) );
+    } else {
+      throw new SecurityException();
+    }
+  }
+
+  /**
+   * Restores a full system backup together with the incremental backups taken against it. All archives are verified
+   * before any of them is imported, and they are imported oldest first.
+   *
+   * @param fileUploads the full backup and its incremental backups, in any order
+   * @return the number of repository files in the restored backup
+   * @throws PlatformImportException if the backups do not form a complete chain, fail verification or cannot be
+   *                                 imported
+   */
+  public int systemRestoreChain( List<InputStream> fileUploads, String overwriteFile, String applyAclSettings,
+                                 String overwriteAclSettings ) throws PlatformImportException, SecurityException {
+    if ( doCanAdminister() ) {
+      final boolean overwriteFileFlag = !"false".equals( overwriteFile );
+      final boolean applyAclSettingsFlag = !"false".equals( applyAclSettings );
+      final boolean overwriteAclSettingsFlag = "true".equals( overwriteAclSettings );
+      List<File> archives = new ArrayList<File>();
       try {
-        importer.importFile( bundleBuilder.build() );
+        for ( InputStream fileUpload : fileUploads ) {
+          File archive = File.createTempFile( "SystemRestore", ".zip" );
+          archive.deleteOnExit();
+          archives.add( archive );
+          try ( OutputStream out = new FileOutputStream( archive ) ) {
+            IOUtils.copyLarge( fileUpload, out );
+          }
+        }
+        return new BackupChainImporter( getRepository() ).restore( archives,
+          new BackupChainImporter.ArchiveImporter() {
+            @Override
+            public void importArchive( File archive ) throws PlatformImportException {
+              try ( InputStream in = new FileInputStream( archive ) ) {
+                importSystemBackup( in, overwriteFileFlag, applyAclSettingsFlag, overwriteAclSettingsFlag );
+              } catch ( IOException e ) {
+                throw new PlatformImportException( e.getMessage(), e );
+              }
+            }
+          } );
+      } catch ( IOException e ) {
+        throw new PlatformImportException( e.getMessage(), e );
       } finally {
-        importLogger.endJob();
+        for ( File archive : archives ) {
+          archive.delete();
+        }
       }
     } else {
       throw new SecurityException();
     }
   }
 
-  private StreamingOutput getBackupStream() throws IOException, ExportException {
-    File zipFile = getBackupExporter().performExport();
+  private void importSystemBackup( final InputStream fileUpload, boolean overwriteFileFlag,
+                                   boolean applyAclSettingsFlag, boolean overwriteAclSettingsFlag )
+    throws PlatformImportException {
+    IRepositoryImportLogger importLogger = null;
+    Level level = Level.ERROR;
+    ByteArrayOutputStream importLoggerStream = new ByteArrayOutputStream();
+    String importDirectory = "/";
+    RepositoryFileImportBundle.Builder bundleBuilder = new RepositoryFileImportBundle.Builder();
+    bundleBuilder.input( fileUpload );
+    bundleBuilder.charSet( "UTF-8" );
+    bundleBuilder.hidden( RepositoryFile.HIDDEN_BY_DEFAULT );
+    bundleBuilder.schedulable( RepositoryFile.SCHEDULABLE_BY_DEFAULT );
+    bundleBuilder.path( importDirectory );
+    bundleBuilder.overwriteFile( overwriteFileFlag );
+    bundleBuilder.name( "SystemBackup.zip" );
+    bundleBuilder.applyAclSettings( applyAclSettingsFlag );
+    bundleBuilder.overwriteAclSettings( overwriteAclSettingsFlag );
+    bundleBuilder.retainOwnership( true );
+    bundleBuilder.preserveDsw( true );
+
+    ImportSession.getSession().setAclProperties( applyAclSettingsFlag, true, overwriteAclSettingsFlag );
+
+    IPlatformImporter importer = PentahoSystem.get( IPlatformImporter.class );
+    importLogger = importer.getRepositoryImportLogger();
+    importLogger.startJob( importLoggerStream, importDirectory, level );
+    try {
+      importer.importFile( bundleBuilder.build() );
+    } finally {
+      importLogger.endJob();
+    }
+  }
+
+  private StreamingOutput getBackupStream( BackupIndex baseIndex ) throws IOException, ExportException {
+    // every backup gets its own exporter, which holds the state of that export
+    PentahoPlatformExporter exporter = createBackupExporter();
+    exporter.setBaseIndex( baseIndex );
+    File zipFile = exporter.performExport();
     final FileInputStream inputStream = new FileInputStream( zipFile );
 
     return new StreamingOutput() {
@@ -272,26 +360,98 @@ public class FileService {
   public List<Setting> doGetPathsAccessList( StringListWrapper pathsWrapper ) {
     List<Setting> pathsPermissonsSettings = new ArrayList<Setting>();
 
-    String permissions =
-        RepositoryFilePermission.READ.ordinal() + "|" + RepositoryFilePermission.WRITE.ordinal() + "|"
-            + RepositoryFilePermission.DELETE.ordinal() + "|" + RepositoryFilePermission.ACL_MANAGEMENT.ordinal() + "|"
-            + RepositoryFilePermission.ALL.ordinal();
-
     List<String> paths = pathsWrapper.getStrings();
-    for ( String path : paths ) {
-      List<Setting> permList = doGetCanAccessList( path, permissions );
-      for ( Setting perm : permList ) {
-        if ( Boolean.parseBoolean( perm.getValue() ) ) {
-          Setting setting = new Setting();
-          setting.setName( path );
-          setting.setValue( perm.getName() );
-          pathsPermissonsSettings.add( setting );
-        }
+    List<EnumSet<RepositoryFilePermission>> access =
+        getAccess( paths, EnumSet.allOf( RepositoryFilePermission.class ) );
+    for ( int i = 0; i < paths.size(); i++ ) {
+      for ( RepositoryFilePermission permission : access.get( i ) ) {
+        Setting setting = new Setting();
+        setting.setName( paths.get( i ) );
+        setting.setValue( String.valueOf( permission.ordinal() ) );
+        pathsPermissonsSettings.add( setting );
       }
     }
     return pathsPermissonsSettings;
   }
 
+  /**
+   * Checks many permissions on many files in one call. Each file gets a bit mask in which bit {@code n} is set when
+   * the user has the permission with ordinal {@code n} (READ = 1, WRITE = 2, DELETE = 4, ACL_MANAGEMENT = 8,
+   * ALL = 16).
+   *
+   * @param pathsWrapper colon separated paths of the files
+   * @param permissions pipe separated ordinals of the permissions to check, or null for all of them
+   * @return path and mask pairs, in the order of the paths; files that do not exist get 0
+   */
+  public List<Setting> doGetAccessMasks( StringListWrapper pathsWrapper, String permissions ) {
+    EnumSet<RepositoryFilePermission> permissionSet = EnumSet.noneOf( RepositoryFilePermission.class );
+    if ( StringUtils.isEmpty( permissions ) ) {
+      permissionSet = EnumSet.allOf( RepositoryFilePermission.class );
+    } else {
+      StringTokenizer tokenizer = new StringTokenizer( permissions, "|" );
+      while ( tokenizer.hasMoreTokens() ) {
+        permissionSet.add( RepositoryFilePermission.values()[ Integer.parseInt( tokenizer.nextToken() ) ] );
+      }
+    }
+
+    List<String> paths = pathsWrapper != null && pathsWrapper.getStrings() != null ? pathsWrapper.getStrings()
+        : new ArrayList<String>();
+    List<EnumSet<RepositoryFilePermission>> access = getAccess( paths, permissionSet );
+    List<Setting> masks = new ArrayList<Setting>();
+    for ( int i = 0; i < paths.size(); i++ ) {
+      int mask = 0;
+      for ( RepositoryFilePermission permission : access.get( i ) ) {
+        mask |= 1 << permission.ordinal();
+      }
+      masks.add( new Setting( paths.get( i ), String.valueOf( mask ) ) );
+    }
+    return masks;
+  }
+
+  /**
+   * Gets the permissions held on each of the colon separated paths, in their order, with one repository call
+   */
+  protected List<EnumSet<RepositoryFilePermission>> getAccess( List<String> pathIds,
+                                                             EnumSet<RepositoryFilePermission> permissions ) {
+    List<String> paths = new ArrayList<String>();
+    for ( String pathId : pathIds ) {
+      paths.add( idToPath( pathId ) );
+    }
+    Map<String, EnumSet<RepositoryFilePermission>> access = getRepository().getAccess( paths, permissions );
+    List<EnumSet<RepositoryFilePermission>> granted = new ArrayList<EnumSet<RepositoryFilePermission>>();
+    for ( String path : paths ) {
+      EnumSet<RepositoryFilePermission> pathAccess = access != null ? access.get( path ) : null;
+      granted.add( pathAccess != null ? pathAccess : EnumSet.noneOf( RepositoryFilePermission.class ) );
+    }
+    return granted;
+  }
+
+  /**
+   * Gets the titles of many files in one call, localized for the given locale
+   *
+   * @param fileIdsWrapper ids of the files
+   * @param locale locale of the titles, such as "ja" or "pt_BR", or null for the locale of the session
+   * @return file id and title pairs, without the files that do not exist or cannot be read
+   */
+  public List<StringKeyStringValueDto> doGetLocalizedTitles( StringListWrapper fileIdsWrapper, String locale ) {
+    List<Serializable> fileIds = new ArrayList<Serializable>();
+    if ( fileIdsWrapper != null && fileIdsWrapper.getStrings() != null ) {
+      fileIds.addAll( fileIdsWrapper.getStrings() );
+    }
+    PentahoLocale pentahoLocale = null;
+    if ( !StringUtils.isEmpty( locale ) ) {
+      String[] localePieces = locale.split( "_" );
+      pentahoLocale = new PentahoLocale( new Locale( localePieces[0], localePieces.length > 1 ? localePieces[1] : "",
+          localePieces.length > 2 ? localePieces[2] : "" ) );
+    }
+    List<StringKeyStringValueDto> titles = new ArrayList<StringKeyStringValueDto>();
+    for ( Map.Entry<Serializable, String> title : getRepository().getLocalizedTitles( fileIds, pentahoLocale )
+        .entrySet() ) {
+      titles.add( getStringKeyStringValueDto( title.getKey().toString(), title.getValue() ) );
+    }
+    return titles;
+  }
+
   /**
    * Creates a new file with the provided contents at a given path
    *
@@ -674,7 +834,9 @@ public class FileService {
 
       RepositoryFileToStreamWrapper wrapper = new RepositoryFileToStreamWrapper();
       wrapper.setOutputStream( streamingOutput );
+      wrapper.setInputStream( is );
       wrapper.setRepositoryFile( repositoryFile );
+      wrapper.setContentLength( fileData.isDataSizeExact() ? fileData.getDataSize() : -1 );
 
       return wrapper;
     } catch ( Exception e ) {
@@ -752,6 +914,41 @@ public class FileService {
     copyFilesOperation.execute();
   }
 
+  /**
+   * Validates a bulk delete, move, copy or restore request and creates the operation that will carry it out in the
+   * background. Validation that is cheap and applies to the whole request (permissions, destination folder) is done
+   * here so that it can be reported synchronously; per file failures are reported by the operation itself.
+   *
+   * @param type       the kind of operation
+   * @param destPathId colon separated path of the destination folder, only used for move and copy
+   * @param mode       overwrite mode for copy, defaults to {@link #MODE_RENAME}
+   * @param params     comma separated list of file ids
+   * @throws FileNotFoundException        if the destination folder does not exist
+   * @throws PentahoAccessControlException if the user may not create content
+   * @throws IllegalArgumentException      if there are no files to process
+   */
+  public BulkFileOperation createBulkFileOperation( BulkFileOperation.Type type, String destPathId, Integer mode,
+                                                    String params )
+    throws FileNotFoundException, PentahoAccessControlException {
+    if ( type == BulkFileOperation.Type.COPY && !getPolicy().isAllowed( RepositoryCreateAction.NAME ) ) {
+      throw new PentahoAccessControlException( "User is not authorized to perform this operation" );
+    }
+
+    String destPath = null;
+    if ( type == BulkFileOperation.Type.MOVE || type == BulkFileOperation.Type.COPY ) {
+      destPath = idToPath( destPathId );
+      RepositoryFileDto destDir = getRepoWs().getFile( destPath );
+      if ( destDir == null || !destDir.isFolder() ) {
+        throw new FileNotFoundException( destPath );
+      }
+      destPath = destDir.getPath();
+    }
+
+    String[] sourceFileIds = FileUtils.convertCommaSeparatedStringToArray( params );
+    return new BulkFileOperation( type, getSession().getName(), Arrays.asList( sourceFileIds ), destPath,
+      mode == null ? MODE_RENAME : mode, getRepository(), getRepoWs() );
+  }
+
   /**
    * Takes a pathId and returns a response object with the output stream based on the file located at the pathID
    *
@@ -788,8 +985,10 @@ public class FileService {
 
     RepositoryFileToStreamWrapper wrapper = new RepositoryFileToStreamWrapper();
     wrapper.setOutputStream( streamingOutput );
+    wrapper.setInputStream( is );
     wrapper.setRepositoryFile( repoFile );
     wrapper.setMimetype( is.getMimeType() );
+    wrapper.setContentLength( is.getContentLength() );
 
     return wrapper;
   }
@@ -956,6 +1155,18 @@ public class FileService {
     return getRepoWs().getDeletedFiles();
   }
 
+  /**
+   * Get one page of the deleted files of all users, most recently deleted first. Non administrators only get their
+   * own deleted files.
+   *
+   * @param offset number of deleted files to skip
+   * @param limit maximum number of deleted files to return, or a negative number for no limit
+   * @return
+   */
+  public List<RepositoryFileDto> doGetAllDeletedFiles( int offset, int limit ) {
+    return getRepoWs().getAllDeletedFiles( offset, limit );
+  }
+
   /**
    * Get metadata for a file by path id
    *
@@ -1366,6 +1577,54 @@ public class FileService {
     return tree;
   }
 
+  /**
+   * Same as {@link #doGetTree(String, Integer, String, Boolean, Boolean, Boolean)} without ACLs, but writes the tree
+   * as XML straight from the repository files instead of building the DTO tree first. The output is the same.
+   */
+  public StreamingOutput doGetTreeXmlStream( String pathId, Integer depth, String filter, Boolean showHidden,
+                                             Boolean includeSystemFolders ) {
+    String path = null;
+    if ( pathId == null || pathId.equals( FileUtils.PATH_SEPARATOR ) ) {
+      path = FileUtils.PATH_SEPARATOR;
+    } else if ( !pathId.startsWith( FileUtils.PATH_SEPARATOR ) ) {
+      path = idToPath( pathId );
+    }
+
+    RepositoryRequest repositoryRequest = getRepositoryRequest( path, showHidden, depth, filter );
+    repositoryRequest.setIncludeSystemFolders( includeSystemFolders );
+
+    final RepositoryFileTree tree = getRepoWs().getRepositoryFileTree( repositoryRequest );
+    final RepositoryFileXmlWriter writer =
+        new RepositoryFileXmlWriter( repositoryRequest, getTitleOrder( repositoryRequest ) );
+    return new StreamingOutput() {
+      @Override
+      public void write( OutputStream output ) throws IOException {
+        writer.writeTree( tree, new OutputStreamWriter( output, StandardCharsets.UTF_8 ) );
+      }
+    };
+  }
+
+  /**
+   * The order {@link #sortByLocaleTitle(Collator, List)} puts files in, applied to their titles; {@code null} when
+   * titles are not part of the output and the repository order is kept.
+   */
+  protected Comparator<String> getTitleOrder( RepositoryRequest repositoryRequest ) {
+    if ( !isShowingTitle( repositoryRequest ) ) {
+      return null;
+    }
+    final Collator collator = getCollator( Collator.PRIMARY );
+    return new Comparator<String>() {
+      @Override
+      public int compare( String title1, String title2 ) {
+        if ( collator.compare( title1, title2 ) == 0 ) {
+          return title1.compareTo( title2 ); // use lexical order if equals ignore case
+        }
+
+        return collator.compare( title1, title2 );
+      }
+    };
+  }
+
   public void sortByLocaleTitle( final Collator collator, final RepositoryFileTreeDto tree ) {
 
     if ( tree == null || tree.getChildren() == null || tree.getChildren().size() <= 0 ) {
@@ -1632,7 +1891,8 @@ public class FileService {
   }
 
   public int copy( InputStream input, OutputStream output ) throws IOException {
-    return IOUtils.copy( input, output );
+    long count = ByteRangeStreamingOutput.copy( input, output, -1, new byte[ ByteRangeStreamingOutput.BUFFER_SIZE ] );
+    return count > Integer.MAX_VALUE ? -1 : (int) count;
   }
 
   public RepositoryFileOutputStream getRepositoryFileOutputStream( String path ) {
@@ -1707,13 +1967,22 @@ public class FileService {
 
   public class RepositoryFileToStreamWrapper {
     private StreamingOutput outputStream;
+    private InputStream inputStream;
     private RepositoryFile repositoryFile;
     private String mimetype;
+    private long contentLength = -1;
 
     public void setOutputStream( StreamingOutput outputStream ) {
       this.outputStream = outputStream;
     }
 
+    /**
+     * @param inputStream the unread content stream behind {@link #getOutputStream()}, used to serve byte ranges
+     */
+    public void setInputStream( InputStream inputStream ) {
+      this.inputStream = inputStream;
+    }
+
     public void setRepositoryFile( RepositoryFile repositoryFile ) {
       this.repositoryFile = repositoryFile;
     }
@@ -1726,6 +1995,10 @@ public class FileService {
       return outputStream;
     }
 
+    public InputStream getInputStream() {
+      return inputStream;
+    }
+
     public String getMimetype() {
       return mimetype;
     }
@@ -1733,6 +2006,17 @@ public class FileService {
     public RepositoryFile getRepositoryFile() {
       return repositoryFile;
     }
+
+    /**
+     * @param contentLength the exact number of bytes behind {@link #getInputStream()}, or -1 if it is not known
+     */
+    public void setContentLength( long contentLength ) {
+      this.contentLength = contentLength;
+    }
+
+    public long getContentLength() {
+      return contentLength;
+    }
   }
 
   public List<RepositoryFileDto> doGetChildren( String pathId, String filter, Boolean showHidden,
@@ -1754,6 +2038,33 @@ public class FileService {
     return repositoryFileDtoList;
   }
 
+  /**
+   * Same as {@link #doGetChildren(String, String, Boolean, Boolean)} without ACLs, but writes the children as XML
+   * straight from the repository files instead of building the DTO list first. The output is the same.
+   */
+  public StreamingOutput doGetChildrenXmlStream( String pathId, String filter, Boolean showHidden ) {
+    List<RepositoryFile> children = Collections.emptyList();
+    RepositoryRequest repositoryRequest;
+    RepositoryFileDto repositoryFileDto = getRepoWs().getFile( FileUtils.idToPath( pathId ) );
+
+    if ( repositoryFileDto != null && isPathValid( repositoryFileDto.getPath() ) ) {
+      repositoryRequest = getRepositoryRequest( repositoryFileDto, showHidden, filter, false );
+      children = getRepoWs().getRepositoryFileChildren( repositoryRequest );
+    } else {
+      repositoryRequest = getRepositoryRequest( FileUtils.idToPath( pathId ), showHidden, 0, filter );
+    }
+
+    final List<RepositoryFile> files = children;
+    final RepositoryFileXmlWriter writer =
+        new RepositoryFileXmlWriter( repositoryRequest, getTitleOrder( repositoryRequest ) );
+    return new StreamingOutput() {
+      @Override
+      public void write( OutputStream output ) throws IOException {
+        writer.writeFiles( files, new OutputStreamWriter( output, StandardCharsets.UTF_8 ) );
+      }
+    };
+  }
+
   public boolean isShowingTitle( RepositoryRequest repositoryRequest ) {
     if ( repositoryRequest.getExcludeMemberSet() != null && !repositoryRequest.getExcludeMemberSet().isEmpty() ) {
       if ( repositoryRequest.getExcludeMemberSet().contains( "title" ) ) {
@@ -1800,11 +2111,16 @@ public class FileService {
     return collator;
   }
 
-  private PentahoPlatformExporter getBackupExporter() {
-    if ( backupExporter == null ) {
-      backupExporter = new PentahoPlatformExporter( getRepository() );
+  protected PentahoPlatformExporter createBackupExporter() {
+    PentahoPlatformExporter backupExporter = new PentahoPlatformExporter( getRepository() );
+    String threads = PentahoSystem.getSystemSetting( "system-backup-threads", null ); //$NON-NLS-1$
+    if ( threads != null ) {
+      try {
+        backupExporter.setExportThreads( Integer.parseInt( threads.trim() ) );
+      } catch ( NumberFormatException e ) {
+        logger.warn( "Ignoring invalid system-backup-threads setting: " + threads ); //$NON-NLS-1$
+      }
     }
-
     return backupExporter;
   }
 
@@ -0,0 +1,157 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.web.http.api.resources.utils;
+
+import org.apache.commons.lang.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * An inclusive byte range of a representation, as requested through an HTTP {@code Range} header (RFC 7233).
+ */
+public class ByteRange {
+
+  private static final String BYTES_UNIT = "bytes=";
+
+  private final long start;
+
+  private final long end;
+
+  public ByteRange( long start, long end ) {
+    this.start = start;
+    this.end = end;
+  }
+
+  public long getStart() {
+    return start;
+  }
+
+  public long getEnd() {
+    return end;
+  }
+
+  public long getLength() {
+    return end - start + 1;
+  }
+
+  /**
+   * @return the value of the {@code Content-Range} header for this range
+   */
+  public String toContentRange( long totalLength ) {
+    return "bytes " + start + "-" + end + "/" + totalLength;
+  }
+
+  /**
+   * Parses a {@code Range} header against a representation of {@code length} bytes. The returned ranges are sorted
+   * and overlapping or adjacent ranges are coalesced, so that they can be served from a single forward-only stream.
+   *
+   * @param header value of the {@code Range} header
+   * @param length total length of the representation
+   * @return {@code null} if the header is absent or malformed and should be ignored, an empty list if no range is
+   * satisfiable, otherwise the ranges to serve
+   */
+  public static List<ByteRange> parse( String header, long length ) {
+    if ( StringUtils.isBlank( header ) || !header.trim().startsWith( BYTES_UNIT ) ) {
+      return null;
+    }
+    List<ByteRange> ranges = new ArrayList<ByteRange>();
+    for ( String spec : header.trim().substring( BYTES_UNIT.length() ).split( "," ) ) {
+      spec = spec.trim();
+      int dash = spec.indexOf( '-' );
+      if ( dash < 0 ) {
+        return null;
+      }
+      String first = spec.substring( 0, dash ).trim();
+      String last = spec.substring( dash + 1 ).trim();
+      try {
+        if ( first.isEmpty() ) {
+          // suffix range: the last N bytes
+          long suffixLength = Long.parseLong( last );
+          if ( suffixLength > 0 && length > 0 ) {
+            ranges.add( new ByteRange( Math.max( 0, length - suffixLength ), length - 1 ) );
+          }
+        } else {
+          long start = Long.parseLong( first );
+          long end = last.isEmpty() ? length - 1 : Long.parseLong( last );
+          if ( end < start ) {
+            return null;
+          }
+          if ( start < length ) {
+            ranges.add( new ByteRange( start, Math.min( end, length - 1 ) ) );
+          }
+        }
+      } catch ( NumberFormatException e ) {
+        return null;
+      }
+    }
+    return coalesce( ranges );
+  }
+
+  private static List<ByteRange> coalesce( List<ByteRange> ranges ) {
+    if ( ranges.size() < 2 ) {
+      return ranges;
+    }
+    Collections.sort( ranges, new Comparator<ByteRange>() {
+      @Override
+      public int compare( ByteRange o1, ByteRange o2 ) {
+        return Long.compare( o1.start, o2.start );
+      }
+    } );
+    List<ByteRange> result = new ArrayList<ByteRange>();
+    ByteRange current = ranges.get( 0 );
+    for ( int i = 1; i < ranges.size(); i++ ) {
+      ByteRange next = ranges.get( i );
+      if ( next.start <= current.end + 1 ) {
+        current = new ByteRange( current.start, Math.max( current.end, next.end ) );
+      } else {
+        result.add( current );
+        current = next;
+      }
+    }
+    result.add( current );
+    return result;
+  }
+
+  @Override
+  public boolean equals( Object o ) {
+    if ( this == o ) {
+      return true;
+    }
+    if ( !( o instanceof ByteRange ) ) {
+      return false;
+    }
+    ByteRange other = (ByteRange) o;
+    return start == other.start && end == other.end;
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * Long.valueOf( start ).hashCode() + Long.valueOf( end ).hashCode();
+  }
+
+  @Override
+  public String toString() {
+    return start + "-" + end;
+  }
+}
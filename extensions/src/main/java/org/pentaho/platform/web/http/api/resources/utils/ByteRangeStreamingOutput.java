@@ -0,0 +1,141 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.web.http.api.resources.utils;
+
+import org.apache.commons.io.IOUtils;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.StreamingOutput;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Writes one or more {@link ByteRange}s of a stream, either as the raw bytes of a single range or as a
+ * {@code multipart/byteranges} body. The ranges must be sorted and non-overlapping, as returned by
+ * {@link ByteRange#parse(String, long)}, since the source stream is only read forward.
+ */
+public class ByteRangeStreamingOutput implements StreamingOutput {
+
+  /**
+   * Size of the copy buffer; large enough to move repository binaries in few system calls.
+   */
+  public static final int BUFFER_SIZE = 64 * 1024;
+
+  private static final String CRLF = "\r\n";
+
+  private final InputStream inputStream;
+
+  private final List<ByteRange> ranges;
+
+  private final long totalLength;
+
+  private final String contentType;
+
+  private final String boundary;
+
+  public ByteRangeStreamingOutput( InputStream inputStream, List<ByteRange> ranges, long totalLength,
+                                   String contentType ) {
+    this.inputStream = inputStream;
+    this.ranges = ranges;
+    this.totalLength = totalLength;
+    this.contentType = contentType;
+    this.boundary = UUID.randomUUID().toString().replace( "-", "" );
+  }
+
+  public boolean isMultipart() {
+    return ranges.size() > 1;
+  }
+
+  /**
+   * @return the media type of the response body
+   */
+  public String getResponseContentType() {
+    return isMultipart() ? "multipart/byteranges; boundary=" + boundary : contentType;
+  }
+
+  @Override
+  public void write( OutputStream output ) throws IOException, WebApplicationException {
+    byte[] buffer = new byte[ BUFFER_SIZE ];
+    long position = 0;
+    try {
+      for ( ByteRange range : ranges ) {
+        if ( isMultipart() ) {
+          StringBuilder partHeader = new StringBuilder();
+          partHeader.append( CRLF ).append( "--" ).append( boundary ).append( CRLF );
+          if ( contentType != null ) {
+            partHeader.append( "Content-Type: " ).append( contentType ).append( CRLF );
+          }
+          partHeader.append( "Content-Range: " ).append( range.toContentRange( totalLength ) ).append( CRLF )
+            .append( CRLF );
+          output.write( partHeader.toString().getBytes( StandardCharsets.US_ASCII ) );
+        }
+        skipFully( inputStream, range.getStart() - position );
+        copy( inputStream, output, range.getLength(), buffer );
+        position = range.getEnd() + 1;
+      }
+      if ( isMultipart() ) {
+        output.write( ( CRLF + "--" + boundary + "--" + CRLF ).getBytes( StandardCharsets.US_ASCII ) );
+      }
+    } finally {
+      IOUtils.closeQuietly( inputStream );
+    }
+  }
+
+  /**
+   * Copies {@code count} bytes, or everything up to the end of the stream when {@code count} is negative, using the
+   * given buffer.
+   *
+   * @return the number of bytes copied
+   */
+  public static long copy( InputStream input, OutputStream output, long count, byte[] buffer ) throws IOException {
+    long copied = 0;
+    while ( count < 0 || copied < count ) {
+      int toRead = count < 0 ? buffer.length : (int) Math.min( buffer.length, count - copied );
+      int read = input.read( buffer, 0, toRead );
+      if ( read == -1 ) {
+        break;
+      }
+      output.write( buffer, 0, read );
+      copied += read;
+    }
+    return copied;
+  }
+
+  private static void skipFully( InputStream input, long count ) throws IOException {
+    long remaining = count;
+    while ( remaining > 0 ) {
+      long skipped = input.skip( remaining );
+      if ( skipped <= 0 ) {
+        // some streams report 0 from skip() without being at the end; fall back to reading
+        if ( input.read() == -1 ) {
+          throw new EOFException();
+        }
+        skipped = 1;
+      }
+      remaining -= skipped;
+    }
+  }
+}
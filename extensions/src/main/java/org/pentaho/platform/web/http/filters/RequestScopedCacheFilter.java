@@ -0,0 +1,57 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.web.http.filters;
+
+import org.pentaho.platform.engine.core.system.RequestScopedCache;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import java.io.IOException;
+
+/**
+ * Opens a {@link RequestScopedCache} for the duration of each request, so that repository lookups repeated while
+ * serving it are only made once.
+ */
+public class RequestScopedCacheFilter implements Filter {
+
+  public void init( FilterConfig filterConfig ) throws ServletException {
+  }
+
+  public void destroy() {
+  }
+
+  public void doFilter( ServletRequest request, ServletResponse response, FilterChain chain ) throws IOException,
+    ServletException {
+    // a forward or include runs the filter again inside the scope of the outer request
+    boolean opened = RequestScopedCache.begin();
+    try {
+      chain.doFilter( request, response );
+    } finally {
+      if ( opened ) {
+        RequestScopedCache.end();
+      }
+    }
+  }
+}
@@ -0,0 +1,141 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.plugin.services.exporter;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class BackupIndexTest {
+
+  @Test
+  public void testWriteAndRead() throws Exception {
+    BackupIndex index = new BackupIndex( null );
+    index.add( "/public/a b.prpt", "public/a%20b.prpt", 1000L, 12L, "abc", "fp" );
+    index.add( "/public/tab\tname.xaction", "public/tab%09name.xaction", 2000L, 3L, "def", "fp" );
+
+    BackupIndex read = BackupIndex.read( new ByteArrayInputStream( toBytes( index ) ) );
+
+    assertEquals( index.getBackupId(), read.getBackupId() );
+    assertNull( read.getBaseBackupId() );
+    assertFalse( read.isIncremental() );
+    assertEquals( 2, read.getFileCount() );
+    assertEquals( 2, read.getContentCount() );
+    BackupIndex.Entry entry = read.getEntry( "/public/tab\tname.xaction" );
+    assertEquals( "public/tab%09name.xaction", entry.getZipEntryName() );
+    assertEquals( 2000L, entry.getLastModified() );
+    assertEquals( 3L, entry.getSize() );
+    assertEquals( "def", entry.getChecksum() );
+    assertEquals( "fp", entry.getFingerprint() );
+    assertEquals( index.getBackupId(), entry.getBackupId() );
+  }
+
+  @Test
+  public void testIncremental() throws Exception {
+    BackupIndex full = new BackupIndex( null );
+    full.add( "/public/unchanged.prpt", "public/unchanged.prpt", 1000L, 12L, "abc", "fp" );
+    full.add( "/public/changed.prpt", "public/changed.prpt", 1000L, 12L, "abc", "fp" );
+
+    assertTrue( full.isUnchanged( "/public/unchanged.prpt", 1000L, "fp" ) );
+    assertFalse( full.isUnchanged( "/public/changed.prpt", 2000L, "fp" ) );
+    assertFalse( full.isUnchanged( "/public/new.prpt", 1000L, "fp" ) );
+    assertFalse( full.isUnchanged( "/public/unchanged.prpt", 0L, "fp" ) );
+    // the ACL or locale properties changed
+    assertFalse( full.isUnchanged( "/public/unchanged.prpt", 1000L, "other" ) );
+
+    BackupIndex incremental = new BackupIndex( full );
+    incremental.carryOver( full.getEntry( "/public/unchanged.prpt" ) );
+    incremental.add( "/public/changed.prpt", "public/changed.prpt", 2000L, 14L, "ghi", "fp" );
+
+    BackupIndex read = BackupIndex.read( new ByteArrayInputStream( toBytes( incremental ) ) );
+    assertTrue( read.isIncremental() );
+    assertEquals( full.getBackupId(), read.getBaseBackupId() );
+    assertEquals( 2, read.getFileCount() );
+    assertEquals( 1, read.getContentCount() );
+    assertEquals( full.getBackupId(), read.getEntry( "/public/unchanged.prpt" ).getBackupId() );
+    assertEquals( incremental.getBackupId(), read.getEntry( "/public/changed.prpt" ).getBackupId() );
+  }
+
+  @Test
+  public void testReadFromArchive() throws Exception {
+    BackupIndex index = new BackupIndex( null );
+    index.add( "/public/a.prpt", "public/a.prpt", 1000L, 1L, "abc", "fp" );
+
+    ByteArrayOutputStream archive = new ByteArrayOutputStream();
+    ZipOutputStream zos = new ZipOutputStream( archive );
+    zos.putNextEntry( new ZipEntry( "public/a.prpt" ) );
+    zos.write( 'a' );
+    zos.closeEntry();
+    zos.putNextEntry( new ZipEntry( BackupIndex.BACKUP_INDEX_FILENAME ) );
+    index.write( zos );
+    zos.closeEntry();
+    zos.close();
+
+    BackupIndex read = BackupIndex.read( new ByteArrayInputStream( archive.toByteArray() ) );
+    assertEquals( index.getBackupId(), read.getBackupId() );
+    assertEquals( 1, read.getFileCount() );
+  }
+
+  @Test( expected = IOException.class )
+  public void testReadTruncated() throws Exception {
+    BackupIndex index = new BackupIndex( null );
+    index.add( "/public/a.prpt", "public/a.prpt", 1000L, 1L, "abc", "fp" );
+    index.add( "/public/b.prpt", "public/b.prpt", 1000L, 1L, "abc", "fp" );
+    String text = new String( toBytes( index ), "UTF-8" );
+    String truncated = text.substring( 0, text.lastIndexOf( '\n', text.length() - 2 ) + 1 );
+
+    BackupIndex.read( new ByteArrayInputStream( truncated.getBytes( "UTF-8" ) ) );
+  }
+
+  @Test
+  public void testReadVersion1() throws Exception {
+    String text = "# Pentaho system backup index, version 1\nbackupId=full\ncreated=1\ncontentCount=1\nfileCount=1\n"
+      + "full\t1000\t1\tabc\tpublic%2Fa.prpt\t%2Fpublic%2Fa.prpt\n";
+
+    BackupIndex read = BackupIndex.read( new ByteArrayInputStream( text.getBytes( "UTF-8" ) ) );
+
+    BackupIndex.Entry entry = read.getEntry( "/public/a.prpt" );
+    assertEquals( "public/a.prpt", entry.getZipEntryName() );
+    assertNull( entry.getFingerprint() );
+    // without a fingerprint nothing is known about the ACL and locales, so the file is backed up again
+    assertFalse( read.isUnchanged( "/public/a.prpt", 1000L, "fp" ) );
+  }
+
+  @Test( expected = IOException.class )
+  public void testReadNotAnIndex() throws Exception {
+    BackupIndex.read( new ByteArrayInputStream( "<exportManifest/>".getBytes( "UTF-8" ) ) );
+  }
+
+  private byte[] toBytes( BackupIndex index ) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    index.write( out );
+    return out.toByteArray();
+  }
+}
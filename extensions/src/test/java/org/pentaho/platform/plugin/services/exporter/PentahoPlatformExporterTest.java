@@ -33,6 +33,10 @@ import org.pentaho.platform.api.engine.IUserRoleListService;
 import org.pentaho.platform.api.mt.ITenant;
 import org.pentaho.platform.api.repository.datasource.IDatasourceMgmtService;
 import org.pentaho.platform.api.repository2.unified.IUnifiedRepository;
+import org.pentaho.platform.api.repository2.unified.RepositoryFile;
+import org.pentaho.platform.api.repository2.unified.RepositoryFileAcl;
+import org.pentaho.platform.api.repository2.unified.RepositoryFilePermission;
+import org.pentaho.platform.api.repository2.unified.RepositoryFileSid;
 import org.pentaho.platform.api.scheduler2.ComplexJobTrigger;
 import org.pentaho.platform.api.scheduler2.IScheduler;
 import org.pentaho.platform.api.scheduler2.Job;
@@ -62,10 +66,13 @@ import org.springframework.security.core.userdetails.UserDetailsService;
 import java.io.InputStream;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Properties;
 import java.util.Set;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
@@ -73,6 +80,7 @@ import java.util.zip.ZipOutputStream;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.spy;
@@ -399,4 +407,30 @@ public class PentahoPlatformExporterTest {
     assertFalse( exporter.isExportCandidate( "/etc/models" ) );
     assertFalse( exporter.isExportCandidate( "/etc/pdi" ) );
   }
+
+  @Test
+  public void testFingerprintCoversAclAndLocales() {
+    RepositoryFile file = new RepositoryFile.Builder( "fileId", "sales.prpt" ).path( "/public/sales.prpt" ).build();
+    RepositoryFileAcl acl = new RepositoryFileAcl.Builder( "admin" )
+      .ace( "Authenticated", RepositoryFileSid.Type.ROLE, RepositoryFilePermission.READ ).build();
+    Properties properties = new Properties();
+    properties.setProperty( "file.title", "Sales" );
+    when( repo.getAvailableLocalesForFileById( "fileId" ) ).thenReturn( Collections.singletonList( Locale.ROOT ) );
+    when( repo.getLocalePropertiesForFileById( "fileId", "" ) ).thenReturn( properties );
+
+    String fingerprint = exporter.getFingerprint( file, acl );
+    assertEquals( fingerprint, exporter.getFingerprint( file, new RepositoryFileAcl.Builder( acl ).build() ) );
+
+    // changing the ACL or a locale property does not touch the last modified date, but must change the fingerprint
+    RepositoryFileAcl changedAcl = new RepositoryFileAcl.Builder( acl )
+      .ace( "Authenticated", RepositoryFileSid.Type.ROLE, RepositoryFilePermission.READ,
+        RepositoryFilePermission.WRITE ).build();
+    assertNotEquals( fingerprint, exporter.getFingerprint( file, changedAcl ) );
+    properties.setProperty( "file.title", "Revenue" );
+    assertNotEquals( fingerprint, exporter.getFingerprint( file, acl ) );
+    properties.setProperty( "file.title", "Sales" );
+    assertNotEquals( fingerprint,
+      exporter.getFingerprint( new RepositoryFile.Builder( file ).hidden( true ).build(), acl ) );
+    assertEquals( fingerprint, exporter.getFingerprint( file, acl ) );
+  }
 }
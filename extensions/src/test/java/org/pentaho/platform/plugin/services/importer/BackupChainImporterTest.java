@@ -0,0 +1,190 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.plugin.services.importer;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.pentaho.platform.api.repository2.unified.IUnifiedRepository;
+import org.pentaho.platform.api.repository2.unified.RepositoryFile;
+import org.pentaho.platform.plugin.services.exporter.BackupIndex;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class BackupChainImporterTest {
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private IUnifiedRepository repository;
+
+  private BackupChainImporter chainImporter;
+
+  private BackupIndex fullIndex;
+
+  private File full;
+
+  private BackupIndex incrementalIndex;
+
+  private File incremental;
+
+  @Before
+  public void setUp() throws Exception {
+    repository = mock( IUnifiedRepository.class );
+    chainImporter = new BackupChainImporter( repository );
+
+    Map<String, String> fullContent = new LinkedHashMap<String, String>();
+    fullContent.put( "/public/a.prpt", "a" );
+    fullContent.put( "/public/b.prpt", "b" );
+    fullContent.put( "/public/deleted.prpt", "deleted" );
+    fullIndex = new BackupIndex( null );
+    full = writeArchive( fullIndex, fullContent );
+
+    Map<String, String> changedContent = new LinkedHashMap<String, String>();
+    changedContent.put( "/public/b.prpt", "b, changed" );
+    incrementalIndex = new BackupIndex( fullIndex );
+    incrementalIndex.carryOver( fullIndex.getEntry( "/public/a.prpt" ) );
+    incremental = writeArchive( incrementalIndex, changedContent );
+  }
+
+  @Test
+  public void testRestoreImportsOldestFirst() throws Exception {
+    RepositoryFile deleted = new RepositoryFile.Builder( "deleted.prpt" ).id( "deletedId" )
+      .path( "/public/deleted.prpt" ).build();
+    when( repository.getFile( "/public/deleted.prpt" ) ).thenReturn( deleted );
+    final List<File> imported = new ArrayList<File>();
+
+    int restored = chainImporter.restore( Arrays.asList( incremental, full ),
+      new BackupChainImporter.ArchiveImporter() {
+        @Override
+        public void importArchive( File archive ) {
+          imported.add( archive );
+        }
+      } );
+
+    assertEquals( Arrays.asList( full, incremental ), imported );
+    assertEquals( 2, restored );
+    verify( repository ).deleteFile( eq( "deletedId" ), anyString() );
+    verify( repository, never() ).deleteFile( eq( "deletedId" ), eq( true ), anyString() );
+  }
+
+  @Test
+  public void testVerifyRequiresFullBackup() throws Exception {
+    try {
+      chainImporter.verify( Arrays.asList( incremental ) );
+      fail();
+    } catch ( PlatformImportException e ) {
+      assertTrue( e.getMessage().contains( "full backup" ) );
+    }
+  }
+
+  @Test
+  public void testVerifyRejectsBrokenChain() throws Exception {
+    BackupIndex otherIndex = new BackupIndex( new BackupIndex( null ) );
+    File other = writeArchive( otherIndex, new LinkedHashMap<String, String>() );
+    try {
+      chainImporter.verify( Arrays.asList( full, other ) );
+      fail();
+    } catch ( PlatformImportException e ) {
+      assertTrue( e.getMessage().contains( "single chain" ) );
+    }
+  }
+
+  @Test
+  public void testVerifyDetectsDamagedContent() throws Exception {
+    BackupIndex damagedIndex = new BackupIndex( null );
+    File damaged = temporaryFolder.newFile( "damaged.zip" );
+    damagedIndex.add( "/public/a.prpt", "public/a.prpt", 1000L, 1L, checksum( "a" ), null );
+    try ( ZipOutputStream zos = new ZipOutputStream( new FileOutputStream( damaged ) ) ) {
+      zos.putNextEntry( new ZipEntry( "public/a.prpt" ) );
+      zos.write( "x".getBytes( StandardCharsets.UTF_8 ) );
+      zos.closeEntry();
+      zos.putNextEntry( new ZipEntry( BackupIndex.BACKUP_INDEX_FILENAME ) );
+      damagedIndex.write( zos );
+      zos.closeEntry();
+    }
+    try {
+      chainImporter.verify( Arrays.asList( damaged ) );
+      fail();
+    } catch ( PlatformImportException e ) {
+      assertTrue( e.getMessage().contains( "damaged" ) );
+    }
+  }
+
+  @Test
+  public void testVerifyDetectsMissingContent() throws Exception {
+    BackupIndex missingIndex = new BackupIndex( null );
+    missingIndex.add( "/public/a.prpt", "public/a.prpt", 1000L, 1L, checksum( "a" ), null );
+    File missing = writeArchive( missingIndex, new LinkedHashMap<String, String>() );
+    try {
+      chainImporter.verify( Arrays.asList( missing ) );
+      fail();
+    } catch ( PlatformImportException e ) {
+      assertTrue( e.getMessage().contains( "missing" ) );
+    }
+  }
+
+  private File writeArchive( BackupIndex index, Map<String, String> content ) throws IOException {
+    File archive = temporaryFolder.newFile( index.getBackupId() + ".zip" );
+    try ( ZipOutputStream zos = new ZipOutputStream( new FileOutputStream( archive ) ) ) {
+      for ( Map.Entry<String, String> file : content.entrySet() ) {
+        String zipEntryName = file.getKey().substring( 1 );
+        byte[] bytes = file.getValue().getBytes( StandardCharsets.UTF_8 );
+        zos.putNextEntry( new ZipEntry( zipEntryName ) );
+        zos.write( bytes );
+        zos.closeEntry();
+        index.add( file.getKey(), zipEntryName, 1000L, bytes.length, checksum( file.getValue() ), null );
+      }
+      zos.putNextEntry( new ZipEntry( BackupIndex.BACKUP_INDEX_FILENAME ) );
+      index.write( zos );
+      zos.closeEntry();
+    }
+    return archive;
+  }
+
+  private String checksum( String content ) {
+    MessageDigest digest = BackupIndex.createDigest();
+    digest.update( content.getBytes( StandardCharsets.UTF_8 ) );
+    return BackupIndex.toChecksum( digest );
+  }
+}
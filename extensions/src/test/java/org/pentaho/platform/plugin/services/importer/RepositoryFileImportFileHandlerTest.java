@@ -20,6 +20,7 @@
 
 package org.pentaho.platform.plugin.services.importer;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.EnumSet;
 import java.util.List;
@@ -34,6 +35,8 @@ import org.pentaho.platform.api.repository2.unified.IUnifiedRepository;
 import org.pentaho.platform.api.repository2.unified.RepositoryFile;
 import org.pentaho.platform.api.repository2.unified.RepositoryFileAce;
 import org.pentaho.platform.api.repository2.unified.RepositoryFileAcl;
+import org.pentaho.platform.api.repository2.unified.RepositoryFileBatch;
+import org.pentaho.platform.api.repository2.unified.RepositoryFileBatchResult;
 import org.pentaho.platform.api.repository2.unified.RepositoryFilePermission;
 import org.pentaho.platform.api.repository2.unified.RepositoryFileSid;
 import org.pentaho.platform.core.mimetype.MimeType;
@@ -192,6 +195,34 @@ public class RepositoryFileImportFileHandlerTest {
 
   }
 
+  @Test
+  public void testImportExistingFileWritesContentAndAclInOneBatch() throws Exception {
+    final List<RepositoryFileBatch> batches = new ArrayList<RepositoryFileBatch>();
+    ImportTester importTester = new ImportTestBuilder().fileExists( true ).hasManifest( true )
+        .overwriteFileIfExists( true ).applyAclSettings( true ).overwriteAclSettings( true ).build().initialSetup();
+    mockRepository = new MockUnifiedRepository( userProvider ) {
+      @Override
+      public RepositoryFileBatchResult applyBatch( RepositoryFileBatch batch ) {
+        batches.add( batch );
+        return super.applyBatch( batch );
+      }
+    };
+    fileHandler.setRepository( mockRepository );
+    importTester.execute();
+
+    assertEquals( 1, batches.size() );
+    assertEquals( 1, batches.get( 0 ).size() );
+    RepositoryFileBatch.Operation operation = batches.get( 0 ).getOperations().get( 0 );
+    assertEquals( RepositoryFileBatch.Type.UPDATE_FILE, operation.getType() );
+    assertNotNull( operation.getAcl() );
+    assertHasManifestOwner( operation.getAcl() );
+
+    RepositoryFile repositoryFile = mockRepository.getFile( PATH + "/" + TARGET_RESOURCE_NAME );
+    RepositoryFileAcl acl = mockRepository.getAcl( repositoryFile.getId() );
+    assertHasManifestPermissions( acl );
+    assertHasManifestOwner( acl );
+  }
+
   /*
    * This case tests attempt to overwrite a file when flag does not allow overwriting the file
    */
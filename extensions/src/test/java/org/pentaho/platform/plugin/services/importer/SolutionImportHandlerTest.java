@@ -20,12 +20,17 @@
 
 package org.pentaho.platform.plugin.services.importer;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 import javax.ws.rs.core.Response;
 
@@ -36,18 +41,29 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.ArgumentMatcher;
+import org.mockito.InOrder;
 import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.pentaho.platform.api.engine.IPentahoSession;
 import org.pentaho.platform.api.engine.security.userroledao.AlreadyExistsException;
 import org.pentaho.platform.api.engine.security.userroledao.IUserRoleDao;
 import org.pentaho.platform.api.mimetype.IMimeType;
+import org.pentaho.platform.api.mimetype.IPlatformMimeResolver;
 import org.pentaho.platform.api.mt.ITenant;
+import org.pentaho.platform.api.repository2.unified.IPlatformImportBundle;
 import org.pentaho.platform.api.repository2.unified.IUnifiedRepository;
 import org.pentaho.platform.api.repository2.unified.RepositoryFile;
+import org.pentaho.platform.api.repository2.unified.UnifiedRepositoryAccessDeniedException;
+import org.pentaho.platform.api.repository2.unified.UnifiedRepositoryException;
 import org.pentaho.platform.api.usersettings.IAnyUserSettingService;
 import org.pentaho.platform.api.usersettings.IUserSettingService;
 import org.pentaho.platform.api.usersettings.pojo.IUserSetting;
+import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
+import org.pentaho.platform.engine.core.system.StandaloneSession;
 import org.pentaho.platform.plugin.services.importexport.ExportManifestUserSetting;
+import org.pentaho.platform.plugin.services.importexport.IRepositoryImportLogger;
 import org.pentaho.platform.plugin.services.importexport.ImportSession;
 import org.pentaho.platform.plugin.services.importexport.ImportSession.ManifestFile;
 import org.pentaho.platform.plugin.services.importexport.ImportSource.IRepositoryFileBundle;
@@ -682,8 +698,176 @@ public class SolutionImportHandlerTest {
         manifestFile );
   }
 
+  @Test
+  public void testImportFile_writesFilesInParallelAndReportsThemInOrder() throws Exception {
+    IRepositoryImportLogger importLogger = Mockito.mock( IRepositoryImportLogger.class );
+    Mockito.when( importLogger.hasLogger() ).thenReturn( true );
+    IPlatformImporter importer = mockParallelImporter( importLogger );
+    final PlatformImportException failure = new PlatformImportException( "file3 failed" );
+    Mockito.doThrow( failure ).when( importer ).importFile( Mockito.argThat( new BundleNameMatcher( "file3.txt" ) ) );
+
+    importHandler.setImportThreads( 3 );
+    importHandler.importFile( solutionArchive( 5 ) );
+
+    Mockito.verify( importer, Mockito.times( 6 ) ).importFile( Mockito.any( IPlatformImportBundle.class ) );
+    InOrder inOrder = Mockito.inOrder( importLogger );
+    for ( int i = 1; i <= 5; i++ ) {
+      inOrder.verify( importLogger ).setCurrentFilePath( Mockito.endsWith( "file" + i + ".txt" ) );
+      if ( i == 3 ) {
+        inOrder.verify( importLogger ).error( failure );
+      }
+    }
+  }
+
+  @Test
+  public void testImportFile_accessDeniedOnWorkerEndsLoggedImport() throws Exception {
+    IRepositoryImportLogger importLogger = Mockito.mock( IRepositoryImportLogger.class );
+    Mockito.when( importLogger.hasLogger() ).thenReturn( true );
+    IPlatformImporter importer = mockParallelImporter( importLogger );
+    final PlatformImportException failure = new PlatformImportException( "file3 failed",
+      new UnifiedRepositoryException( new UnifiedRepositoryAccessDeniedException( "no write access" ) ) );
+    Mockito.doThrow( failure ).when( importer ).importFile( Mockito.argThat( new BundleNameMatcher( "file3.txt" ) ) );
+
+    importHandler.setImportThreads( 3 );
+    try {
+      importHandler.importFile( solutionArchive( 5 ) );
+      Assert.fail( "the denied access should end the import" );
+    } catch ( UnifiedRepositoryAccessDeniedException e ) {
+      // expected, as when the file is imported on the calling thread
+    }
+
+    InOrder inOrder = Mockito.inOrder( importLogger );
+    inOrder.verify( importLogger ).setCurrentFilePath( Mockito.endsWith( "file3.txt" ) );
+    inOrder.verify( importLogger ).error( failure );
+    Mockito.verify( importLogger, Mockito.never() ).setCurrentFilePath( Mockito.endsWith( "file4.txt" ) );
+  }
+
+  @Test
+  public void testImportFile_failureWithoutLogStopsQueuedFiles() throws Exception {
+    IPlatformImporter importer = mockParallelImporter( null );
+    final PlatformImportException failure = new PlatformImportException( "file2 failed" );
+    Mockito.doThrow( failure ).when( importer ).importFile( Mockito.argThat( new BundleNameMatcher( "file2.txt" ) ) );
+
+    // with one worker no file handed out after the failed one can have been started
+    importHandler.setImportThreads( 1 );
+    try {
+      importHandler.importFile( solutionArchive( 5 ) );
+      Assert.fail( "the failure should end the import" );
+    } catch ( PlatformImportException e ) {
+      Assert.assertSame( failure, e );
+    }
+
+    Mockito.verify( importer ).importFile( Mockito.argThat( new BundleNameMatcher( "file1.txt" ) ) );
+    for ( int i = 3; i <= 5; i++ ) {
+      Mockito.verify( importer, Mockito.never() )
+        .importFile( Mockito.argThat( new BundleNameMatcher( "file" + i + ".txt" ) ) );
+    }
+  }
+
+  @Test
+  public void testImportFile_workersGetTheirOwnSession() throws Exception {
+    IPlatformImporter importer = mockParallelImporter( null );
+    final List<IPentahoSession> workerSessions = Collections.synchronizedList( new ArrayList<IPentahoSession>() );
+    Mockito.doAnswer( new Answer<Void>() {
+      @Override
+      public Void answer( InvocationOnMock invocation ) {
+        // the folder is created on the calling thread
+        if ( ( (IPlatformImportBundle) invocation.getArguments()[0] ).getName().endsWith( ".txt" ) ) {
+          workerSessions.add( PentahoSessionHolder.getSession() );
+        }
+        return null;
+      }
+    } ).when( importer ).importFile( Mockito.any( IPlatformImportBundle.class ) );
+
+    StandaloneSession session = new StandaloneSession( "suzy", "suzy-session" );
+    session.setAuthenticated( "tenant0", "suzy" );
+    session.setAttribute( "attribute", "value" );
+    IPentahoSession previousSession = PentahoSessionHolder.getSession();
+    PentahoSessionHolder.setSession( session );
+    try {
+      importHandler.setImportThreads( 3 );
+      importHandler.importFile( solutionArchive( 5 ) );
+    } finally {
+      PentahoSessionHolder.setSession( previousSession );
+    }
+
+    Assert.assertEquals( 5, workerSessions.size() );
+    for ( IPentahoSession workerSession : workerSessions ) {
+      Assert.assertNotSame( session, workerSession );
+      Assert.assertEquals( "suzy", workerSession.getName() );
+      Assert.assertEquals( "suzy-session", workerSession.getId() );
+      Assert.assertTrue( workerSession.isAuthenticated() );
+      Assert.assertEquals( "tenant0", workerSession.getAttribute( IPentahoSession.TENANT_ID_KEY ) );
+      Assert.assertEquals( "value", workerSession.getAttribute( "attribute" ) );
+    }
+  }
+
+  /**
+   * An archive with a folder that holds {@code files} text files, which the import hands to worker threads.
+   */
+  private IPlatformImportBundle solutionArchive( int files ) throws IOException {
+    ByteArrayOutputStream zip = new ByteArrayOutputStream();
+    ZipOutputStream zos = new ZipOutputStream( zip );
+    zos.putNextEntry( new ZipEntry( "folder/" ) );
+    zos.closeEntry();
+    for ( int i = 1; i <= files; i++ ) {
+      zos.putNextEntry( new ZipEntry( "folder/file" + i + ".txt" ) );
+      zos.write( ( "content " + i ).getBytes( "UTF-8" ) );
+      zos.closeEntry();
+    }
+    zos.close();
+    ImportSession.getSession().setManifest( null );
+    return new RepositoryFileImportBundle.Builder().input( new ByteArrayInputStream( zip.toByteArray() ) )
+      .path( "/public" ).name( "solution.zip" ).build();
+  }
+
+  private IPlatformImporter mockParallelImporter( IRepositoryImportLogger importLogger ) {
+    Mockito.when( solutionHelper.isInApprovedExtensionList( Mockito.anyString() ) ).thenReturn( true );
+    Mockito.when( solutionHelper.getMime( Mockito.anyString() ) ).thenReturn( "text/plain" );
+    Mockito.when( repository.getFile( Mockito.anyString() ) )
+      .thenReturn( new RepositoryFile.Builder( "folder" ).folder( true ).build() );
+    mockToPentahoSystem( IPlatformMimeResolver.class );
+
+    Map<String, IPlatformImportHandler> handlers = new HashMap<>();
+    handlers.put( "text/plain", Mockito.mock( RepositoryFileImportFileHandler.class ) );
+    IPlatformImporter importer = mockToPentahoSystem( IPlatformImporter.class );
+    Mockito.when( importer.getHandlers() ).thenReturn( handlers );
+    Mockito.when( importer.getRepositoryImportLogger() ).thenReturn( importLogger );
+    return importer;
+  }
+
+  private static class BundleNameMatcher extends ArgumentMatcher<IPlatformImportBundle> {
+    private final String name;
+
+    BundleNameMatcher( String name ) {
+      this.name = name;
+    }
+
+    @Override
+    public boolean matches( Object argument ) {
+      return name.equals( ( (IPlatformImportBundle) argument ).getName() );
+    }
+  }
+
+  @Test
+  public void testReportUnchangedFiles() throws Exception {
+    IRepositoryImportLogger importLogger = Mockito.mock( IRepositoryImportLogger.class );
+    Mockito.when( importLogger.hasLogger() ).thenReturn( true );
+    IPlatformImporter importer = Mockito.mock( IPlatformImporter.class );
+    Mockito.when( importer.getRepositoryImportLogger() ).thenReturn( importLogger );
+
+    importHandler.reportUnchangedFiles( importer );
+    Mockito.verify( importLogger, Mockito.never() ).info( Mockito.anyString() );
+
+    importHandler.getImportSession().getUnchangedFiles().add( "/public/a.prpt" );
+    importHandler.getImportSession().getUnchangedFiles().add( "/public/b.prpt" );
+    importHandler.reportUnchangedFiles( importer );
+    Mockito.verify( importLogger ).info( Mockito.startsWith( "2 file(s)" ) );
+  }
+
   @After
   public void tearDown() throws Exception {
+    ImportSession.getSession().getUnchangedFiles().clear();
     ImportSession.getSession().getImportedScheduleJobIds().clear();
     PentahoSystem.clearObjectFactory();
   }
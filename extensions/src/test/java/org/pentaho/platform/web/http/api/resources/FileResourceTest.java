@@ -1021,6 +1021,19 @@ public class FileResourceTest {
     verify( fileResource.fileService, times( 1 ) ).doGetPathsAccessList( pathsWrapper );
   }
 
+  @Test
+  public void testDoGetAccessMasks() {
+    StringListWrapper pathsWrapper = mock( StringListWrapper.class );
+
+    List<Setting> mockList = mock( List.class );
+    doReturn( mockList ).when( fileResource.fileService ).doGetAccessMasks( pathsWrapper, "1|2" );
+
+    List<Setting> testList = fileResource.doGetAccessMasks( "1|2", pathsWrapper );
+    assertEquals( mockList, testList );
+
+    verify( fileResource.fileService, times( 1 ) ).doGetAccessMasks( pathsWrapper, "1|2" );
+  }
+
   @Test
   public void testDoGetCanAccessList() {
 
@@ -1337,6 +1350,17 @@ public class FileResourceTest {
     verify( fileResource.fileService, times( 1 ) ).doGetDeletedFiles();
   }
 
+  @Test
+  public void testDoGetAllDeletedFiles() {
+    List<RepositoryFileDto> mockList = mock( List.class );
+    doReturn( mockList ).when( fileResource.fileService ).doGetAllDeletedFiles( 20, 10 );
+
+    List<RepositoryFileDto> testList = fileResource.doGetAllDeletedFiles( 20, 10 );
+    assertEquals( mockList, testList );
+
+    verify( fileResource.fileService, times( 1 ) ).doGetAllDeletedFiles( 20, 10 );
+  }
+
   @Test
   public void testDoGetMetadata() throws Exception {
 
@@ -1497,4 +1521,65 @@ public class FileResourceTest {
     assertTrue( document.getRootElement().getStringValue().equals( "true" ) );
   }
 
+  @Test
+  public void testBuildOkResponseServesByteRange() {
+    RepositoryFile repositoryFile = mock( RepositoryFile.class );
+    when( repositoryFile.getName() ).thenReturn( "report.pdf" );
+    when( repositoryFile.getId() ).thenReturn( FILE_ID );
+    when( repositoryFile.getVersionId() ).thenReturn( "1.3" );
+    FileService.RepositoryFileToStreamWrapper wrapper = mock( FileService.RepositoryFileToStreamWrapper.class );
+    when( wrapper.getRepositoryFile() ).thenReturn( repositoryFile );
+    when( wrapper.getMimetype() ).thenReturn( "application/pdf" );
+    when( wrapper.getContentLength() ).thenReturn( 10L );
+    when( wrapper.getInputStream() ).thenReturn( new java.io.ByteArrayInputStream( "0123456789".getBytes() ) );
+    when( fileResource.httpServletRequest.getHeader( "Range" ) ).thenReturn( "bytes=2-5" );
+    when( fileResource.httpServletRequest.getDateHeader( anyString() ) ).thenReturn( -1L );
+
+    Response response = fileResource.buildOkResponse( wrapper );
+
+    assertEquals( 206, response.getStatus() );
+    assertEquals( "bytes 2-5/10", response.getMetadata().getFirst( "Content-Range" ) );
+    assertEquals( "bytes", response.getMetadata().getFirst( "Accept-Ranges" ) );
+    assertEquals( "\"" + FILE_ID + "-1.3\"", response.getMetadata().getFirst( "ETag" ) );
+    verify( wrapper, never() ).getOutputStream();
+  }
+
+  @Test
+  public void testBuildOkResponseIgnoresRangeWithoutExactLength() {
+    RepositoryFile repositoryFile = mock( RepositoryFile.class );
+    when( repositoryFile.getName() ).thenReturn( "report.pdf" );
+    when( repositoryFile.getId() ).thenReturn( FILE_ID );
+    when( repositoryFile.getVersionId() ).thenReturn( "1.3" );
+    // the stored file size is only an estimate and must not be used to answer a range request
+    when( repositoryFile.getFileSize() ).thenReturn( 4L );
+    FileService.RepositoryFileToStreamWrapper wrapper = mock( FileService.RepositoryFileToStreamWrapper.class );
+    when( wrapper.getRepositoryFile() ).thenReturn( repositoryFile );
+    when( wrapper.getMimetype() ).thenReturn( "application/pdf" );
+    when( wrapper.getInputStream() ).thenReturn( new java.io.ByteArrayInputStream( "0123456789".getBytes() ) );
+    when( wrapper.getContentLength() ).thenReturn( -1L );
+    when( fileResource.httpServletRequest.getHeader( "Range" ) ).thenReturn( "bytes=0-" );
+    when( fileResource.httpServletRequest.getDateHeader( anyString() ) ).thenReturn( -1L );
+
+    Response response = fileResource.buildOkResponse( wrapper );
+
+    assertEquals( Status.OK.getStatusCode(), response.getStatus() );
+    assertNull( response.getMetadata().getFirst( "Accept-Ranges" ) );
+    assertNull( response.getMetadata().getFirst( "Content-Range" ) );
+  }
+
+  @Test
+  public void testBuildOkResponseNotModified() {
+    RepositoryFile repositoryFile = mock( RepositoryFile.class );
+    when( repositoryFile.getName() ).thenReturn( "report.pdf" );
+    when( repositoryFile.getId() ).thenReturn( FILE_ID );
+    when( repositoryFile.getVersionId() ).thenReturn( "1.3" );
+    FileService.RepositoryFileToStreamWrapper wrapper = mock( FileService.RepositoryFileToStreamWrapper.class );
+    when( wrapper.getRepositoryFile() ).thenReturn( repositoryFile );
+    when( fileResource.httpServletRequest.getHeader( "If-None-Match" ) ).thenReturn( "\"" + FILE_ID + "-1.3\"" );
+
+    Response response = fileResource.buildOkResponse( wrapper );
+
+    assertEquals( Status.NOT_MODIFIED.getStatusCode(), response.getStatus() );
+    verify( wrapper, never() ).getOutputStream();
+  }
 }
@@ -0,0 +1,107 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.web.http.api.resources.operations;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.platform.api.repository2.unified.IUnifiedRepository;
+import org.pentaho.platform.api.repository2.unified.UnifiedRepositoryAccessDeniedException;
+import org.pentaho.platform.repository2.unified.webservices.DefaultUnifiedRepositoryWebService;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+public class BulkFileOperationTest {
+
+  private IUnifiedRepository repo;
+  private DefaultUnifiedRepositoryWebService webService;
+
+  @Before
+  public void setUp() {
+    repo = mock( IUnifiedRepository.class );
+    webService = mock( DefaultUnifiedRepositoryWebService.class );
+  }
+
+  @Test
+  public void testRunProcessesAllFiles() {
+    BulkFileOperation operation = operation( BulkFileOperation.Type.MOVE, "id1", "id2", "id3" );
+    assertEquals( BulkFileOperation.Status.QUEUED, operation.getStatus() );
+
+    operation.run();
+
+    verify( webService ).moveFile( "id1", "/public/dest", null );
+    verify( webService ).moveFile( "id2", "/public/dest", null );
+    verify( webService ).moveFile( "id3", "/public/dest", null );
+    assertEquals( BulkFileOperation.Status.COMPLETED, operation.getStatus() );
+    assertEquals( 3, operation.getTotal() );
+    assertEquals( 3, operation.getDone() );
+    assertEquals( 0, operation.getFailed() );
+    assertTrue( operation.isFinished() );
+  }
+
+  @Test
+  public void testFailureDoesNotStopOperation() {
+    doThrow( new UnifiedRepositoryAccessDeniedException( "denied" ) ).when( webService ).deleteFile( "id2", null );
+    BulkFileOperation operation = operation( BulkFileOperation.Type.DELETE, "id1", "id2", "id3" );
+
+    operation.run();
+
+    verify( webService ).deleteFile( "id3", null );
+    assertEquals( 3, operation.getDone() );
+    assertEquals( 1, operation.getFailed() );
+    assertEquals( Collections.singletonMap( "id2", "denied" ), operation.getFailures() );
+  }
+
+  @Test
+  public void testCancelledBeforeRun() {
+    BulkFileOperation operation = operation( BulkFileOperation.Type.RESTORE, "id1", "id2" );
+    operation.cancel();
+
+    operation.run();
+
+    verify( webService, never() ).undeleteFile( anyString(), anyString() );
+    assertEquals( BulkFileOperation.Status.CANCELLED, operation.getStatus() );
+    assertEquals( 0, operation.getDone() );
+  }
+
+  @Test( expected = IllegalArgumentException.class )
+  public void testMoveRequiresDestination() {
+    new BulkFileOperation( BulkFileOperation.Type.MOVE, "admin", Arrays.asList( "id1" ), null, 2, repo, webService );
+  }
+
+  @Test
+  public void testNotFinishedWhileQueued() {
+    assertFalse( operation( BulkFileOperation.Type.DELETE, "id1" ).isFinished() );
+  }
+
+  private BulkFileOperation operation( BulkFileOperation.Type type, String... ids ) {
+    return new BulkFileOperation( type, "admin", Arrays.asList( ids ), "/public/dest", 2, repo, webService );
+  }
+}
@@ -47,6 +47,7 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.powermock.api.mockito.PowerMockito.mockStatic;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.InputStream;
@@ -539,15 +540,42 @@ public class FileServiceTest {
     paths.add( "path2" );
     paths.add( "path3" );
 
-    doReturn( true ).when( fileService.repository ).hasAccess( anyString(), any( EnumSet.class ) );
+    Map<String, EnumSet<RepositoryFilePermission>> access = new HashMap<String, EnumSet<RepositoryFilePermission>>();
+    for ( String path : paths ) {
+      access.put( "/" + path, EnumSet.allOf( RepositoryFilePermission.class ) );
+    }
+    doReturn( access ).when( fileService.repository ).getAccess( anyList(), any( EnumSet.class ) );
     List<Setting> settings = fileService.doGetPathsAccessList( new StringListWrapper( paths ) );
     assertTrue( settings.size() > 0 );
 
-    doReturn( false ).when( fileService.repository ).hasAccess( anyString(), any( EnumSet.class ) );
+    access.clear();
     settings = fileService.doGetPathsAccessList( new StringListWrapper( paths ) );
     assertEquals( 0, settings.size() );
   }
 
+  @Test
+  public void testDoGetAccessMasks() {
+    List<String> paths = new ArrayList<String>();
+    paths.add( ":public:a.prpt" );
+    paths.add( ":public:b.prpt" );
+    paths.add( ":public:missing.prpt" );
+    Map<String, EnumSet<RepositoryFilePermission>> access = new HashMap<String, EnumSet<RepositoryFilePermission>>();
+    access.put( "/public/a.prpt", EnumSet.of( RepositoryFilePermission.READ, RepositoryFilePermission.DELETE ) );
+    access.put( "/public/b.prpt", EnumSet.of( RepositoryFilePermission.READ ) );
+    doReturn( access ).when( fileService.repository ).getAccess( anyList(),
+        eq( EnumSet.of( RepositoryFilePermission.READ, RepositoryFilePermission.DELETE ) ) );
+
+    List<Setting> masks = fileService.doGetAccessMasks( new StringListWrapper( paths ), "0|2" );
+
+    assertEquals( 3, masks.size() );
+    assertEquals( ":public:a.prpt", masks.get( 0 ).getName() );
+    assertEquals( "5", masks.get( 0 ).getValue() );
+    assertEquals( "1", masks.get( 1 ).getValue() );
+    assertEquals( "0", masks.get( 2 ).getValue() );
+    verify( fileService.repository, times( 1 ) ).getAccess( anyList(), any( EnumSet.class ) );
+    verify( fileService.repository, never() ).hasAccess( anyString(), any( EnumSet.class ) );
+  }
+
   @Test
   public void testDoDeleteFilesPermanentException() {
 
@@ -1625,6 +1653,17 @@ public class FileServiceTest {
     verify( fileService.defaultUnifiedRepositoryWebService, times( 2 ) ).getDeletedFiles();
   }
 
+  @Test
+  public void doGetAllDeletedFiles() {
+    List<RepositoryFileDto> fileDtos = new ArrayList<RepositoryFileDto>();
+    fileDtos.add( mock( RepositoryFileDto.class ) );
+    doReturn( fileDtos ).when( fileService.defaultUnifiedRepositoryWebService ).getAllDeletedFiles( 5, 1 );
+
+    assertEquals( fileDtos, fileService.doGetAllDeletedFiles( 5, 1 ) );
+    verify( fileService.defaultUnifiedRepositoryWebService ).getAllDeletedFiles( 5, 1 );
+    verify( fileService.defaultUnifiedRepositoryWebService, never() ).getDeletedFiles();
+  }
+
   @Test
   public void doGetMetadata() {
     String pathId = "path:to:file:file1.ext";
@@ -1766,6 +1805,34 @@ public class FileServiceTest {
     assertEquals( mockRepositoryFileDto, repositoryFileDtos.get( 0 ) );
   }
 
+  @Test
+  public void testDoGetChildrenXmlStream() throws Exception {
+    RepositoryFileDto mockRepositoryFileDto = mock( RepositoryFileDto.class );
+    RepositoryRequest repositoryRequest = new RepositoryRequest( "/path", true, 0, null );
+    List<RepositoryFile> children = new ArrayList<RepositoryFile>();
+    children.add( new RepositoryFile.Builder( "id1", "file1.ext" ).path( "/path/file1.ext" ).build() );
+
+    doReturn( true ).when( fileService ).isPathValid( anyString() );
+    doReturn( mockRepositoryFileDto ).when( fileService.defaultUnifiedRepositoryWebService ).getFile( anyString() );
+    doReturn( repositoryRequest ).when( fileService )
+      .getRepositoryRequest( (RepositoryFileDto) anyObject(), anyBoolean(), anyString(), anyBoolean() );
+    doReturn( children ).when( fileService.defaultUnifiedRepositoryWebService )
+      .getRepositoryFileChildren( repositoryRequest );
+    doReturn( null ).when( fileService ).getTitleOrder( repositoryRequest );
+
+    StreamingOutput streamingOutput = fileService.doGetChildrenXmlStream( "path", null, true );
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    streamingOutput.write( out );
+
+    verify( fileService.defaultUnifiedRepositoryWebService, times( 1 ) ).getRepositoryFileChildren( repositoryRequest );
+    verify( fileService.defaultUnifiedRepositoryWebService, never() ).getChildrenFromRequest(
+      (RepositoryRequest) anyObject() );
+    String xml = out.toString( "UTF-8" );
+    assertTrue( xml.contains( "<repositoryFileDtoes><repositoryFileDto>" ) );
+    assertTrue( xml.contains( "<id>id1</id>" ) );
+    assertTrue( xml.contains( "<path>/path/file1.ext</path>" ) );
+  }
+
   @Test
   public void doSetMetadata() {
     String pathId = "path:to:file:file1.ext";
@@ -0,0 +1,113 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.web.http.api.resources.utils;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ByteRangeTest {
+
+  @Test
+  public void testParseSingleRanges() {
+    assertEquals( Arrays.asList( new ByteRange( 0, 99 ) ), ByteRange.parse( "bytes=0-99", 1000 ) );
+    assertEquals( Arrays.asList( new ByteRange( 500, 999 ) ), ByteRange.parse( "bytes=500-", 1000 ) );
+    assertEquals( Arrays.asList( new ByteRange( 900, 999 ) ), ByteRange.parse( "bytes=-100", 1000 ) );
+    assertEquals( Arrays.asList( new ByteRange( 0, 999 ) ), ByteRange.parse( "bytes=-5000", 1000 ) );
+    assertEquals( Arrays.asList( new ByteRange( 990, 999 ) ), ByteRange.parse( "bytes=990-2000", 1000 ) );
+  }
+
+  @Test
+  public void testParseMultipleRangesAreSortedAndCoalesced() {
+    assertEquals( Arrays.asList( new ByteRange( 0, 9 ), new ByteRange( 100, 199 ) ),
+      ByteRange.parse( "bytes=100-199, 0-9", 1000 ) );
+    assertEquals( Arrays.asList( new ByteRange( 0, 149 ) ), ByteRange.parse( "bytes=0-99,50-149", 1000 ) );
+    assertEquals( Arrays.asList( new ByteRange( 0, 19 ) ), ByteRange.parse( "bytes=0-9,10-19", 1000 ) );
+  }
+
+  @Test
+  public void testParseInvalidHeadersAreIgnored() {
+    assertNull( ByteRange.parse( null, 1000 ) );
+    assertNull( ByteRange.parse( "", 1000 ) );
+    assertNull( ByteRange.parse( "items=0-9", 1000 ) );
+    assertNull( ByteRange.parse( "bytes=9-0", 1000 ) );
+    assertNull( ByteRange.parse( "bytes=a-b", 1000 ) );
+    assertNull( ByteRange.parse( "bytes=10", 1000 ) );
+  }
+
+  @Test
+  public void testParseUnsatisfiable() {
+    assertTrue( ByteRange.parse( "bytes=1000-", 1000 ).isEmpty() );
+    assertTrue( ByteRange.parse( "bytes=-0", 1000 ).isEmpty() );
+  }
+
+  @Test
+  public void testContentRange() {
+    assertEquals( "bytes 0-99/1000", new ByteRange( 0, 99 ).toContentRange( 1000 ) );
+    assertEquals( 100, new ByteRange( 0, 99 ).getLength() );
+  }
+
+  @Test
+  public void testWriteSingleRange() throws Exception {
+    byte[] content = "0123456789".getBytes();
+    List<ByteRange> ranges = ByteRange.parse( "bytes=2-5", content.length );
+    ByteRangeStreamingOutput output =
+      new ByteRangeStreamingOutput( new ByteArrayInputStream( content ), ranges, content.length, "text/plain" );
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    output.write( out );
+
+    assertFalse( output.isMultipart() );
+    assertEquals( "text/plain", output.getResponseContentType() );
+    assertEquals( "2345", out.toString() );
+  }
+
+  @Test
+  public void testWriteMultipleRanges() throws Exception {
+    byte[] content = "0123456789".getBytes();
+    List<ByteRange> ranges = ByteRange.parse( "bytes=7-8,0-1", content.length );
+    ByteRangeStreamingOutput output =
+      new ByteRangeStreamingOutput( new ByteArrayInputStream( content ), ranges, content.length, "text/plain" );
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    output.write( out );
+
+    assertTrue( output.isMultipart() );
+    assertTrue( output.getResponseContentType().startsWith( "multipart/byteranges; boundary=" ) );
+    String boundary = output.getResponseContentType().substring( "multipart/byteranges; boundary=".length() );
+    String expected = "\r\n--" + boundary + "\r\n"
+      + "Content-Type: text/plain\r\n"
+      + "Content-Range: bytes 0-1/10\r\n\r\n"
+      + "01"
+      + "\r\n--" + boundary + "\r\n"
+      + "Content-Type: text/plain\r\n"
+      + "Content-Range: bytes 7-8/10\r\n\r\n"
+      + "78"
+      + "\r\n--" + boundary + "--\r\n";
+    assertEquals( expected, out.toString() );
+  }
+}
@@ -0,0 +1,137 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.repository2.unified;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.pentaho.platform.api.mt.ITenant;
+import org.pentaho.platform.api.repository2.unified.IRepositoryVersionManager;
+import org.pentaho.platform.api.repository2.unified.RepositoryFile;
+import org.pentaho.platform.api.repository2.unified.RepositoryFileAcl;
+import org.pentaho.platform.api.repository2.unified.RepositoryFilePermission;
+import org.pentaho.platform.api.repository2.unified.RepositoryFileSid;
+import org.pentaho.platform.repository2.ClientRepositoryPaths;
+import org.pentaho.platform.repository2.unified.jcr.JcrRepositoryFileUtils;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+/**
+ * Integration test. Checks that {@link DefaultUnifiedRepository#getAccess} decides every permission on every path the
+ * way {@link DefaultUnifiedRepository#hasAccess} decides it on its own, for inherited, denied and mixed ACLs.
+ */
+@RunWith( SpringJUnit4ClassRunner.class )
+@SuppressWarnings( "nls" )
+public class DefaultUnifiedRepositoryAccessIT extends DefaultUnifiedRepositoryBase {
+
+  private static final EnumSet<RepositoryFilePermission> ALL_PERMISSIONS =
+      EnumSet.allOf( RepositoryFilePermission.class );
+
+  @Before
+  public void setup() {
+    IRepositoryVersionManager mockRepositoryVersionManager = mock( IRepositoryVersionManager.class );
+    when( mockRepositoryVersionManager.isVersioningEnabled( anyString() ) ).thenReturn( true );
+    when( mockRepositoryVersionManager.isVersionCommentEnabled( anyString() ) ).thenReturn( false );
+    JcrRepositoryFileUtils.setRepositoryVersionManager( mockRepositoryVersionManager );
+  }
+
+  @Test
+  public void testGetAccessAgreesWithHasAccess() throws Exception {
+    loginAsSysTenantAdmin();
+    ITenant tenantAcme =
+        tenantManager.createTenant( systemTenant, TENANT_ID_ACME, tenantAdminRoleName, tenantAuthenticatedRoleName,
+            ANONYMOUS_ROLE_NAME );
+    userRoleDao.createUser( tenantAcme, USERNAME_ADMIN, PASSWORD, "", new String[] { tenantAdminRoleName } );
+
+    login( USERNAME_ADMIN, tenantAcme, new String[] { tenantAdminRoleName, tenantAuthenticatedRoleName } );
+    defaultBackingRepositoryLifecycleManager.newTenant();
+    userRoleDao.createUser( tenantAcme, USERNAME_SUZY, PASSWORD, "", new String[] { tenantAuthenticatedRoleName } );
+    RepositoryFileSid admin =
+        new RepositoryFileSid( userNameUtils.getPrincipleId( tenantAcme, USERNAME_ADMIN ),
+            RepositoryFileSid.Type.USER );
+    RepositoryFileSid suzy =
+        new RepositoryFileSid( userNameUtils.getPrincipleId( tenantAcme, USERNAME_SUZY ),
+            RepositoryFileSid.Type.USER );
+    RepositoryFileSid authenticated =
+        new RepositoryFileSid( roleNameUtils.getPrincipleId( tenantAcme, tenantAuthenticatedRoleName ),
+            RepositoryFileSid.Type.ROLE );
+
+    String publicFolderPath = ClientRepositoryPaths.getPublicFolderPath();
+    RepositoryFile folder =
+        repo.createFolder( repo.getFile( publicFolderPath ).getId(), new RepositoryFile.Builder( "access" ).folder(
+            true ).build(), null );
+    repo.updateAcl( new RepositoryFileAcl.Builder( folder.getId(), admin ).entriesInheriting( false ).ace(
+        authenticated, RepositoryFilePermission.READ, RepositoryFilePermission.WRITE ).build() );
+
+    // inherits READ and WRITE from the folder
+    RepositoryFile inherited = createSampleFile( folder.getPath(), "inherited.sample", "a", false, 1 );
+    // grants nothing to suzy or her roles
+    RepositoryFile denied = createSampleFile( folder.getPath(), "denied.sample", "b", false, 2 );
+    repo.updateAcl( new RepositoryFileAcl.Builder( denied.getId(), admin ).entriesInheriting( false ).build() );
+    // READ through her role, DELETE and ACL_MANAGEMENT as a user
+    RepositoryFile mixed = createSampleFile( folder.getPath(), "mixed.sample", "c", false, 3 );
+    repo.updateAcl( new RepositoryFileAcl.Builder( mixed.getId(), admin ).entriesInheriting( false ).ace(
+        authenticated, RepositoryFilePermission.READ ).ace( suzy, RepositoryFilePermission.DELETE,
+        RepositoryFilePermission.ACL_MANAGEMENT ).build() );
+    // inherits from a folder that denies everything
+    RepositoryFile deniedFolder =
+        repo.createFolder( folder.getId(), new RepositoryFile.Builder( "denied" ).folder( true ).build(), null );
+    repo.updateAcl( new RepositoryFileAcl.Builder( deniedFolder.getId(), admin ).entriesInheriting( false ).build() );
+    RepositoryFile inheritedDenied = createSampleFile( deniedFolder.getPath(), "inherited.sample", "d", false, 4 );
+
+    List<String> paths = new ArrayList<String>();
+    paths.add( folder.getPath() );
+    paths.add( inherited.getPath() );
+    paths.add( denied.getPath() );
+    paths.add( mixed.getPath() );
+    paths.add( deniedFolder.getPath() );
+    paths.add( inheritedDenied.getPath() );
+    paths.add( folder.getPath() + "/doesnotexist.sample" );
+
+    login( USERNAME_SUZY, tenantAcme, new String[] { tenantAuthenticatedRoleName } );
+    Map<String, EnumSet<RepositoryFilePermission>> access = repo.getAccess( paths, ALL_PERMISSIONS );
+
+    assertEquals( paths, new ArrayList<String>( access.keySet() ) );
+    for ( String path : paths ) {
+      for ( RepositoryFilePermission permission : ALL_PERMISSIONS ) {
+        assertEquals( path + " " + permission, repo.hasAccess( path, EnumSet.of( permission ) ), access.get( path )
+            .contains( permission ) );
+      }
+    }
+    // the cases are not all the same
+    assertTrue( access.get( inherited.getPath() ).contains( RepositoryFilePermission.WRITE ) );
+    assertTrue( access.get( mixed.getPath() ).contains( RepositoryFilePermission.READ ) );
+    assertFalse( access.get( mixed.getPath() ).contains( RepositoryFilePermission.WRITE ) );
+    assertEquals( EnumSet.noneOf( RepositoryFilePermission.class ), access.get( denied.getPath() ) );
+    assertEquals( EnumSet.noneOf( RepositoryFilePermission.class ), access.get( inheritedDenied.getPath() ) );
+  }
+}
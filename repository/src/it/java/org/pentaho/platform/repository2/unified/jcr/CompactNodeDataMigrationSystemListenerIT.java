@@ -0,0 +1,155 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.repository2.unified.jcr;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.pentaho.platform.api.mt.ITenant;
+import org.pentaho.platform.api.repository2.unified.IRepositoryVersionManager;
+import org.pentaho.platform.api.repository2.unified.RepositoryFile;
+import org.pentaho.platform.api.repository2.unified.data.node.DataNode;
+import org.pentaho.platform.api.repository2.unified.data.node.NodeRepositoryFileData;
+import org.pentaho.platform.repository2.ClientRepositoryPaths;
+import org.pentaho.platform.repository2.unified.DefaultUnifiedRepositoryBase;
+import org.pentaho.platform.repository2.unified.jcr.transform.CompactNodeRepositoryFileDataTransformer;
+import org.springframework.beans.BeansException;
+import org.springframework.context.ApplicationContext;
+import org.springframework.extensions.jcr.JcrCallback;
+import org.springframework.extensions.jcr.JcrTemplate;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Integration test. Writes node data in the node form with the default transformers, converts it with
+ * {@link CompactNodeDataMigrationSystemListener} and reads it back.
+ */
+@RunWith( SpringJUnit4ClassRunner.class )
+@SuppressWarnings( "nls" )
+public class CompactNodeDataMigrationSystemListenerIT extends DefaultUnifiedRepositoryBase {
+
+  private JcrTemplate adminJcrTemplate;
+
+  private CompactNodeDataMigrationSystemListener listener;
+
+  private RepositoryFile homeFolder;
+
+  @Override
+  public void setApplicationContext( final ApplicationContext applicationContext ) throws BeansException {
+    super.setApplicationContext( applicationContext );
+    adminJcrTemplate = (JcrTemplate) applicationContext.getBean( "adminJcrTemplate" );
+  }
+
+  @Before
+  public void setup() throws Exception {
+    IRepositoryVersionManager mockRepositoryVersionManager = mock( IRepositoryVersionManager.class );
+    when( mockRepositoryVersionManager.isVersioningEnabled( anyString() ) ).thenReturn( true );
+    when( mockRepositoryVersionManager.isVersionCommentEnabled( anyString() ) ).thenReturn( false );
+    JcrRepositoryFileUtils.setRepositoryVersionManager( mockRepositoryVersionManager );
+
+    loginAsSysTenantAdmin();
+    ITenant tenantAcme =
+        tenantManager.createTenant( systemTenant, TENANT_ID_ACME, tenantAdminRoleName, tenantAuthenticatedRoleName,
+            ANONYMOUS_ROLE_NAME );
+    userRoleDao.createUser( tenantAcme, USERNAME_ADMIN, PASSWORD, "", new String[] { tenantAdminRoleName } );
+
+    login( USERNAME_ADMIN, tenantAcme, new String[] { tenantAdminRoleName, tenantAuthenticatedRoleName } );
+    userRoleDao.createUser( tenantAcme, USERNAME_SUZY, PASSWORD, "", null );
+
+    login( USERNAME_SUZY, tenantAcme, new String[] { tenantAuthenticatedRoleName } );
+    homeFolder = repo.getFile( ClientRepositoryPaths.getUserHomeFolderPath( USERNAME_SUZY ) );
+    listener = new CompactNodeDataMigrationSystemListener();
+  }
+
+  @Test
+  public void testMigrateConvertsNodeData() throws Exception {
+    DataNode node = createDataNode();
+    RepositoryFile versioned =
+        repo.createFile( homeFolder.getId(), new RepositoryFile.Builder( "versioned.xdash" ).versioned( true )
+            .build(), new NodeRepositoryFileData( node ), null );
+    RepositoryFile unversioned =
+        repo.createFile( homeFolder.getId(), new RepositoryFile.Builder( "unversioned.xdash" ).build(),
+            new NodeRepositoryFileData( node ), null );
+    int versions = repo.getVersionSummaries( versioned.getId() ).size();
+    assertFalse( isCompact( versioned ) );
+    assertFalse( isCompact( unversioned ) );
+
+    List<String> fileIds = listener.findNodeDataFiles( txnTemplate, adminJcrTemplate );
+    assertTrue( fileIds.contains( versioned.getId().toString() ) );
+    assertTrue( fileIds.contains( unversioned.getId().toString() ) );
+
+    assertEquals( 2, listener.migrateBatch( txnTemplate, adminJcrTemplate, fileIds ) );
+
+    assertTrue( isCompact( versioned ) );
+    assertTrue( isCompact( unversioned ) );
+    assertEquals( node, repo.getDataForRead( versioned.getId(), NodeRepositoryFileData.class ).getNode() );
+    assertEquals( node, repo.getDataForRead( unversioned.getId(), NodeRepositoryFileData.class ).getNode() );
+    // the conversion of a versioned file is a new version
+    assertEquals( versions + 1, repo.getVersionSummaries( versioned.getId() ).size() );
+
+    // files already in the compact form are left alone
+    assertEquals( 0, listener.migrateBatch( txnTemplate, adminJcrTemplate, fileIds ) );
+    assertEquals( versions + 1, repo.getVersionSummaries( versioned.getId() ).size() );
+  }
+
+  @Test
+  public void testMigrateSkipsDeletedFiles() throws Exception {
+    RepositoryFile file =
+        repo.createFile( homeFolder.getId(), new RepositoryFile.Builder( "deleted.xdash" ).build(),
+            new NodeRepositoryFileData( createDataNode() ), null );
+    assertTrue( listener.findNodeDataFiles( txnTemplate, adminJcrTemplate ).contains( file.getId().toString() ) );
+    repo.deleteFile( file.getId(), true, null );
+
+    assertEquals( 0, listener.migrateBatch( txnTemplate, adminJcrTemplate, Collections.singletonList( file.getId()
+        .toString() ) ) );
+  }
+
+  private DataNode createDataNode() {
+    DataNode node = new DataNode( "dashboard" );
+    node.setProperty( "title", "Sales" );
+    node.setProperty( "refresh", 30L );
+    DataNode chart = node.addNode( "chart" );
+    chart.setProperty( "type", "bar" );
+    chart.setProperty( "stacked", true );
+    return node;
+  }
+
+  private boolean isCompact( final RepositoryFile file ) {
+    return (Boolean) adminJcrTemplate.execute( new JcrCallback() {
+      @Override
+      public Object doInJcr( final Session session ) throws IOException, RepositoryException {
+        return new CompactNodeRepositoryFileDataTransformer().isCompact( session, new PentahoJcrConstants( session ),
+            session.getNodeByIdentifier( file.getId().toString() ) );
+      }
+    } );
+  }
+
+}
@@ -0,0 +1,208 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.repository2.unified.jcr;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.pentaho.platform.api.mt.ITenant;
+import org.pentaho.platform.api.repository2.unified.IRepositoryVersionManager;
+import org.pentaho.platform.api.repository2.unified.RepositoryFile;
+import org.pentaho.platform.api.repository2.unified.VersionSummary;
+import org.pentaho.platform.api.repository2.unified.data.simple.SimpleRepositoryFileData;
+import org.pentaho.platform.repository2.ClientRepositoryPaths;
+import org.pentaho.platform.repository2.unified.DefaultUnifiedRepositoryBase;
+import org.springframework.beans.BeansException;
+import org.springframework.context.ApplicationContext;
+import org.springframework.extensions.jcr.JcrTemplate;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Integration test. Runs {@link JcrVersionPruner} against a real repository and checks which versions survive.
+ */
+@RunWith( SpringJUnit4ClassRunner.class )
+@SuppressWarnings( "nls" )
+public class JcrVersionPrunerIT extends DefaultUnifiedRepositoryBase {
+
+  private static final int VERSIONS = 5;
+
+  private static final int MAX_VERSIONS = 2;
+
+  private JcrTemplate adminJcrTemplate;
+
+  private JcrVersionPruner pruner;
+
+  private String reportsFolderPath;
+
+  private String otherFolderPath;
+
+  @Override
+  public void setApplicationContext( final ApplicationContext applicationContext ) throws BeansException {
+    super.setApplicationContext( applicationContext );
+    adminJcrTemplate = (JcrTemplate) applicationContext.getBean( "adminJcrTemplate" );
+  }
+
+  @Before
+  public void setup() throws Exception {
+    IRepositoryVersionManager mockRepositoryVersionManager = mock( IRepositoryVersionManager.class );
+    when( mockRepositoryVersionManager.isVersioningEnabled( anyString() ) ).thenReturn( true );
+    when( mockRepositoryVersionManager.isVersionCommentEnabled( anyString() ) ).thenReturn( false );
+    JcrRepositoryFileUtils.setRepositoryVersionManager( mockRepositoryVersionManager );
+
+    loginAsSysTenantAdmin();
+    ITenant tenantAcme =
+        tenantManager.createTenant( systemTenant, TENANT_ID_ACME, tenantAdminRoleName, tenantAuthenticatedRoleName,
+            ANONYMOUS_ROLE_NAME );
+    userRoleDao.createUser( tenantAcme, USERNAME_ADMIN, PASSWORD, "", new String[] { tenantAdminRoleName } );
+
+    login( USERNAME_ADMIN, tenantAcme, new String[] { tenantAdminRoleName, tenantAuthenticatedRoleName } );
+    userRoleDao.createUser( tenantAcme, USERNAME_SUZY, PASSWORD, "", null );
+
+    login( USERNAME_SUZY, tenantAcme, new String[] { tenantAuthenticatedRoleName } );
+    RepositoryFile homeFolder = repo.getFile( ClientRepositoryPaths.getUserHomeFolderPath( USERNAME_SUZY ) );
+    reportsFolderPath =
+        repo.createFolder( homeFolder.getId(), new RepositoryFile.Builder( "reports" ).folder( true ).build(), null )
+            .getPath();
+    otherFolderPath =
+        repo.createFolder( homeFolder.getId(), new RepositoryFile.Builder( "other" ).folder( true ).build(), null )
+            .getPath();
+
+    VersionRetentionPolicy policy = new VersionRetentionPolicy();
+    policy.setFolder( reportsFolderPath );
+    policy.setMaxVersions( MAX_VERSIONS );
+    pruner = new JcrVersionPruner( txnTemplate, adminJcrTemplate, pathConversionHelper );
+    pruner.setPolicies( Arrays.asList( policy ) );
+    pruner.setPauseMillis( 0 );
+  }
+
+  @Test
+  public void testPruneKeepsMostRecentVersions() throws Exception {
+    RepositoryFile pruned = createVersionedFile( reportsFolderPath, "sales.txt" );
+    RepositoryFile untouched = createVersionedFile( otherFolderPath, "sales.txt" );
+    List<String> prunedVersions = getVersionNames( pruned );
+    List<String> untouchedVersions = getVersionNames( untouched );
+    assertEquals( VERSIONS, prunedVersions.size() );
+
+    VersionPruneReport report = pruner.prune( false );
+
+    assertFalse( report.isDryRun() );
+    assertFalse( report.isRunning() );
+    assertNotNull( report.getEndTime() );
+    assertEquals( 0, report.getErrors() );
+    assertTrue( report.getFilesScanned() >= 2 );
+    assertEquals( 1, report.getFilesPruned() );
+    assertEquals( VERSIONS - MAX_VERSIONS, report.getVersionsRemoved() );
+    assertEquals( expectedRemovedVersions( pruned, prunedVersions ), report.getRemovedVersions() );
+
+    // the most recent versions survive, including the current one
+    assertEquals( prunedVersions.subList( VERSIONS - MAX_VERSIONS, VERSIONS ), getVersionNames( pruned ) );
+    assertEquals( repo.getFileById( pruned.getId() ).getVersionId().toString(), prunedVersions.get( VERSIONS - 1 ) );
+    assertEquals( "content 4", readContent( pruned ) );
+    // files outside of the policy folder keep all of their versions
+    assertEquals( untouchedVersions, getVersionNames( untouched ) );
+    assertSame( report, pruner.getLastReport() );
+    assertFalse( pruner.isRunning() );
+  }
+
+  @Test
+  public void testDryRunChangesNothing() throws Exception {
+    RepositoryFile pruned = createVersionedFile( reportsFolderPath, "sales.txt" );
+    List<String> prunedVersions = getVersionNames( pruned );
+
+    VersionPruneReport report = pruner.prune( true );
+
+    assertTrue( report.isDryRun() );
+    assertEquals( 0, report.getErrors() );
+    assertEquals( 1, report.getFilesPruned() );
+    assertEquals( VERSIONS - MAX_VERSIONS, report.getVersionsRemoved() );
+    assertEquals( expectedRemovedVersions( pruned, prunedVersions ), report.getRemovedVersions() );
+    assertEquals( prunedVersions, getVersionNames( pruned ) );
+
+    // a real run afterwards still finds the same versions
+    assertEquals( report.getRemovedVersions(), pruner.prune( false ).getRemovedVersions() );
+  }
+
+  @Test
+  public void testPruneWithoutPolicies() throws Exception {
+    RepositoryFile file = createVersionedFile( reportsFolderPath, "sales.txt" );
+    List<String> versions = getVersionNames( file );
+    pruner.setPolicies( Collections.<VersionRetentionPolicy>emptyList() );
+
+    VersionPruneReport report = pruner.prune( false );
+
+    assertEquals( 0, report.getFilesScanned() );
+    assertEquals( 0, report.getVersionsRemoved() );
+    assertEquals( versions, getVersionNames( file ) );
+  }
+
+  /**
+   * Creates a file with {@link #VERSIONS} versions. Every version has different content, so no update is skipped as
+   * unchanged.
+   */
+  private RepositoryFile createVersionedFile( final String parentFolderPath, final String fileName ) throws Exception {
+    RepositoryFile parentFolder = repo.getFile( parentFolderPath );
+    RepositoryFile file =
+        repo.createFile( parentFolder.getId(), new RepositoryFile.Builder( fileName ).versioned( true ).build(),
+            createContent( 0 ), null );
+    for ( int i = 1; i < VERSIONS; i++ ) {
+      file = repo.updateFile( file, createContent( i ), null );
+    }
+    return file;
+  }
+
+  private SimpleRepositoryFileData createContent( final int version ) throws Exception {
+    return new SimpleRepositoryFileData( new ByteArrayInputStream( ( "content " + version ).getBytes( "UTF-8" ) ),
+        "UTF-8", "text/plain" );
+  }
+
+  private String readContent( final RepositoryFile file ) throws Exception {
+    SimpleRepositoryFileData data = repo.getDataForRead( file.getId(), SimpleRepositoryFileData.class );
+    return IOUtils.toString( data.getInputStream(), "UTF-8" );
+  }
+
+  private List<String> getVersionNames( final RepositoryFile file ) {
+    List<String> versionNames = new ArrayList<String>();
+    for ( VersionSummary versionSummary : repo.getVersionSummaries( file.getId() ) ) {
+      versionNames.add( versionSummary.getId().toString() );
+    }
+    return versionNames;
+  }
+
+  private List<String> expectedRemovedVersions( final RepositoryFile file, final List<String> versionNames ) {
+    List<String> removed = new ArrayList<String>();
+    for ( String versionName : versionNames.subList( 0, VERSIONS - MAX_VERSIONS ) ) {
+      removed.add( file.getPath() + "@" + versionName );
+    }
+    return removed;
+  }
+}
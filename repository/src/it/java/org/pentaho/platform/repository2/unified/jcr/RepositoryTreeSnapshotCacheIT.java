@@ -0,0 +1,150 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.repository2.unified.jcr;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.pentaho.platform.api.mt.ITenant;
+import org.pentaho.platform.api.repository2.unified.RepositoryFile;
+import org.pentaho.platform.api.repository2.unified.RepositoryFileTree;
+import org.pentaho.platform.api.repository2.unified.RepositoryRequest;
+import org.pentaho.platform.api.repository2.unified.data.simple.SimpleRepositoryFileData;
+import org.pentaho.platform.repository2.ClientRepositoryPaths;
+import org.pentaho.platform.repository2.unified.DefaultUnifiedRepositoryBase;
+import org.pentaho.platform.repository2.unified.jcr.sejcr.CredentialsStrategySessionFactory;
+import org.springframework.beans.BeansException;
+import org.springframework.context.ApplicationContext;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import java.io.ByteArrayInputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Integration test. Shares a tree read through {@link RepositoryFileProxy} instances between two users with the same
+ * roles and checks that the second user gets plain files that do not depend on the first user's session.
+ */
+@RunWith( SpringJUnit4ClassRunner.class )
+@SuppressWarnings( "nls" )
+public class RepositoryTreeSnapshotCacheIT extends DefaultUnifiedRepositoryBase {
+
+  private CredentialsStrategySessionFactory sessionFactory;
+
+  private JcrRepositoryFileDao dao;
+
+  private RepositoryTreeSnapshotCache originalCache;
+
+  private RepositoryTreeSnapshotCache cache;
+
+  private ITenant tenantAcme;
+
+  @Override
+  public void setApplicationContext( final ApplicationContext applicationContext ) throws BeansException {
+    super.setApplicationContext( applicationContext );
+    sessionFactory = (CredentialsStrategySessionFactory) applicationContext.getBean( "jcrSessionFactory" );
+  }
+
+  @Before
+  public void setup() throws Exception {
+    loginAsSysTenantAdmin();
+    tenantAcme =
+        tenantManager.createTenant( systemTenant, TENANT_ID_ACME, tenantAdminRoleName, tenantAuthenticatedRoleName,
+            ANONYMOUS_ROLE_NAME );
+    userRoleDao.createUser( tenantAcme, USERNAME_ADMIN, PASSWORD, "", new String[] { tenantAdminRoleName } );
+
+    login( USERNAME_ADMIN, tenantAcme, new String[] { tenantAdminRoleName, tenantAuthenticatedRoleName } );
+    userRoleDao.createUser( tenantAcme, USERNAME_SUZY, PASSWORD, "", null );
+    userRoleDao.createUser( tenantAcme, USERNAME_TIFFANY, PASSWORD, "", null );
+    RepositoryFile publicFolder = repo.getFile( ClientRepositoryPaths.getPublicFolderPath() );
+    RepositoryFile reports =
+        repo.createFolder( publicFolder.getId(), new RepositoryFile.Builder( "reports" ).folder( true ).build(),
+            null );
+    repo.createFile( reports.getId(), new RepositoryFile.Builder( "sales.txt" ).title( "Sales" ).build(),
+        new SimpleRepositoryFileData( new ByteArrayInputStream( "sales".getBytes( "UTF-8" ) ), "UTF-8",
+            "text/plain" ), null );
+
+    dao = (JcrRepositoryFileDao) repositoryFileDao;
+    originalCache = dao.getTreeSnapshotCache();
+    cache = new RepositoryTreeSnapshotCache( 100 );
+    cache.setSessionFactory( sessionFactory );
+    dao.setTreeSnapshotCache( cache );
+  }
+
+  @After
+  public void restoreCache() {
+    if ( dao != null ) {
+      dao.setTreeSnapshotCache( originalCache );
+    }
+    if ( cache != null ) {
+      cache.destroy();
+    }
+  }
+
+  @Test
+  public void testSharedTreeHoldsNoProxies() throws Exception {
+    RepositoryRequest request = new RepositoryRequest( ClientRepositoryPaths.getPublicFolderPath(), true, -1, null );
+
+    login( USERNAME_SUZY, tenantAcme, new String[] { tenantAuthenticatedRoleName } );
+    RepositoryFileTree suzyTree = repo.getTree( request );
+
+    login( USERNAME_TIFFANY, tenantAcme, new String[] { tenantAuthenticatedRoleName } );
+    RepositoryFileTree tiffanyTree = repo.getTree( request );
+
+    assertEquals( 1, cache.getSize() );
+    assertSame( suzyTree, tiffanyTree );
+    assertNoProxies( tiffanyTree );
+
+    RepositoryFileTree reports = find( tiffanyTree, ClientRepositoryPaths.getPublicFolderPath() + "/reports" );
+    assertNotNull( reports );
+    RepositoryFile sales = find( reports, ClientRepositoryPaths.getPublicFolderPath() + "/reports/sales.txt" )
+        .getFile();
+    assertEquals( "sales.txt", sales.getName() );
+    assertEquals( "Sales", sales.getTitle() );
+    assertEquals( repo.getFile( sales.getPath() ).getId(), sales.getId() );
+  }
+
+  private static void assertNoProxies( final RepositoryFileTree tree ) {
+    assertFalse( tree.getFile().getPath(), tree.getFile() instanceof RepositoryFileProxy );
+    if ( tree.getChildren() != null ) {
+      for ( RepositoryFileTree child : tree.getChildren() ) {
+        assertNoProxies( child );
+      }
+    }
+  }
+
+  private static RepositoryFileTree find( final RepositoryFileTree tree, final String path ) {
+    if ( path.equals( tree.getFile().getPath() ) ) {
+      return tree;
+    }
+    if ( tree.getChildren() != null ) {
+      for ( RepositoryFileTree child : tree.getChildren() ) {
+        RepositoryFileTree found = find( child, path );
+        if ( found != null ) {
+          return found;
+        }
+      }
+    }
+    return null;
+  }
+
+}
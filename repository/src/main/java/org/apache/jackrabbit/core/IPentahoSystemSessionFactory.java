@@ -35,10 +35,26 @@ import javax.jcr.Session;
 public interface IPentahoSystemSessionFactory {
   Session create(RepositoryImpl repository) throws RepositoryException;
 
+  /**
+   * Creates a system session for the given workspace. Implementations that only know the default workspace may keep
+   * this default, which refuses any other workspace.
+   */
+  default Session create( RepositoryImpl repository, String workspaceName ) throws RepositoryException {
+    if ( !"default".equals( workspaceName ) ) {
+      throw new RepositoryException( "Cannot create a system session for workspace " + workspaceName );
+    }
+    return create( repository );
+  }
+
   class DefaultImpl implements IPentahoSystemSessionFactory {
     public Session create(RepositoryImpl repository) throws
         RepositoryException {
-      return SystemSession.create( repository.getRepositoryContext(), repository.getWorkspaceInfo( "default" ).getConfig() );
+      return create( repository, "default" );
+    }
+
+    @Override
+    public Session create( RepositoryImpl repository, String workspaceName ) throws RepositoryException {
+      return SystemSession.create( repository.getRepositoryContext(), repository.getWorkspaceInfo( workspaceName ).getConfig() );
     }
   }
 
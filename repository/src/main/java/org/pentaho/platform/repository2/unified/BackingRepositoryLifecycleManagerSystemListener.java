@@ -26,6 +26,7 @@ import org.pentaho.platform.api.engine.IPentahoSession;
 import org.pentaho.platform.api.engine.IPentahoSystemListener;
 import org.pentaho.platform.api.repository2.unified.IBackingRepositoryLifecycleManager;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
+import org.pentaho.platform.engine.core.system.ReadReplicaMode;
 
 /**
  * Initializes the backing repository.
@@ -55,6 +56,11 @@ public class BackingRepositoryLifecycleManagerSystemListener implements IPentaho
 
   @Override
   public boolean startup( IPentahoSession session ) {
+    if ( ReadReplicaMode.isEnabled() ) {
+      // system folders and default ACLs are maintained by the other servers
+      logger.info( "Read replica; skipping repository lifecycle startup" ); //$NON-NLS-1$
+      return true;
+    }
     try {
       IBackingRepositoryLifecycleManager lcm = PentahoSystem.get( IBackingRepositoryLifecycleManager.class );
       if ( lcm != null ) {
@@ -22,29 +22,37 @@ package org.pentaho.platform.repository2.unified;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.EnumSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Properties;
 
+import org.pentaho.platform.api.engine.IPentahoSession;
 import org.pentaho.platform.api.locale.IPentahoLocale;
 import org.pentaho.platform.api.repository2.unified.IRepositoryFileData;
 import org.pentaho.platform.api.repository2.unified.IUnifiedRepository;
 import org.pentaho.platform.api.repository2.unified.RepositoryFile;
 import org.pentaho.platform.api.repository2.unified.RepositoryFileAce;
 import org.pentaho.platform.api.repository2.unified.RepositoryFileAcl;
+import org.pentaho.platform.api.repository2.unified.RepositoryFileBatch;
+import org.pentaho.platform.api.repository2.unified.RepositoryFileBatchResult;
 import org.pentaho.platform.api.repository2.unified.RepositoryFilePermission;
 import org.pentaho.platform.api.repository2.unified.RepositoryFileTree;
 import org.pentaho.platform.api.repository2.unified.RepositoryRequest;
 import org.pentaho.platform.api.repository2.unified.UnifiedRepositoryAccessDeniedException;
 import org.pentaho.platform.api.repository2.unified.VersionSummary;
+import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
+import org.pentaho.platform.engine.core.system.ReadReplicaMode;
+import org.pentaho.platform.engine.core.system.RequestScopedCache;
 import org.pentaho.platform.repository2.messages.Messages;
 import org.springframework.util.Assert;
 
 /**
  * Default implementation of {@link IUnifiedRepository}. Delegates to {@link IRepositoryFileDao} and
- * {@link IRepositoryFileAclDao}.
+ * {@link IRepositoryFileAclDao}. While a {@link RequestScopedCache} is open, {@code getFile}, {@code getFileById} and
+ * {@code hasAccess} results are remembered until the scope ends or a write goes through this repository.
  * 
  * @author mlowery
  */
@@ -90,25 +98,49 @@ public class DefaultUnifiedRepository implements IUnifiedRepository {
 
   /**
    * {@inheritDoc}
+   * <p/>
+   * Only granted access is remembered for the rest of the request, like a file lookup that found the file. A denial is
+   * asked again, as the file may be created or its ACL changed later in the same request.
    */
   public boolean hasAccess( final String path, final EnumSet<RepositoryFilePermission> permissions ) {
-    return repositoryFileAclDao.hasAccess( path, permissions );
+    RequestScopedCache cache = RequestScopedCache.current();
+    if ( cache == null ) {
+      return repositoryFileAclDao.hasAccess( path, permissions );
+    }
+    List<Object> key = cacheKey( "hasAccess", path, permissions ); //$NON-NLS-1$
+    if ( cache.get( key ) != null ) {
+      return true;
+    }
+    boolean access = repositoryFileAclDao.hasAccess( path, permissions );
+    if ( access ) {
+      cache.put( key, Boolean.TRUE );
+    }
+    return access;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Map<String, EnumSet<RepositoryFilePermission>> getAccess( final List<String> paths,
+      final EnumSet<RepositoryFilePermission> permissions ) {
+    Assert.notNull( paths );
+    Assert.notNull( permissions );
+    return repositoryFileAclDao.getAccess( paths, permissions );
   }
 
   /**
    * {@inheritDoc}
    */
   public RepositoryFile getFile( final String path ) {
-    Assert.hasText( path );
-    return repositoryFileDao.getFile( path, false );
+    return getFile( path, false );
   }
 
   /**
    * {@inheritDoc}
    */
   public RepositoryFile getFileById( final Serializable fileId ) {
-    Assert.notNull( fileId );
-    return repositoryFileDao.getFileById( fileId, false );
+    return getFileById( fileId, false );
   }
 
   /**
@@ -116,7 +148,17 @@ public class DefaultUnifiedRepository implements IUnifiedRepository {
    */
   public RepositoryFile getFile( final String path, final boolean loadMaps ) {
     Assert.hasText( path );
-    return repositoryFileDao.getFile( path, loadMaps );
+    RequestScopedCache cache = RequestScopedCache.current();
+    if ( cache == null ) {
+      return repositoryFileDao.getFile( path, loadMaps );
+    }
+    List<Object> key = cacheKey( "getFile", path, loadMaps ); //$NON-NLS-1$
+    RepositoryFile file = (RepositoryFile) cache.get( key );
+    if ( file == null ) {
+      file = repositoryFileDao.getFile( path, loadMaps );
+      cache.put( key, file );
+    }
+    return file;
   }
 
   /**
@@ -124,7 +166,17 @@ public class DefaultUnifiedRepository implements IUnifiedRepository {
    */
   public RepositoryFile getFileById( final Serializable fileId, final boolean loadMaps ) {
     Assert.notNull( fileId );
-    return repositoryFileDao.getFileById( fileId, loadMaps );
+    RequestScopedCache cache = RequestScopedCache.current();
+    if ( cache == null ) {
+      return repositoryFileDao.getFileById( fileId, loadMaps );
+    }
+    List<Object> key = cacheKey( "getFileById", fileId, loadMaps ); //$NON-NLS-1$
+    RepositoryFile file = (RepositoryFile) cache.get( key );
+    if ( file == null ) {
+      file = repositoryFileDao.getFileById( fileId, loadMaps );
+      cache.put( key, file );
+    }
+    return file;
   }
 
   /**
@@ -159,6 +211,26 @@ public class DefaultUnifiedRepository implements IUnifiedRepository {
     return this.repositoryFileDao.getFileById( fileId, loadLocaleMaps, locale );
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Map<Serializable, String> getLocalizedTitles( final List<Serializable> fileIds, final IPentahoLocale locale ) {
+    Assert.notNull( fileIds );
+    return repositoryFileDao.getLocalizedTitles( fileIds, locale );
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public RepositoryFileBatchResult applyBatch( final RepositoryFileBatch batch ) {
+    Assert.notNull( batch );
+    beforeWrite();
+    RepositoryFileBatchResult result = repositoryFileDao.applyBatch( batch );
+    return result != null ? result : IUnifiedRepository.super.applyBatch( batch );
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -311,8 +383,10 @@ public class DefaultUnifiedRepository implements IUnifiedRepository {
     Assert.notNull( fileId );
     if ( permanent ) {
       // fyi: acl deleted when file node is deleted
+      beforeWrite();
       repositoryFileDao.permanentlyDeleteFile( fileId, versionMessage );
     } else {
+      beforeWrite();
       repositoryFileDao.deleteFile( fileId, versionMessage );
     }
   }
@@ -330,6 +404,7 @@ public class DefaultUnifiedRepository implements IUnifiedRepository {
   public void deleteFileAtVersion( final Serializable fileId, final Serializable versionId ) {
     Assert.notNull( fileId );
     Assert.notNull( versionId );
+    beforeWrite();
     repositoryFileDao.deleteFileAtVersion( fileId, versionId );
   }
 
@@ -362,11 +437,19 @@ public class DefaultUnifiedRepository implements IUnifiedRepository {
     return repositoryFileDao.getAllDeletedFiles();
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  public List<RepositoryFile> getAllDeletedFiles( final int offset, final int limit ) {
+    return repositoryFileDao.getAllDeletedFiles( offset, limit );
+  }
+
   /**
    * {@inheritDoc}
    */
   public void undeleteFile( final Serializable fileId, final String versionMessage ) {
     Assert.notNull( fileId );
+    beforeWrite();
     repositoryFileDao.undeleteFile( fileId, versionMessage );
   }
 
@@ -383,6 +466,7 @@ public class DefaultUnifiedRepository implements IUnifiedRepository {
    */
   public void lockFile( final Serializable fileId, final String message ) {
     Assert.notNull( fileId );
+    beforeWrite();
     repositoryFileDao.lockFile( fileId, message );
   }
 
@@ -391,6 +475,7 @@ public class DefaultUnifiedRepository implements IUnifiedRepository {
    */
   public void unlockFile( final Serializable fileId ) {
     Assert.notNull( fileId );
+    beforeWrite();
     repositoryFileDao.unlockFile( fileId );
   }
 
@@ -444,6 +529,7 @@ public class DefaultUnifiedRepository implements IUnifiedRepository {
       throw new UnifiedRepositoryAccessDeniedException( Messages.getInstance().getString(
           "DefaultUnifiedRepository.ERROR_0001_ACCESS_DENIED_UPDATE_ACL", acl.getId() ) );
     }
+    beforeWrite();
     return repositoryFileAclDao.updateAcl( acl );
   }
 
@@ -453,6 +539,7 @@ public class DefaultUnifiedRepository implements IUnifiedRepository {
   public void moveFile( final Serializable fileId, final String destAbsPath, final String versionMessage ) {
     Assert.notNull( fileId );
     Assert.hasText( destAbsPath );
+    beforeWrite();
     repositoryFileDao.moveFile( fileId, destAbsPath, versionMessage );
   }
 
@@ -462,6 +549,7 @@ public class DefaultUnifiedRepository implements IUnifiedRepository {
   public void copyFile( final Serializable fileId, final String destAbsPath, final String versionMessage ) {
     Assert.notNull( fileId );
     Assert.hasText( destAbsPath );
+    beforeWrite();
     repositoryFileDao.copyFile( fileId, destAbsPath, versionMessage );
   }
 
@@ -471,6 +559,7 @@ public class DefaultUnifiedRepository implements IUnifiedRepository {
   public void restoreFileAtVersion( final Serializable fileId, final Serializable versionId, final String versionMessage ) {
     Assert.notNull( fileId );
     Assert.notNull( versionId );
+    beforeWrite();
     repositoryFileDao.restoreFileAtVersion( fileId, versionId, versionMessage );
   }
 
@@ -502,21 +591,53 @@ public class DefaultUnifiedRepository implements IUnifiedRepository {
     return getTree( new RepositoryRequest( path, showHidden, depth, filter ) );
   }
 
+  /**
+   * Key of a lookup remembered in the {@link RequestScopedCache}. Includes the user, as access checks and lookups
+   * depend on it and a request may run code as another user.
+   */
+  private static List<Object> cacheKey( final String method, final Object... args ) {
+    IPentahoSession session = PentahoSessionHolder.getSession();
+    List<Object> key = new ArrayList<Object>( args.length + 2 );
+    key.add( method );
+    key.add( session != null ? session.getName() : null );
+    key.addAll( Arrays.asList( args ) );
+    return key;
+  }
+
+  /**
+   * Called before every write. Rejects the write on a {@link ReadReplicaMode read replica}, and otherwise forgets the
+   * lookups of the current request. Misses are never remembered, so files created outside this repository (such as
+   * home folders) are found once they exist.
+   */
+  private static void beforeWrite() {
+    if ( ReadReplicaMode.isEnabled() ) {
+      throw new UnifiedRepositoryAccessDeniedException( Messages.getInstance().getString(
+          "DefaultUnifiedRepository.ERROR_0002_READ_REPLICA" ) ); //$NON-NLS-1$
+    }
+    RequestScopedCache cache = RequestScopedCache.current();
+    if ( cache != null ) {
+      cache.clear();
+    }
+  }
+
   private RepositoryFile internalCreateFile( final Serializable parentFolderId, final RepositoryFile file,
       final IRepositoryFileData data, final RepositoryFileAcl acl, final String versionMessage ) {
     Assert.notNull( file );
     Assert.notNull( data );
+    beforeWrite();
     return repositoryFileDao.createFile( parentFolderId, file, data, acl, versionMessage );
   }
 
   private RepositoryFile internalCreateFolder( final Serializable parentFolderId, final RepositoryFile file,
       final RepositoryFileAcl acl, final String versionMessage ) {
     Assert.notNull( file );
+    beforeWrite();
     return repositoryFileDao.createFolder( parentFolderId, file, acl, versionMessage );
   }
 
   private RepositoryFile internalUpdateFolder( final RepositoryFile file, final String versionMessage ) {
     Assert.notNull( file );
+    beforeWrite();
     return repositoryFileDao.updateFolder( file, versionMessage );
   }
 
@@ -524,6 +645,7 @@ public class DefaultUnifiedRepository implements IUnifiedRepository {
       final String versionMessage ) {
     Assert.notNull( file );
     Assert.notNull( data );
+    beforeWrite();
     return repositoryFileDao.updateFile( file, data, versionMessage );
   }
 
@@ -534,6 +656,7 @@ public class DefaultUnifiedRepository implements IUnifiedRepository {
 
   public void setFileMetadata( final Serializable fileId, Map<String, Serializable> metadataMap ) {
     Assert.notNull( fileId );
+    beforeWrite();
     repositoryFileDao.setFileMetadata( fileId, metadataMap );
   }
 
@@ -587,6 +710,7 @@ public class DefaultUnifiedRepository implements IUnifiedRepository {
     Assert.notNull( fileId );
     Assert.notNull( locale );
     Assert.notNull( properties );
+    beforeWrite();
     repositoryFileDao.setLocalePropertiesForFileById( fileId, locale, properties );
   }
 
@@ -595,6 +719,7 @@ public class DefaultUnifiedRepository implements IUnifiedRepository {
     Assert.notNull( relPath );
     Assert.notNull( locale );
     Assert.notNull( properties );
+    beforeWrite();
     repositoryFileDao.setLocalePropertiesForFileByPath( relPath, locale, properties );
   }
 
@@ -603,6 +728,7 @@ public class DefaultUnifiedRepository implements IUnifiedRepository {
     Assert.notNull( repositoryFile );
     Assert.notNull( locale );
     Assert.notNull( properties );
+    beforeWrite();
     repositoryFileDao.setLocalePropertiesForFile( repositoryFile, locale, properties );
   }
 
@@ -610,6 +736,7 @@ public class DefaultUnifiedRepository implements IUnifiedRepository {
   public void deleteLocalePropertiesForFile( RepositoryFile repositoryFile, String locale ) {
     Assert.notNull( repositoryFile );
     Assert.notNull( locale );
+    beforeWrite();
     repositoryFileDao.deleteLocalePropertiesForFile( repositoryFile, locale );
   }
 
@@ -41,6 +41,8 @@ import org.pentaho.platform.api.repository2.unified.IUnifiedRepository;
 import org.pentaho.platform.api.repository2.unified.RepositoryFile;
 import org.pentaho.platform.api.repository2.unified.RepositoryFileAce;
 import org.pentaho.platform.api.repository2.unified.RepositoryFileAcl;
+import org.pentaho.platform.api.repository2.unified.RepositoryFileBatch;
+import org.pentaho.platform.api.repository2.unified.RepositoryFileBatchResult;
 import org.pentaho.platform.api.repository2.unified.RepositoryFilePermission;
 import org.pentaho.platform.api.repository2.unified.RepositoryFileTree;
 import org.pentaho.platform.api.repository2.unified.RepositoryRequest;
@@ -260,6 +262,23 @@ public class ExceptionLoggingDecorator implements IUnifiedRepository {
     }, Messages.getInstance().getString( "ExceptionLoggingDecorator.getAllDeletedFiles" ) ); //$NON-NLS-1$
   }
 
+  public List<RepositoryFile> getAllDeletedFiles( final int offset, final int limit ) {
+    return callLogThrow( new Callable<List<RepositoryFile>>() {
+      public List<RepositoryFile> call() throws Exception {
+        return delegatee.getAllDeletedFiles( offset, limit );
+      }
+    }, Messages.getInstance().getString( "ExceptionLoggingDecorator.getAllDeletedFiles" ) ); //$NON-NLS-1$
+  }
+
+  @Override
+  public RepositoryFileBatchResult applyBatch( final RepositoryFileBatch batch ) {
+    return callLogThrow( new Callable<RepositoryFileBatchResult>() {
+      public RepositoryFileBatchResult call() throws Exception {
+        return delegatee.applyBatch( batch );
+      }
+    }, Messages.getInstance().getString( "ExceptionLoggingDecorator.applyBatch", batch.size() ) ); //$NON-NLS-1$
+  }
+
   public List<RepositoryFileAce> getEffectiveAces( final Serializable fileId ) {
     return callLogThrow( new Callable<List<RepositoryFileAce>>() {
       public List<RepositoryFileAce> call() throws Exception {
@@ -334,6 +353,15 @@ public class ExceptionLoggingDecorator implements IUnifiedRepository {
     }, Messages.getInstance().getString( "ExceptionLoggingDecorator.getFileById", fileId ) ); //$NON-NLS-1$
   }
 
+  @Override
+  public Map<Serializable, String> getLocalizedTitles( final List<Serializable> fileIds, final IPentahoLocale locale ) {
+    return callLogThrow( new Callable<Map<Serializable, String>>() {
+      public Map<Serializable, String> call() throws Exception {
+        return delegatee.getLocalizedTitles( fileIds, locale );
+      }
+    }, Messages.getInstance().getString( "ExceptionLoggingDecorator.getLocalizedTitles", fileIds.size() ) ); //$NON-NLS-1$
+  }
+
   @Override
   public RepositoryFile getFile( final String path, final boolean loadLocaleMaps, final IPentahoLocale locale ) {
     return callLogThrow( new Callable<RepositoryFile>() {
@@ -385,6 +413,16 @@ public class ExceptionLoggingDecorator implements IUnifiedRepository {
     }, Messages.getInstance().getString( "ExceptionLoggingDecorator.hasAccess", path ) ); //$NON-NLS-1$
   }
 
+  @Override
+  public Map<String, EnumSet<RepositoryFilePermission>> getAccess( final List<String> paths,
+      final EnumSet<RepositoryFilePermission> permissions ) {
+    return callLogThrow( new Callable<Map<String, EnumSet<RepositoryFilePermission>>>() {
+      public Map<String, EnumSet<RepositoryFilePermission>> call() throws Exception {
+        return delegatee.getAccess( paths, permissions );
+      }
+    }, Messages.getInstance().getString( "ExceptionLoggingDecorator.getAccess", paths.size() ) ); //$NON-NLS-1$
+  }
+
   public void lockFile( final Serializable fileId, final String message ) {
     callLogThrow( new Callable<Void>() {
       public Void call() throws Exception {
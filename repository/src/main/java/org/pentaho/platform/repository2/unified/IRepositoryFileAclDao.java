@@ -27,7 +27,9 @@ import org.pentaho.platform.api.repository2.unified.RepositoryFileSid;
 
 import java.io.Serializable;
 import java.util.EnumSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * A data access object for reading and writing {@code RepositoryFileAcl} instances. The methods in this interface
@@ -62,6 +64,32 @@ public interface IRepositoryFileAclDao {
    */
   boolean hasAccess( final String relPath, final EnumSet<RepositoryFilePermission> permissions );
 
+  /**
+   * Returns, for each path, which of the permissions the user has, each decided as {@link #hasAccess} would. A path
+   * that does not exist maps to an empty set.
+   * 
+   * @param relPaths
+   *          paths to files
+   * @param permissions
+   *          permissions to check
+   * @return map of path to the permissions held, in the order of {@code relPaths}
+   */
+  default Map<String, EnumSet<RepositoryFilePermission>> getAccess( final List<String> relPaths,
+      final EnumSet<RepositoryFilePermission> permissions ) {
+    Map<String, EnumSet<RepositoryFilePermission>> access =
+        new LinkedHashMap<String, EnumSet<RepositoryFilePermission>>();
+    for ( String relPath : relPaths ) {
+      EnumSet<RepositoryFilePermission> granted = EnumSet.noneOf( RepositoryFilePermission.class );
+      for ( RepositoryFilePermission permission : permissions ) {
+        if ( hasAccess( relPath, EnumSet.of( permission ) ) ) {
+          granted.add( permission );
+        }
+      }
+      access.put( relPath, granted );
+    }
+    return access;
+  }
+
   /**
    * Returns ACL for file.
    * 
@@ -21,15 +21,19 @@
 package org.pentaho.platform.repository2.unified;
 
 import java.io.Serializable;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Properties;
 
 import org.pentaho.platform.api.locale.IPentahoLocale;
+import org.pentaho.platform.api.repository2.unified.DeletedFilePages;
 import org.pentaho.platform.api.repository2.unified.IRepositoryFileData;
 import org.pentaho.platform.api.repository2.unified.RepositoryFile;
 import org.pentaho.platform.api.repository2.unified.RepositoryFileAcl;
+import org.pentaho.platform.api.repository2.unified.RepositoryFileBatch;
+import org.pentaho.platform.api.repository2.unified.RepositoryFileBatchResult;
 import org.pentaho.platform.api.repository2.unified.RepositoryFileTree;
 import org.pentaho.platform.api.repository2.unified.RepositoryRequest;
 import org.pentaho.platform.api.repository2.unified.VersionSummary;
@@ -66,6 +70,18 @@ public interface IRepositoryFileDao {
 
   RepositoryFile getFileById( final Serializable fileId, final boolean loadLocaleMaps, final IPentahoLocale locale );
 
+  default Map<Serializable, String> getLocalizedTitles( final List<Serializable> fileIds,
+      final IPentahoLocale locale ) {
+    Map<Serializable, String> titles = new LinkedHashMap<Serializable, String>();
+    for ( Serializable fileId : fileIds ) {
+      RepositoryFile file = getFileById( fileId, locale );
+      if ( file != null ) {
+        titles.put( fileId, file.getTitle() );
+      }
+    }
+    return titles;
+  }
+
   <T extends IRepositoryFileData> T getData( final Serializable fileId, final Serializable versionId,
       final Class<T> dataClass );
 
@@ -84,6 +100,14 @@ public interface IRepositoryFileDao {
 
   RepositoryFile updateFile( final RepositoryFile file, final IRepositoryFileData data, final String versionMessage );
 
+  /**
+   * Applies the batch in grouped saves, or returns {@code null} if this DAO has no batched implementation, in which case
+   * the caller applies the operations one by one.
+   */
+  default RepositoryFileBatchResult applyBatch( final RepositoryFileBatch batch ) {
+    return null;
+  }
+
   void deleteFile( final Serializable fileId, final String versionMessage );
 
   void deleteFileAtVersion( final Serializable fileId, final Serializable versionId );
@@ -100,6 +124,10 @@ public interface IRepositoryFileDao {
     return getDeletedFiles();
   }
 
+  default List<RepositoryFile> getAllDeletedFiles( final int offset, final int limit ) {
+    return DeletedFilePages.page( getAllDeletedFiles(), offset, limit );
+  }
+
   boolean canUnlockFile( final Serializable fileId );
 
   void lockFile( final Serializable fileId, final String message );
@@ -108,6 +108,49 @@ public class RepositoryFileInputStream extends InputStream {
     return is.read();
   }
 
+  // bulk reads and skips go straight to the binary stream rather than through read() one byte at a time
+
+  @Override
+  public int read( byte[] b, int off, int len ) throws IOException {
+    if ( is == null ) {
+      setStream();
+    }
+    return is.read( b, off, len );
+  }
+
+  @Override
+  public long skip( long n ) throws IOException {
+    if ( is == null ) {
+      setStream();
+    }
+    return is.skip( n );
+  }
+
+  @Override
+  public int available() throws IOException {
+    if ( is == null ) {
+      setStream();
+    }
+    return is.available();
+  }
+
+  @Override
+  public void close() throws IOException {
+    if ( is != null ) {
+      is.close();
+    }
+  }
+
+  /**
+   * @return the exact number of bytes of the file content, or -1 if the repository does not know it
+   */
+  public long getContentLength() {
+    if ( fileData == null ) {
+      fileData = repository.getDataForRead( file.getId(), SimpleRepositoryFileData.class );
+    }
+    return fileData.isDataSizeExact() ? fileData.getDataSize() : -1;
+  }
+
   public String getMimeType() {
     if ( fileData == null ) {
       fileData = repository.getDataForRead( file.getId(), SimpleRepositoryFileData.class );
@@ -25,11 +25,15 @@ import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.EnumSet;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
 
+import org.apache.commons.lang.StringUtils;
+import org.pentaho.platform.api.engine.IPentahoSession;
 import org.pentaho.platform.api.locale.IPentahoLocale;
 import org.pentaho.platform.api.repository2.unified.IRepositoryFileData;
 import org.pentaho.platform.api.repository2.unified.IUnifiedRepository;
@@ -37,12 +41,38 @@ import org.pentaho.platform.api.repository2.unified.RepositoryFile;
 import org.pentaho.platform.api.repository2.unified.RepositoryFileAce;
 import org.pentaho.platform.api.repository2.unified.RepositoryFileAcl;
 import org.pentaho.platform.api.repository2.unified.RepositoryFilePermission;
+import org.pentaho.platform.api.repository2.unified.RepositoryFileSid;
 import org.pentaho.platform.api.repository2.unified.RepositoryFileTree;
 import org.pentaho.platform.api.repository2.unified.RepositoryRequest;
+import org.pentaho.platform.api.repository2.unified.UnifiedRepositoryAccessDeniedException;
 import org.pentaho.platform.api.repository2.unified.VersionSummary;
+import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
+import org.pentaho.platform.engine.core.system.PentahoSystem;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.util.Assert;
 
+/**
+ * {@link IUnifiedRepository} over a folder of the file system.
+ * <p/>
+ * Indexed repositories keep ACLs and enforce them for the user of the current Pentaho session: files the user cannot
+ * read are not returned, and changes the user is not allowed to make fail with an
+ * {@link UnifiedRepositoryAccessDeniedException}. A file is governed by the entries of the nearest ACL, on the file or
+ * above it, that does not inherit; as long as no such ACL exists the file is open to everyone, as files are before
+ * any ACL is set. Users with the single tenant administrator role have all permissions, and code running without a
+ * Pentaho session runs as the single tenant administrator.
+ */
 public class FileSystemBackedUnifiedRepository implements IUnifiedRepository {
+  private static final EnumSet<RepositoryFilePermission> READ = EnumSet.of( RepositoryFilePermission.READ );
+
+  private static final EnumSet<RepositoryFilePermission> WRITE = EnumSet.of( RepositoryFilePermission.WRITE );
+
+  private static final EnumSet<RepositoryFilePermission> DELETE = EnumSet.of( RepositoryFilePermission.DELETE );
+
+  private static final EnumSet<RepositoryFilePermission> ACL_MANAGEMENT =
+      EnumSet.of( RepositoryFilePermission.ACL_MANAGEMENT );
+
   private FileSystemRepositoryFileDao repositoryFileDao;
 
   public FileSystemBackedUnifiedRepository( final String baseDir ) {
@@ -57,86 +87,137 @@ public class FileSystemBackedUnifiedRepository implements IUnifiedRepository {
     this( new FileSystemRepositoryFileDao() );
   }
 
+  /**
+   * @param indexed
+   *          see {@link FileSystemRepositoryFileDao#FileSystemRepositoryFileDao(File, boolean)}
+   */
+  public FileSystemBackedUnifiedRepository( final File baseDir, final boolean indexed ) {
+    this( new FileSystemRepositoryFileDao( baseDir, indexed ) );
+  }
+
   public FileSystemBackedUnifiedRepository( final FileSystemRepositoryFileDao repositoryFileDao ) {
     this.repositoryFileDao = repositoryFileDao;
   }
 
+  public void close() {
+    repositoryFileDao.close();
+  }
+
   public boolean canUnlockFile( Serializable fileId ) {
     return repositoryFileDao.canUnlockFile( fileId );
   }
 
   public RepositoryFile createFile( Serializable parentFolderId, RepositoryFile file, IRepositoryFileData data,
       String versionMessage ) {
+    checkAccess( parentFolderId, WRITE );
     return repositoryFileDao.createFile( parentFolderId, file, data, null, versionMessage );
   }
 
   public RepositoryFile createFile( Serializable parentFolderId, RepositoryFile file, IRepositoryFileData data,
       RepositoryFileAcl acl, String versionMessage ) {
+    checkAccess( parentFolderId, WRITE );
     return repositoryFileDao.createFile( parentFolderId, file, data, acl, versionMessage );
   }
 
   public RepositoryFile createFolder( Serializable parentFolderId, RepositoryFile file, String versionMessage ) {
+    checkAccess( parentFolderId, WRITE );
     return repositoryFileDao.createFolder( parentFolderId, file, null, versionMessage );
   }
 
   public RepositoryFile createFolder( Serializable parentFolderId, RepositoryFile file, RepositoryFileAcl acl,
       String versionMessage ) {
+    checkAccess( parentFolderId, WRITE );
     return repositoryFileDao.createFolder( parentFolderId, file, acl, versionMessage );
   }
 
   public void deleteFile( Serializable fileId, boolean permanent, String versionMessage ) {
+    checkAccess( fileId, DELETE );
     repositoryFileDao.deleteFile( fileId, versionMessage );
 
   }
 
   public void deleteFile( Serializable fileId, String versionMessage ) {
+    checkAccess( fileId, DELETE );
     repositoryFileDao.deleteFile( fileId, versionMessage );
 
   }
 
   public void deleteFileAtVersion( Serializable fileId, Serializable versionId ) {
+    checkAccess( fileId, DELETE );
     repositoryFileDao.deleteFileAtVersion( fileId, versionId );
   }
 
+  /**
+   * Files that were never given an ACL inherit the ACL of their folder, and are owned by the current user if no folder
+   * has one.
+   */
   public RepositoryFileAcl getAcl( Serializable fileId ) {
-    throw new UnsupportedOperationException();
+    if ( !repositoryFileDao.isIndexed() ) {
+      throw new UnsupportedOperationException();
+    }
+    checkAccess( fileId, READ );
+    RepositoryFileAcl acl = repositoryFileDao.getAcl( fileId );
+    if ( acl != null ) {
+      return acl;
+    }
+    RepositoryFileAcl parentAcl = getParentAcl( fileId );
+    RepositoryFileSid owner = parentAcl != null ? parentAcl.getOwner() : new RepositoryFileSid( getUserName() );
+    return new RepositoryFileAcl.Builder( fileId, owner ).entriesInheriting( true ).build();
+  }
+
+  private RepositoryFileAcl getParentAcl( final Serializable fileId ) {
+    File parent = new File( fileId.toString() ).getParentFile();
+    File rootDir = repositoryFileDao.getRootDir();
+    while ( parent != null && parent.getAbsolutePath().startsWith( rootDir.getAbsolutePath() ) ) {
+      RepositoryFileAcl acl = repositoryFileDao.getAcl( parent.getAbsolutePath() );
+      if ( acl != null ) {
+        return acl;
+      }
+      parent = parent.getParentFile();
+    }
+    return null;
   }
   
   @Override
   public List<RepositoryFile> getChildren( RepositoryRequest repositoryRequest ) {
-    return repositoryFileDao.getChildren( repositoryRequest );
+    return readable( repositoryFileDao.getChildren( repositoryRequest ) );
   }
 
   @Deprecated
   public List<RepositoryFile> getChildren( Serializable folderId ) {
-    return repositoryFileDao.getChildren( folderId, "", false );
+    return readable( repositoryFileDao.getChildren( folderId, "", false ) );
   }
 
   @Deprecated
   public List<RepositoryFile> getChildren( Serializable folderId, String filter) {
-    return repositoryFileDao.getChildren( folderId, filter, false);
+    return readable( repositoryFileDao.getChildren( folderId, filter, false) );
   }
   
   @Deprecated
   public List<RepositoryFile> getChildren( Serializable folderId, String filter, Boolean showHiddenFiles ) {
-    return repositoryFileDao.getChildren( new RepositoryRequest( folderId.toString(), showHiddenFiles, -1, filter ) );
+    return readable(
+        repositoryFileDao.getChildren( new RepositoryRequest( folderId.toString(), showHiddenFiles, -1, filter ) ) );
   }
 
   public <T extends IRepositoryFileData> T getDataAtVersionForExecute( Serializable fileId, Serializable versionId,
       Class<T> dataClass ) {
+    checkAccess( fileId, READ );
     return repositoryFileDao.getData( fileId, versionId, dataClass );
   }
 
   public <T extends IRepositoryFileData> T getDataAtVersionForRead( Serializable fileId, Serializable versionId,
       Class<T> dataClass ) {
+    checkAccess( fileId, READ );
     return repositoryFileDao.getData( fileId, versionId, dataClass );
   }
 
   public <T extends IRepositoryFileData> T getDataForExecute( Serializable fileId, Class<T> dataClass ) {
+    checkAccess( fileId, READ );
     return repositoryFileDao.getData( fileId, null, dataClass );
   }
 
   public <T extends IRepositoryFileData> T getDataForRead( Serializable fileId, Class<T> dataClass ) {
+    checkAccess( fileId, READ );
     return repositoryFileDao.getData( fileId, null, dataClass );
   }
 
@@ -153,12 +234,33 @@ public class FileSystemBackedUnifiedRepository implements IUnifiedRepository {
   }
 
   public List<RepositoryFileAce> getEffectiveAces( Serializable fileId ) {
-    // TODO Auto-generated method stub
-    return null;
+    return getEffectiveAces( fileId, false );
   }
 
   public List<RepositoryFileAce> getEffectiveAces( Serializable fileId, boolean forceEntriesInheriting ) {
-    // TODO Auto-generated method stub
+    if ( !repositoryFileDao.isIndexed() ) {
+      return null;
+    }
+    RepositoryFileAcl acl = getGoverningAcl( fileId, forceEntriesInheriting );
+    return acl != null ? acl.getAces() : Collections.<RepositoryFileAce>emptyList();
+  }
+
+  /**
+   * @return the nearest ACL, on the file or above it, that does not inherit; null if there is none
+   */
+  private RepositoryFileAcl getGoverningAcl( final Serializable fileId, final boolean forceEntriesInheriting ) {
+    File file = new File( fileId.toString() );
+    File rootDir = repositoryFileDao.getRootDir();
+    if ( forceEntriesInheriting ) {
+      file = file.getParentFile();
+    }
+    while ( file != null && file.getAbsolutePath().startsWith( rootDir.getAbsolutePath() ) ) {
+      RepositoryFileAcl acl = repositoryFileDao.getAcl( file.getAbsolutePath() );
+      if ( acl != null && !acl.isEntriesInheriting() ) {
+        return acl;
+      }
+      file = file.getParentFile();
+    }
     return null;
   }
 
@@ -168,59 +270,61 @@ public class FileSystemBackedUnifiedRepository implements IUnifiedRepository {
       // Handle leading slash on windows style path with drive letter (eg. /c:/folder1/file1)
       result = repositoryFileDao.getFile( path.substring( 1 ) );
     }
-    return result;
+    return readable( result );
   }
 
   public RepositoryFile getFile( String path, boolean loadLocaleMaps ) {
-    return repositoryFileDao.getFile( path, loadLocaleMaps );
+    return readable( repositoryFileDao.getFile( path, loadLocaleMaps ) );
   }
 
   public RepositoryFile getFileAtVersion( Serializable fileId, Serializable versionId ) {
-    return repositoryFileDao.getFile( fileId, versionId );
+    return readable( repositoryFileDao.getFile( fileId, versionId ) );
   }
 
   public RepositoryFile getFileById( Serializable fileId ) {
-    return repositoryFileDao.getFile( fileId, null );
+    return readable( repositoryFileDao.getFile( fileId, null ) );
   }
 
   public RepositoryFile getFileById( Serializable fileId, boolean loadLocaleMaps ) {
-    return repositoryFileDao.getFileById( fileId, loadLocaleMaps );
+    return readable( repositoryFileDao.getFileById( fileId, loadLocaleMaps ) );
   }
 
   @Override
   public RepositoryFile getFile( String path, IPentahoLocale locale ) {
-    return this.repositoryFileDao.getFile( path, locale );
+    return readable( this.repositoryFileDao.getFile( path, locale ) );
   }
 
   @Override
   public RepositoryFile getFileById( Serializable fileId, IPentahoLocale locale ) {
-    return this.repositoryFileDao.getFileById( fileId, locale );
+    return readable( this.repositoryFileDao.getFileById( fileId, locale ) );
   }
 
   @Override
   public RepositoryFile getFile( String path, boolean loadLocaleMaps, IPentahoLocale locale ) {
-    return this.repositoryFileDao.getFile( path, loadLocaleMaps, locale );
+    return readable( this.repositoryFileDao.getFile( path, loadLocaleMaps, locale ) );
   }
 
   @Override
   public RepositoryFile getFileById( Serializable fileId, boolean loadLocaleMaps, IPentahoLocale locale ) {
-    return this.repositoryFileDao.getFileById( fileId, loadLocaleMaps, locale );
+    return readable( this.repositoryFileDao.getFileById( fileId, loadLocaleMaps, locale ) );
   }
   
   @Override
   public RepositoryFileTree getTree( RepositoryRequest repositoryRequest ) {
-    return repositoryFileDao.getTree( repositoryRequest);
+    return readable( repositoryFileDao.getTree( repositoryRequest) );
   }
 
   public RepositoryFileTree getTree( String path, int depth, String filter, boolean showHidden ) {
-    return repositoryFileDao.getTree( new RepositoryRequest( path, showHidden, depth, filter ) );
+    return readable( repositoryFileDao.getTree( new RepositoryRequest( path, showHidden, depth, filter ) ) );
   }
 
   public List<VersionSummary> getVersionSummaries( Serializable fileId ) {
+    checkAccess( fileId, READ );
     return repositoryFileDao.getVersionSummaries( fileId );
   }
 
   public VersionSummary getVersionSummary( Serializable fileId, Serializable versionId ) {
+    checkAccess( fileId, READ );
     return repositoryFileDao.getVersionSummary( fileId, versionId );
   }
 
@@ -229,18 +333,23 @@ public class FileSystemBackedUnifiedRepository implements IUnifiedRepository {
   }
 
   public boolean hasAccess( String path, EnumSet<RepositoryFilePermission> permissions ) {
-    throw new UnsupportedOperationException();
+    RepositoryFile file = repositoryFileDao.getFile( path );
+    return file != null && hasAccess( file.getId(), permissions );
   }
 
   public void lockFile( Serializable fileId, String message ) {
+    checkAccess( fileId, WRITE );
     repositoryFileDao.lockFile( fileId, message );
   }
 
   public void moveFile( Serializable fileId, String destAbsPath, String versionMessage ) {
+    checkAccess( fileId, WRITE );
+    checkDestinationAccess( destAbsPath );
     repositoryFileDao.moveFile( fileId, destAbsPath, versionMessage );
   }
 
   public void restoreFileAtVersion( Serializable fileId, Serializable versionId, String versionMessage ) {
+    checkAccess( fileId, WRITE );
     repositoryFileDao.restoreFileAtVersion( fileId, versionId, versionMessage );
   }
 
@@ -253,10 +362,16 @@ public class FileSystemBackedUnifiedRepository implements IUnifiedRepository {
   }
 
   public RepositoryFileAcl updateAcl( RepositoryFileAcl acl ) {
-    throw new UnsupportedOperationException();
+    if ( !repositoryFileDao.isIndexed() ) {
+      throw new UnsupportedOperationException();
+    }
+    checkAccess( acl.getId(), ACL_MANAGEMENT );
+    repositoryFileDao.setAcl( acl.getId(), acl );
+    return acl;
   }
 
   public RepositoryFile updateFile( RepositoryFile file, IRepositoryFileData data, String versionMessage ) {
+    checkAccess( file.getId(), WRITE );
     return repositoryFileDao.updateFile( file, data, versionMessage );
   }
 
@@ -275,6 +390,7 @@ public class FileSystemBackedUnifiedRepository implements IUnifiedRepository {
     List<T> data = new ArrayList<T>( files.size() );
     for ( RepositoryFile f : files ) {
       Assert.notNull( f );
+      checkAccess( f.getId(), READ );
       data.add( repositoryFileDao.getData( f.getId(), f.getVersionId(), dataClass ) );
     }
     return data;
@@ -293,15 +409,19 @@ public class FileSystemBackedUnifiedRepository implements IUnifiedRepository {
   }
 
   public void setFileMetadata( final Serializable fileId, Map<String, Serializable> metadataMap ) {
+    checkAccess( fileId, WRITE );
     repositoryFileDao.setFileMetadata( fileId, metadataMap );
   }
 
   public Map<String, Serializable> getFileMetadata( final Serializable fileId ) {
+    checkAccess( fileId, READ );
     return repositoryFileDao.getFileMetadata( fileId );
   }
 
   public void copyFile( Serializable fileId, String destAbsPath, String versionMessage ) {
-    throw new UnsupportedOperationException();
+    checkAccess( fileId, READ );
+    checkDestinationAccess( destAbsPath );
+    repositoryFileDao.copyFile( fileId, destAbsPath, versionMessage );
   }
 
   public List<RepositoryFile> getDeletedFiles( String origParentFolderPath, String filter ) {
@@ -319,57 +439,202 @@ public class FileSystemBackedUnifiedRepository implements IUnifiedRepository {
 
   @Override
   public List<Locale> getAvailableLocalesForFileById( Serializable fileId ) {
-    throw new UnsupportedOperationException();
+    checkAccess( fileId, READ );
+    return repositoryFileDao.getAvailableLocalesForFileById( fileId );
   }
 
   @Override
   public List<Locale> getAvailableLocalesForFileByPath( String relPath ) {
-    throw new UnsupportedOperationException();
+    checkPathAccess( relPath, READ );
+    return repositoryFileDao.getAvailableLocalesForFileByPath( relPath );
   }
 
   @Override
   public List<Locale> getAvailableLocalesForFile( RepositoryFile repositoryFile ) {
-    throw new UnsupportedOperationException();
+    checkAccess( repositoryFile.getId(), READ );
+    return repositoryFileDao.getAvailableLocalesForFile( repositoryFile );
   }
 
   @Override
   public Properties getLocalePropertiesForFileById( Serializable fileId, String locale ) {
-    throw new UnsupportedOperationException();
+    checkAccess( fileId, READ );
+    return repositoryFileDao.getLocalePropertiesForFileById( fileId, locale );
   }
 
   @Override
   public Properties getLocalePropertiesForFileByPath( String relPath, String locale ) {
-    throw new UnsupportedOperationException();
+    checkPathAccess( relPath, READ );
+    return repositoryFileDao.getLocalePropertiesForFileByPath( relPath, locale );
   }
 
   @Override
   public Properties getLocalePropertiesForFile( RepositoryFile repositoryFile, String locale ) {
-    throw new UnsupportedOperationException();
+    checkAccess( repositoryFile.getId(), READ );
+    return repositoryFileDao.getLocalePropertiesForFile( repositoryFile, locale );
   }
 
   @Override
   public void setLocalePropertiesForFileById( Serializable fileId, String locale, Properties properties ) {
-    throw new UnsupportedOperationException();
+    checkAccess( fileId, WRITE );
+    repositoryFileDao.setLocalePropertiesForFileById( fileId, locale, properties );
   }
 
   @Override
   public void setLocalePropertiesForFileByPath( String relPath, String locale, Properties properties ) {
-    throw new UnsupportedOperationException();
+    checkPathAccess( relPath, WRITE );
+    repositoryFileDao.setLocalePropertiesForFileByPath( relPath, locale, properties );
   }
 
   @Override
   public void setLocalePropertiesForFile( RepositoryFile repositoryFile, String locale, Properties properties ) {
-    throw new UnsupportedOperationException();
+    checkAccess( repositoryFile.getId(), WRITE );
+    repositoryFileDao.setLocalePropertiesForFile( repositoryFile, locale, properties );
   }
 
   @Override
   public void deleteLocalePropertiesForFile( RepositoryFile repositoryFile, String locale ) {
-    throw new UnsupportedOperationException();
+    checkAccess( repositoryFile.getId(), WRITE );
+    repositoryFileDao.deleteLocalePropertiesForFile( repositoryFile, locale );
   }
 
   @Override
   public RepositoryFile updateFolder( RepositoryFile folder, String versionMessage ) {
-    throw new UnsupportedOperationException();
+    checkAccess( folder.getId(), WRITE );
+    return repositoryFileDao.updateFolder( folder, versionMessage );
+  }
+
+  // ~ Access control =================================================================================================
+
+  /**
+   * @return true if the current user has all the permissions on the file
+   */
+  private boolean hasAccess( final Serializable fileId, final EnumSet<RepositoryFilePermission> permissions ) {
+    if ( !repositoryFileDao.isIndexed() || fileId == null ) {
+      return true;
+    }
+    IPentahoSession session = PentahoSessionHolder.getSession();
+    if ( session == null || session.getName() == null ) {
+      return true;
+    }
+    Set<String> roles = getRoles();
+    if ( !roles.isEmpty() ) {
+      String adminRole = PentahoSystem.get( String.class, "singleTenantAdminAuthorityName", session ); //$NON-NLS-1$
+      if ( adminRole != null && roles.contains( adminRole ) ) {
+        return true;
+      }
+    }
+    RepositoryFileAcl acl = getGoverningAcl( fileId, false );
+    if ( acl == null ) {
+      return true;
+    }
+    EnumSet<RepositoryFilePermission> granted = EnumSet.noneOf( RepositoryFilePermission.class );
+    for ( RepositoryFileAce ace : acl.getAces() ) {
+      RepositoryFileSid sid = ace.getSid();
+      boolean applies = sid.getType() == RepositoryFileSid.Type.USER
+          ? session.getName().equals( sid.getName() ) : roles.contains( sid.getName() );
+      if ( applies ) {
+        granted.addAll( ace.getPermissions() );
+      }
+    }
+    if ( granted.contains( RepositoryFilePermission.ALL ) ) {
+      return true;
+    }
+    EnumSet<RepositoryFilePermission> required = EnumSet.copyOf( permissions );
+    if ( required.remove( RepositoryFilePermission.ALL ) ) {
+      required.addAll( EnumSet.complementOf( EnumSet.of( RepositoryFilePermission.ALL ) ) );
+    }
+    return granted.containsAll( required );
+  }
+
+  private void checkAccess( final Serializable fileId, final EnumSet<RepositoryFilePermission> permissions ) {
+    if ( !hasAccess( fileId, permissions ) ) {
+      throw new UnifiedRepositoryAccessDeniedException( "Access denied: " + permissions + " on [" + fileId + "]" );
+    }
+  }
+
+  private void checkPathAccess( final String path, final EnumSet<RepositoryFilePermission> permissions ) {
+    RepositoryFile file = repositoryFileDao.getFile( path );
+    if ( file != null ) {
+      checkAccess( file.getId(), permissions );
+    }
+  }
+
+  /**
+   * A file is moved or copied into the destination if it is a folder, and to the destination path otherwise, which
+   * requires writing to the folder it ends up in.
+   */
+  private void checkDestinationAccess( final String destAbsPath ) {
+    RepositoryFile dest = repositoryFileDao.getFile( destAbsPath );
+    if ( dest == null || !dest.isFolder() ) {
+      int index = destAbsPath.lastIndexOf( RepositoryFile.SEPARATOR );
+      dest = repositoryFileDao.getFile( index <= 0 ? RepositoryFile.SEPARATOR : destAbsPath.substring( 0, index ) );
+    }
+    if ( dest != null ) {
+      checkAccess( dest.getId(), WRITE );
+    }
+  }
+
+  private RepositoryFile readable( final RepositoryFile file ) {
+    return file != null && hasAccess( file.getId(), READ ) ? file : null;
+  }
+
+  private List<RepositoryFile> readable( final List<RepositoryFile> files ) {
+    if ( files == null || !repositoryFileDao.isIndexed() ) {
+      return files;
+    }
+    List<RepositoryFile> readable = new ArrayList<RepositoryFile>( files.size() );
+    for ( RepositoryFile file : files ) {
+      if ( hasAccess( file.getId(), READ ) ) {
+        readable.add( file );
+      }
+    }
+    return readable;
+  }
+
+  private RepositoryFileTree readable( final RepositoryFileTree tree ) {
+    if ( tree == null || !repositoryFileDao.isIndexed() ) {
+      return tree;
+    }
+    if ( !hasAccess( tree.getFile().getId(), READ ) ) {
+      return null;
+    }
+    if ( tree.getChildren() == null ) {
+      return tree;
+    }
+    List<RepositoryFileTree> children = new ArrayList<RepositoryFileTree>( tree.getChildren().size() );
+    for ( RepositoryFileTree child : tree.getChildren() ) {
+      RepositoryFileTree readableChild = readable( child );
+      if ( readableChild != null ) {
+        children.add( readableChild );
+      }
+    }
+    RepositoryFileTree copy = new RepositoryFileTree( tree.getFile(), children );
+    copy.setVersioningEnabled( tree.getVersioningEnabled() );
+    copy.setVersionCommentEnabled( tree.getVersionCommentEnabled() );
+    return copy;
+  }
+
+  private static Set<String> getRoles() {
+    Set<String> roles = new HashSet<String>();
+    Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+    if ( authentication != null && authentication.getAuthorities() != null ) {
+      for ( GrantedAuthority authority : authentication.getAuthorities() ) {
+        roles.add( authority.getAuthority() );
+      }
+    }
+    return roles;
+  }
+
+  /**
+   * @return the user of the current Pentaho session, or the single tenant administrator if there is none
+   */
+  private static String getUserName() {
+    IPentahoSession session = PentahoSessionHolder.getSession();
+    if ( session != null && session.getName() != null ) {
+      return session.getName();
+    }
+    String admin = PentahoSystem.get( String.class, "singleTenantAdminUserName", null ); //$NON-NLS-1$
+    return StringUtils.defaultIfEmpty( admin, "admin" ); //$NON-NLS-1$
   }
 
 }
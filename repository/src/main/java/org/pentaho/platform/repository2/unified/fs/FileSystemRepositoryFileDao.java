@@ -31,6 +31,7 @@ import java.io.FileReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Serializable;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -59,6 +60,9 @@ import org.pentaho.platform.api.repository2.unified.data.node.NodeRepositoryFile
 import org.pentaho.platform.api.repository2.unified.data.simple.SimpleRepositoryFileData;
 import org.pentaho.platform.repository.RepositoryFilenameUtils;
 import org.pentaho.platform.repository2.unified.IRepositoryFileDao;
+import org.pentaho.platform.repository2.unified.jcr.LocalePropertyResolver;
+import org.pentaho.platform.repository2.unified.jcr.LocalizationUtil;
+import org.pentaho.platform.util.messages.LocaleHelper;
 import org.pentaho.platform.util.RepositoryPathEncoder;
 
 @SuppressWarnings( "nls" )
@@ -69,6 +73,7 @@ public class FileSystemRepositoryFileDao implements IRepositoryFileDao {
   private static List<Character> reservedCharsWindows =
     Collections.unmodifiableList( Arrays.asList( new Character[]{ '?', '*', ':', '<', '>', '|'} ) );
   private boolean IS_WINDOWS;
+  private FileSystemRepositoryIndex index;
 
   public FileSystemRepositoryFileDao() {
     this( new File( System.getProperty( "solution.root.dir", System.getProperty( "user.dir" ) ) ) );
@@ -90,6 +95,35 @@ public class FileSystemRepositoryFileDao implements IRepositoryFileDao {
     this.rootDir = baseDir;
   }
 
+  /**
+   * @param indexed
+   *          keep titles, locale properties, metadata and ACLs in a {@link FileSystemRepositoryIndex} stored in the
+   *          base folder, and cache file lookups until the file system reports a change
+   */
+  public FileSystemRepositoryFileDao( final String baseDir, final boolean indexed ) {
+    this( new File( baseDir ), indexed );
+  }
+
+  public FileSystemRepositoryFileDao( final File baseDir, final boolean indexed ) {
+    this( baseDir );
+    if ( indexed ) {
+      index = new FileSystemRepositoryIndex( rootDir );
+    }
+  }
+
+  public boolean isIndexed() {
+    return index != null;
+  }
+
+  /**
+   * Stops watching the file system for changes, if indexed.
+   */
+  public void close() {
+    if ( index != null ) {
+      index.close();
+    }
+  }
+
   public boolean canUnlockFile( Serializable fileId ) {
     throw new UnsupportedOperationException( "This operation is not support by this repository" );
   }
@@ -136,6 +170,14 @@ public class FileSystemRepositoryFileDao implements IRepositoryFileDao {
       IOUtils.closeQuietly( fos );
     }
 
+    if ( index != null ) {
+      String path = toRepositoryPath( f );
+      index.invalidate( path );
+      indexLocaleProperties( path, file, true );
+      if ( acl != null ) {
+        index.setAcl( path, new RepositoryFileAcl.Builder( acl ).id( f.getAbsolutePath() ).build() );
+      }
+    }
     return internalGetFile( f );
   }
 
@@ -145,6 +187,14 @@ public class FileSystemRepositoryFileDao implements IRepositoryFileDao {
       String folderNameWithPath = parentFolderId + "/" + file.getName();
       File newFolder = new File( folderNameWithPath );
       newFolder.mkdir();
+      if ( index != null ) {
+        String path = toRepositoryPath( newFolder );
+        index.invalidate( path );
+        indexLocaleProperties( path, file, true );
+        if ( acl != null ) {
+          index.setAcl( path, new RepositoryFileAcl.Builder( acl ).id( newFolder.getAbsolutePath() ).build() );
+        }
+      }
       final RepositoryFile repositoryFolder = internalGetFile( newFolder );
       return repositoryFolder;
     } catch ( Throwable th ) {
@@ -163,7 +213,11 @@ public class FileSystemRepositoryFileDao implements IRepositoryFileDao {
     } catch ( Exception e ) {
       // CHECKSTYLES IGNORE
     }
-
+    if ( index != null ) {
+      String path = toRepositoryPath( new File( fileId.toString() ) );
+      index.invalidate( path );
+      index.remove( path );
+    }
   }
 
   public void deleteFileAtVersion( Serializable fileId, Serializable versionId ) {
@@ -174,6 +228,9 @@ public class FileSystemRepositoryFileDao implements IRepositoryFileDao {
   public List<RepositoryFile> getChildren( RepositoryRequest repositoryRequest ) {
     List<RepositoryFile> children = new ArrayList<RepositoryFile>();
     File folder = new File( getPhysicalFileLocation( repositoryRequest.getPath() ) );
+    if ( index != null ) {
+      return getIndexedChildren( folder, repositoryRequest );
+    }
     for ( Iterator<File> iterator = FileUtils.listFiles( folder, new WildcardFileFilter( repositoryRequest.getChildNodeFilter() ), null ).iterator(); iterator
         .hasNext(); ) {
       children.add( internalGetFile( (File) iterator.next() ) );
@@ -181,6 +238,35 @@ public class FileSystemRepositoryFileDao implements IRepositoryFileDao {
     return children;
   }
 
+  /**
+   * Unlike the unindexed listing, this one includes folders and honours the request types and "|" separated filters
+   * the way the JCR repository does.
+   */
+  private List<RepositoryFile> getIndexedChildren( final File folder, final RepositoryRequest repositoryRequest ) {
+    List<RepositoryFile> children = new ArrayList<RepositoryFile>();
+    List<String> names = index.getChildNames( toRepositoryPath( folder ), folder );
+    if ( names == null ) {
+      return children;
+    }
+    String childNodeFilter = repositoryRequest.getChildNodeFilter();
+    WildcardFileFilter filter =
+        StringUtils.isEmpty( childNodeFilter ) ? null : new WildcardFileFilter( Arrays.asList( childNodeFilter
+            .split( "\\|" ) ) );
+    RepositoryRequest.FILES_TYPE_FILTER types = repositoryRequest.getTypes();
+    for ( String name : names ) {
+      if ( filter != null && !filter.accept( folder, name ) ) {
+        continue;
+      }
+      RepositoryFile child = internalGetFile( new File( folder, name ), false, null );
+      if ( child == null || ( types == RepositoryRequest.FILES_TYPE_FILTER.FILES && child.isFolder() )
+          || ( types == RepositoryRequest.FILES_TYPE_FILTER.FOLDERS && !child.isFolder() ) ) {
+        continue;
+      }
+      children.add( child );
+    }
+    return children;
+  }
+
   @Deprecated
   public List<RepositoryFile> getChildren( Serializable folderId ) {
     return getChildren( folderId, "", false );
@@ -222,15 +308,57 @@ public class FileSystemRepositoryFileDao implements IRepositoryFileDao {
   }
 
   public RepositoryFile internalGetFile( File f ) {
+    if ( index != null ) {
+      return internalGetFile( f, false, null );
+    }
+    return readFile( f );
+  }
+
+  /**
+   * Looks the file up in the index cache, reading it from disk on a miss, and localizes its title and description
+   * from the indexed locale properties.
+   */
+  private RepositoryFile internalGetFile( final File f, final boolean loadLocaleMaps, final IPentahoLocale locale ) {
+    String path = toRepositoryPath( f );
+    RepositoryFile file = index.getCachedFile( path );
+    if ( file == null ) {
+      long generation = index.getGeneration();
+      file = readFile( f );
+      if ( file == null ) {
+        return null;
+      }
+      index.cacheFile( path, file, generation );
+    }
 
+    Map<String, Properties> localePropertiesMap = index.getLocalePropertiesMap( path );
+    if ( localePropertiesMap.isEmpty() && !loadLocaleMaps ) {
+      return file;
+    }
+    Locale currentLocale = locale != null ? locale.getLocale() : LocaleHelper.getLocale();
+    if ( currentLocale == null ) {
+      currentLocale = Locale.getDefault();
+    }
+    LocalePropertyResolver lpr = new LocalePropertyResolver( file.getName() );
+    LocalizationUtil localizationUtil = new LocalizationUtil( localePropertiesMap, currentLocale );
+    String title = localizationUtil.resolveLocalizedString( lpr.resolveDefaultTitleKey(), null );
+    if ( StringUtils.isBlank( title ) ) {
+      title = localizationUtil.resolveLocalizedString( lpr.resolveTitleKey(), null );
+      if ( StringUtils.isBlank( title ) ) {
+        title = localizationUtil.resolveLocalizedString( lpr.resolveNameKey(), file.getTitle() );
+      }
+    }
+    String description = localizationUtil.resolveLocalizedString( lpr.resolveDefaultDescriptionKey(), null );
+    if ( StringUtils.isBlank( description ) ) {
+      description = localizationUtil.resolveLocalizedString( lpr.resolveDescriptionKey(), file.getDescription() );
+    }
+    return new RepositoryFile.Builder( file ).title( title ).description( description ).locale(
+        currentLocale.toString() ).localePropertiesMap( loadLocaleMaps ? localePropertiesMap : null ).build();
+  }
+
+  private RepositoryFile readFile( final File f ) {
     RepositoryFile file = null;
     if ( f.exists() ) {
-      String jcrPath = f.getAbsolutePath().substring( rootDir.getAbsolutePath().length() );
-      if ( jcrPath.length() == 0 ) {
-        jcrPath = "/";
-      } else if ( IS_WINDOWS ) {
-        jcrPath = FilenameUtils.separatorsToUnix( jcrPath );
-      }
+      String jcrPath = toRepositoryPath( f );
 
       file =
           new RepositoryFile.Builder( f.getAbsolutePath(), f.getName() ).createdDate( new Date( f.lastModified() ) )
@@ -242,6 +370,16 @@ public class FileSystemRepositoryFileDao implements IRepositoryFileDao {
 
   }
 
+  private String toRepositoryPath( final File f ) {
+    String jcrPath = f.getAbsolutePath().substring( rootDir.getAbsolutePath().length() );
+    if ( jcrPath.length() == 0 ) {
+      jcrPath = "/";
+    } else if ( IS_WINDOWS ) {
+      jcrPath = FilenameUtils.separatorsToUnix( jcrPath );
+    }
+    return jcrPath;
+  }
+
   public RepositoryFile getFile( String relPath ) {
     return internalGetFile( new File( getPhysicalFileLocation( relPath ) ) );
   }
@@ -264,31 +402,34 @@ public class FileSystemRepositoryFileDao implements IRepositoryFileDao {
   }
 
   public RepositoryFile getFile( String relPath, boolean loadLocaleMaps ) {
-    return getFile( relPath );
+    return getFile( relPath, loadLocaleMaps, null );
   }
 
   public RepositoryFile getFileById( Serializable fileId, boolean loadLocaleMaps ) {
-    return getFile( fileId.toString() );
+    return getFile( fileId.toString(), loadLocaleMaps, null );
   }
 
   @Override
   public RepositoryFile getFile( String relPath, IPentahoLocale locale ) {
-    return getFile( relPath );
+    return getFile( relPath, false, locale );
   }
 
   @Override
   public RepositoryFile getFileById( Serializable fileId, IPentahoLocale locale ) {
-    return getFile( fileId.toString() );
+    return getFile( fileId.toString(), false, locale );
   }
 
   @Override
   public RepositoryFile getFile( String relPath, boolean loadLocaleMaps, IPentahoLocale locale ) {
+    if ( index != null ) {
+      return internalGetFile( new File( getPhysicalFileLocation( relPath ) ), loadLocaleMaps, locale );
+    }
     return getFile( relPath );
   }
 
   @Override
   public RepositoryFile getFileById( Serializable fileId, boolean loadLocaleMaps, IPentahoLocale locale ) {
-    return getFile( fileId.toString() );
+    return getFile( fileId.toString(), loadLocaleMaps, locale );
   }
 
 
@@ -323,7 +464,7 @@ public class FileSystemRepositoryFileDao implements IRepositoryFileDao {
 
       if ( file.isDirectory() ) {
 
-        File[] childrenArray = file.listFiles();
+        File[] childrenArray = listChildren( file );
 
         for ( File child : childrenArray ) {
 
@@ -349,6 +490,21 @@ public class FileSystemRepositoryFileDao implements IRepositoryFileDao {
     return new RepositoryFileTree( rootFile, children );
   }
 
+  private File[] listChildren( final File folder ) {
+    if ( index == null ) {
+      return folder.listFiles();
+    }
+    List<String> names = index.getChildNames( toRepositoryPath( folder ), folder );
+    if ( names == null ) {
+      return new File[ 0 ];
+    }
+    File[] files = new File[ names.size() ];
+    for ( int i = 0; i < files.length; i++ ) {
+      files[ i ] = new File( folder, names.get( i ) );
+    }
+    return files;
+  }
+
   public List<VersionSummary> getVersionSummaries( Serializable fileId ) {
     throw new UnsupportedOperationException( "This operation is not support by this repository" );
   }
@@ -365,10 +521,34 @@ public class FileSystemRepositoryFileDao implements IRepositoryFileDao {
   }
 
   public void moveFile( Serializable fileId, String destRelPath, String versionMessage ) {
-    RepositoryFile file = getFileById( fileId );
-    SimpleRepositoryFileData data = getData( fileId, null, SimpleRepositoryFileData.class );
-    deleteFile( fileId, versionMessage );
-    createFile( null, file, data, null, versionMessage );
+    File source = new File( fileId.toString() );
+    File dest = getDestination( source, destRelPath );
+    try {
+      Files.move( source.toPath(), dest.toPath() );
+    } catch ( IOException e ) {
+      throw new UnifiedRepositoryException( "Error moving file [" + fileId + "] to [" + destRelPath + "]", e );
+    }
+    if ( index != null ) {
+      String sourcePath = toRepositoryPath( source );
+      String destPath = toRepositoryPath( dest );
+      index.invalidate( sourcePath );
+      index.invalidate( destPath );
+      index.move( sourcePath, destPath, false );
+    }
+  }
+
+  /**
+   * @return the file {@code destRelPath} names, or a child of it named like the source if it is an existing folder
+   */
+  private File getDestination( final File source, final String destRelPath ) {
+    File dest = new File( getPhysicalFileLocation( destRelPath ) );
+    if ( dest.isDirectory() ) {
+      dest = new File( dest, source.getName() );
+    }
+    if ( dest.exists() ) {
+      throw new UnifiedRepositoryException( "File [" + destRelPath + "] already exists" );
+    }
+    return dest;
   }
 
   public void permanentlyDeleteFile( Serializable fileId, String versionMessage ) {
@@ -406,6 +586,11 @@ public class FileSystemRepositoryFileDao implements IRepositoryFileDao {
       IOUtils.closeQuietly( fos );
     }
 
+    if ( index != null ) {
+      String path = toRepositoryPath( f );
+      index.invalidate( path );
+      indexLocaleProperties( path, file, false );
+    }
     return getFile( file.getPath() );
   }
 
@@ -419,6 +604,12 @@ public class FileSystemRepositoryFileDao implements IRepositoryFileDao {
 
   public void setFileMetadata( final Serializable fileId, Map<String, Serializable> metadataMap ) {
     final File targetFile = new File( fileId.toString() );
+    if ( index != null ) {
+      if ( targetFile.exists() ) {
+        index.setMetadata( toRepositoryPath( targetFile ), metadataMap );
+      }
+      return;
+    }
     if ( targetFile.exists() ) {
       FileOutputStream fos = null;
       try {
@@ -452,6 +643,13 @@ public class FileSystemRepositoryFileDao implements IRepositoryFileDao {
   }
 
   public Map<String, Serializable> getFileMetadata( final Serializable fileId ) {
+    if ( index != null ) {
+      Map<String, Serializable> metadata = index.getMetadata( toRepositoryPath( new File( fileId.toString() ) ) );
+      if ( metadata != null ) {
+        return metadata;
+      }
+      // not set since the index was enabled, fall back to the .metadata file
+    }
     final String metadataFilename =
         FilenameUtils.concat( FilenameUtils.concat( FilenameUtils.getFullPathNoEndSeparator( fileId.toString() ),
             ".metadata" ), FilenameUtils.getName( fileId.toString() ) );
@@ -480,7 +678,23 @@ public class FileSystemRepositoryFileDao implements IRepositoryFileDao {
   }
 
   public void copyFile( Serializable fileId, String destAbsPath, String versionMessage ) {
-    throw new UnsupportedOperationException( "This operation is not support by this repository" );
+    if ( index == null ) {
+      throw new UnsupportedOperationException( "This operation is not support by this repository" );
+    }
+    File source = new File( fileId.toString() );
+    File dest = getDestination( source, destAbsPath );
+    try {
+      if ( source.isDirectory() ) {
+        FileUtils.copyDirectory( source, dest );
+      } else {
+        FileUtils.copyFile( source, dest );
+      }
+    } catch ( IOException e ) {
+      throw new UnifiedRepositoryException( "Error copying file [" + fileId + "] to [" + destAbsPath + "]", e );
+    }
+    String destPath = toRepositoryPath( dest );
+    index.invalidate( destPath );
+    index.move( toRepositoryPath( source ), destPath, true );
   }
 
   public List<RepositoryFile> getDeletedFiles( String origParentFolderPath, String filter ) {
@@ -500,57 +714,130 @@ public class FileSystemRepositoryFileDao implements IRepositoryFileDao {
 
   @Override
   public List<Locale> getAvailableLocalesForFileById( Serializable fileId ) {
-    throw new UnsupportedOperationException( "This operation is not support by this repository" );
+    return getAvailableLocalesForFile( getFileById( fileId, true ) );
   }
 
   @Override
   public List<Locale> getAvailableLocalesForFileByPath( String relPath ) {
-    throw new UnsupportedOperationException( "This operation is not support by this repository" );
+    return getAvailableLocalesForFile( getFile( relPath, true ) );
   }
 
   @Override
   public List<Locale> getAvailableLocalesForFile( RepositoryFile repositoryFile ) {
-    throw new UnsupportedOperationException( "This operation is not support by this repository" );
+    checkIndexed();
+    List<Locale> localeList = new ArrayList<Locale>();
+    if ( repositoryFile != null ) {
+      for ( String localeName : index.getLocalePropertiesMap( repositoryFile.getPath() ).keySet() ) {
+        String[] localePieces = localeName.split( "_" );
+        String language = localePieces[0];
+        String country = ( localePieces.length > 1 ) ? localePieces[1] : "";
+        String variant = ( localePieces.length > 2 ) ? localePieces[2] : "";
+        localeList.add( new Locale( language, country, variant ) );
+      }
+    }
+    return localeList;
   }
 
   @Override
   public Properties getLocalePropertiesForFileById( Serializable fileId, String locale ) {
-    throw new UnsupportedOperationException( "This operation is not support by this repository" );
+    return getLocalePropertiesForFile( getFileById( fileId ), locale );
   }
 
   @Override
   public Properties getLocalePropertiesForFileByPath( String relPath, String locale ) {
-    throw new UnsupportedOperationException( "This operation is not support by this repository" );
+    return getLocalePropertiesForFile( getFile( relPath ), locale );
   }
 
   @Override
   public Properties getLocalePropertiesForFile( RepositoryFile repositoryFile, String locale ) {
-    throw new UnsupportedOperationException( "This operation is not support by this repository" );
+    checkIndexed();
+    if ( repositoryFile == null ) {
+      return null;
+    }
+    if ( StringUtils.isBlank( locale ) ) {
+      locale = RepositoryFile.DEFAULT_LOCALE;
+    }
+    return index.getLocalePropertiesMap( repositoryFile.getPath() ).get( locale );
   }
 
   @Override
   public void setLocalePropertiesForFileById( Serializable fileId, String locale, Properties properties ) {
-    throw new UnsupportedOperationException( "This operation is not support by this repository" );
+    setLocalePropertiesForFile( getFileById( fileId ), locale, properties );
   }
 
   @Override
   public void setLocalePropertiesForFileByPath( String relPath, String locale, Properties properties ) {
-    throw new UnsupportedOperationException( "This operation is not support by this repository" );
+    setLocalePropertiesForFile( getFile( relPath ), locale, properties );
   }
 
   @Override
   public void setLocalePropertiesForFile( RepositoryFile repositoryFile, String locale, Properties properties ) {
-    throw new UnsupportedOperationException( "This operation is not support by this repository" );
+    checkIndexed();
+    if ( repositoryFile == null ) {
+      throw new UnifiedRepositoryException( "File does not exist" );
+    }
+    if ( StringUtils.isBlank( locale ) ) {
+      locale = RepositoryFile.DEFAULT_LOCALE;
+    }
+    index.setLocaleProperties( repositoryFile.getPath(), locale, properties );
   }
 
   @Override
   public void deleteLocalePropertiesForFile( RepositoryFile repositoryFile, String locale ) {
-    throw new UnsupportedOperationException( "This operation is not support by this repository" );
+    checkIndexed();
+    if ( repositoryFile != null ) {
+      if ( StringUtils.isBlank( locale ) ) {
+        locale = RepositoryFile.DEFAULT_LOCALE;
+      }
+      index.deleteLocaleProperties( repositoryFile.getPath(), locale );
+    }
   }
 
   @Override
   public RepositoryFile updateFolder( RepositoryFile file, String versionMessage ) {
-    throw new UnsupportedOperationException( "This operation is not support by this repository" );
+    checkIndexed();
+    File f = new File( file.getId().toString() );
+    if ( !f.isDirectory() ) {
+      throw new UnifiedRepositoryException( "Folder [" + file.getId() + "] does not exist" );
+    }
+    String path = toRepositoryPath( f );
+    index.invalidate( path );
+    indexLocaleProperties( path, file, false );
+    return internalGetFile( f );
+  }
+
+  /**
+   * @return the ACL stored for the file, null if none was
+   */
+  public RepositoryFileAcl getAcl( final Serializable fileId ) {
+    checkIndexed();
+    return index.getAcl( toRepositoryPath( new File( fileId.toString() ) ) );
+  }
+
+  public void setAcl( final Serializable fileId, final RepositoryFileAcl acl ) {
+    checkIndexed();
+    index.setAcl( toRepositoryPath( new File( fileId.toString() ) ), acl );
+  }
+
+  /**
+   * Stores the locale properties the file carries; a title that differs from the name counts as the default title, as
+   * it does for new JCR files and folders.
+   */
+  private void indexLocaleProperties( final String path, final RepositoryFile file, final boolean created ) {
+    Map<String, Properties> localePropertiesMap = file.getLocalePropertiesMap();
+    if ( localePropertiesMap != null && !localePropertiesMap.isEmpty() ) {
+      index.setLocalePropertiesMap( path, localePropertiesMap );
+    } else if ( created && file.getTitle() != null && !file.getTitle().equals( file.getName() ) ) {
+      Properties titleProperties = new Properties();
+      titleProperties.put( RepositoryFile.FILE_TITLE, file.getTitle() );
+      index.setLocaleProperties( path, RepositoryFile.DEFAULT_LOCALE, titleProperties );
+    }
+  }
+
+  private void checkIndexed() {
+    if ( index == null ) {
+      throw new UnsupportedOperationException( "This operation is not support by this repository" );
+    }
   }
 
   private String getPhysicalFileLocation( String relPath ) {
@@ -0,0 +1,762 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.repository2.unified.fs;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.pentaho.platform.api.repository2.unified.RepositoryFile;
+import org.pentaho.platform.api.repository2.unified.RepositoryFileAce;
+import org.pentaho.platform.api.repository2.unified.RepositoryFileAcl;
+import org.pentaho.platform.api.repository2.unified.RepositoryFilePermission;
+import org.pentaho.platform.api.repository2.unified.RepositoryFileSid;
+import org.pentaho.platform.api.repository2.unified.UnifiedRepositoryException;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Serializable;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Index of a {@link FileSystemRepositoryFileDao} tree. It keeps what the file system cannot: locale properties (titles
+ * and descriptions), file metadata and ACLs, persisted in the {@value #INDEX_FOLDER_NAME} folder of the root folder.
+ * Each file with index data has its own properties file there, which records the format version and the repository
+ * path and is rewritten atomically when the data of that file changes, so a change costs one small write whatever the
+ * size of the repository. It also caches
+ * the files and folder listings read from disk, keyed by repository path, so lookups do not touch the disk again.
+ * <p/>
+ * A {@link WatchService} registered on every cached folder invalidates the cached entries when files are added,
+ * changed or removed outside of the repository. Folders that cannot be watched are not cached. Index entries outlive
+ * external deletions, so a file that an editor replaces keeps its title and ACL.
+ */
+public class FileSystemRepositoryIndex {
+
+  public static final String INDEX_FOLDER_NAME = ".repository-index"; //$NON-NLS-1$
+
+  /**
+   * Version of the entry file format, written to every entry and checked when reading it.
+   */
+  static final int FORMAT_VERSION = 1;
+
+  static final String METADATA_FOLDER_NAME = ".metadata"; //$NON-NLS-1$
+
+  private static final Log logger = LogFactory.getLog( FileSystemRepositoryIndex.class );
+
+  private static final AtomicLong watcherCount = new AtomicLong();
+
+  private static final Charset UTF_8 = Charset.forName( "UTF-8" ); //$NON-NLS-1$
+
+  private static final String ENTRY_FILE_SUFFIX = ".properties"; //$NON-NLS-1$
+
+  private static final String VERSION_KEY = "version"; //$NON-NLS-1$
+
+  private static final String PATH_KEY = "path"; //$NON-NLS-1$
+
+  private static final String LOCALE_PREFIX = "locale."; //$NON-NLS-1$
+
+  private static final String METADATA_KEY = "metadata"; //$NON-NLS-1$
+
+  private static final String METADATA_PREFIX = "metadata."; //$NON-NLS-1$
+
+  private static final String ACL_OWNER_KEY = "acl.owner"; //$NON-NLS-1$
+
+  private static final String ACL_INHERITING_KEY = "acl.inheriting"; //$NON-NLS-1$
+
+  private static final String ACE_PREFIX = "acl.ace."; //$NON-NLS-1$
+
+  private static final String PERMISSIONS_SUFFIX = ".permissions"; //$NON-NLS-1$
+
+  private final File rootDir;
+
+  private final File indexDir;
+
+  private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+
+  private final ConcurrentMap<String, RepositoryFile> files = new ConcurrentHashMap<String, RepositoryFile>();
+
+  private final ConcurrentMap<String, List<String>> children = new ConcurrentHashMap<String, List<String>>();
+
+  private final ConcurrentMap<WatchKey, String> watchedFolders = new ConcurrentHashMap<WatchKey, String>();
+
+  private final ConcurrentMap<String, Boolean> folderWatched = new ConcurrentHashMap<String, Boolean>();
+
+  /**
+   * Incremented on every invalidation. A disk read is only cached if nothing was invalidated while it ran.
+   */
+  private final AtomicLong generation = new AtomicLong();
+
+  private WatchService watchService;
+
+  private Thread watcher;
+
+  public FileSystemRepositoryIndex( final File rootDir ) {
+    this.rootDir = rootDir.getAbsoluteFile();
+    this.indexDir = new File( this.rootDir, INDEX_FOLDER_NAME );
+    load();
+    try {
+      watchService = FileSystems.getDefault().newWatchService();
+      watcher = new Thread( new Runnable() {
+        @Override
+        public void run() {
+          watch();
+        }
+      }, "Repository Index Watcher " + watcherCount.incrementAndGet() ); //$NON-NLS-1$
+      watcher.setDaemon( true );
+      watcher.start();
+    } catch ( IOException e ) {
+      logger.warn( "Cannot watch " + rootDir + " for changes, file lookups will not be cached", e );
+    }
+  }
+
+  /**
+   * @return true for the files the index keeps its own data in, which are not part of the repository
+   */
+  public static boolean isReserved( final String name ) {
+    return INDEX_FOLDER_NAME.equals( name ) || METADATA_FOLDER_NAME.equals( name );
+  }
+
+  // ~ Disk cache =====================================================================================================
+
+  long getGeneration() {
+    return generation.get();
+  }
+
+  RepositoryFile getCachedFile( final String path ) {
+    return files.get( path );
+  }
+
+  /**
+   * Caches a file read from disk, unless the cache was invalidated since {@code readGeneration} or its folder cannot
+   * be watched.
+   */
+  void cacheFile( final String path, final RepositoryFile file, final long readGeneration ) {
+    if ( watch( parentOf( path ) ) && generation.get() == readGeneration ) {
+      files.put( path, file );
+    }
+  }
+
+  /**
+   * @return names of the files and folders in the folder, sorted; null if it is not a folder
+   */
+  List<String> getChildNames( final String folderPath, final File folder ) {
+    List<String> names = children.get( folderPath );
+    if ( names != null ) {
+      return names;
+    }
+    // watch first, so a change made while listing invalidates what is read
+    boolean watched = watch( folderPath );
+    long readGeneration = generation.get();
+    String[] list = folder.list();
+    if ( list == null ) {
+      return null;
+    }
+    names = new ArrayList<String>( list.length );
+    for ( String name : list ) {
+      if ( !isReserved( name ) ) {
+        names.add( name );
+      }
+    }
+    Collections.sort( names );
+    names = Collections.unmodifiableList( names );
+    if ( watched && generation.get() == readGeneration ) {
+      children.put( folderPath, names );
+    }
+    return names;
+  }
+
+  /**
+   * Drops the cached state of the file, of its folder listing and, for a folder, of everything below it.
+   */
+  void invalidate( final String path ) {
+    generation.incrementAndGet();
+    files.remove( path );
+    children.remove( path );
+    String parent = parentOf( path );
+    if ( parent != null ) {
+      children.remove( parent );
+      // the modification date of the folder changes with its content
+      files.remove( parent );
+    }
+    String prefix = childPrefix( path );
+    for ( String key : files.keySet() ) {
+      if ( key.startsWith( prefix ) ) {
+        files.remove( key );
+      }
+    }
+    for ( String key : children.keySet() ) {
+      if ( key.startsWith( prefix ) ) {
+        children.remove( key );
+      }
+    }
+  }
+
+  void invalidateAll() {
+    generation.incrementAndGet();
+    files.clear();
+    children.clear();
+  }
+
+  // ~ Persistent entries =============================================================================================
+
+  /**
+   * @return copy of the locale properties of the file, empty if it has none
+   */
+  Map<String, Properties> getLocalePropertiesMap( final String path ) {
+    Entry entry = entries.get( path );
+    Map<String, Properties> copy = new HashMap<String, Properties>();
+    if ( entry != null ) {
+      synchronized ( entry ) {
+        for ( Map.Entry<String, Properties> locale : entry.localeProperties.entrySet() ) {
+          Properties properties = new Properties();
+          properties.putAll( locale.getValue() );
+          copy.put( locale.getKey(), properties );
+        }
+      }
+    }
+    return copy;
+  }
+
+  void setLocaleProperties( final String path, final String locale, final Properties properties ) {
+    Entry entry = getOrCreate( path );
+    synchronized ( entry ) {
+      Properties copy = new Properties();
+      copy.putAll( properties );
+      entry.localeProperties.put( locale, copy );
+      store( path, entry );
+    }
+  }
+
+  void setLocalePropertiesMap( final String path, final Map<String, Properties> localePropertiesMap ) {
+    Entry entry = getOrCreate( path );
+    synchronized ( entry ) {
+      entry.localeProperties.clear();
+      for ( Map.Entry<String, Properties> locale : localePropertiesMap.entrySet() ) {
+        Properties copy = new Properties();
+        copy.putAll( locale.getValue() );
+        entry.localeProperties.put( locale.getKey(), copy );
+      }
+      store( path, entry );
+    }
+  }
+
+  void deleteLocaleProperties( final String path, final String locale ) {
+    Entry entry = entries.get( path );
+    if ( entry != null ) {
+      synchronized ( entry ) {
+        if ( entry.localeProperties.remove( locale ) != null ) {
+          store( path, entry );
+        }
+      }
+    }
+  }
+
+  /**
+   * @return copy of the metadata of the file, null if none was ever set
+   */
+  Map<String, Serializable> getMetadata( final String path ) {
+    Entry entry = entries.get( path );
+    if ( entry == null ) {
+      return null;
+    }
+    synchronized ( entry ) {
+      return entry.metadata == null ? null : new HashMap<String, Serializable>( entry.metadata );
+    }
+  }
+
+  /**
+   * Keeps the values of the types the JCR repository keeps: strings, calendars, doubles, longs and booleans. Values of
+   * other types are dropped, as they are there.
+   */
+  void setMetadata( final String path, final Map<String, Serializable> metadata ) {
+    Entry entry = getOrCreate( path );
+    synchronized ( entry ) {
+      entry.metadata = new HashMap<String, Serializable>();
+      for ( Map.Entry<String, Serializable> item : metadata.entrySet() ) {
+        if ( toText( item.getValue() ) != null ) {
+          entry.metadata.put( item.getKey(), item.getValue() );
+        }
+      }
+      store( path, entry );
+    }
+  }
+
+  RepositoryFileAcl getAcl( final String path ) {
+    Entry entry = entries.get( path );
+    if ( entry == null ) {
+      return null;
+    }
+    synchronized ( entry ) {
+      return entry.acl;
+    }
+  }
+
+  void setAcl( final String path, final RepositoryFileAcl acl ) {
+    Entry entry = getOrCreate( path );
+    synchronized ( entry ) {
+      entry.acl = new RepositoryFileAcl.Builder( acl ).id( toFile( path ).getAbsolutePath() ).build();
+      store( path, entry );
+    }
+  }
+
+  /**
+   * Forgets the file and everything below it.
+   */
+  void remove( final String path ) {
+    String prefix = childPrefix( path );
+    for ( String key : entries.keySet() ) {
+      if ( key.equals( path ) || key.startsWith( prefix ) ) {
+        Entry entry = entries.remove( key );
+        if ( entry != null ) {
+          synchronized ( entry ) {
+            entry.removed = true;
+            delete( key );
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Moves (or copies) the entries of the file and everything below it to a new path.
+   */
+  void move( final String fromPath, final String toPath, final boolean keepSource ) {
+    Map<String, Entry> moved = new HashMap<String, Entry>();
+    String prefix = childPrefix( fromPath );
+    for ( Map.Entry<String, Entry> entry : entries.entrySet() ) {
+      String key = entry.getKey();
+      String newPath;
+      if ( key.equals( fromPath ) ) {
+        newPath = toPath;
+      } else if ( key.startsWith( prefix ) ) {
+        newPath = childPrefix( toPath ) + key.substring( prefix.length() );
+      } else {
+        continue;
+      }
+      synchronized ( entry.getValue() ) {
+        moved.put( newPath, entry.getValue().copy( toFile( newPath ).getAbsolutePath() ) );
+      }
+    }
+    if ( moved.isEmpty() ) {
+      return;
+    }
+    if ( !keepSource ) {
+      remove( fromPath );
+    }
+    for ( Map.Entry<String, Entry> entry : moved.entrySet() ) {
+      Entry previous = entries.put( entry.getKey(), entry.getValue() );
+      if ( previous != null ) {
+        synchronized ( previous ) {
+          previous.removed = true;
+        }
+      }
+      synchronized ( entry.getValue() ) {
+        store( entry.getKey(), entry.getValue() );
+      }
+    }
+  }
+
+  private Entry getOrCreate( final String path ) {
+    Entry entry = entries.get( path );
+    if ( entry == null ) {
+      Entry created = new Entry();
+      entry = entries.putIfAbsent( path, created );
+      if ( entry == null ) {
+        entry = created;
+      }
+    }
+    return entry;
+  }
+
+  private void load() {
+    File[] entryFiles = indexDir.listFiles();
+    if ( entryFiles == null ) {
+      return;
+    }
+    for ( File entryFile : entryFiles ) {
+      if ( !entryFile.getName().endsWith( ENTRY_FILE_SUFFIX ) ) {
+        // temporary files left by a crash while writing
+        continue;
+      }
+      Properties properties = new Properties();
+      Reader in = null;
+      try {
+        in = new InputStreamReader( new FileInputStream( entryFile ), UTF_8 );
+        properties.load( in );
+      } catch ( IOException e ) {
+        throw new UnifiedRepositoryException( "Error reading repository index entry [" + entryFile + "]", e );
+      } finally {
+        IOUtils.closeQuietly( in );
+      }
+      String version = properties.getProperty( VERSION_KEY );
+      if ( !String.valueOf( FORMAT_VERSION ).equals( version ) ) {
+        throw new UnifiedRepositoryException( "Repository index entry [" + entryFile + "] has format version "
+          + version + ", expected " + FORMAT_VERSION );
+      }
+      String path = properties.getProperty( PATH_KEY );
+      entries.put( path, readEntry( path, properties ) );
+    }
+  }
+
+  private Entry readEntry( final String path, final Properties properties ) {
+    Entry entry = new Entry();
+    Map<Integer, RepositoryFileSid> aceSids = new TreeMap<Integer, RepositoryFileSid>();
+    Map<Integer, EnumSet<RepositoryFilePermission>> acePermissions =
+      new HashMap<Integer, EnumSet<RepositoryFilePermission>>();
+    for ( String key : properties.stringPropertyNames() ) {
+      String value = properties.getProperty( key );
+      if ( key.startsWith( LOCALE_PREFIX ) ) {
+        int dot = key.indexOf( '.', LOCALE_PREFIX.length() );
+        String locale = key.substring( LOCALE_PREFIX.length(), dot );
+        Properties localeProperties = entry.localeProperties.get( locale );
+        if ( localeProperties == null ) {
+          localeProperties = new Properties();
+          entry.localeProperties.put( locale, localeProperties );
+        }
+        localeProperties.setProperty( key.substring( dot + 1 ), value );
+      } else if ( key.equals( METADATA_KEY ) ) {
+        entry.metadata = new HashMap<String, Serializable>();
+      } else if ( key.startsWith( METADATA_PREFIX ) ) {
+        if ( entry.metadata == null ) {
+          entry.metadata = new HashMap<String, Serializable>();
+        }
+        entry.metadata.put( key.substring( METADATA_PREFIX.length() ), fromText( value ) );
+      } else if ( key.startsWith( ACE_PREFIX ) ) {
+        String rest = key.substring( ACE_PREFIX.length() );
+        if ( rest.endsWith( PERMISSIONS_SUFFIX ) ) {
+          EnumSet<RepositoryFilePermission> permissions = EnumSet.noneOf( RepositoryFilePermission.class );
+          for ( String permission : value.split( "," ) ) { //$NON-NLS-1$
+            if ( permission.length() > 0 ) {
+              permissions.add( RepositoryFilePermission.valueOf( permission ) );
+            }
+          }
+          acePermissions.put( Integer.valueOf( rest.substring( 0, rest.length() - PERMISSIONS_SUFFIX.length() ) ),
+            permissions );
+        } else {
+          aceSids.put( Integer.valueOf( rest ), toSid( value ) );
+        }
+      }
+    }
+    String owner = properties.getProperty( ACL_OWNER_KEY );
+    if ( owner != null ) {
+      RepositoryFileAcl.Builder acl = new RepositoryFileAcl.Builder( toFile( path ).getAbsolutePath(), toSid( owner ) )
+        .entriesInheriting( Boolean.parseBoolean( properties.getProperty( ACL_INHERITING_KEY ) ) );
+      for ( Map.Entry<Integer, RepositoryFileSid> sid : aceSids.entrySet() ) {
+        EnumSet<RepositoryFilePermission> permissions = acePermissions.get( sid.getKey() );
+        acl.ace( new RepositoryFileAce( sid.getValue(),
+          permissions == null ? EnumSet.noneOf( RepositoryFilePermission.class ) : permissions ) );
+      }
+      entry.acl = acl.build();
+    }
+    return entry;
+  }
+
+  private static Properties writeEntry( final String path, final Entry entry ) {
+    Properties properties = new Properties();
+    properties.setProperty( VERSION_KEY, String.valueOf( FORMAT_VERSION ) );
+    properties.setProperty( PATH_KEY, path );
+    for ( Map.Entry<String, Properties> locale : entry.localeProperties.entrySet() ) {
+      for ( String key : locale.getValue().stringPropertyNames() ) {
+        properties.setProperty( LOCALE_PREFIX + locale.getKey() + "." + key, //$NON-NLS-1$
+          locale.getValue().getProperty( key ) );
+      }
+    }
+    if ( entry.metadata != null ) {
+      // tells metadata set to an empty map apart from metadata never set
+      properties.setProperty( METADATA_KEY, String.valueOf( entry.metadata.size() ) );
+      for ( Map.Entry<String, Serializable> item : entry.metadata.entrySet() ) {
+        properties.setProperty( METADATA_PREFIX + item.getKey(), toText( item.getValue() ) );
+      }
+    }
+    if ( entry.acl != null ) {
+      properties.setProperty( ACL_OWNER_KEY, toText( entry.acl.getOwner() ) );
+      properties.setProperty( ACL_INHERITING_KEY, String.valueOf( entry.acl.isEntriesInheriting() ) );
+      List<RepositoryFileAce> aces = entry.acl.getAces();
+      for ( int i = 0; i < aces.size(); i++ ) {
+        properties.setProperty( ACE_PREFIX + i, toText( aces.get( i ).getSid() ) );
+        StringBuilder permissions = new StringBuilder();
+        for ( RepositoryFilePermission permission : aces.get( i ).getPermissions() ) {
+          if ( permissions.length() > 0 ) {
+            permissions.append( ',' );
+          }
+          permissions.append( permission.name() );
+        }
+        properties.setProperty( ACE_PREFIX + i + PERMISSIONS_SUFFIX, permissions.toString() );
+      }
+    }
+    return properties;
+  }
+
+  /**
+   * Writes the entry of one file to a temporary file that then replaces its previous version, so a crash never leaves
+   * it half written. The caller holds the lock of the entry, so writes of the same entry happen in order.
+   */
+  private void store( final String path, final Entry entry ) {
+    if ( entry.removed ) {
+      return;
+    }
+    File temp = null;
+    Writer out = null;
+    try {
+      if ( !indexDir.isDirectory() && !indexDir.mkdirs() && !indexDir.isDirectory() ) {
+        throw new IOException( "Cannot create folder " + indexDir );
+      }
+      temp = File.createTempFile( "entry", ".tmp", indexDir ); //$NON-NLS-1$ //$NON-NLS-2$
+      out = new OutputStreamWriter( new FileOutputStream( temp ), UTF_8 );
+      writeEntry( path, entry ).store( out, null );
+      out.close();
+      out = null;
+      Files.move( temp.toPath(), entryFile( path ).toPath(), StandardCopyOption.REPLACE_EXISTING,
+        StandardCopyOption.ATOMIC_MOVE );
+      temp = null;
+    } catch ( IOException e ) {
+      throw new UnifiedRepositoryException( "Error writing repository index entry of [" + path + "]", e );
+    } finally {
+      IOUtils.closeQuietly( out );
+      if ( temp != null ) {
+        temp.delete();
+      }
+    }
+  }
+
+  private void delete( final String path ) {
+    File entryFile = entryFile( path );
+    if ( entryFile.exists() && !entryFile.delete() ) {
+      throw new UnifiedRepositoryException( "Error deleting repository index entry [" + entryFile + "]" );
+    }
+  }
+
+  /**
+   * @return the file the entry of a path is kept in, named after a digest of the path so that any path fits
+   */
+  private File entryFile( final String path ) {
+    try {
+      byte[] digest = MessageDigest.getInstance( "SHA-1" ).digest( path.getBytes( UTF_8 ) ); //$NON-NLS-1$
+      StringBuilder name = new StringBuilder( digest.length * 2 + ENTRY_FILE_SUFFIX.length() );
+      for ( byte b : digest ) {
+        name.append( Character.forDigit( ( b >> 4 ) & 0xF, 16 ) ).append( Character.forDigit( b & 0xF, 16 ) );
+      }
+      return new File( indexDir, name.append( ENTRY_FILE_SUFFIX ).toString() );
+    } catch ( NoSuchAlgorithmException e ) {
+      throw new IllegalStateException( e );
+    }
+  }
+
+  /**
+   * @return the value as {@code type:text}, null if it is of a type the index does not keep
+   */
+  private static String toText( final Serializable value ) {
+    if ( value instanceof String ) {
+      return "string:" + value; //$NON-NLS-1$
+    } else if ( value instanceof Calendar ) {
+      return "date:" + ( (Calendar) value ).getTimeInMillis(); //$NON-NLS-1$
+    } else if ( value instanceof Double ) {
+      return "double:" + value; //$NON-NLS-1$
+    } else if ( value instanceof Long ) {
+      return "long:" + value; //$NON-NLS-1$
+    } else if ( value instanceof Boolean ) {
+      return "boolean:" + value; //$NON-NLS-1$
+    }
+    return null;
+  }
+
+  private static Serializable fromText( final String text ) {
+    int colon = text.indexOf( ':' );
+    String type = text.substring( 0, colon );
+    String value = text.substring( colon + 1 );
+    if ( "date".equals( type ) ) { //$NON-NLS-1$
+      Calendar calendar = Calendar.getInstance();
+      calendar.setTimeInMillis( Long.parseLong( value ) );
+      return calendar;
+    } else if ( "double".equals( type ) ) { //$NON-NLS-1$
+      return Double.valueOf( value );
+    } else if ( "long".equals( type ) ) { //$NON-NLS-1$
+      return Long.valueOf( value );
+    } else if ( "boolean".equals( type ) ) { //$NON-NLS-1$
+      return Boolean.valueOf( value );
+    }
+    return value;
+  }
+
+  private static String toText( final RepositoryFileSid sid ) {
+    return sid.getType().name() + ":" + sid.getName(); //$NON-NLS-1$
+  }
+
+  private static RepositoryFileSid toSid( final String text ) {
+    int colon = text.indexOf( ':' );
+    return new RepositoryFileSid( text.substring( colon + 1 ),
+      RepositoryFileSid.Type.valueOf( text.substring( 0, colon ) ) );
+  }
+
+  // ~ Change detection ===============================================================================================
+
+  private boolean watch( final String folderPath ) {
+    if ( watchService == null || folderPath == null ) {
+      return false;
+    }
+    Boolean watched = folderWatched.get( folderPath );
+    if ( watched != null ) {
+      return watched;
+    }
+    synchronized ( folderWatched ) {
+      watched = folderWatched.get( folderPath );
+      if ( watched != null ) {
+        return watched;
+      }
+      try {
+        Path folder = toFile( folderPath ).toPath();
+        WatchKey key = folder.register( watchService, StandardWatchEventKinds.ENTRY_CREATE,
+          StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY );
+        watchedFolders.put( key, folderPath );
+        watched = true;
+      } catch ( IOException e ) {
+        // e.g. the folder is gone, or the limit of watches is reached
+        logger.debug( "Cannot watch folder " + folderPath + ", it is not cached", e );
+        watched = false;
+      }
+      folderWatched.put( folderPath, watched );
+      return watched;
+    }
+  }
+
+  private void watch() {
+    while ( true ) {
+      WatchKey key;
+      try {
+        key = watchService.take();
+      } catch ( InterruptedException e ) {
+        return;
+      } catch ( ClosedWatchServiceException e ) {
+        return;
+      }
+      String folderPath = watchedFolders.get( key );
+      for ( WatchEvent<?> event : key.pollEvents() ) {
+        if ( event.kind() == StandardWatchEventKinds.OVERFLOW || folderPath == null ) {
+          invalidateAll();
+          continue;
+        }
+        String name = ( (Path) event.context() ).getFileName().toString();
+        if ( !isReserved( name ) ) {
+          invalidate( childPrefix( folderPath ) + name );
+        }
+      }
+      if ( !key.reset() ) {
+        // the folder is gone; it is registered again if it comes back and is read
+        watchedFolders.remove( key );
+        if ( folderPath != null ) {
+          folderWatched.remove( folderPath );
+          invalidate( folderPath );
+        }
+      }
+    }
+  }
+
+  /**
+   * Stops watching for changes. The index data stays on disk.
+   */
+  public void close() {
+    if ( watchService != null ) {
+      try {
+        watchService.close();
+      } catch ( IOException e ) {
+        logger.debug( "Error closing watch service", e );
+      }
+    }
+    if ( watcher != null ) {
+      watcher.interrupt();
+    }
+  }
+
+  // ~ Paths ==========================================================================================================
+
+  private File toFile( final String path ) {
+    return RepositoryFile.SEPARATOR.equals( path ) ? rootDir : new File( rootDir, path.substring( 1 ) );
+  }
+
+  static String parentOf( final String path ) {
+    if ( RepositoryFile.SEPARATOR.equals( path ) ) {
+      return null;
+    }
+    int index = path.lastIndexOf( RepositoryFile.SEPARATOR );
+    return index <= 0 ? RepositoryFile.SEPARATOR : path.substring( 0, index );
+  }
+
+  private static String childPrefix( final String path ) {
+    return path.endsWith( RepositoryFile.SEPARATOR ) ? path : path + RepositoryFile.SEPARATOR;
+  }
+
+  /**
+   * What the index keeps of a file. Guarded by its own lock.
+   */
+  static class Entry {
+
+    private final Map<String, Properties> localeProperties = new HashMap<String, Properties>();
+
+    private Map<String, Serializable> metadata;
+
+    private RepositoryFileAcl acl;
+
+    /**
+     * Set once the entry is no longer in the index, so a writer that got hold of it before does not write it back.
+     */
+    private boolean removed;
+
+    Entry copy( final Serializable fileId ) {
+      Entry copy = new Entry();
+      for ( Map.Entry<String, Properties> locale : localeProperties.entrySet() ) {
+        Properties properties = new Properties();
+        properties.putAll( locale.getValue() );
+        copy.localeProperties.put( locale.getKey(), properties );
+      }
+      copy.metadata = metadata == null ? null : new HashMap<String, Serializable>( metadata );
+      copy.acl = acl == null ? null : new RepositoryFileAcl.Builder( acl ).id( fileId ).build();
+      return copy;
+    }
+  }
+}
@@ -0,0 +1,227 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.repository2.unified.jcr;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.jcr.ItemNotFoundException;
+import javax.jcr.Node;
+import javax.jcr.NodeIterator;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.query.Query;
+import javax.jcr.query.qom.QueryObjectModelConstants;
+import javax.jcr.query.qom.QueryObjectModelFactory;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.pentaho.platform.api.engine.IPentahoSession;
+import org.pentaho.platform.api.engine.IPentahoSystemListener;
+import org.pentaho.platform.api.repository2.unified.IRepositoryFileData;
+import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
+import org.pentaho.platform.engine.core.system.PentahoSystem;
+import org.pentaho.platform.engine.core.system.ReadReplicaMode;
+import org.pentaho.platform.engine.core.system.StandaloneSession;
+import org.pentaho.platform.repository2.unified.jcr.transform.CompactNodeRepositoryFileDataTransformer;
+import org.springframework.extensions.jcr.JcrCallback;
+import org.springframework.extensions.jcr.JcrTemplate;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Converts the content of every node data file still stored as JCR nodes to the compact form of
+ * {@link CompactNodeRepositoryFileDataTransformer}.
+ * 
+ * <p>
+ * To use:
+ * </p>
+ * <ol>
+ * <li>Replace {@code NodeRepositoryFileDataTransformer} with {@code CompactNodeRepositoryFileDataTransformer} in the
+ * {@code transformers} list of {@code repository.spring.xml}. Otherwise files are converted back when next written.
+ * </li>
+ * <li>Add the following system property on the command line for one start of the server:
+ * 
+ * <pre>
+ * -Dpentaho.repository.migrateCompactNodeData=true
+ * </pre>
+ * 
+ * </li>
+ * </ol>
+ * 
+ * <p>
+ * The listener is registered in {@code systemListeners.xml} and does nothing without the property. Files are
+ * converted as the repository admin, in batches of {@link #setBatchSize(int) batchSize}, each in its own transaction.
+ * Versioned files get a new version. A file that cannot be converted, for example because it is locked, is logged
+ * and left in the old form, which stays readable. Nothing is converted on a read replica.
+ * </p>
+ * 
+ * <p>
+ * Uses PentahoSystem instead of Spring injection since its collaborators are not yet instantiated when this class
+ * is instantiated.
+ * </p>
+ */
+public class CompactNodeDataMigrationSystemListener implements IPentahoSystemListener {
+
+  private static final Log logger = LogFactory.getLog( CompactNodeDataMigrationSystemListener.class );
+
+  /**
+   * Set to {@code true} to convert the node data files at startup.
+   */
+  public static final String PROP_MIGRATE = "pentaho.repository.migrateCompactNodeData"; //$NON-NLS-1$
+
+  private static final String VERSION_MESSAGE = "Converted node data to the compact form"; //$NON-NLS-1$
+
+  private final CompactNodeRepositoryFileDataTransformer transformer = new CompactNodeRepositoryFileDataTransformer();
+
+  private int batchSize = 100;
+
+  @Override
+  public boolean startup( final IPentahoSession pentahoSession ) {
+    if ( !Boolean.getBoolean( PROP_MIGRATE ) ) {
+      return true;
+    }
+    if ( ReadReplicaMode.isEnabled() ) {
+      logger.warn( "Node data is not converted on a read replica" ); //$NON-NLS-1$
+      return true;
+    }
+    final JcrTemplate jcrTemplate = PentahoSystem.get( JcrTemplate.class, "jcrTemplate", pentahoSession ); //$NON-NLS-1$
+    TransactionTemplate txnTemplate =
+        PentahoSystem.get( TransactionTemplate.class, "jcrTransactionTemplate", pentahoSession ); //$NON-NLS-1$
+    String repositoryAdminUsername =
+        PentahoSystem.get( String.class, "repositoryAdminUsername", pentahoSession ); //$NON-NLS-1$
+
+    // stash existing session
+    IPentahoSession origPentahoSession = PentahoSessionHolder.getSession();
+    // run as repo super user
+    PentahoSessionHolder.setSession( createRepositoryAdminPentahoSession( repositoryAdminUsername ) );
+    try {
+      List<String> fileIds = findNodeDataFiles( txnTemplate, jcrTemplate );
+      int converted = 0;
+      for ( int from = 0; from < fileIds.size(); from += batchSize ) {
+        converted +=
+            migrateBatch( txnTemplate, jcrTemplate, fileIds.subList( from, Math.min( from + batchSize, fileIds
+                .size() ) ) );
+      }
+      logger.info( String.format( "Converted %d of %d node data files to the compact form", converted, //$NON-NLS-1$
+          fileIds.size() ) );
+    } catch ( RuntimeException e ) {
+      // the files left in the old form are still readable, so the server can start
+      logger.error( "Node data conversion failed", e ); //$NON-NLS-1$
+    } finally {
+      // restore original session
+      PentahoSessionHolder.setSession( origPentahoSession );
+    }
+    return true;
+  }
+
+  @SuppressWarnings( "unchecked" )
+  protected List<String> findNodeDataFiles( final TransactionTemplate txnTemplate, final JcrTemplate jcrTemplate ) {
+    return txnTemplate.execute( new TransactionCallback<List<String>>() {
+      public List<String> doInTransaction( final TransactionStatus status ) {
+        return (List<String>) jcrTemplate.execute( new JcrCallback() {
+          @Override
+          public Object doInJcr( final Session session ) throws IOException, RepositoryException {
+            PentahoJcrConstants pentahoJcrConstants = new PentahoJcrConstants( session );
+            QueryObjectModelFactory fac = session.getWorkspace().getQueryManager().getQOMFactory();
+            final String selectorName = "selector"; //$NON-NLS-1$
+            Query query =
+                fac.createQuery( fac.selector( pentahoJcrConstants.getPHO_NT_PENTAHOFILE(), selectorName ), fac
+                    .comparison( fac.propertyValue( selectorName, pentahoJcrConstants.getPHO_CONTENTTYPE() ),
+                        QueryObjectModelConstants.JCR_OPERATOR_EQUAL_TO, fac.literal( session.getValueFactory()
+                            .createValue( IRepositoryFileData.NODE_CONTENT_TYPE ) ) ), null, null );
+            List<String> fileIds = new ArrayList<String>();
+            NodeIterator nodes = query.execute().getNodes();
+            while ( nodes.hasNext() ) {
+              fileIds.add( nodes.nextNode().getIdentifier() );
+            }
+            return fileIds;
+          }
+        } );
+      }
+    } );
+  }
+
+  /**
+   * @return the number of files converted
+   */
+  protected int migrateBatch( final TransactionTemplate txnTemplate, final JcrTemplate jcrTemplate,
+      final List<String> fileIds ) {
+    return txnTemplate.execute( new TransactionCallback<Integer>() {
+      public Integer doInTransaction( final TransactionStatus status ) {
+        return (Integer) jcrTemplate.execute( new JcrCallback() {
+          @Override
+          public Object doInJcr( final Session session ) throws IOException, RepositoryException {
+            PentahoJcrConstants pentahoJcrConstants = new PentahoJcrConstants( session );
+            int converted = 0;
+            for ( String fileId : fileIds ) {
+              try {
+                if ( migrateFile( session, pentahoJcrConstants, session.getNodeByIdentifier( fileId ) ) ) {
+                  converted++;
+                }
+              } catch ( ItemNotFoundException e ) {
+                // deleted since the files were listed
+              } catch ( RepositoryException e ) {
+                logger.warn( "Could not convert the node data of file " + fileId, e ); //$NON-NLS-1$
+                session.refresh( false );
+              }
+            }
+            return converted;
+          }
+        } );
+      }
+    } );
+  }
+
+  /**
+   * Converts one file, checking it out and in again when it is versioned.
+   *
+   * @return {@code true} if the file was converted
+   */
+  protected boolean migrateFile( final Session session, final PentahoJcrConstants pentahoJcrConstants,
+      final Node fileNode ) throws RepositoryException {
+    if ( transformer.isCompact( session, pentahoJcrConstants, fileNode ) ) {
+      return false;
+    }
+    JcrRepositoryFileUtils.checkoutNearestVersionableNodeIfNecessary( session, pentahoJcrConstants, fileNode );
+    transformer.migrateContentNode( session, pentahoJcrConstants, fileNode );
+    JcrRepositoryFileUtils.checkinNearestVersionableNodeIfNecessary( session, pentahoJcrConstants, fileNode,
+        VERSION_MESSAGE );
+    return true;
+  }
+
+  protected IPentahoSession createRepositoryAdminPentahoSession( final String repositoryAdminUsername ) {
+    StandaloneSession pentahoSession = new StandaloneSession( repositoryAdminUsername );
+    pentahoSession.setAuthenticated( repositoryAdminUsername );
+    return pentahoSession;
+  }
+
+  public void setBatchSize( final int batchSize ) {
+    this.batchSize = batchSize;
+  }
+
+  @Override
+  public void shutdown() {
+  }
+
+}
@@ -22,9 +22,7 @@ package org.pentaho.platform.repository2.unified.jcr;
 
 import org.pentaho.platform.api.engine.IAuthorizationPolicy;
 import org.pentaho.platform.api.engine.IPentahoSession;
-import org.pentaho.platform.api.engine.security.userroledao.IPentahoUser;
-import org.pentaho.platform.api.engine.security.userroledao.IUserRoleDao;
-import org.pentaho.platform.api.mt.ITenant;
+import org.pentaho.platform.api.repository2.unified.DeletedFilePages;
 import org.pentaho.platform.api.repository2.unified.RepositoryFile;
 import org.pentaho.platform.core.mt.Tenant;
 import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
@@ -47,6 +45,7 @@ import javax.jcr.lock.Lock;
 import javax.jcr.query.Query;
 import javax.jcr.query.QueryResult;
 import javax.jcr.query.qom.Constraint;
+import javax.jcr.query.qom.Ordering;
 import javax.jcr.query.qom.QueryObjectModelConstants;
 import javax.jcr.query.qom.QueryObjectModelFactory;
 import javax.jcr.query.qom.Selector;
@@ -62,7 +61,6 @@ import java.util.Date;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
-import java.util.stream.Collectors;
 
 /**
  * Default implementation of {@link IDeleteHelper}.
@@ -364,32 +362,78 @@ public class DefaultDeleteHelper implements IDeleteHelper {
   public List<RepositoryFile> getAllDeletedFiles( final Session session,
       final PentahoJcrConstants pentahoJcrConstants )
     throws RepositoryException {
+    return getAllDeletedFiles( session, pentahoJcrConstants, 0, -1 );
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p/>
+   * <p>
+   * For administrators this is a single query over the trash file ID nodes of all users (Trash Structure 2), ordered by
+   * deleted date with the most recent first. The JCR only returns nodes readable by the session, and only the nodes of
+   * the requested page are turned into {@link RepositoryFile}s. Trash file ID nodes that no longer hold a deleted file
+   * are skipped before the offset and limit are applied, so a page is only short at the end of the list. Other users
+   * only see their own trash, which is sorted the same way before the page is taken.
+   * </p>
+   */
+  public List<RepositoryFile> getAllDeletedFiles( final Session session,
+      final PentahoJcrConstants pentahoJcrConstants, final int offset, final int limit )
+    throws RepositoryException {
 
     if ( isAdmin() ) {
-      List<RepositoryFile> deletedFiles = new ArrayList<>();
-      ITenant tenant = JcrTenantUtils.getTenant();
-      for ( String user : getUserList() ) {
-        String homePath = getHomePath( tenant, user );
-        Node userHomeFolderNode = (Node) session.getItem( homePath );
-        if ( userHomeFolderNode.hasNode( FOLDER_NAME_TRASH ) ) {
-          Node trashNode = userHomeFolderNode.getNode( FOLDER_NAME_TRASH );
-          List<RepositoryFile> deletedForUser = getDeletedFiles( session, pentahoJcrConstants, trashNode, user );
-          deletedFiles.addAll( deletedForUser );
-        }
-      }
-      return deletedFiles;
+      String tenantHomePath = ServerRepositoryPaths.getTenantHomeFolderPath( JcrTenantUtils.getTenant() );
+      return queryDeletedFiles( session, pentahoJcrConstants, tenantHomePath, offset, limit );
     }
-    return getDeletedFiles( session, pentahoJcrConstants );
+    return DeletedFilePages.page( getDeletedFiles( session, pentahoJcrConstants ), offset, limit );
   }
 
-  protected String getHomePath( ITenant tenant, String user ) {
-    return ServerRepositoryPaths.getUserHomeFolderPath( tenant, JcrStringHelper.fileNameEncode( user ) );
+  private List<RepositoryFile> queryDeletedFiles( final Session session,
+      final PentahoJcrConstants pentahoJcrConstants, final String rootPath, final int offset, final int limit )
+    throws RepositoryException {
+    QueryObjectModelFactory fac = session.getWorkspace().getQueryManager().getQOMFactory();
+    final String selectorName = "selector"; //$NON-NLS-1$
+
+    final Selector selector = fac.selector( "nt:base", selectorName ); //$NON-NLS-1$
+    // only trash file ID nodes carry both properties
+    Constraint deletedDateConstraint =
+        fac.propertyExistence( selectorName, pentahoJcrConstants.getPHO_DELETEDDATE() );
+    Constraint origParentFolderPathConstraint =
+        fac.propertyExistence( selectorName, pentahoJcrConstants.getPHO_ORIGPARENTFOLDERPATH() );
+    Constraint descendantNodeConstraint = fac.descendantNode( selectorName, rootPath );
+    Constraint allConstraints =
+        fac.and( descendantNodeConstraint, fac.and( deletedDateConstraint, origParentFolderPathConstraint ) );
+    Ordering[] orderings =
+        new Ordering[] { fac.descending( fac.propertyValue( selectorName, pentahoJcrConstants.getPHO_DELETEDDATE() ) ) };
+
+    Query qom = fac.createQuery( selector, allConstraints, orderings, null );
+    Query query = session.getWorkspace().getQueryManager().createQuery( qom.getStatement(), Query.JCR_JQOM );
+
+    // a query cannot tell whether a trash file ID node still holds its deleted file, so the page is taken here, where
+    // empty ones can be left out of the count
+    NodeIterator nodeIter = query.execute().getNodes();
+    List<RepositoryFile> deletedFiles = new ArrayList<RepositoryFile>();
+    int skipped = 0;
+    while ( nodeIter.hasNext() && ( limit < 0 || deletedFiles.size() < limit ) ) {
+      Node trashFileIdNode = nodeIter.nextNode();
+      if ( !trashFileIdNode.hasNodes() ) {
+        continue;
+      }
+      if ( skipped < offset ) {
+        skipped++;
+        continue;
+      }
+      deletedFiles.add( nodeToDeletedFile( session, pentahoJcrConstants, trashFileIdNode.getNodes().nextNode(),
+          getTrashOwner( trashFileIdNode ) ) );
+    }
+    return deletedFiles;
   }
 
-  protected List<String> getUserList() {
-    IUserRoleDao userRoleDao = PentahoSystem.get( IUserRoleDao.class );
-    List<IPentahoUser> iusers = userRoleDao.getUsers();
-    return iusers.stream().map( user -> user.getUsername() ).collect( Collectors.toList() );
+  /**
+   * Trash file ID nodes live in {@code <user home folder>/.trash}, so the owner is the name of the home folder.
+   */
+  private String getTrashOwner( final Node trashFileIdNode ) throws RepositoryException {
+    Node userHomeFolderNode = trashFileIdNode.getParent().getParent();
+    return JcrStringHelper.fileNameDecode( userHomeFolderNode.getName() );
   }
 
   private RepositoryFile nodeToDeletedFile( final Session session, final PentahoJcrConstants pentahoJcrConstants,
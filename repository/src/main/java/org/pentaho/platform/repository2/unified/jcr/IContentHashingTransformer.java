@@ -0,0 +1,58 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.repository2.unified.jcr;
+
+import org.pentaho.platform.api.repository2.unified.IRepositoryFileData;
+
+import javax.jcr.Node;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+
+/**
+ * An {@link ITransformer} that records a hash of the content it writes, so that an update with identical content can
+ * be recognized before the file is checked out and a new version is created.
+ * 
+ * @param <T>
+ *          type which this transformer reads and writes
+ */
+public interface IContentHashingTransformer<T extends IRepositoryFileData> extends ITransformer<T> {
+
+  /**
+   * Returns {@code true} if {@code data} is known to be identical to the content currently stored under
+   * {@code fileNode}. Implementations must leave {@code data} readable, and must return {@code false} whenever the
+   * answer cannot be determined cheaply (no stored hash, stream cannot be re-read, etc.).
+   * 
+   * @param session
+   *          JCR session
+   * @param pentahoJcrConstants
+   *          constants
+   * @param data
+   *          incoming data
+   * @param fileNode
+   *          node of type pho_nt:pentahoFile
+   * @return {@code true} if writing {@code data} would not change the stored content
+   * @throws RepositoryException
+   *           if anything goes wrong
+   */
+  boolean isContentUnchanged( final Session session, final PentahoJcrConstants pentahoJcrConstants, final T data,
+      final Node fileNode ) throws RepositoryException;
+
+}
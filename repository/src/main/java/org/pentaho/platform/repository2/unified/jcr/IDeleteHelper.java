@@ -82,14 +82,27 @@ public interface IDeleteHelper {
     throws RepositoryException;
 
   /**
-   * Lists deleted files for all users. In this case, the path field of each file is the original path where it was
-   * located prior to deletion. This is the administrator "recycle bin" view.
+   * Lists deleted files for all users, most recently deleted first. In this case, the path field of each file is the
+   * original path where it was located prior to deletion. This is the administrator "recycle bin" view.
    * 
    * @return list of deleted files for all users
    */
   List<RepositoryFile> getAllDeletedFiles( final Session session, final PentahoJcrConstants pentahoJcrConstants )
     throws RepositoryException;
 
+  /**
+   * Lists one page of the deleted files for all users, most recently deleted first. Non administrators only see
+   * their own deleted files.
+   * 
+   * @param offset
+   *          number of deleted files to skip
+   * @param limit
+   *          maximum number of deleted files to return, or a negative number for no limit
+   * @return page of deleted files
+   */
+  List<RepositoryFile> getAllDeletedFiles( final Session session, final PentahoJcrConstants pentahoJcrConstants,
+      final int offset, final int limit ) throws RepositoryException;
+
   /**
    * Returns the absolute path of the original parent folder. Can be used by caller to checkout parent folder
    * before calling {@link #undeleteFile(Session, PentahoJcrConstants, Serializable)}.
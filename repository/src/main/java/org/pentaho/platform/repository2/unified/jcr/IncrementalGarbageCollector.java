@@ -0,0 +1,417 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.repository2.unified.jcr;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.jackrabbit.core.IPentahoSystemSessionFactory;
+import org.apache.jackrabbit.core.RepositoryImpl;
+import org.apache.jackrabbit.core.data.DataStore;
+import org.apache.jackrabbit.core.data.FileDataStore;
+import org.apache.jackrabbit.core.observation.SynchronousEventListener;
+
+import javax.jcr.Node;
+import javax.jcr.NodeIterator;
+import javax.jcr.Property;
+import javax.jcr.PropertyIterator;
+import javax.jcr.PropertyType;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.observation.Event;
+import javax.jcr.observation.EventIterator;
+import javax.jcr.observation.ObservationManager;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Data store garbage collection that marks in throttled time slices and can continue an interrupted run.
+ * <p/>
+ * Like Jackrabbit's own collector, marking relies on the data store updating the modification time of every record
+ * that is read after {@link DataStore#updateModifiedDateOnAccess(long)}: reading the length of each binary property
+ * marks it, and the sweep deletes the records that are older than the start of the run. Because the start time is
+ * kept in the checkpoint, records marked before an interruption stay marked. Nodes that are added or moved while the
+ * marking is in progress are marked by a synchronous observation listener, so they cannot escape the scan.
+ * <p/>
+ * Skipping the already marked part of the tree is only safe when no content was moved between the interruption and
+ * the resumption, so an interrupted run is continued only when {@code resume} is set (at server startup); otherwise the
+ * marking starts over from the root, still with the original start time.
+ */
+class IncrementalGarbageCollector {
+
+  private static final Log logger = LogFactory.getLog( IncrementalGarbageCollector.class );
+
+  private static final String DEFAULT_WORKSPACE = "default"; //$NON-NLS-1$
+  private static final String JCR_SYSTEM = "/jcr:system"; //$NON-NLS-1$
+
+  private static final String KEY_START_TIME = "startTime"; //$NON-NLS-1$
+  private static final String KEY_PHASE = "phase"; //$NON-NLS-1$
+  private static final String KEY_WORKSPACE = "workspace"; //$NON-NLS-1$
+  private static final String KEY_PATH = "path"; //$NON-NLS-1$
+  private static final String KEY_NODES_SCANNED = "nodesScanned"; //$NON-NLS-1$
+  private static final String KEY_BINARIES_MARKED = "binariesMarked"; //$NON-NLS-1$
+
+  private final RepositoryImpl repository;
+  private final IPentahoSystemSessionFactory sessionFactory;
+  private final File checkpointFile;
+  private final int nodesPerSecond;
+  private final long sliceMillis;
+  private final long pauseMillis;
+  private final RepositoryGcStatus status;
+
+  private long startTime;
+  private String workspace;
+  private long sliceStart;
+  private long sliceNodes;
+
+  IncrementalGarbageCollector( final RepositoryImpl repository, final IPentahoSystemSessionFactory sessionFactory,
+                               final File checkpointFile, final int nodesPerSecond, final long sliceMillis,
+                               final long pauseMillis, final RepositoryGcStatus status ) {
+    this.repository = repository;
+    this.sessionFactory = sessionFactory;
+    this.checkpointFile = checkpointFile;
+    this.nodesPerSecond = nodesPerSecond;
+    this.sliceMillis = sliceMillis;
+    this.pauseMillis = pauseMillis;
+    this.status = status;
+  }
+
+  void run( final boolean resume ) throws RepositoryException, IOException, InterruptedException {
+    DataStore store = repository.getDataStore();
+    if ( store == null ) {
+      logger.info( "No data store is configured, there are no binaries to collect" );
+      return;
+    }
+
+    Properties checkpoint = loadCheckpoint();
+    String resumeWorkspace = null;
+    String resumePath = null;
+    boolean marked = false;
+    if ( checkpoint != null ) {
+      startTime = Long.parseLong( checkpoint.getProperty( KEY_START_TIME ) );
+      if ( resume ) {
+        marked = RepositoryGcStatus.Phase.SWEEPING.name().equals( checkpoint.getProperty( KEY_PHASE ) );
+        resumeWorkspace = checkpoint.getProperty( KEY_WORKSPACE );
+        resumePath = checkpoint.getProperty( KEY_PATH );
+        status.setNodesScanned( Long.parseLong( checkpoint.getProperty( KEY_NODES_SCANNED, "0" ) ) );
+        status.setBinariesMarked( Long.parseLong( checkpoint.getProperty( KEY_BINARIES_MARKED, "0" ) ) );
+        status.setResumed( true );
+        logger.info( String.format( "Resuming garbage collection started at %tc from %s:%s", startTime,
+          resumeWorkspace, resumePath ) );
+      } else {
+        logger.info( String.format( "Restarting the marking of the garbage collection started at %tc", startTime ) );
+      }
+    } else {
+      // rounded down to whole seconds, as some file systems store modification times with that precision
+      startTime = System.currentTimeMillis() / 1000 * 1000;
+    }
+
+    store.updateModifiedDateOnAccess( startTime );
+    try {
+      if ( !marked ) {
+        status.setPhase( RepositoryGcStatus.Phase.MARKING );
+        saveCheckpoint( RepositoryGcStatus.Phase.MARKING, null, null );
+        mark( resumeWorkspace, resumePath );
+        saveCheckpoint( RepositoryGcStatus.Phase.SWEEPING, null, null );
+      }
+
+      status.setPhase( RepositoryGcStatus.Phase.SWEEPING );
+      status.setBytesReclaimed( measureUnused( store ) );
+      int deleted = store.deleteAllOlderThan( startTime );
+      status.setBinariesDeleted( deleted );
+      deleteCheckpoint();
+      logger.info( String.format( "Garbage collecting completed. %d nodes scanned, %d binaries marked, %d deleted",
+        status.getNodesScanned(), status.getBinariesMarked(), deleted ) );
+    } finally {
+      store.updateModifiedDateOnAccess( 0 );
+    }
+  }
+
+  private void mark( final String resumeWorkspace, String resumePath )
+    throws RepositoryException, IOException, InterruptedException {
+    Session rootSession = sessionFactory.create( repository );
+    List<String> workspaces;
+    try {
+      workspaces = new ArrayList<String>( Arrays.asList( rootSession.getWorkspace().getAccessibleWorkspaceNames() ) );
+    } finally {
+      rootSession.logout();
+    }
+    // the default workspace goes first, it is the one the version storage is scanned in
+    workspaces.remove( DEFAULT_WORKSPACE );
+    Collections.sort( workspaces );
+    workspaces.add( 0, DEFAULT_WORKSPACE );
+
+    boolean skipping = resumeWorkspace != null && workspaces.contains( resumeWorkspace );
+    List<Session> listenerSessions = new ArrayList<Session>();
+    List<MarkingListener> listeners = new ArrayList<MarkingListener>();
+    try {
+      // listen on all workspaces before scanning any, so moves into already scanned workspaces are seen as well
+      for ( String name : workspaces ) {
+        Session session = sessionFactory.create( repository, name );
+        listenerSessions.add( session );
+        MarkingListener listener = new MarkingListener( session );
+        session.getWorkspace().getObservationManager().addEventListener( listener,
+          Event.NODE_ADDED | Event.NODE_MOVED, "/", true, null, null, false ); //$NON-NLS-1$
+        listeners.add( listener );
+      }
+
+      sliceStart = System.currentTimeMillis();
+      sliceNodes = 0;
+      for ( String name : workspaces ) {
+        if ( skipping ) {
+          if ( !name.equals( resumeWorkspace ) ) {
+            continue;
+          }
+          skipping = false;
+        } else {
+          resumePath = null;
+        }
+        workspace = name;
+        Session session = sessionFactory.create( repository, name );
+        try {
+          if ( resumePath != null && !session.nodeExists( resumePath ) ) {
+            logger.info( "Checkpoint node " + resumePath + " is gone, marking workspace " + name + " from the root" );
+            resumePath = null;
+          }
+          mark( session.getRootNode(), resumePath, !DEFAULT_WORKSPACE.equals( name ) );
+        } finally {
+          session.logout();
+        }
+      }
+    } finally {
+      for ( int i = 0; i < listeners.size(); i++ ) {
+        Session session = listenerSessions.get( i );
+        try {
+          ObservationManager observationManager = session.getWorkspace().getObservationManager();
+          observationManager.removeEventListener( listeners.get( i ) );
+        } catch ( RepositoryException e ) {
+          logger.warn( "Cannot remove garbage collection listener", e );
+        }
+      }
+      for ( Session session : listenerSessions ) {
+        session.logout();
+      }
+    }
+  }
+
+  /**
+   * Marks the node and its descendants depth first. While {@code resumePath} is set, the subtrees that come before it
+   * were marked by the interrupted run and are skipped.
+   */
+  private void mark( final Node node, String resumePath, final boolean skipVersionStorage )
+    throws RepositoryException, IOException, InterruptedException {
+    String path = node.getPath();
+    if ( resumePath == null || resumePath.equals( path ) ) {
+      status.binariesMarked( markBinaries( node ) );
+      status.nodeScanned( path );
+      throttle( path );
+      resumePath = null;
+    }
+    for ( NodeIterator children = node.getNodes(); children.hasNext(); ) {
+      Node child = children.nextNode();
+      String childPath = child.getPath();
+      if ( skipVersionStorage && JCR_SYSTEM.equals( childPath ) ) {
+        continue;
+      }
+      if ( resumePath == null ) {
+        mark( child, null, skipVersionStorage );
+      } else if ( resumePath.equals( childPath ) || resumePath.startsWith( childPath + "/" ) ) { //$NON-NLS-1$
+        mark( child, resumePath, skipVersionStorage );
+        resumePath = null;
+      }
+    }
+  }
+
+  /**
+   * Reading the length of a binary value updates the modification time of its data store record.
+   *
+   * @return number of binary values marked
+   */
+  static int markBinaries( final Node node ) throws RepositoryException {
+    int count = 0;
+    for ( PropertyIterator properties = node.getProperties(); properties.hasNext(); ) {
+      Property property = properties.nextProperty();
+      if ( property.getType() != PropertyType.BINARY ) {
+        continue;
+      }
+      if ( property.isMultiple() ) {
+        count += property.getLengths().length;
+      } else {
+        property.getLength();
+        count++;
+      }
+    }
+    return count;
+  }
+
+  static int markTree( final Node node ) throws RepositoryException {
+    int count = markBinaries( node );
+    for ( NodeIterator children = node.getNodes(); children.hasNext(); ) {
+      count += markTree( children.nextNode() );
+    }
+    return count;
+  }
+
+  /**
+   * Keeps the scan within the node per second budget and pauses after each time slice, saving a checkpoint first.
+   */
+  private void throttle( final String path ) throws IOException, InterruptedException {
+    sliceNodes++;
+    long elapsed = System.currentTimeMillis() - sliceStart;
+    if ( nodesPerSecond > 0 ) {
+      long budget = sliceNodes * 1000L / nodesPerSecond;
+      if ( budget > elapsed ) {
+        Thread.sleep( budget - elapsed );
+        elapsed = budget;
+      }
+    }
+    if ( elapsed >= sliceMillis ) {
+      saveCheckpoint( RepositoryGcStatus.Phase.MARKING, workspace, path );
+      if ( logger.isDebugEnabled() ) {
+        logger.debug( String.format( "Garbage collection marked %d binaries in %d nodes so far, at %s:%s",
+          status.getBinariesMarked(), status.getNodesScanned(), workspace, path ) );
+      }
+      if ( pauseMillis > 0 ) {
+        Thread.sleep( pauseMillis );
+      }
+      sliceStart = System.currentTimeMillis();
+      sliceNodes = 0;
+    }
+  }
+
+  /**
+   * @return total size of the records the sweep is about to delete, or -1 if the store cannot tell without touching
+   * them
+   */
+  private long measureUnused( final DataStore store ) {
+    if ( !( store instanceof FileDataStore ) ) {
+      return -1;
+    }
+    File directory = new File( ( (FileDataStore) store ).getPath() );
+    if ( !directory.isDirectory() ) {
+      return -1;
+    }
+    long bytes = 0;
+    for ( Iterator<File> files = FileUtils.iterateFiles( directory, null, true ); files.hasNext(); ) {
+      File file = files.next();
+      if ( file.lastModified() < startTime ) {
+        bytes += file.length();
+      }
+    }
+    return bytes;
+  }
+
+  private Properties loadCheckpoint() throws IOException {
+    if ( checkpointFile == null || !checkpointFile.isFile() ) {
+      return null;
+    }
+    Properties checkpoint = new Properties();
+    InputStream in = new FileInputStream( checkpointFile );
+    try {
+      checkpoint.load( in );
+    } finally {
+      IOUtils.closeQuietly( in );
+    }
+    if ( checkpoint.getProperty( KEY_START_TIME ) == null ) {
+      logger.warn( "Ignoring invalid garbage collection checkpoint " + checkpointFile );
+      return null;
+    }
+    return checkpoint;
+  }
+
+  private void saveCheckpoint( final RepositoryGcStatus.Phase phase, final String workspace, final String path )
+    throws IOException {
+    if ( checkpointFile == null ) {
+      return;
+    }
+    Properties checkpoint = new Properties();
+    checkpoint.setProperty( KEY_START_TIME, String.valueOf( startTime ) );
+    checkpoint.setProperty( KEY_PHASE, phase.name() );
+    if ( workspace != null && path != null ) {
+      checkpoint.setProperty( KEY_WORKSPACE, workspace );
+      checkpoint.setProperty( KEY_PATH, path );
+    }
+    checkpoint.setProperty( KEY_NODES_SCANNED, String.valueOf( status.getNodesScanned() ) );
+    checkpoint.setProperty( KEY_BINARIES_MARKED, String.valueOf( status.getBinariesMarked() ) );
+
+    checkpointFile.getParentFile().mkdirs();
+    File temp = new File( checkpointFile.getPath() + ".tmp" ); //$NON-NLS-1$
+    OutputStream out = new FileOutputStream( temp );
+    try {
+      checkpoint.store( out, "Repository garbage collection checkpoint" ); //$NON-NLS-1$
+    } finally {
+      IOUtils.closeQuietly( out );
+    }
+    Files.move( temp.toPath(), checkpointFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+      StandardCopyOption.ATOMIC_MOVE );
+  }
+
+  private void deleteCheckpoint() {
+    if ( checkpointFile != null && checkpointFile.exists() && !checkpointFile.delete() ) {
+      logger.warn( "Cannot delete garbage collection checkpoint " + checkpointFile );
+    }
+  }
+
+  /**
+   * Marks the content of added and moved nodes while the scan is running, in the thread that saves them.
+   */
+  private static class MarkingListener implements SynchronousEventListener {
+
+    private final Session session;
+
+    MarkingListener( final Session session ) {
+      this.session = session;
+    }
+
+    @Override
+    public void onEvent( final EventIterator events ) {
+      // called from the threads that save, while the session is not thread-safe
+      synchronized ( session ) {
+        while ( events.hasNext() ) {
+          Event event = events.nextEvent();
+          String path = null;
+          try {
+            path = event.getPath();
+            session.refresh( false );
+            if ( session.nodeExists( path ) ) {
+              markTree( session.getNode( path ) );
+            }
+          } catch ( RepositoryException e ) {
+            logger.warn( "Cannot mark the binaries of " + path, e );
+          }
+        }
+      }
+    }
+  }
+}
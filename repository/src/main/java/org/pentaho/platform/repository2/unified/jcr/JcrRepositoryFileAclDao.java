@@ -54,8 +54,13 @@ import java.security.Principal;
 import java.security.acl.Group;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.EnumMap;
 import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Jackrabbit-based implementation of {@link IRepositoryFileAclDao}.
@@ -197,6 +202,67 @@ public class JcrRepositoryFileAclDao implements IRepositoryFileAclDao {
     } );
   }
 
+  /**
+   * Evaluates all paths in one session. The privileges held on each path are read once and compared with those
+   * required by each permission; the session's compiled permissions keep the ACLs of common ancestors, so siblings
+   * do not look them up again.
+   */
+  @Override
+  @SuppressWarnings( "unchecked" )
+  public Map<String, EnumSet<RepositoryFilePermission>> getAccess( final List<String> relPaths,
+      final EnumSet<RepositoryFilePermission> permissions ) {
+    return (Map<String, EnumSet<RepositoryFilePermission>>) jcrTemplate.execute( new JcrCallback() {
+      public Object doInJcr( final Session session ) throws RepositoryException, IOException {
+        DefaultPermissionConversionHelper permissionConversionHelper = new DefaultPermissionConversionHelper( session );
+        Map<RepositoryFilePermission, Set<String>> required =
+            new EnumMap<RepositoryFilePermission, Set<String>>( RepositoryFilePermission.class );
+        for ( RepositoryFilePermission permission : permissions ) {
+          required.put( permission, getPrivilegeNames( permissionConversionHelper.pentahoPermissionsToPrivileges(
+              session, EnumSet.of( permission ) ) ) );
+        }
+        AccessControlManager acMgr = session.getAccessControlManager();
+        Map<String, EnumSet<RepositoryFilePermission>> access =
+            new LinkedHashMap<String, EnumSet<RepositoryFilePermission>>();
+        for ( String relPath : relPaths ) {
+          EnumSet<RepositoryFilePermission> granted = EnumSet.noneOf( RepositoryFilePermission.class );
+          try {
+            String absPath = pathConversionHelper.relToAbs( relPath );
+            Set<String> held = getPrivilegeNames( acMgr.getPrivileges( JcrStringHelper.pathEncode( absPath ) ) );
+            for ( Map.Entry<RepositoryFilePermission, Set<String>> entry : required.entrySet() ) {
+              if ( held.containsAll( entry.getValue() ) ) {
+                granted.add( entry.getKey() );
+              }
+            }
+          } catch ( PathNotFoundException e ) {
+            // as in hasAccess, a path that does not exist grants nothing
+          }
+          access.put( relPath, granted );
+        }
+        return access;
+      }
+    } );
+  }
+
+  /**
+   * Returns the names of the non-aggregate privileges in or aggregated by {@code privileges}, so that sets of
+   * privileges can be compared regardless of how they were grouped.
+   */
+  private static Set<String> getPrivilegeNames( final Privilege[] privileges ) {
+    Set<String> names = new HashSet<String>();
+    for ( Privilege privilege : privileges ) {
+      if ( !privilege.isAggregate() ) {
+        names.add( privilege.getName() );
+        continue;
+      }
+      for ( Privilege aggregated : privilege.getAggregatePrivileges() ) {
+        if ( !aggregated.isAggregate() ) {
+          names.add( aggregated.getName() );
+        }
+      }
+    }
+    return names;
+  }
+
   private RepositoryFileAcl toAcl( final Session session, final PentahoJcrConstants pentahoJcrConstants,
       final Serializable id ) throws RepositoryException {
 
@@ -380,6 +446,17 @@ public class JcrRepositoryFileAclDao implements IRepositoryFileAclDao {
       throw new RuntimeException( Messages.getInstance().getString( "JcrRepositoryFileDao.ERROR_0006_ACCESS_DENIED" ) ); //$NON-NLS-1$
     }
 
+    applyAcl( session, fileId, acl );
+    session.save();
+    return getAcl( fileId );
+  }
+
+  /**
+   * Writes the entries of {@code acl} to the node of {@code fileId} without saving the session, so that the change can
+   * be saved together with others.
+   */
+  void applyAcl( final Session session, final Serializable fileId, final RepositoryFileAcl acl )
+    throws RepositoryException {
     DefaultPermissionConversionHelper permissionConversionHelper = new DefaultPermissionConversionHelper( session );
     Node node = session.getNodeByIdentifier( fileId.toString() );
     if ( node == null ) {
@@ -437,9 +514,6 @@ public class JcrRepositoryFileAclDao implements IRepositoryFileAclDao {
 
     }
     acMgr.setPolicy( absPath, acList );
-    session.save();
-    return getAcl( fileId );
-
   }
 
   private boolean isKioskEnabled() {
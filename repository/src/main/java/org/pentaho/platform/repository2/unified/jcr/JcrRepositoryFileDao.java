@@ -24,13 +24,17 @@ import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Date;
 import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.TreeSet;
 
 import javax.jcr.AccessDeniedException;
 import javax.jcr.Item;
@@ -43,24 +47,31 @@ import javax.jcr.PropertyIterator;
 import javax.jcr.RepositoryException;
 import javax.jcr.Session;
 import javax.jcr.lock.Lock;
+import javax.jcr.lock.LockException;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.pentaho.platform.api.engine.IPentahoSession;
 import org.pentaho.platform.api.locale.IPentahoLocale;
 import org.pentaho.platform.api.repository2.unified.IRepositoryAccessVoterManager;
 import org.pentaho.platform.api.repository2.unified.IRepositoryDefaultAclHandler;
 import org.pentaho.platform.api.repository2.unified.IRepositoryFileData;
 import org.pentaho.platform.api.repository2.unified.RepositoryFile;
 import org.pentaho.platform.api.repository2.unified.RepositoryFileAcl;
+import org.pentaho.platform.api.repository2.unified.RepositoryFileBatch;
+import org.pentaho.platform.api.repository2.unified.RepositoryFileBatchResult;
 import org.pentaho.platform.api.repository2.unified.RepositoryFilePermission;
 import org.pentaho.platform.api.repository2.unified.RepositoryFileTree;
 import org.pentaho.platform.api.repository2.unified.RepositoryRequest;
+import org.pentaho.platform.api.repository2.unified.UnifiedRepositoryAccessDeniedException;
 import org.pentaho.platform.api.repository2.unified.UnifiedRepositoryException;
 import org.pentaho.platform.api.repository2.unified.VersionSummary;
 import org.pentaho.platform.api.repository2.unified.data.node.DataNode;
 import org.pentaho.platform.api.repository2.unified.data.node.NodeRepositoryFileData;
+import org.pentaho.platform.api.repository2.unified.data.simple.SimpleRepositoryFileData;
 import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
+import org.pentaho.platform.repository2.ClientRepositoryPaths;
 import org.pentaho.platform.repository2.messages.Messages;
 import org.pentaho.platform.repository2.unified.IRepositoryFileAclDao;
 import org.pentaho.platform.repository2.unified.IRepositoryFileDao;
@@ -81,6 +92,8 @@ public class JcrRepositoryFileDao implements IRepositoryFileDao {
   // ~ Static fields/initializers
   // ======================================================================================
 
+  public static final int DEFAULT_BATCH_SAVE_SIZE = 100;
+
   // ~ Instance fields
   // =================================================================================================
   private JcrTemplate jcrTemplate;
@@ -99,6 +112,12 @@ public class JcrRepositoryFileDao implements IRepositoryFileDao {
 
   private IRepositoryAccessVoterManager accessVoterManager;
 
+  private RepositoryFileContentCache contentCache;
+
+  private RepositoryTreeSnapshotCache treeSnapshotCache;
+
+  private int batchSaveSize = DEFAULT_BATCH_SAVE_SIZE;
+
   // ~ Constructors
   // ====================================================================================================
 
@@ -257,14 +276,32 @@ public class JcrRepositoryFileDao implements IRepositoryFileDao {
     if ( !accessVoterManager.hasAccess( file, RepositoryFilePermission.WRITE, acl, PentahoSessionHolder.getSession() ) ) {
       return null;
     }
+    ITransformer<IRepositoryFileData> transformer = findTransformerForWrite( content.getClass() );
+    // the lock is checked before anything else, so an unchanged update of a file locked by someone else fails just
+    // like a real one; isFileNodeUnchanged runs the lost update check first as well
     lockHelper.addLockTokenToSessionIfNecessary( session, pentahoJcrConstants, file.getId() );
+    // identical content and metadata would only produce a redundant version; skip checkout, write and checkin
+    if ( JcrRepositoryFileUtils.isFileNodeUnchanged( session, pentahoJcrConstants, file, content, transformer ) ) {
+      if ( logger.isDebugEnabled() ) {
+        logger.debug( "Skipping update of unchanged file [" + file.getPath() + "]" ); //$NON-NLS-1$ //$NON-NLS-2$
+      }
+      Node fileNode = session.getNodeByIdentifier( file.getId().toString() );
+      if ( fileNode.isLocked()
+          && !session.getWorkspace().getLockManager().getLock( fileNode.getPath() ).isLockOwningSession() ) {
+        throw new LockException( "file [" + file.getPath() + "] is locked by another session" ); //$NON-NLS-1$
+      }
+      lockHelper.removeLockTokenFromSessionIfNecessary( session, pentahoJcrConstants, file.getId() );
+      return JcrRepositoryFileUtils.nodeIdToFile( session, pentahoJcrConstants, pathConversionHelper, lockHelper, file
+          .getId() );
+    }
     JcrRepositoryFileUtils.checkoutNearestVersionableFileIfNecessary( session, pentahoJcrConstants, file.getId() );
-    JcrRepositoryFileUtils.updateFileNode( session, pentahoJcrConstants, file, content,
-        findTransformerForWrite( content.getClass() ) );
+    JcrRepositoryFileUtils.updateFileNode( session, pentahoJcrConstants, file, content, transformer );
     session.save();
     JcrRepositoryFileUtils.checkinNearestVersionableFileIfNecessary( session, pentahoJcrConstants, file.getId(),
         versionMessage, file.getCreatedDate() != null ? file.getCreatedDate() : new java.util.Date(), true );
     lockHelper.removeLockTokenFromSessionIfNecessary( session, pentahoJcrConstants, file.getId() );
+    invalidateContentCache( file.getId() );
+    JcrRepositoryFileUtils.invalidateLocaleCache( file.getId() );
     return JcrRepositoryFileUtils.nodeIdToFile( session, pentahoJcrConstants, pathConversionHelper, lockHelper, file
         .getId() );
   }
@@ -284,6 +321,7 @@ public class JcrRepositoryFileDao implements IRepositoryFileDao {
     JcrRepositoryFileUtils.checkinNearestVersionableFileIfNecessary( session, pentahoJcrConstants, folder.getId(),
         versionMessage );
     lockHelper.removeLockTokenFromSessionIfNecessary( session, pentahoJcrConstants, folder.getId() );
+    JcrRepositoryFileUtils.invalidateLocaleCache( folder.getId() );
     return JcrRepositoryFileUtils.nodeIdToFile( session, pentahoJcrConstants, pathConversionHelper, lockHelper, folder
         .getId() );
   }
@@ -412,6 +450,42 @@ public class JcrRepositoryFileDao implements IRepositoryFileDao {
     } );
   }
 
+  /**
+   * Resolves all files in one JCR session. Locale properties come from the shared {@link RepositoryFileLocaleCache}
+   * when one is configured, and the access voters are consulted for every file as in {@link #getFileById}. Ids that
+   * are malformed or do not resolve to a file are left out of the result.
+   */
+  @Override
+  @SuppressWarnings( "unchecked" )
+  public Map<Serializable, String> getLocalizedTitles( final List<Serializable> fileIds, final IPentahoLocale locale ) {
+    Assert.notNull( fileIds );
+    return (Map<Serializable, String>) jcrTemplate.execute( new JcrCallback() {
+      @Override
+      public Object doInJcr( final Session session ) throws RepositoryException, IOException {
+        PentahoJcrConstants pentahoJcrConstants = new PentahoJcrConstants( session );
+        IPentahoSession pentahoSession = PentahoSessionHolder.getSession();
+        Map<Serializable, String> titles = new LinkedHashMap<Serializable, String>();
+        for ( Serializable fileId : fileIds ) {
+          Node fileNode;
+          try {
+            fileNode = session.getNodeByIdentifier( fileId.toString() );
+          } catch ( RepositoryException e ) {
+            // ItemNotFoundException for a missing file, a plain RepositoryException for a malformed id
+            continue;
+          }
+          RepositoryFile file =
+              JcrRepositoryFileUtils.nodeToFile( session, pentahoJcrConstants, pathConversionHelper, lockHelper,
+                  fileNode, false, locale );
+          if ( file != null && accessVoterManager.hasAccess( file, RepositoryFilePermission.READ, aclDao.getAcl( file
+              .getId() ), pentahoSession ) ) {
+            titles.put( fileId, file.getTitle() );
+          }
+        }
+        return titles;
+      }
+    } );
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -457,7 +531,7 @@ public class JcrRepositoryFileDao implements IRepositoryFileDao {
     PentahoJcrConstants pentahoJcrConstants = new PentahoJcrConstants( session );
     Item fileNode;
     try {
-      fileNode = session.getItem( JcrStringHelper.pathEncode( absPath ) );
+      fileNode = JcrRepositoryFileUtils.getItemByAbsolutePath( session, absPath );
       // items are nodes or properties; this must be a node
       Assert.isTrue( fileNode.isNode() );
     } catch ( PathNotFoundException e ) {
@@ -488,10 +562,27 @@ public class JcrRepositoryFileDao implements IRepositoryFileDao {
       @Override
       public Object doInJcr( final Session session ) throws RepositoryException, IOException {
         PentahoJcrConstants pentahoJcrConstants = new PentahoJcrConstants( session );
-        IRepositoryFileData data =
-            JcrRepositoryFileUtils.getContent( session, pentahoJcrConstants, fileId, versionId, findTransformerForRead(
-                JcrRepositoryFileUtils.getFileContentType( session, pentahoJcrConstants, fileId, versionId ),
-                contentClass ) );
+        String contentType = JcrRepositoryFileUtils.getFileContentType( session, pentahoJcrConstants, fileId,
+            versionId );
+        IRepositoryFileData data = null;
+        // the file and its version are always resolved through the session, so JCR access control applies to cache
+        // hits as well
+        String versionToken = null;
+        if ( isContentCacheable( contentType, contentClass ) ) {
+          versionToken =
+              JcrRepositoryFileUtils.getContentVersionToken( session, pentahoJcrConstants, fileId, versionId );
+          if ( versionToken != null ) {
+            data = contentCache.get( fileId, versionToken );
+          }
+        }
+        if ( data == null ) {
+          data =
+              JcrRepositoryFileUtils.getContent( session, pentahoJcrConstants, fileId, versionId,
+                  findTransformerForRead( contentType, contentClass ) );
+          if ( versionToken != null ) {
+            data = contentCache.put( fileId, versionToken, (SimpleRepositoryFileData) data );
+          }
+        }
         if ( fileId != null ) {
           RepositoryFile file = internalGetFileById( fileId, false, null );
           if ( file != null ) {
@@ -565,6 +656,251 @@ public class JcrRepositoryFileDao implements IRepositoryFileDao {
     } );
   }
 
+  /**
+   * {@inheritDoc}
+   * <p/>
+   * Operations are written in chunks of {@link #setBatchSaveSize(int) batchSaveSize}. Each chunk is saved once, after
+   * which every changed file and every parent of a new file is checked in once. If a chunk fails before it is saved,
+   * its changes are discarded and its operations are replayed one at a time so that only the failing ones are
+   * reported. If a check in fails after the save, the operations that changed the node are reported as failed; their
+   * changes stay saved without the new version.
+   */
+  @Override
+  public RepositoryFileBatchResult applyBatch( final RepositoryFileBatch batch ) {
+    if ( isKioskEnabled() ) {
+      throw new RuntimeException( Messages.getInstance().getString( "JcrRepositoryFileDao.ERROR_0006_ACCESS_DENIED" ) ); //$NON-NLS-1$
+    }
+
+    Assert.notNull( batch );
+    final RepositoryFileBatchResult result = new RepositoryFileBatchResult( batch.size() );
+    jcrTemplate.execute( new JcrCallback() {
+      @Override
+      public Object doInJcr( final Session session ) throws RepositoryException, IOException {
+        PentahoJcrConstants pentahoJcrConstants = new PentahoJcrConstants( session );
+        for ( int from = 0; from < batch.size(); from += batchSaveSize ) {
+          applyBatchChunk( session, pentahoJcrConstants, batch, from, Math.min( from + batchSaveSize, batch.size() ),
+              result );
+        }
+        return null;
+      }
+    } );
+    return result;
+  }
+
+  private void applyBatchChunk( final Session session, final PentahoJcrConstants pentahoJcrConstants,
+      final RepositoryFileBatch batch, final int from, final int to, final RepositoryFileBatchResult result )
+    throws RepositoryException {
+    Map<Integer, Node> writtenNodes = new LinkedHashMap<Integer, Node>();
+    Map<String, PendingVersion> versions = new LinkedHashMap<String, PendingVersion>();
+    Set<Serializable> lockedFileIds = new HashSet<Serializable>();
+    try {
+      try {
+        writeBatchChunk( session, pentahoJcrConstants, batch, from, to, result, writtenNodes, versions,
+            lockedFileIds );
+        session.save();
+      } catch ( RepositoryException | RuntimeException e ) {
+        session.refresh( false );
+        if ( to - from == 1 ) {
+          logger.debug( "Batch operation " + from + " failed", e ); //$NON-NLS-1$ //$NON-NLS-2$
+          result.failed( from, e );
+        } else {
+          for ( int i = from; i < to; i++ ) {
+            applyBatchChunk( session, pentahoJcrConstants, batch, i, i + 1, result );
+          }
+        }
+        return;
+      }
+      for ( PendingVersion version : versions.values() ) {
+        try {
+          JcrRepositoryFileUtils.checkinVersionableNode( session, pentahoJcrConstants, version.node, version.date );
+        } catch ( RepositoryException | RuntimeException e ) {
+          logger.debug( "Check in after batch operations " + version.operations //$NON-NLS-1$
+              + " failed", e ); //$NON-NLS-1$
+          for ( Integer index : version.operations ) {
+            writtenNodes.remove( index );
+            result.failed( index, e );
+          }
+        }
+      }
+    } finally {
+      for ( Serializable fileId : lockedFileIds ) {
+        lockHelper.removeLockTokenFromSessionIfNecessary( session, pentahoJcrConstants, fileId );
+      }
+    }
+    for ( Map.Entry<Integer, Node> written : writtenNodes.entrySet() ) {
+      String fileId = written.getValue().getIdentifier();
+      invalidateContentCache( fileId );
+      JcrRepositoryFileUtils.invalidateLocaleCache( fileId );
+      result.succeeded( written.getKey(), JcrRepositoryFileUtils.nodeToFile( session, pentahoJcrConstants,
+          pathConversionHelper, lockHelper, written.getValue() ) );
+    }
+  }
+
+  /**
+   * Writes the operations {@code from} (inclusive) to {@code to} (exclusive) without saving, and sets the version
+   * properties of the nodes to check in once the chunk is saved. Operations denied by the access voters are reported
+   * right away, as they write nothing.
+   */
+  private void writeBatchChunk( final Session session, final PentahoJcrConstants pentahoJcrConstants,
+      final RepositoryFileBatch batch, final int from, final int to, final RepositoryFileBatchResult result,
+      final Map<Integer, Node> writtenNodes, final Map<String, PendingVersion> versions,
+      final Set<Serializable> lockedFileIds ) throws RepositoryException {
+    List<RepositoryFileBatch.Operation> operations = batch.getOperations();
+    Map<Serializable, Boolean> parentAccess = new HashMap<Serializable, Boolean>();
+    // nodes whose nearest versionable node gets a new version, by identifier
+    Map<String, PendingVersion> changedNodes = new LinkedHashMap<String, PendingVersion>();
+    for ( int i = from; i < to; i++ ) {
+      RepositoryFileBatch.Operation operation = operations.get( i );
+      RepositoryFile file = operation.getFile();
+      Node node;
+      if ( operation.getType() == RepositoryFileBatch.Type.CREATE_FILE
+          || operation.getType() == RepositoryFileBatch.Type.CREATE_FOLDER ) {
+        Serializable parentFolderId = operation.getParentFolderId();
+        if ( !hasWriteAccessToParent( parentFolderId, parentAccess ) ) {
+          result.failed( i, new UnifiedRepositoryAccessDeniedException( file.getName() ) );
+          continue;
+        }
+        JcrRepositoryFileUtils.checkoutNearestVersionableFileIfNecessary( session, pentahoJcrConstants,
+            parentFolderId );
+        String parentVersionMessage;
+        if ( file.isFolder() ) {
+          node = JcrRepositoryFileUtils.createFolderNode( session, pentahoJcrConstants, parentFolderId, file );
+          parentVersionMessage =
+              Messages.getInstance().getString( "JcrRepositoryFileDao.USER_0001_VER_COMMENT_ADD_FOLDER", //$NON-NLS-1$
+                  file.getName(), ( parentFolderId == null ? "root" : parentFolderId.toString() ) ); //$NON-NLS-1$
+        } else {
+          IRepositoryFileData content = operation.getData();
+          node =
+              JcrRepositoryFileUtils.createFileNode( session, pentahoJcrConstants, parentFolderId, file, content,
+                  findTransformerForWrite( content.getClass() ) );
+          parentVersionMessage =
+              Messages.getInstance().getString( "JcrRepositoryFileDao.USER_0002_VER_COMMENT_ADD_FILE", //$NON-NLS-1$
+                  file.getName(), ( parentFolderId == null ? "root" : parentFolderId.toString() ) ); //$NON-NLS-1$
+        }
+        // create a tmp file with correct path for default acl creation purposes.
+        String path = JcrRepositoryFileUtils.getAbsolutePath( session, pentahoJcrConstants, node );
+        RepositoryFile tmpFile = new RepositoryFile.Builder( file ).path( path ).build();
+        applyBatchAcl( session, pentahoJcrConstants, node.getIdentifier(), operation.getAcl() == null
+            ? defaultAclHandler.createDefaultAcl( tmpFile ) : operation.getAcl(), true );
+        writeBatchMetadata( session, node.getIdentifier(), operation );
+        if ( file.isVersioned() ) {
+          addPendingVersion( changedNodes, node.getIdentifier(), new PendingVersion( node, batch.getVersionMessage(),
+              file.getCreatedDate(), false ), i );
+        }
+        if ( parentFolderId != null ) {
+          addPendingVersion( changedNodes, parentFolderId.toString(), new PendingVersion( session.getNodeByIdentifier(
+              parentFolderId.toString() ), parentVersionMessage, null, false ), i );
+        }
+      } else {
+        RepositoryFileAcl acl = aclDao.getAcl( file.getId() );
+        // Invoke accessVoterManager to see if we have access to perform this operation
+        if ( !accessVoterManager.hasAccess( file, RepositoryFilePermission.WRITE, acl, PentahoSessionHolder
+            .getSession() ) ) {
+          result.failed( i, new UnifiedRepositoryAccessDeniedException( file.getName() ) );
+          continue;
+        }
+        if ( lockedFileIds.add( file.getId() ) ) {
+          lockHelper.addLockTokenToSessionIfNecessary( session, pentahoJcrConstants, file.getId() );
+        }
+        JcrRepositoryFileUtils.checkoutNearestVersionableFileIfNecessary( session, pentahoJcrConstants, file.getId() );
+        node = session.getNodeByIdentifier( file.getId().toString() );
+        boolean contentChanged = false;
+        if ( operation.getType() == RepositoryFileBatch.Type.UPDATE_FILE ) {
+          ITransformer<IRepositoryFileData> transformer = findTransformerForWrite( operation.getData().getClass() );
+          // identical content and metadata would only produce a redundant version
+          if ( !JcrRepositoryFileUtils.isFileNodeUnchanged( session, pentahoJcrConstants, file, operation.getData(),
+              transformer ) ) {
+            JcrRepositoryFileUtils.updateFileNode( session, pentahoJcrConstants, file, operation.getData(),
+                transformer );
+            contentChanged = true;
+          }
+        }
+        if ( operation.getAcl() != null ) {
+          applyBatchAcl( session, pentahoJcrConstants, file.getId(), operation.getAcl(), false );
+        }
+        boolean otherChange = writeBatchMetadata( session, file.getId(), operation );
+        if ( contentChanged || otherChange || operation.getAcl() != null ) {
+          boolean aclOnlyChange = !contentChanged && !otherChange;
+          addPendingVersion( changedNodes, node.getIdentifier(), new PendingVersion( node, batch.getVersionMessage(),
+              file.getCreatedDate(), aclOnlyChange ), i );
+        }
+      }
+      writtenNodes.put( i, node );
+    }
+    for ( PendingVersion changed : changedNodes.values() ) {
+      Node versionableNode =
+          JcrRepositoryFileUtils.setVersionPropertiesOfNearestVersionableNode( session, pentahoJcrConstants,
+              changed.node, changed.message, changed.aclOnlyChange );
+      if ( versionableNode != null ) {
+        PendingVersion version = versions.get( versionableNode.getIdentifier() );
+        if ( version == null ) {
+          version = new PendingVersion( versionableNode, changed.message, changed.date, changed.aclOnlyChange );
+          versions.put( versionableNode.getIdentifier(), version );
+        }
+        version.operations.addAll( changed.operations );
+      }
+    }
+  }
+
+  /**
+   * Records that operation {@code index} changed a node. A later change of the same node replaces the version
+   * properties, but the node keeps track of every operation that changed it.
+   */
+  private static void addPendingVersion( final Map<String, PendingVersion> changedNodes, final String identifier,
+      final PendingVersion version, final int index ) {
+    PendingVersion previous = changedNodes.put( identifier, version );
+    if ( previous != null ) {
+      version.operations.addAll( previous.operations );
+    }
+    version.operations.add( index );
+  }
+
+  private boolean hasWriteAccessToParent( final Serializable parentFolderId,
+      final Map<Serializable, Boolean> parentAccess ) {
+    if ( parentFolderId == null ) {
+      return true;
+    }
+    Boolean access = parentAccess.get( parentFolderId );
+    if ( access == null ) {
+      RepositoryFile parentRepositoryFile = getFileById( parentFolderId );
+      access =
+          parentRepositoryFile == null
+              || accessVoterManager.hasAccess( parentRepositoryFile, RepositoryFilePermission.WRITE, aclDao
+                  .getAcl( parentRepositoryFile.getId() ), PentahoSessionHolder.getSession() );
+      parentAccess.put( parentFolderId, access );
+    }
+    return access;
+  }
+
+  /**
+   * Applies an ACL as part of the pending changes of the session. Only the JCR ACL DAO can do so; any other DAO saves
+   * the session itself.
+   */
+  private void applyBatchAcl( final Session session, final PentahoJcrConstants pentahoJcrConstants,
+      final Serializable fileId, final RepositoryFileAcl acl, final boolean create ) throws RepositoryException {
+    if ( aclDao instanceof JcrRepositoryFileAclDao ) {
+      ( (JcrRepositoryFileAclDao) aclDao ).applyAcl( session, fileId, acl );
+    } else if ( create ) {
+      aclDao.createAcl( fileId, acl );
+    } else {
+      aclDao.updateAcl( new RepositoryFileAcl.Builder( acl ).id( fileId ).build() );
+    }
+  }
+
+  /**
+   * @return whether the operation changed metadata or locale properties
+   */
+  private boolean writeBatchMetadata( final Session session, final Serializable fileId,
+      final RepositoryFileBatch.Operation operation ) throws RepositoryException {
+    if ( operation.getMetadata() != null ) {
+      JcrRepositoryFileUtils.updateFileMetadata( session, fileId, operation.getMetadata() );
+    }
+    for ( Map.Entry<String, Properties> locale : operation.getLocaleProperties().entrySet() ) {
+      JcrRepositoryFileUtils.updateFileLocaleProperties( session, fileId, locale.getKey(), locale.getValue() );
+    }
+    return operation.getMetadata() != null || !operation.getLocaleProperties().isEmpty();
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -674,6 +1010,7 @@ public class JcrRepositoryFileDao implements IRepositoryFileDao {
         session.save();
         JcrRepositoryFileUtils.checkinNearestVersionableFileIfNecessary( session, pentahoJcrConstants, parentFolderId,
             versionMessage );
+        invalidateContentCache( fileId );
         return null;
       }
     } );
@@ -707,6 +1044,7 @@ public class JcrRepositoryFileDao implements IRepositoryFileDao {
         session.getWorkspace().getVersionManager().getVersionHistory( fileToDeleteNode.getPath() ).removeVersion(
             versionId.toString() );
         session.save();
+        invalidateContentCache( fileId );
         return null;
       }
     } );
@@ -755,6 +1093,18 @@ public class JcrRepositoryFileDao implements IRepositoryFileDao {
     } );
   }
 
+  @Override
+  @SuppressWarnings( "unchecked" )
+  public List<RepositoryFile> getAllDeletedFiles( final int offset, final int limit ) {
+    return (List<RepositoryFile>) jcrTemplate.execute( new JcrCallback() {
+      @Override
+      public Object doInJcr( final Session session ) throws RepositoryException, IOException {
+        PentahoJcrConstants pentahoJcrConstants = new PentahoJcrConstants( session );
+        return deleteHelper.getAllDeletedFiles( session, pentahoJcrConstants, offset, limit );
+      }
+    } );
+  }
+
   /**
    * {@inheritDoc}
    * <p/>
@@ -785,6 +1135,8 @@ public class JcrRepositoryFileDao implements IRepositoryFileDao {
         PentahoJcrConstants pentahoJcrConstants = new PentahoJcrConstants( session );
         deleteHelper.permanentlyDeleteFile( session, pentahoJcrConstants, fileId );
         session.save();
+        invalidateContentCache( fileId );
+        JcrRepositoryFileUtils.invalidateLocaleCache( fileId );
         return null;
       }
     } );
@@ -816,7 +1168,8 @@ public class JcrRepositoryFileDao implements IRepositoryFileDao {
         // original parent folder path may no longer exist!
         if ( session.itemExists( JcrStringHelper.pathEncode( absOrigParentFolderPath ) ) ) {
           origParentFolderId =
-              ( (Node) session.getItem( JcrStringHelper.pathEncode( absOrigParentFolderPath ) ) ).getIdentifier();
+              ( (Node) JcrRepositoryFileUtils.getItemByAbsolutePath( session, absOrigParentFolderPath ) )
+                  .getIdentifier();
         } else {
           // go through each of the segments of the original parent folder path, creating as necessary
           String[] segments = pathConversionHelper.absToRel( absOrigParentFolderPath ).split( RepositoryFile.SEPARATOR );
@@ -896,7 +1249,7 @@ public class JcrRepositoryFileDao implements IRepositoryFileDao {
         Node destFileNode = null;
         Node destParentFolderNode = null;
         try {
-          destFileNode = (Node) session.getItem( JcrStringHelper.pathEncode( cleanDestAbsPath ) );
+          destFileNode = (Node) JcrRepositoryFileUtils.getItemByAbsolutePath( session, cleanDestAbsPath );
         } catch ( PathNotFoundException e ) {
           destExists = false;
         }
@@ -918,7 +1271,8 @@ public class JcrRepositoryFileDao implements IRepositoryFileDao {
             Assert.isTrue( lastSlashIndex > 1, Messages.getInstance().getString(
                 "JcrRepositoryFileDao.ERROR_0003_ILLEGAL_DEST_PATH" ) ); //$NON-NLS-1$
             String absPathToDestParentFolder = cleanDestAbsPath.substring( 0, lastSlashIndex );
-            destParentFolderNode = (Node) session.getItem( JcrStringHelper.pathEncode( absPathToDestParentFolder ) );
+            destParentFolderNode =
+                (Node) JcrRepositoryFileUtils.getItemByAbsolutePath( session, absPathToDestParentFolder );
           }
         } else {
           // destination doesn't exist; go up one level to a folder that does exist
@@ -929,7 +1283,8 @@ public class JcrRepositoryFileDao implements IRepositoryFileDao {
           // Not need to check the name if we encoded it
           // JcrRepositoryFileUtils.checkName( cleanDestAbsPath.substring( lastSlashIndex + 1 ) );
           try {
-            destParentFolderNode = (Node) session.getItem( JcrStringHelper.pathEncode( absPathToDestParentFolder ) );
+            destParentFolderNode =
+                (Node) JcrRepositoryFileUtils.getItemByAbsolutePath( session, absPathToDestParentFolder );
           } catch ( PathNotFoundException e1 ) {
             Assert.isTrue( false, Messages.getInstance()
                 .getString( "JcrRepositoryFileDao.ERROR_0004_PARENT_MUST_EXIST" ) ); //$NON-NLS-1$
@@ -1027,6 +1382,7 @@ public class JcrRepositoryFileDao implements IRepositoryFileDao {
       public Object doInJcr( final Session session ) throws RepositoryException, IOException {
         Node fileNode = session.getNodeByIdentifier( fileId.toString() );
         session.getWorkspace().getVersionManager().restore( fileNode.getPath(), versionId.toString(), true );
+        invalidateContentCache( fileId );
         return null;
       }
     } );
@@ -1054,6 +1410,22 @@ public class JcrRepositoryFileDao implements IRepositoryFileDao {
   @Override
   public RepositoryFileTree getTree( final RepositoryRequest repositoryRequest ) {
     Assert.hasText( repositoryRequest.getPath() );
+    if ( treeSnapshotCache == null ) {
+      return loadTree( repositoryRequest );
+    }
+    String encodedAbsPath = JcrStringHelper.pathEncode( pathConversionHelper.relToAbs( repositoryRequest.getPath() ) );
+    String encodedAbsHomePath =
+        JcrStringHelper.pathEncode( pathConversionHelper.relToAbs( ClientRepositoryPaths.getHomeFolderPath() ) );
+    return treeSnapshotCache.getTree( repositoryRequest, encodedAbsPath, encodedAbsHomePath,
+        new RepositoryTreeSnapshotCache.TreeLoader() {
+          @Override
+          public RepositoryFileTree load( final RepositoryRequest request ) {
+            return loadTree( request );
+          }
+        } );
+  }
+
+  private RepositoryFileTree loadTree( final RepositoryRequest repositoryRequest ) {
     return (RepositoryFileTree) jcrTemplate.execute( new JcrCallback() {
       @Override
       public Object doInJcr( final Session session ) throws RepositoryException, IOException {
@@ -1275,6 +1647,7 @@ public class JcrRepositoryFileDao implements IRepositoryFileDao {
         JcrRepositoryFileUtils.checkinNearestVersionableFileIfNecessary( session, pentahoJcrConstants, repositoryFile
             .getId(), versionMessage );
         lockHelper.removeLockTokenFromSessionIfNecessary( session, pentahoJcrConstants, repositoryFile.getId() );
+        JcrRepositoryFileUtils.invalidateLocaleCache( repositoryFile.getId() );
         return null;
       }
     } );
@@ -1303,6 +1676,7 @@ public class JcrRepositoryFileDao implements IRepositoryFileDao {
         JcrRepositoryFileUtils.checkinNearestVersionableFileIfNecessary( session, pentahoJcrConstants, repositoryFile
             .getId(), versionMessage );
         lockHelper.removeLockTokenFromSessionIfNecessary( session, pentahoJcrConstants, repositoryFile.getId() );
+        JcrRepositoryFileUtils.invalidateLocaleCache( repositoryFile.getId() );
         return null;
       }
     } );
@@ -1325,6 +1699,54 @@ public class JcrRepositoryFileDao implements IRepositoryFileDao {
     } );
   }
 
+  /**
+   * Sets an optional cache for the content of small simple files, consulted by {@link #getData}.
+   */
+  public void setContentCache( final RepositoryFileContentCache contentCache ) {
+    this.contentCache = contentCache;
+  }
+
+  public RepositoryFileContentCache getContentCache() {
+    return contentCache;
+  }
+
+  /**
+   * Sets an optional cache of trees shared by users with the same roles, consulted by
+   * {@link #getTree(RepositoryRequest)}.
+   */
+  public void setTreeSnapshotCache( final RepositoryTreeSnapshotCache treeSnapshotCache ) {
+    this.treeSnapshotCache = treeSnapshotCache;
+  }
+
+  public RepositoryTreeSnapshotCache getTreeSnapshotCache() {
+    return treeSnapshotCache;
+  }
+
+  /**
+   * Sets how many operations of a {@link #applyBatch(RepositoryFileBatch) batch} are saved together. Defaults to
+   * {@value #DEFAULT_BATCH_SAVE_SIZE}.
+   */
+  public void setBatchSaveSize( final int batchSaveSize ) {
+    Assert.isTrue( batchSaveSize > 0 );
+    this.batchSaveSize = batchSaveSize;
+  }
+
+  public int getBatchSaveSize() {
+    return batchSaveSize;
+  }
+
+  private boolean isContentCacheable( final String contentType, final Class<? extends IRepositoryFileData> clazz ) {
+    return contentCache != null && contentCache.isEnabled()
+        && IRepositoryFileData.SIMPLE_CONTENT_TYPE.equals( contentType )
+        && clazz.isAssignableFrom( SimpleRepositoryFileData.class );
+  }
+
+  private void invalidateContentCache( final Serializable fileId ) {
+    if ( contentCache != null ) {
+      contentCache.invalidate( fileId );
+    }
+  }
+
   private String extractNameFromPath( String path ) {
     int startIndex = path.lastIndexOf( RepositoryFile.SEPARATOR );
     if ( startIndex >= 0 ) {
@@ -1343,4 +1765,30 @@ public class JcrRepositoryFileDao implements IRepositoryFileDao {
       return false;
     }
   }
+
+  /**
+   * A node to check in once the changes of a batch are saved, with the properties of its new version.
+   */
+  private static class PendingVersion {
+
+    private final Node node;
+
+    private final String message;
+
+    private final Date date;
+
+    private final boolean aclOnlyChange;
+
+    /**
+     * Indexes of the batch operations that changed the node.
+     */
+    private final Set<Integer> operations = new TreeSet<Integer>();
+
+    PendingVersion( final Node node, final String message, final Date date, final boolean aclOnlyChange ) {
+      this.node = node;
+      this.message = message;
+      this.date = date;
+      this.aclOnlyChange = aclOnlyChange;
+    }
+  }
 }
@@ -67,6 +67,7 @@ import org.pentaho.platform.api.repository2.unified.IRepositoryVersionManager;
 import org.pentaho.platform.api.repository2.unified.IUnifiedRepository;
 import org.pentaho.platform.api.repository2.unified.RepositoryFile;
 import org.pentaho.platform.api.repository2.unified.RepositoryFileAcl;
+import org.pentaho.platform.api.repository2.unified.RepositoryFileInterner;
 import org.pentaho.platform.api.repository2.unified.RepositoryFilePermission;
 import org.pentaho.platform.api.repository2.unified.RepositoryFileSid;
 import org.pentaho.platform.api.repository2.unified.RepositoryFileTree;
@@ -105,6 +106,12 @@ public class JcrRepositoryFileUtils {
 
   private static IRepositoryVersionManager repositoryVersionManager = null;
 
+  private static RepositoryFileLocaleCache localeCache;
+
+  private static RepositoryPathCache pathCache;
+
+  private static RepositoryFileInterner fileInterner;
+
   /**
    * Try to get parameters from PentahoSystem, otherwise use default
    */
@@ -149,7 +156,7 @@ public class JcrRepositoryFileUtils {
   private static RepositoryFile getRootFolder( final Session session ) throws RepositoryException {
     Node node = session.getRootNode();
     RepositoryFile file = new RepositoryFile.Builder( node.getIdentifier(), "" ).folder( true ).versioned( false ).path( //$NON-NLS-1$
-        JcrStringHelper.pathDecode( node.getPath() ) ).build();
+        JcrStringHelper.pathDecode( node.getPath() ) ).interner( getFileInterner() ).build();
     return file;
   }
 
@@ -246,9 +253,7 @@ public class JcrRepositoryFileUtils {
     if ( isPentahoHierarchyNode( session, pentahoJcrConstants, node ) ) {
       if ( node.hasNode( pentahoJcrConstants.getPHO_LOCALES() ) ) {
         // Expensive
-        localePropertiesMap =
-            getLocalePropertiesMap( session, pentahoJcrConstants, node.getNode( pentahoJcrConstants
-                .getPHO_LOCALES() ) );
+        localePropertiesMap = getCachedLocalePropertiesMap( session, pentahoJcrConstants, node );
 
         // [BISERVER-8337] localize title and description
         LocalePropertyResolver lpr = new LocalePropertyResolver( name );
@@ -303,7 +308,8 @@ public class JcrRepositoryFileUtils {
             lastModified ).folder( folder ).versioned( versioned ).path( path ).versionId( versionId ).fileSize(
                 fileSize ).locked( locked ).lockDate( lockDate ).hidden( hidden ).schedulable( schedulable )
             .lockMessage( lockMessage ).lockOwner( lockOwner ).title( title ).description( description ).locale(
-                pentahoLocale.toString() ).localePropertiesMap( localePropertiesMap ).aclNode( aclNode ).build();
+                pentahoLocale.toString() ).localePropertiesMap( localePropertiesMap ).aclNode( aclNode ).interner(
+                getFileInterner() ).build();
 
     return file;
   }
@@ -407,6 +413,105 @@ public class JcrRepositoryFileUtils {
     return localePropertiesMap;
   }
 
+  /**
+   * Returns the locale properties of a file or folder node that has a locales child node, through the shared
+   * {@link RepositoryFileLocaleCache} if one is configured.
+   */
+  public static Map<String, Properties> getCachedLocalePropertiesMap( final Session session,
+      final PentahoJcrConstants pentahoJcrConstants, final Node node ) throws RepositoryException {
+    RepositoryFileLocaleCache cache = getLocaleCache();
+    String versionToken = null;
+    long invalidationStamp = 0;
+    if ( cache != null ) {
+      invalidationStamp = cache.getInvalidationStamp();
+      versionToken = getLocaleVersionToken( pentahoJcrConstants, node );
+      Map<String, Properties> localePropertiesMap = cache.get( node.getIdentifier(), versionToken );
+      if ( localePropertiesMap != null ) {
+        return localePropertiesMap;
+      }
+    }
+    Map<String, Properties> localePropertiesMap =
+        getLocalePropertiesMap( session, pentahoJcrConstants, node.getNode( pentahoJcrConstants.getPHO_LOCALES() ) );
+    if ( cache != null ) {
+      cache.put( node.getIdentifier(), versionToken, localePropertiesMap, invalidationStamp );
+    }
+    return localePropertiesMap;
+  }
+
+  /**
+   * The base version of versioned files, the last modification time of other files, and a constant for folders and
+   * frozen nodes (whose locales never change).
+   */
+  private static String getLocaleVersionToken( final PentahoJcrConstants pentahoJcrConstants, final Node node )
+    throws RepositoryException {
+    if ( node.hasProperty( JcrConstants.JCR_BASEVERSION ) ) {
+      return node.getProperty( JcrConstants.JCR_BASEVERSION ).getString();
+    }
+    if ( node.hasProperty( pentahoJcrConstants.getPHO_LASTMODIFIED() ) ) {
+      return "lastModified:" //$NON-NLS-1$
+          + node.getProperty( pentahoJcrConstants.getPHO_LASTMODIFIED() ).getDate().getTimeInMillis();
+    }
+    return ""; //$NON-NLS-1$
+  }
+
+  /**
+   * Drops the cached locale properties of the file; call after saving a change to them.
+   */
+  public static void invalidateLocaleCache( final Serializable fileId ) {
+    RepositoryFileLocaleCache cache = getLocaleCache();
+    if ( cache != null ) {
+      cache.invalidate( fileId );
+    }
+  }
+
+  public static RepositoryFileLocaleCache getLocaleCache() {
+    if ( localeCache == null ) {
+      localeCache = PentahoSystem.get( RepositoryFileLocaleCache.class );
+    }
+    return localeCache;
+  }
+
+  // Used for unit tests
+  public static void setLocaleCache( final RepositoryFileLocaleCache localeCache ) {
+    JcrRepositoryFileUtils.localeCache = localeCache;
+  }
+
+  /**
+   * Resolves an absolute path like {@code session.getItem}, through the {@link RepositoryPathCache} if there is one.
+   */
+  public static Item getItemByAbsolutePath( final Session session, final String absPath ) throws RepositoryException {
+    String encodedAbsPath = JcrStringHelper.pathEncode( absPath );
+    RepositoryPathCache cache = getPathCache();
+    return cache != null ? cache.getItem( session, encodedAbsPath ) : session.getItem( encodedAbsPath );
+  }
+
+  public static RepositoryPathCache getPathCache() {
+    if ( pathCache == null ) {
+      pathCache = PentahoSystem.get( RepositoryPathCache.class );
+    }
+    return pathCache;
+  }
+
+  // Used for unit tests
+  public static void setPathCache( final RepositoryPathCache pathCache ) {
+    JcrRepositoryFileUtils.pathCache = pathCache;
+  }
+
+  /**
+   * Pool of the parent paths, owners and locales shared by the files read from this repository.
+   */
+  public static RepositoryFileInterner getFileInterner() {
+    if ( fileInterner == null ) {
+      fileInterner = PentahoSystem.get( RepositoryFileInterner.class );
+    }
+    return fileInterner;
+  }
+
+  // Used for unit tests
+  public static void setFileInterner( final RepositoryFileInterner fileInterner ) {
+    JcrRepositoryFileUtils.fileInterner = fileInterner;
+  }
+
   private static void setLocalePropertiesMap( final Session session, final PentahoJcrConstants pentahoJcrConstants,
       final Node localeRootNode, final Map<String, Properties> localePropertiesMap ) throws RepositoryException {
     String prefix = session.getNamespacePrefix( PentahoJcrConstants.PHO_NS );
@@ -679,6 +784,95 @@ public class JcrRepositoryFileUtils {
     return fileNode;
   }
 
+  /**
+   * Returns {@code true} if updating {@code file} with {@code content} would leave the stored file node unchanged, in
+   * which case the checkout, write and checkin can be skipped altogether. Only transformers that record a content hash
+   * are able to answer this; for any other transformer the file is always considered changed.
+   */
+  @SuppressWarnings( "unchecked" )
+  public static boolean isFileNodeUnchanged( final Session session, final PentahoJcrConstants pentahoJcrConstants,
+      final RepositoryFile file, final IRepositoryFileData content,
+      final ITransformer<IRepositoryFileData> transformer ) throws RepositoryException {
+    if ( !( transformer instanceof IContentHashingTransformer ) ) {
+      return false;
+    }
+
+    Node fileNode = session.getNodeByIdentifier( file.getId().toString() );
+    // guard against using a file retrieved from a more lenient session inside a more strict session
+    Assert.notNull( fileNode );
+
+    preventLostUpdate( session, pentahoJcrConstants, file );
+
+    if ( !fileNode.hasProperty( pentahoJcrConstants.getPHO_CONTENTTYPE() )
+        || !transformer.getContentType().equals(
+            fileNode.getProperty( pentahoJcrConstants.getPHO_CONTENTTYPE() ).getString() ) ) {
+      return false;
+    }
+    if ( !fileNode.hasProperty( pentahoJcrConstants.getPHO_HIDDEN() )
+        || fileNode.getProperty( pentahoJcrConstants.getPHO_HIDDEN() ).getBoolean() != file.isHidden() ) {
+      return false;
+    }
+    if ( !fileNode.hasProperty( pentahoJcrConstants.getPHO_ACLNODE() )
+        || fileNode.getProperty( pentahoJcrConstants.getPHO_ACLNODE() ).getBoolean() != file.isAclNode() ) {
+      return false;
+    }
+
+    Map<String, Serializable> metadata = getFileMetadata( session, file.getId() );
+    if ( file.getCreatorId() != null
+        && !file.getCreatorId().equals( metadata.get( PentahoJcrConstants.PHO_CONTENTCREATOR ) ) ) {
+      return false;
+    }
+    if ( !Boolean.toString( file.isSchedulable() ).equals( metadata.get( RepositoryFile.SCHEDULABLE_KEY ) ) ) {
+      return false;
+    }
+
+    if ( file.getLocalePropertiesMap() != null && !file.getLocalePropertiesMap().isEmpty() ) {
+      if ( !fileNode.hasNode( pentahoJcrConstants.getPHO_LOCALES() ) ) {
+        return false;
+      }
+      // locale properties are merged on update, so only the incoming entries need to match
+      Map<String, Properties> storedLocales =
+          getLocalePropertiesMap( session, pentahoJcrConstants, fileNode.getNode( pentahoJcrConstants
+              .getPHO_LOCALES() ) );
+      for ( Map.Entry<String, Properties> entry : file.getLocalePropertiesMap().entrySet() ) {
+        if ( entry.getValue() == null ) {
+          continue;
+        }
+        Properties stored = storedLocales.get( entry.getKey() );
+        if ( stored == null ) {
+          return false;
+        }
+        for ( String propertyName : entry.getValue().stringPropertyNames() ) {
+          if ( !Objects.equals( entry.getValue().getProperty( propertyName ), stored.getProperty( propertyName ) ) ) {
+            return false;
+          }
+        }
+      }
+    }
+
+    return ( (IContentHashingTransformer<IRepositoryFileData>) transformer ).isContentUnchanged( session,
+        pentahoJcrConstants, content, fileNode );
+  }
+
+  /**
+   * Stores the hash of the binary content of a file on the file node, next to {@code pho:fileSize}. It is kept out of
+   * the file metadata so it is neither exported nor dropped when the metadata is replaced.
+   */
+  public static void setContentHash( final Session session, final PentahoJcrConstants pentahoJcrConstants,
+      final Node fileNode, final String contentHash ) throws RepositoryException {
+    fileNode.setProperty( pentahoJcrConstants.getPHO_CONTENTHASH(), contentHash );
+  }
+
+  /**
+   * Returns the hash of the binary content of a file as stored by {@link #setContentHash}, or {@code null} if the
+   * content was written before hashes were recorded.
+   */
+  public static String getContentHash( final Session session, final PentahoJcrConstants pentahoJcrConstants,
+      final Node fileNode ) throws RepositoryException {
+    String propertyName = pentahoJcrConstants.getPHO_CONTENTHASH();
+    return fileNode.hasProperty( propertyName ) ? fileNode.getProperty( propertyName ).getString() : null;
+  }
+
   public static Node updateFolderNode( final Session session, final PentahoJcrConstants pentahoJcrConstants,
       final RepositoryFile folder ) throws RepositoryException {
 
@@ -722,6 +916,27 @@ public class JcrRepositoryFileUtils {
     return transformer.fromContentNode( session, pentahoJcrConstants, fileNode );
   }
 
+  /**
+   * Returns a token that changes whenever the content returned by {@link #getContent} for the same arguments changes:
+   * the requested or base version name for versioned files, the last modification time otherwise. Returns
+   * {@code null} if no such token can be determined.
+   */
+  public static String getContentVersionToken( final Session session, final PentahoJcrConstants pentahoJcrConstants,
+      final Serializable fileId, final Serializable versionId ) throws RepositoryException {
+    Node fileNode = session.getNodeByIdentifier( fileId.toString() );
+    if ( isVersioned( session, pentahoJcrConstants, fileNode ) ) {
+      if ( versionId != null ) {
+        return versionId.toString();
+      }
+      return session.getWorkspace().getVersionManager().getBaseVersion( fileNode.getPath() ).getName();
+    }
+    if ( versionId == null && fileNode.hasProperty( pentahoJcrConstants.getPHO_LASTMODIFIED() ) ) {
+      return "lastModified:" //$NON-NLS-1$
+          + fileNode.getProperty( pentahoJcrConstants.getPHO_LASTMODIFIED() ).getDate().getTimeInMillis();
+    }
+    return null;
+  }
+
   public static List<RepositoryFile> getChildren( final Session session, final PentahoJcrConstants pentahoJcrConstants,
       final IPathConversionHelper pathConversionHelper, final ILockHelper lockHelper,
       final RepositoryRequest repositoryRequest ) throws RepositoryException {
@@ -730,7 +945,9 @@ public class JcrRepositoryFileUtils {
     Assert.isTrue( isPentahoFolder( pentahoJcrConstants, folderNode ) );
 
     List<RepositoryFile> children = new ArrayList<RepositoryFile>();
-    // get all immediate child nodes that are of type PHO_NT_PENTAHOFOLDER or PHO_NT_PENTAHOFILE
+    // get all immediate child nodes that are of type PHO_NT_PENTAHOFOLDER or PHO_NT_PENTAHOFILE; JCR matches the
+    // name pattern on the child node names, but every child that matches it is loaded, as the remaining filters are
+    // checked on the node itself; they only keep the rejected children from being converted to files
     NodeIterator nodeIterator = null;
     if ( repositoryRequest.getChildNodeFilter() != null ) {
       nodeIterator = folderNode.getNodes( repositoryRequest.getChildNodeFilter() );
@@ -740,11 +957,8 @@ public class JcrRepositoryFileUtils {
 
     while ( nodeIterator.hasNext() ) {
       Node node = nodeIterator.nextNode();
-      if ( isSupportedNodeType( pentahoJcrConstants, node ) ) {
-        RepositoryFile file = nodeToFile( session, pentahoJcrConstants, pathConversionHelper, lockHelper, node );
-        if ( !file.isAclNode() && ( !file.isHidden() || repositoryRequest.isShowHidden() ) ) {
-          children.add( file );
-        }
+      if ( isAcceptedChild( pentahoJcrConstants, node, repositoryRequest ) ) {
+        children.add( nodeToFile( session, pentahoJcrConstants, pathConversionHelper, lockHelper, node ) );
       }
     }
 
@@ -754,6 +968,31 @@ public class JcrRepositoryFileUtils {
 
   }
 
+  /**
+   * Applies the type ({@code FILES}/{@code FOLDERS}), hidden and ACL node filters of {@code repositoryRequest} to a
+   * child node, reading only the node's own type and properties. This saves converting the rejected children, not
+   * loading them; the filters are not pushed down into a JCR query.
+   */
+  static boolean isAcceptedChild( final PentahoJcrConstants pentahoJcrConstants, final Node node,
+      final RepositoryRequest repositoryRequest ) throws RepositoryException {
+    if ( !isSupportedNodeType( pentahoJcrConstants, node ) ) {
+      return false;
+    }
+    RepositoryRequest.FILES_TYPE_FILTER types = repositoryRequest.getTypes();
+    if ( types == RepositoryRequest.FILES_TYPE_FILTER.FILES || types == RepositoryRequest.FILES_TYPE_FILTER.FOLDERS ) {
+      boolean folder = isPentahoFolder( pentahoJcrConstants, node );
+      if ( folder != ( types == RepositoryRequest.FILES_TYPE_FILTER.FOLDERS ) ) {
+        return false;
+      }
+    }
+    if ( !repositoryRequest.isShowHidden() && node.hasProperty( pentahoJcrConstants.getPHO_HIDDEN() )
+        && node.getProperty( pentahoJcrConstants.getPHO_HIDDEN() ).getBoolean() ) {
+      return false;
+    }
+    return !( node.hasProperty( pentahoJcrConstants.getPHO_ACLNODE() )
+        && node.getProperty( pentahoJcrConstants.getPHO_ACLNODE() ).getBoolean() );
+  }
+
   @Deprecated
   public static List<RepositoryFile> getChildren( final Session session, final PentahoJcrConstants pentahoJcrConstants,
       final IPathConversionHelper pathConversionHelper, final ILockHelper lockHelper, final Serializable folderId,
@@ -930,6 +1169,26 @@ public class JcrRepositoryFileUtils {
      * session.save must be called inside the versionable node block and outside to ensure user changes are made when a
      * file is not versioned.
      */
+    Node versionableNode =
+        setVersionPropertiesOfNearestVersionableNode( session, pentahoJcrConstants, node, versionMessage,
+            aclOnlyChange );
+
+    if ( versionableNode != null ) {
+      session.save(); // required before checkin since we set some properties above
+      checkinVersionableNode( session, pentahoJcrConstants, versionableNode, versionDate );
+    }
+  }
+
+  /**
+   * Sets the version author, message and ACL-only flag on the nearest versionable node without saving the session.
+   * Used together with {@link #checkinVersionableNode} by callers that save many changes at once.
+   * 
+   * @return the nearest versionable node, or {@code null} if there is none
+   */
+  public static Node setVersionPropertiesOfNearestVersionableNode( final Session session,
+      final PentahoJcrConstants pentahoJcrConstants, final Node node, final String versionMessage,
+      final boolean aclOnlyChange ) throws RepositoryException {
+    Assert.notNull( node );
     Node versionableNode = findNearestVersionableNode( session, pentahoJcrConstants, node );
 
     if ( versionableNode != null ) {
@@ -950,33 +1209,39 @@ public class JcrRepositoryFileUtils {
           versionableNode.getProperty( pentahoJcrConstants.getPHO_ACLONLYCHANGE() ).remove();
         }
       }
-      session.save(); // required before checkin since we set some properties above
+    }
+    return versionableNode;
+  }
 
-      Calendar cal = Calendar.getInstance();
-      if ( versionDate != null ) {
-        cal.setTime( versionDate );
-      } else {
-        cal.setTime( new Date() );
-      }
-      ( (VersionManagerImpl) session.getWorkspace().getVersionManager() ).checkin( versionableNode.getPath(), cal );
+  /**
+   * Checks in a versionable node whose changes, including its version properties, have been saved.
+   */
+  public static void checkinVersionableNode( final Session session, final PentahoJcrConstants pentahoJcrConstants,
+      final Node versionableNode, final Date versionDate ) throws RepositoryException {
+    Calendar cal = Calendar.getInstance();
+    if ( versionDate != null ) {
+      cal.setTime( versionDate );
+    } else {
+      cal.setTime( new Date() );
+    }
+    ( (VersionManagerImpl) session.getWorkspace().getVersionManager() ).checkin( versionableNode.getPath(), cal );
 
-      // if we're not versioning, delete only the previous version to
-      // prevent the number of versions from increasing. We still need a versioned node
-      if ( !getRepositoryVersionManager().isVersioningEnabled( versionableNode.getPath() ) ) {
+    // if we're not versioning, delete only the previous version to
+    // prevent the number of versions from increasing. We still need a versioned node
+    if ( !getRepositoryVersionManager().isVersioningEnabled( versionableNode.getPath() ) ) {
 
-        List<VersionSummary> versionSummaries =
-            (List<VersionSummary>) getVersionSummaries( session, pentahoJcrConstants, versionableNode.getIdentifier(),
-                Boolean.TRUE );
+      List<VersionSummary> versionSummaries =
+          (List<VersionSummary>) getVersionSummaries( session, pentahoJcrConstants, versionableNode.getIdentifier(),
+              Boolean.TRUE );
 
-        if ( ( versionSummaries != null ) && ( versionSummaries.size() > 1 ) ) {
-          VersionSummary versionSummary = (VersionSummary) versionSummaries.toArray()[versionSummaries.size() - 2];
+      if ( ( versionSummaries != null ) && ( versionSummaries.size() > 1 ) ) {
+        VersionSummary versionSummary = (VersionSummary) versionSummaries.toArray()[versionSummaries.size() - 2];
 
-          if ( versionSummary != null ) {
-            String versionId = (String) versionSummary.getId();
-            session.getWorkspace().getVersionManager().getVersionHistory( versionableNode.getPath() ).removeVersion(
-                versionId );
-            session.save();
-          }
+        if ( versionSummary != null ) {
+          String versionId = (String) versionSummary.getId();
+          session.getWorkspace().getVersionManager().getVersionHistory( versionableNode.getPath() ).removeVersion(
+              versionId );
+          session.save();
         }
       }
     }
@@ -1146,7 +1411,7 @@ public class JcrRepositoryFileUtils {
       final RepositoryRequest repositoryRequest, IRepositoryAccessVoterManager accessVoterManager )
     throws RepositoryException {
 
-    Item fileItem = session.getItem( JcrStringHelper.pathEncode( absPath ) );
+    Item fileItem = getItemByAbsolutePath( session, absPath );
     // items are nodes or properties; this must be a node
     Assert.isTrue( fileItem.isNode() );
     Node fileNode = (Node) fileItem;
@@ -1344,10 +1609,22 @@ public class JcrRepositoryFileUtils {
       propertiesMap.put( locale, properties );
       setLocalePropertiesMap( session, pentahoJcrConstants, localesNode, propertiesMap );
     }
+    touchLastModified( pentahoJcrConstants, fileNode );
 
     return fileNode;
   }
 
+  /**
+   * Moves the last modification time of a file forward, so the locale cache of other cluster nodes sees that the
+   * locale properties of an unversioned file changed. Nodes without a last modification time are left alone.
+   */
+  private static void touchLastModified( final PentahoJcrConstants pentahoJcrConstants, final Node fileNode )
+    throws RepositoryException {
+    if ( fileNode.hasProperty( pentahoJcrConstants.getPHO_LASTMODIFIED() ) ) {
+      fileNode.setProperty( pentahoJcrConstants.getPHO_LASTMODIFIED(), Calendar.getInstance() );
+    }
+  }
+
   public static Node deleteFileLocaleProperties( final Session session, final Serializable fileId, String locale )
     throws RepositoryException {
 
@@ -1363,6 +1640,7 @@ public class JcrRepositoryFileUtils {
       // remove locale node
       Node localeNode = NodeHelper.checkGetNode( localesNode, locale );
       localeNode.remove();
+      touchLastModified( pentahoJcrConstants, fileNode );
     } catch ( PathNotFoundException pnfe ) {
       // nothing to delete
     }
@@ -1374,11 +1652,24 @@ public class JcrRepositoryFileUtils {
       Map<String, Serializable> metadataMap ) throws ItemNotFoundException, RepositoryException {
     PentahoJcrConstants pentahoJcrConstants = new PentahoJcrConstants( session );
 
+    Node fileNode = session.getNodeByIdentifier( fileId.toString() );
+    Node metadataNode = fileNode.getNode( pentahoJcrConstants.getPHO_METADATA() );
+    checkoutNearestVersionableNodeIfNecessary( session, pentahoJcrConstants, metadataNode );
+    updateFileMetadata( session, fileId, metadataMap );
+    checkinNearestVersionableNodeIfNecessary( session, pentahoJcrConstants, metadataNode, null );
+  }
+
+  /**
+   * Replaces the metadata of a checked out file without saving the session.
+   */
+  public static Node updateFileMetadata( final Session session, final Serializable fileId,
+      Map<String, Serializable> metadataMap ) throws ItemNotFoundException, RepositoryException {
+    PentahoJcrConstants pentahoJcrConstants = new PentahoJcrConstants( session );
+
     Node fileNode = session.getNodeByIdentifier( fileId.toString() );
     String prefix = session.getNamespacePrefix( PentahoJcrConstants.PHO_NS );
     Assert.hasText( prefix );
     Node metadataNode = fileNode.getNode( pentahoJcrConstants.getPHO_METADATA() );
-    checkoutNearestVersionableNodeIfNecessary( session, pentahoJcrConstants, metadataNode );
 
     PropertyIterator propertyIter = metadataNode.getProperties( prefix + ":*" ); //$NON-NLS-1$
     while ( propertyIter.hasNext() ) {
@@ -1388,8 +1679,7 @@ public class JcrRepositoryFileUtils {
     for ( String key : metadataMap.keySet() ) {
       setMetadataItemForFile( session, key, metadataMap.get( key ), metadataNode );
     }
-
-    checkinNearestVersionableNodeIfNecessary( session, pentahoJcrConstants, metadataNode, null );
+    return fileNode;
   }
 
   private static void setMetadataItemForFile( final Session session, final String metadataKey,
@@ -1507,7 +1797,7 @@ public class JcrRepositoryFileUtils {
     PentahoJcrConstants pentahoJcrConstants = new PentahoJcrConstants( session );
     Item fileNode;
     try {
-      fileNode = session.getItem( JcrStringHelper.pathEncode( absPath ) );
+      fileNode = getItemByAbsolutePath( session, absPath );
       // items are nodes or properties; this must be a node
       Assert.isTrue( fileNode.isNode() );
     } catch ( PathNotFoundException e ) {
@@ -22,6 +22,8 @@ package org.pentaho.platform.repository2.unified.jcr;
 
 import org.apache.jackrabbit.util.Text;
 import org.apache.jackrabbit.util.ISO9075;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
 
@@ -34,6 +36,18 @@ public class JcrStringHelper {
   private static boolean useMultiByteEncoding = false;
   private static boolean multiByteValueInitialized = false;
   private static final String SEPARATOR = "/";
+  private static final char SEPARATOR_CHAR = '/';
+  private static final String DOUBLE_SEPARATOR = "//";
+
+  /**
+   * Paths that need escaping are few and repeat a lot (the same folders are browsed over and over), so their
+   * conversions are kept. Paths that need none are returned as they are and never cached.
+   */
+  private static final int PATH_CACHE_SIZE = 10000;
+  private static final Cache<String, String> ENCODED_PATHS = newPathCache();
+  private static final Cache<String, String> ENCODED_MULTI_BYTE_PATHS = newPathCache();
+  private static final Cache<String, String> DECODED_PATHS = newPathCache();
+  private static final Cache<String, String> DECODED_MULTI_BYTE_PATHS = newPathCache();
 
   private JcrStringHelper() {
   }
@@ -95,15 +109,7 @@ public class JcrStringHelper {
    * @return
    */
   public static String pathEncode( String path ) {
-    String[] folders = path.split( SEPARATOR );
-    StringBuilder encodedPath = new StringBuilder( path.length() * 2 );
-    for ( int i = 0; i < folders.length; i++ ) {
-      encodedPath.append( fileNameEncode( folders[i] ) );
-      if ( i != folders.length - 1 || path.endsWith( SEPARATOR ) ) {
-        encodedPath.append( SEPARATOR );
-      }
-    }
-    return encodedPath.toString();
+    return pathEncode( path, isMultiByteEncodingEnabled() );
   }
 
   /**
@@ -114,15 +120,16 @@ public class JcrStringHelper {
    * @return
    */
   public static String pathEncode( String path, boolean useMultiByte ) {
-    String[] folders = path.split( SEPARATOR );
-    StringBuilder encodedPath = new StringBuilder( path.length() * 2 );
-    for ( int i = 0; i < folders.length; i++ ) {
-      encodedPath.append( fileNameEncode( folders[i], useMultiByte ) );
-      if ( i != folders.length - 1 || path.endsWith( SEPARATOR ) ) {
-        encodedPath.append( SEPARATOR );
-      }
+    if ( isPlainPath( path, useMultiByte ) ) {
+      return path;
     }
-    return encodedPath.toString();
+    Cache<String, String> cache = useMultiByte ? ENCODED_MULTI_BYTE_PATHS : ENCODED_PATHS;
+    String encodedPath = cache.getIfPresent( path );
+    if ( encodedPath == null ) {
+      encodedPath = convertPath( path, useMultiByte, true );
+      cache.put( path, encodedPath );
+    }
+    return encodedPath;
   }
 
   /**
@@ -132,15 +139,7 @@ public class JcrStringHelper {
    * @return
    */
   public static String pathDecode( String encodedPath ) {
-    String[] folders = encodedPath.split( SEPARATOR );
-    StringBuilder decodedPath = new StringBuilder( encodedPath.length() * 2 );
-    for ( int i = 0; i < folders.length; i++ ) {
-      decodedPath.append( fileNameDecode( folders[ i ] ) );
-      if ( i != folders.length - 1 || encodedPath.endsWith( SEPARATOR ) ) {
-        decodedPath.append( SEPARATOR );
-      }
-    }
-    return decodedPath.toString();
+    return pathDecode( encodedPath, isMultiByteEncodingEnabled() );
   }
 
   /**
@@ -151,15 +150,134 @@ public class JcrStringHelper {
    * @return
    */
   public static String pathDecode( String encodedPath, boolean useMultiByte ) {
-    String[] folders = encodedPath.split( SEPARATOR );
-    StringBuilder decodedPath = new StringBuilder( encodedPath.length() * 2 );
+    if ( !isOddlySeparated( encodedPath ) && !mayBeEncoded( encodedPath, 0, encodedPath.length(), useMultiByte ) ) {
+      return encodedPath;
+    }
+    Cache<String, String> cache = useMultiByte ? DECODED_MULTI_BYTE_PATHS : DECODED_PATHS;
+    String decodedPath = cache.getIfPresent( encodedPath );
+    if ( decodedPath == null ) {
+      decodedPath = convertPath( encodedPath, useMultiByte, false );
+      cache.put( encodedPath, decodedPath );
+    }
+    return decodedPath;
+  }
+
+  /**
+   * Encodes or decodes every name of {@code path} in one pass, copying names that need no conversion as they are.
+   */
+  private static String convertPath( String path, boolean useMultiByte, boolean encode ) {
+    if ( isOddlySeparated( path ) ) {
+      return splitConvertPath( path, useMultiByte, encode );
+    }
+    int length = path.length();
+    StringBuilder converted = new StringBuilder( encode ? length + 16 : length );
+    int start = 0;
+    while ( start <= length ) {
+      int end = path.indexOf( SEPARATOR_CHAR, start );
+      if ( end < 0 ) {
+        end = length;
+      }
+      if ( encode ? isPlainName( path, start, end, useMultiByte ) : !mayBeEncoded( path, start, end, useMultiByte ) ) {
+        converted.append( path, start, end );
+      } else {
+        String name = path.substring( start, end );
+        converted.append( encode ? fileNameEncode( name, useMultiByte ) : fileNameDecode( name, useMultiByte ) );
+      }
+      if ( end < length ) {
+        converted.append( SEPARATOR_CHAR );
+      }
+      start = end + 1;
+    }
+    return converted.toString();
+  }
+
+  /**
+   * The split based conversion drops empty names at the end of the path, so {@code "/"} converts to {@code ""} and
+   * {@code "a//"} to {@code "a/"}. Such paths keep going through it so that their result does not change.
+   */
+  private static String splitConvertPath( String path, boolean useMultiByte, boolean encode ) {
+    String[] folders = path.split( SEPARATOR );
+    StringBuilder convertedPath = new StringBuilder( path.length() * 2 );
     for ( int i = 0; i < folders.length; i++ ) {
-      decodedPath.append( fileNameDecode( folders[i], useMultiByte ) );
-      if ( i != folders.length - 1 || encodedPath.endsWith( SEPARATOR ) ) {
-        decodedPath.append( SEPARATOR );
+      convertedPath.append( encode ? fileNameEncode( folders[i], useMultiByte ) : fileNameDecode( folders[i],
+          useMultiByte ) );
+      if ( i != folders.length - 1 || path.endsWith( SEPARATOR ) ) {
+        convertedPath.append( SEPARATOR );
+      }
+    }
+    return convertedPath.toString();
+  }
+
+  private static boolean isOddlySeparated( String path ) {
+    return path.endsWith( DOUBLE_SEPARATOR ) || path.equals( SEPARATOR );
+  }
+
+  private static boolean isPlainPath( String path, boolean useMultiByte ) {
+    if ( isOddlySeparated( path ) ) {
+      return false;
+    }
+    int length = path.length();
+    int start = 0;
+    while ( start <= length ) {
+      int end = path.indexOf( SEPARATOR_CHAR, start );
+      if ( end < 0 ) {
+        end = length;
+      }
+      if ( !isPlainName( path, start, end, useMultiByte ) ) {
+        return false;
+      }
+      start = end + 1;
+    }
+    return true;
+  }
+
+  /**
+   * Whether the name between {@code start} and {@code end} is known to encode to itself. This is deliberately
+   * narrower than what the encoders leave alone: ASCII letters and digits, dashes, underscores unless multi-byte
+   * encoding is on, dots in names of three or more characters and inner blanks unless multi-byte encoding is on. Any
+   * other name goes through the encoders.
+   */
+  private static boolean isPlainName( String path, int start, int end, boolean useMultiByte ) {
+    int length = end - start;
+    for ( int i = start; i < end; i++ ) {
+      char c = path.charAt( i );
+      if ( ( c >= 'a' && c <= 'z' ) || ( c >= 'A' && c <= 'Z' ) ) {
+        continue;
+      }
+      if ( useMultiByte && i == start ) {
+        // ISO 9075 names start with a letter
+        return false;
       }
+      if ( ( c >= '0' && c <= '9' ) || c == '-' ) {
+        continue;
+      }
+      if ( c == '.' && length >= 3 ) {
+        continue;
+      }
+      if ( !useMultiByte && ( c == '_' || ( c == ' ' && i != start && i != end - 1 ) ) ) {
+        continue;
+      }
+      return false;
     }
-    return decodedPath.toString();
+    return true;
+  }
+
+  /**
+   * Whether the name between {@code start} and {@code end} may hold an escape sequence: {@code %} for JCR escaping,
+   * {@code _x} for ISO 9075 encoding. Names without one decode to themselves.
+   */
+  private static boolean mayBeEncoded( String path, int start, int end, boolean useMultiByte ) {
+    for ( int i = start; i < end; i++ ) {
+      char c = path.charAt( i );
+      if ( c == '%' || ( useMultiByte && c == '_' && i + 1 < end && path.charAt( i + 1 ) == 'x' ) ) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static Cache<String, String> newPathCache() {
+    return CacheBuilder.newBuilder().maximumSize( PATH_CACHE_SIZE ).build();
   }
 
   public static boolean isMultiByteEncodingEnabled() {
@@ -0,0 +1,303 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.repository2.unified.jcr;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.pentaho.platform.api.repository2.unified.RepositoryFile;
+import org.pentaho.platform.engine.core.system.ReadReplicaMode;
+import org.springframework.extensions.jcr.JcrCallback;
+import org.springframework.extensions.jcr.JcrTemplate;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionCallbackWithoutResult;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.Assert;
+
+import javax.jcr.ItemNotFoundException;
+import javax.jcr.Node;
+import javax.jcr.NodeIterator;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.query.Query;
+import javax.jcr.query.qom.QueryObjectModelFactory;
+import javax.jcr.version.Version;
+import javax.jcr.version.VersionHistory;
+import javax.jcr.version.VersionIterator;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Removes old versions of repository files according to a list of {@link VersionRetentionPolicy}s. The first policy
+ * that applies to a file decides which of its versions are kept; files no policy applies to are left alone.
+ * <p/>
+ * <p>
+ * The pruner works as the repository admin on the versioned files of the current tenant. Files are processed in
+ * batches of {@link #setBatchSize(int) batchSize}, each in its own transaction, with a pause of
+ * {@link #setPauseMillis(long) pauseMillis} between batches so that a large repository is pruned without starving
+ * regular users. Only one run can be active at a time.
+ * </p>
+ */
+public class JcrVersionPruner {
+
+  private static final Log logger = LogFactory.getLog( JcrVersionPruner.class );
+
+  private static final String JCR_ROOT_VERSION = "jcr:rootVersion"; //$NON-NLS-1$
+
+  private final TransactionTemplate txnTemplate;
+
+  private final JcrTemplate adminJcrTemplate;
+
+  private final IPathConversionHelper pathConversionHelper;
+
+  private List<VersionRetentionPolicy> policies = Collections.emptyList();
+
+  private int batchSize = 100;
+
+  private long pauseMillis = 1000;
+
+  private final AtomicBoolean running = new AtomicBoolean();
+
+  private volatile VersionPruneReport lastReport;
+
+  public JcrVersionPruner( final TransactionTemplate txnTemplate, final JcrTemplate adminJcrTemplate,
+                           final IPathConversionHelper pathConversionHelper ) {
+    Assert.notNull( txnTemplate );
+    Assert.notNull( adminJcrTemplate );
+    Assert.notNull( pathConversionHelper );
+    this.txnTemplate = txnTemplate;
+    this.adminJcrTemplate = adminJcrTemplate;
+    this.pathConversionHelper = pathConversionHelper;
+  }
+
+  /**
+   * Prunes all versioned files in the calling thread.
+   *
+   * @param dryRun when <code>true</code> the report lists what would be removed but nothing is removed
+   * @throws IllegalStateException if a run is already in progress, or if this server is a read replica and this is
+   *           not a dry run
+   */
+  public VersionPruneReport prune( final boolean dryRun ) {
+    checkWritable( dryRun );
+    if ( !running.compareAndSet( false, true ) ) {
+      throw new IllegalStateException( "Version pruning is already running" ); //$NON-NLS-1$
+    }
+    VersionPruneReport report = new VersionPruneReport( dryRun );
+    lastReport = report;
+    doPrune( report );
+    return report;
+  }
+
+  /**
+   * Starts pruning on a background thread. Progress and outcome are available from {@link #getLastReport()}.
+   *
+   * @return <code>false</code> if a run is already in progress
+   * @throws IllegalStateException if this server is a read replica and this is not a dry run
+   */
+  public boolean pruneInBackground( final boolean dryRun ) {
+    checkWritable( dryRun );
+    if ( !running.compareAndSet( false, true ) ) {
+      return false;
+    }
+    final VersionPruneReport report = new VersionPruneReport( dryRun );
+    lastReport = report;
+    Thread thread = new Thread( new Runnable() {
+      @Override
+      public void run() {
+        doPrune( report );
+      }
+    }, "Version Pruner" ); //$NON-NLS-1$
+    thread.setDaemon( true );
+    thread.start();
+    return true;
+  }
+
+  private static void checkWritable( final boolean dryRun ) {
+    if ( !dryRun && ReadReplicaMode.isEnabled() ) {
+      throw new IllegalStateException( "Versions are not pruned on a read replica" ); //$NON-NLS-1$
+    }
+  }
+
+  private void doPrune( final VersionPruneReport report ) {
+    try {
+      if ( policies.isEmpty() ) {
+        logger.info( "No version retention policies configured, nothing to prune" );
+        return;
+      }
+      List<String> fileIds = findVersionedFiles();
+      for ( int from = 0; from < fileIds.size(); from += batchSize ) {
+        pruneBatch( fileIds.subList( from, Math.min( from + batchSize, fileIds.size() ) ), report );
+        if ( pauseMillis > 0 && from + batchSize < fileIds.size() ) {
+          Thread.sleep( pauseMillis );
+        }
+      }
+    } catch ( InterruptedException e ) {
+      logger.warn( "Version pruning interrupted" );
+      Thread.currentThread().interrupt();
+    } catch ( RuntimeException e ) {
+      logger.error( "Version pruning failed", e );
+      report.error();
+    } finally {
+      report.finish();
+      running.set( false );
+      logger.info( String.format( "Version pruning %s: %d files scanned, %d versions %s from %d files, %d errors",
+          report.isDryRun() ? "dry run finished" : "finished", report.getFilesScanned(), report.getVersionsRemoved(),
+          report.isDryRun() ? "selected" : "removed", report.getFilesPruned(), report.getErrors() ) );
+    }
+  }
+
+  @SuppressWarnings( "unchecked" )
+  private List<String> findVersionedFiles() {
+    return txnTemplate.execute( new TransactionCallback<List<String>>() {
+      public List<String> doInTransaction( final TransactionStatus status ) {
+        return (List<String>) adminJcrTemplate.execute( new JcrCallback() {
+          @Override
+          public Object doInJcr( final Session session ) throws IOException, RepositoryException {
+            PentahoJcrConstants pentahoJcrConstants = new PentahoJcrConstants( session );
+            QueryObjectModelFactory fac = session.getWorkspace().getQueryManager().getQOMFactory();
+            final String selectorName = "selector"; //$NON-NLS-1$
+            Query query =
+                fac.createQuery( fac.selector( pentahoJcrConstants.getPHO_MIX_VERSIONABLE(), selectorName ), fac
+                    .descendantNode( selectorName, pathConversionHelper.relToAbs( RepositoryFile.SEPARATOR ) ), null,
+                    null );
+            List<String> fileIds = new ArrayList<String>();
+            NodeIterator nodes = query.execute().getNodes();
+            while ( nodes.hasNext() ) {
+              fileIds.add( nodes.nextNode().getIdentifier() );
+            }
+            return fileIds;
+          }
+        } );
+      }
+    } );
+  }
+
+  private void pruneBatch( final List<String> fileIds, final VersionPruneReport report ) {
+    txnTemplate.execute( new TransactionCallbackWithoutResult() {
+      public void doInTransactionWithoutResult( final TransactionStatus status ) {
+        adminJcrTemplate.execute( new JcrCallback() {
+          @Override
+          public Object doInJcr( final Session session ) throws IOException, RepositoryException {
+            Calendar now = Calendar.getInstance();
+            for ( String fileId : fileIds ) {
+              try {
+                pruneFile( session, session.getNodeByIdentifier( fileId ), now, report );
+              } catch ( ItemNotFoundException e ) {
+                // deleted since the files were listed
+              } catch ( RepositoryException e ) {
+                logger.warn( "Could not prune versions of file " + fileId, e );
+                report.error();
+              }
+            }
+            return null;
+          }
+        } );
+      }
+    } );
+  }
+
+  void pruneFile( final Session session, final Node fileNode, final Calendar now, final VersionPruneReport report )
+    throws RepositoryException {
+    report.fileScanned();
+    String relPath = pathConversionHelper.absToRel( fileNode.getPath() );
+    if ( relPath == null ) {
+      return;
+    }
+    String path = JcrStringHelper.pathDecode( relPath );
+    VersionRetentionPolicy policy = findPolicy( path );
+    if ( policy == null ) {
+      return;
+    }
+
+    VersionHistory versionHistory = session.getWorkspace().getVersionManager().getVersionHistory( fileNode.getPath() );
+    Version baseVersion = session.getWorkspace().getVersionManager().getBaseVersion( fileNode.getPath() );
+    List<Version> versions = new ArrayList<Version>();
+    VersionIterator versionIterator = versionHistory.getAllVersions();
+    while ( versionIterator.hasNext() ) {
+      Version version = versionIterator.nextVersion();
+      if ( !JCR_ROOT_VERSION.equals( version.getName() ) ) {
+        versions.add( version );
+      }
+    }
+    Collections.sort( versions, new Comparator<Version>() {
+      @Override
+      public int compare( final Version v1, final Version v2 ) {
+        try {
+          return v1.getCreated().compareTo( v2.getCreated() );
+        } catch ( RepositoryException e ) {
+          throw new RuntimeException( e );
+        }
+      }
+    } );
+
+    List<String> removed = new ArrayList<String>();
+    for ( Version version : policy.selectVersionsToRemove( versions, baseVersion, now ) ) {
+      String versionName = version.getName();
+      if ( !report.isDryRun() ) {
+        versionHistory.removeVersion( versionName );
+      }
+      removed.add( versionName );
+    }
+    report.versionsRemoved( path, removed );
+  }
+
+  private VersionRetentionPolicy findPolicy( final String path ) {
+    for ( VersionRetentionPolicy policy : policies ) {
+      if ( policy.appliesTo( path ) ) {
+        return policy;
+      }
+    }
+    return null;
+  }
+
+  public boolean isRunning() {
+    return running.get();
+  }
+
+  /**
+   * @return the report of the current or most recent run, or <code>null</code> if the pruner has not run yet
+   */
+  public VersionPruneReport getLastReport() {
+    return lastReport;
+  }
+
+  public void setPolicies( final List<VersionRetentionPolicy> policies ) {
+    this.policies = policies == null ? Collections.<VersionRetentionPolicy>emptyList() : policies;
+  }
+
+  public List<VersionRetentionPolicy> getPolicies() {
+    return policies;
+  }
+
+  public void setBatchSize( final int batchSize ) {
+    Assert.isTrue( batchSize > 0 );
+    this.batchSize = batchSize;
+  }
+
+  public void setPauseMillis( final long pauseMillis ) {
+    this.pauseMillis = pauseMillis;
+  }
+}
@@ -97,6 +97,8 @@ public class PentahoJcrConstants extends JcrConstants {
 
   private static String PHO_FILESIZE = "fileSize"; //$NON-NLS-1$
 
+  private static String PHO_CONTENTHASH = "contentHash"; //$NON-NLS-1$
+
   private static String PHO_METADATA = "metadata"; //$NON-NLS-1$
 
   private static String PHO_ORIGPARENTFOLDERPATH = "origParentFolderPath"; //$NON-NLS-1$
@@ -217,6 +219,10 @@ public class PentahoJcrConstants extends JcrConstants {
     return resolveName( PHO_NS, PHO_FILESIZE );
   }
 
+  public String getPHO_CONTENTHASH() {
+    return resolveName( PHO_NS, PHO_CONTENTHASH );
+  }
+
   public String getPHO_METADATA() {
     return resolveName( PHO_NS, PHO_METADATA );
   }
@@ -23,9 +23,12 @@ package org.pentaho.platform.repository2.unified.jcr;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.jackrabbit.api.management.DataStoreGarbageCollector;
+import org.apache.jackrabbit.api.management.MarkEventListener;
 import org.apache.jackrabbit.core.IPentahoSystemSessionFactory;
 import org.apache.jackrabbit.core.RepositoryImpl;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
+import org.pentaho.platform.engine.core.system.ReadReplicaMode;
+import org.pentaho.platform.repository2.unified.jcr.RepositoryGcStatus.Phase;
 
 import javax.jcr.Node;
 import javax.jcr.NodeIterator;
@@ -35,9 +38,16 @@ import javax.jcr.RepositoryException;
 import javax.jcr.Session;
 import javax.jcr.Value;
 import javax.jcr.version.VersionHistory;
+import java.io.File;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
- * This class provides a static method {@linkplain #gc()} for running JCR's GC routine.
+ * This class provides a method {@linkplain #gc()} for running JCR's GC routine.
+ * <p/>
+ * By default the whole data store is marked in one go by Jackrabbit's collector. In incremental mode the marking is
+ * split into time slices with pauses in between and limited to a number of nodes per second; its progress is saved
+ * to a checkpoint file, so a run interrupted by a shutdown continues when the server starts again (see
+ * {@link #resumeInterrupted()}). Progress of either mode is available from {@link #getStatus()}.
  *
  * @author Andrey Khayrutdinov
  */
@@ -48,6 +58,13 @@ public class RepositoryCleaner {
   private static final String JCR_FROZEN_UUID = "jcr:frozenUuid";
   private static final String JCR_ROOT_VERSION = "jcr:rootVersion";
   private IPentahoSystemSessionFactory systemSessionFactory = new IPentahoSystemSessionFactory.DefaultImpl();
+  private final AtomicBoolean running = new AtomicBoolean();
+  private volatile RepositoryGcStatus status;
+  private boolean incremental;
+  private int nodesPerSecond;
+  private long sliceMillis = 10000;
+  private long pauseMillis = 1000;
+  private String checkpointFile;
 
   /**
    * Exists primary for testing
@@ -57,30 +74,104 @@ public class RepositoryCleaner {
     this.systemSessionFactory = systemSessionFactory;
   }
 
-  public synchronized void gc() {
+  /**
+   * Runs the garbage collection, unless a run is already in progress.
+   */
+  public void gc() {
+    gc( false );
+  }
+
+  /**
+   * Continues an incremental run that was interrupted by a shutdown, in the background. Meant to be called when the
+   * server starts, before content is moved around; a run that is not resumed then starts its marking over.
+   *
+   * @return true if an interrupted run was found and resumed
+   */
+  public boolean resumeInterrupted() {
+    File checkpoint = getCheckpoint();
+    if ( !incremental || checkpoint == null || !checkpoint.isFile() ) {
+      return false;
+    }
+    Thread thread = new Thread( new Runnable() {
+      @Override
+      public void run() {
+        gc( true );
+      }
+    }, "Repository GC" ); //$NON-NLS-1$
+    thread.setDaemon( true );
+    thread.start();
+    return true;
+  }
+
+  /**
+   * @return progress of the current run or the outcome of the last one, null if there was none
+   */
+  public RepositoryGcStatus getStatus() {
+    return status;
+  }
+
+  public boolean isRunning() {
+    return running.get();
+  }
+
+  private void gc( boolean resume ) {
+    if ( ReadReplicaMode.isEnabled() ) {
+      logger.info( "Read replica; repository GC is left to the other servers" );
+      return;
+    }
+    if ( !running.compareAndSet( false, true ) ) {
+      logger.info( "Repository GC is already running" );
+      return;
+    }
+    status = new RepositoryGcStatus( incremental );
+    try {
+      status.finish( doGc( resume ) ? Phase.COMPLETED : Phase.FAILED );
+    } finally {
+      running.set( false );
+    }
+  }
+
+  private boolean doGc( boolean resume ) {
     Repository jcrRepository = PentahoSystem.get( Repository.class, "jcrRepository", null );
     if ( jcrRepository == null ) {
       logger.error( "Cannot obtain JCR repository. Exiting" );
-      return;
+      return false;
     }
 
     if ( !( jcrRepository instanceof RepositoryImpl ) ) {
       logger.error(
           String.format( "Expected RepositoryImpl, but got: [%s]. Exiting", jcrRepository.getClass().getName() ) );
-      return;
+      return false;
     }
 
     final RepositoryImpl repository = (RepositoryImpl) jcrRepository;
 
-    try {
-      logger.debug( "Starting Orphaned Version Purge" );
-      Session systemSession = systemSessionFactory.create( repository );
-      Node node = systemSession.getNode( "/jcr:system/jcr:versionStorage" );
-      findVersionNodesAndPurge( node, systemSession );
-      systemSession.save();
-      logger.debug( "Finished Orphaned Version Purge" );
-    } catch ( RepositoryException e ) {
-      logger.error( "Error running Orphaned Version purge", e );
+    if ( !resume ) {
+      status.setPhase( Phase.PURGING_VERSIONS );
+      try {
+        logger.debug( "Starting Orphaned Version Purge" );
+        Session systemSession = systemSessionFactory.create( repository );
+        Node node = systemSession.getNode( "/jcr:system/jcr:versionStorage" );
+        findVersionNodesAndPurge( node, systemSession );
+        systemSession.save();
+        logger.debug( "Finished Orphaned Version Purge" );
+      } catch ( RepositoryException e ) {
+        logger.error( "Error running Orphaned Version purge", e );
+      }
+    }
+
+    if ( incremental ) {
+      try {
+        new IncrementalGarbageCollector( repository, systemSessionFactory, getCheckpoint(), nodesPerSecond,
+            sliceMillis, pauseMillis, status ).run( resume );
+        return true;
+      } catch ( InterruptedException e ) {
+        logger.info( "Garbage collecting was interrupted, it continues from its checkpoint on the next start" );
+        Thread.currentThread().interrupt();
+      } catch ( Exception e ) {
+        logger.error( "Error during garbage collecting", e );
+      }
+      return false;
     }
 
     try {
@@ -97,18 +188,28 @@ public class RepositoryCleaner {
       DataStoreGarbageCollector gc = repository.createDataStoreGarbageCollector();
       try {
         logger.debug( "Starting marking stage" );
+        status.setPhase( Phase.MARKING );
         gc.setPersistenceManagerScan( false );
+        gc.setMarkEventListener( new MarkEventListener() {
+          @Override
+          public void beforeScanning( Node node ) throws RepositoryException {
+            status.nodeScanned( node.getPath() );
+          }
+        } );
         gc.mark();
         logger.debug( "Starting sweeping stage" );
+        status.setPhase( Phase.SWEEPING );
         int deleted = gc.sweep();
+        status.setBinariesDeleted( deleted );
         logger.info( String.format( "Garbage collecting completed. %d items were deleted", deleted ) );
       } finally {
         gc.close();
       }
     } catch ( RepositoryException e ) {
       logger.error( "Error during garbage collecting", e );
+      return false;
     }
-
+    return true;
   }
 
   private void findVersionNodesAndPurge( Node node, Session session ) {
@@ -149,4 +250,71 @@ public class RepositoryCleaner {
       findVersionNodesAndPurge( nodes.nextNode(), session );
     }
   }
+
+  private File getCheckpoint() {
+    if ( checkpointFile == null || checkpointFile.isEmpty() ) {
+      return null;
+    }
+    File file = new File( checkpointFile );
+    if ( !file.isAbsolute() && PentahoSystem.getApplicationContext() != null ) {
+      file = new File( PentahoSystem.getApplicationContext().getSolutionPath( checkpointFile ) );
+    }
+    return file;
+  }
+
+  public boolean isIncremental() {
+    return incremental;
+  }
+
+  /**
+   * @param incremental mark in throttled time slices that can be resumed, instead of in one go
+   */
+  public void setIncremental( boolean incremental ) {
+    this.incremental = incremental;
+  }
+
+  public int getNodesPerSecond() {
+    return nodesPerSecond;
+  }
+
+  /**
+   * @param nodesPerSecond maximum number of nodes marked per second in incremental mode, 0 for no limit
+   */
+  public void setNodesPerSecond( int nodesPerSecond ) {
+    this.nodesPerSecond = nodesPerSecond;
+  }
+
+  public long getSliceMillis() {
+    return sliceMillis;
+  }
+
+  /**
+   * @param sliceMillis how long incremental marking runs before it saves a checkpoint and pauses
+   */
+  public void setSliceMillis( long sliceMillis ) {
+    this.sliceMillis = sliceMillis;
+  }
+
+  public long getPauseMillis() {
+    return pauseMillis;
+  }
+
+  /**
+   * @param pauseMillis how long incremental marking pauses after each time slice
+   */
+  public void setPauseMillis( long pauseMillis ) {
+    this.pauseMillis = pauseMillis;
+  }
+
+  public String getCheckpointFile() {
+    return checkpointFile;
+  }
+
+  /**
+   * @param checkpointFile file the incremental mode keeps its progress in, relative to the solution folder unless
+   *                       absolute; without it an interrupted run starts over
+   */
+  public void setCheckpointFile( String checkpointFile ) {
+    this.checkpointFile = checkpointFile;
+  }
 }
@@ -0,0 +1,192 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.repository2.unified.jcr;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.Weigher;
+import org.pentaho.platform.api.repository2.unified.data.simple.SimpleRepositoryFileData;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.io.Serializable;
+import java.util.Iterator;
+
+/**
+ * Read-through cache of small {@link SimpleRepositoryFileData} contents, bounded by the total number of cached bytes.
+ * <p>
+ * Entries are keyed by file id and a version token (the version id for versioned files, the last modification time
+ * otherwise), so a cached entry can never be served for content that has since changed, even when the change was made
+ * by another cluster node. Callers are responsible for resolving the file and its version through a JCR session and
+ * for running access checks before consulting the cache; this class performs no access control.
+ */
+public class RepositoryFileContentCache {
+
+  private static final int BUFFER_SIZE = 8192;
+
+  private final long maxFileSize;
+
+  private final boolean enabled;
+
+  private final Cache<Key, Entry> cache;
+
+  /**
+   * @param maxTotalBytes
+   *          upper bound of the sum of all cached content sizes, or 0 to disable the cache
+   * @param maxFileSize
+   *          files larger than this are never cached
+   */
+  public RepositoryFileContentCache( final long maxTotalBytes, final long maxFileSize ) {
+    this.maxFileSize = maxFileSize;
+    this.enabled = maxTotalBytes > 0 && maxFileSize > 0;
+    this.cache = CacheBuilder.newBuilder().maximumWeight( Math.max( maxTotalBytes, 0 ) ).weigher( new Weigher<Key, Entry>() {
+      @Override
+      public int weigh( final Key key, final Entry entry ) {
+        return entry.bytes.length;
+      }
+    } ).recordStats().build();
+  }
+
+  /**
+   * Returns a fresh copy of the cached content, or {@code null} on a miss.
+   */
+  public SimpleRepositoryFileData get( final Serializable fileId, final String versionToken ) {
+    if ( !enabled ) {
+      return null;
+    }
+    Entry entry = cache.getIfPresent( new Key( fileId, versionToken ) );
+    return entry != null ? entry.toData() : null;
+  }
+
+  /**
+   * Caches {@code data} if it is not larger than the size threshold. Only up to the threshold is buffered in order to
+   * find out; the returned data must be used in place of {@code data}, whose stream has been (partially) consumed.
+   */
+  public SimpleRepositoryFileData put( final Serializable fileId, final String versionToken,
+      final SimpleRepositoryFileData data ) throws IOException {
+    InputStream stream = data.getInputStream();
+    if ( stream == null || !enabled ) {
+      return data;
+    }
+    ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    byte[] chunk = new byte[BUFFER_SIZE];
+    int read;
+    while ( buffer.size() <= maxFileSize && ( read = stream.read( chunk ) ) != -1 ) {
+      buffer.write( chunk, 0, read );
+    }
+    if ( buffer.size() > maxFileSize ) {
+      // too large to cache; hand back what was read followed by the rest of the stream
+      InputStream rest = new SequenceInputStream( new ByteArrayInputStream( buffer.toByteArray() ), stream );
+      return data.isDataSizeExact()
+          ? new SimpleRepositoryFileData( rest, data.getEncoding(), data.getMimeType(), data.getDataSize() )
+          : new SimpleRepositoryFileData( rest, data.getEncoding(), data.getMimeType() );
+    }
+    stream.close();
+    Entry entry = new Entry( buffer.toByteArray(), data.getEncoding(), data.getMimeType() );
+    cache.put( new Key( fileId, versionToken ), entry );
+    return entry.toData();
+  }
+
+  /**
+   * Drops every cached version of the given file.
+   */
+  public void invalidate( final Serializable fileId ) {
+    if ( fileId == null ) {
+      return;
+    }
+    String id = fileId.toString();
+    Iterator<Key> keys = cache.asMap().keySet().iterator();
+    while ( keys.hasNext() ) {
+      if ( keys.next().fileId.equals( id ) ) {
+        keys.remove();
+      }
+    }
+  }
+
+  public void invalidateAll() {
+    cache.invalidateAll();
+  }
+
+  /**
+   * Whether anything is cached at all; a disabled cache neither buffers nor stores content.
+   */
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public long getMaxFileSize() {
+    return maxFileSize;
+  }
+
+  public CacheStats getStats() {
+    return cache.stats();
+  }
+
+  private static final class Key {
+    private final String fileId;
+
+    private final String versionToken;
+
+    private Key( final Serializable fileId, final String versionToken ) {
+      this.fileId = fileId.toString();
+      this.versionToken = versionToken;
+    }
+
+    @Override
+    public boolean equals( final Object o ) {
+      if ( this == o ) {
+        return true;
+      }
+      if ( !( o instanceof Key ) ) {
+        return false;
+      }
+      Key other = (Key) o;
+      return fileId.equals( other.fileId ) && versionToken.equals( other.versionToken );
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * fileId.hashCode() + versionToken.hashCode();
+    }
+  }
+
+  private static final class Entry {
+    private final byte[] bytes;
+
+    private final String encoding;
+
+    private final String mimeType;
+
+    private Entry( final byte[] bytes, final String encoding, final String mimeType ) {
+      this.bytes = bytes;
+      this.encoding = encoding;
+      this.mimeType = mimeType;
+    }
+
+    private SimpleRepositoryFileData toData() {
+      return new SimpleRepositoryFileData( new ByteArrayInputStream( bytes ), encoding, mimeType, bytes.length );
+    }
+  }
+}
@@ -0,0 +1,168 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.repository2.unified.jcr;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache of the locale properties (localized titles and descriptions) of repository files and folders, shared by all
+ * users.
+ * <p>
+ * Entries are keyed by file id and remember the version token they were read at: the base version for versioned
+ * files, the last modification time for other files, and a constant for folders. An entry read at another version is
+ * a miss, so a new version never hits a stale entry. Changes are invalidated explicitly by the node that makes them,
+ * and entries expire after a while so that changes made by other cluster nodes show up eventually. Callers resolve
+ * the node through their JCR session before consulting the cache, so it performs no access control.
+ * <p>
+ * A reader takes an {@link #getInvalidationStamp() invalidation stamp} before it reads the version token and the
+ * properties, and hands it to {@link #put}; what it read is not cached if a file was invalidated in between, as it may
+ * predate the change.
+ */
+public class RepositoryFileLocaleCache {
+
+  private final Cache<String, Entry> cache;
+
+  private final AtomicLong invalidations = new AtomicLong();
+
+  /**
+   * Entries found at another version, which the underlying cache counts as hits.
+   */
+  private final AtomicLong staleHits = new AtomicLong();
+
+  /**
+   * @param maxEntries
+   *          maximum number of files whose locale properties are cached
+   * @param expireAfterSeconds
+   *          time after which an entry is read again from the repository, or 0 to keep entries until evicted
+   */
+  public RepositoryFileLocaleCache( final long maxEntries, final long expireAfterSeconds ) {
+    CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder().maximumSize( maxEntries ).recordStats();
+    if ( expireAfterSeconds > 0 ) {
+      builder.expireAfterWrite( expireAfterSeconds, TimeUnit.SECONDS );
+    }
+    this.cache = builder.build();
+  }
+
+  /**
+   * Returns a copy of the cached locale properties, or {@code null} on a miss.
+   */
+  public Map<String, Properties> get( final Serializable fileId, final String versionToken ) {
+    Entry entry = cache.getIfPresent( fileId.toString() );
+    if ( entry == null ) {
+      return null;
+    }
+    if ( !entry.versionToken.equals( versionToken ) ) {
+      staleHits.incrementAndGet();
+      return null;
+    }
+    return copy( entry.localePropertiesMap );
+  }
+
+  /**
+   * @return the stamp to pass to {@link #put}, taken before reading what is put
+   */
+  public long getInvalidationStamp() {
+    return invalidations.get();
+  }
+
+  /**
+   * Caches the locale properties read at the version token, unless a file was invalidated since the stamp was taken.
+   */
+  public void put( final Serializable fileId, final String versionToken,
+      final Map<String, Properties> localePropertiesMap, final long invalidationStamp ) {
+    if ( invalidations.get() != invalidationStamp ) {
+      return;
+    }
+    String id = fileId.toString();
+    Entry entry = new Entry( versionToken, Collections.unmodifiableMap( copy( localePropertiesMap ) ) );
+    cache.put( id, entry );
+    // an invalidation between the check and the put may have missed the entry
+    if ( invalidations.get() != invalidationStamp ) {
+      cache.asMap().remove( id, entry );
+    }
+  }
+
+  /**
+   * Drops the cached locale properties of the given file.
+   */
+  public void invalidate( final Serializable fileId ) {
+    if ( fileId == null ) {
+      return;
+    }
+    invalidations.incrementAndGet();
+    cache.invalidate( fileId.toString() );
+  }
+
+  public void invalidateAll() {
+    invalidations.incrementAndGet();
+    cache.invalidateAll();
+  }
+
+  public long getSize() {
+    return cache.size();
+  }
+
+  /**
+   * @return the statistics of the cache, with entries found at another version counted as misses
+   */
+  public CacheStats getStats() {
+    CacheStats stats = cache.stats();
+    long stale = staleHits.get();
+    return new CacheStats( stats.hitCount() - stale, stats.missCount() + stale, stats.loadSuccessCount(),
+        stats.loadExceptionCount(), stats.totalLoadTime(), stats.evictionCount() );
+  }
+
+  /**
+   * Callers localize titles in place, so neither the map nor its properties may be shared.
+   */
+  private static Map<String, Properties> copy( final Map<String, Properties> localePropertiesMap ) {
+    Map<String, Properties> copy = new HashMap<String, Properties>( localePropertiesMap.size() * 2 );
+    for ( Map.Entry<String, Properties> entry : localePropertiesMap.entrySet() ) {
+      Properties properties = new Properties();
+      if ( entry.getValue() != null ) {
+        properties.putAll( entry.getValue() );
+      }
+      copy.put( entry.getKey(), properties );
+    }
+    return copy;
+  }
+
+  private static final class Entry {
+    private final String versionToken;
+
+    private final Map<String, Properties> localePropertiesMap;
+
+    private Entry( final String versionToken, final Map<String, Properties> localePropertiesMap ) {
+      this.versionToken = versionToken;
+      this.localePropertiesMap = localePropertiesMap;
+    }
+  }
+}
@@ -391,9 +391,7 @@ public class RepositoryFileProxy extends RepositoryFile {
         public void execute( Session session ) {
 
           try {
-            localeMap =
-              JcrRepositoryFileUtils.getLocalePropertiesMap( session, getPentahoJcrConstants(), node.getNode(
-                getPentahoJcrConstants().getPHO_LOCALES() ) );
+            localeMap = JcrRepositoryFileUtils.getCachedLocalePropertiesMap( session, getPentahoJcrConstants(), node );
           } catch ( InvalidItemStateException | ItemNotFoundException | PathNotFoundException e ) {
             getLogger().warn( "InvalidItemStateException in getLocalePropertiesMap. Probable cause: File does not exist anymore" );
           }  catch ( RepositoryException e ) {
@@ -0,0 +1,179 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.repository2.unified.jcr;
+
+import javax.xml.bind.annotation.XmlRootElement;
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * Progress of the current or last {@link RepositoryCleaner} run. Counters are updated while the run is in progress.
+ */
+@XmlRootElement
+public class RepositoryGcStatus implements Serializable {
+
+  private static final long serialVersionUID = -4632170968839540279L;
+
+  public enum Phase {
+    PURGING_VERSIONS, MARKING, SWEEPING, COMPLETED, FAILED
+  }
+
+  private boolean incremental;
+
+  private boolean resumed;
+
+  private volatile boolean running;
+
+  private volatile Phase phase;
+
+  private Date startTime;
+
+  private volatile Date endTime;
+
+  private volatile String currentPath;
+
+  private volatile long nodesScanned;
+
+  private volatile long binariesMarked;
+
+  private volatile int binariesDeleted;
+
+  private volatile long bytesReclaimed = -1;
+
+  public RepositoryGcStatus() {
+  }
+
+  public RepositoryGcStatus( final boolean incremental ) {
+    this.incremental = incremental;
+    this.running = true;
+    this.startTime = new Date();
+  }
+
+  void finish( final Phase phase ) {
+    this.phase = phase;
+    this.currentPath = null;
+    this.running = false;
+    this.endTime = new Date();
+  }
+
+  void nodeScanned( final String path ) {
+    nodesScanned++;
+    currentPath = path;
+  }
+
+  void binariesMarked( final int count ) {
+    binariesMarked += count;
+  }
+
+  public boolean isIncremental() {
+    return incremental;
+  }
+
+  public void setIncremental( boolean incremental ) {
+    this.incremental = incremental;
+  }
+
+  /**
+   * @return true when the marking continued from a checkpoint of an interrupted run
+   */
+  public boolean isResumed() {
+    return resumed;
+  }
+
+  public void setResumed( boolean resumed ) {
+    this.resumed = resumed;
+  }
+
+  public boolean isRunning() {
+    return running;
+  }
+
+  public void setRunning( boolean running ) {
+    this.running = running;
+  }
+
+  public Phase getPhase() {
+    return phase;
+  }
+
+  public void setPhase( Phase phase ) {
+    this.phase = phase;
+  }
+
+  public Date getStartTime() {
+    return startTime;
+  }
+
+  public void setStartTime( Date startTime ) {
+    this.startTime = startTime;
+  }
+
+  public Date getEndTime() {
+    return endTime;
+  }
+
+  public void setEndTime( Date endTime ) {
+    this.endTime = endTime;
+  }
+
+  public String getCurrentPath() {
+    return currentPath;
+  }
+
+  public void setCurrentPath( String currentPath ) {
+    this.currentPath = currentPath;
+  }
+
+  public long getNodesScanned() {
+    return nodesScanned;
+  }
+
+  public void setNodesScanned( long nodesScanned ) {
+    this.nodesScanned = nodesScanned;
+  }
+
+  public long getBinariesMarked() {
+    return binariesMarked;
+  }
+
+  public void setBinariesMarked( long binariesMarked ) {
+    this.binariesMarked = binariesMarked;
+  }
+
+  public int getBinariesDeleted() {
+    return binariesDeleted;
+  }
+
+  public void setBinariesDeleted( int binariesDeleted ) {
+    this.binariesDeleted = binariesDeleted;
+  }
+
+  /**
+   * @return size of the deleted binaries, or -1 when the data store cannot report it
+   */
+  public long getBytesReclaimed() {
+    return bytesReclaimed;
+  }
+
+  public void setBytesReclaimed( long bytesReclaimed ) {
+    this.bytesReclaimed = bytesReclaimed;
+  }
+}
@@ -0,0 +1,210 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.repository2.unified.jcr;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.pentaho.platform.repository2.unified.jcr.sejcr.CredentialsStrategySessionFactory;
+
+import javax.jcr.Item;
+import javax.jcr.ItemNotFoundException;
+import javax.jcr.Node;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.observation.Event;
+import javax.jcr.observation.EventIterator;
+import javax.jcr.observation.EventListener;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+
+/**
+ * Cache from absolute (encoded) JCR path to node identifier, shared by all users, so that a path is resolved with
+ * {@code getNodeByIdentifier} instead of a walk from the root.
+ * <p>
+ * A hit is only used if the node it names is readable through the caller's session and still has the requested path;
+ * otherwise the path is resolved as usual. JCR access control therefore applies to hits, and a stale entry costs one
+ * extra lookup but never a wrong answer. To keep stale entries rare, the cache listens for moved and removed nodes,
+ * including those reported by other cluster nodes, and drops the paths at and below them.
+ */
+public class RepositoryPathCache implements EventListener {
+
+  private static final Log logger = LogFactory.getLog( RepositoryPathCache.class );
+
+  private static final String SEPARATOR = "/"; //$NON-NLS-1$
+
+  private final Cache<String, String> cache;
+
+  private final boolean enabled;
+
+  private CredentialsStrategySessionFactory sessionFactory;
+
+  private volatile boolean observing;
+
+  private Session observationSession;
+
+  /**
+   * @param maxEntries
+   *          maximum number of paths cached, or 0 to disable the cache
+   */
+  public RepositoryPathCache( final long maxEntries ) {
+    this.enabled = maxEntries > 0;
+    this.cache = CacheBuilder.newBuilder().maximumSize( Math.max( maxEntries, 0 ) ).recordStats().build();
+  }
+
+  /**
+   * Sets the factory of the session through which the cache observes the workspace. Without it, only the writes
+   * reported through {@link #invalidate(String)} drop entries.
+   */
+  public void setSessionFactory( final CredentialsStrategySessionFactory sessionFactory ) {
+    this.sessionFactory = sessionFactory;
+  }
+
+  /**
+   * Resolves an absolute, encoded path through {@code session}, like {@link Session#getItem(String)}.
+   */
+  public Item getItem( final Session session, final String encodedAbsPath ) throws RepositoryException {
+    if ( !enabled ) {
+      return session.getItem( encodedAbsPath );
+    }
+    startObserving();
+    String id = cache.getIfPresent( encodedAbsPath );
+    if ( id != null ) {
+      try {
+        Node node = session.getNodeByIdentifier( id );
+        if ( encodedAbsPath.equals( node.getPath() ) ) {
+          return node;
+        }
+      } catch ( ItemNotFoundException e ) {
+        // removed, or not readable by this session; resolve the path as usual
+      }
+      cache.invalidate( encodedAbsPath );
+    }
+    Item item = session.getItem( encodedAbsPath );
+    if ( item.isNode() ) {
+      cache.put( encodedAbsPath, ( (Node) item ).getIdentifier() );
+    }
+    return item;
+  }
+
+  /**
+   * Drops the path and every path below it.
+   */
+  public void invalidate( final String encodedAbsPath ) {
+    Set<String> paths = new HashSet<String>();
+    paths.add( encodedAbsPath );
+    invalidateAll( paths );
+  }
+
+  public void invalidateAll() {
+    cache.invalidateAll();
+  }
+
+  public long getSize() {
+    return cache.size();
+  }
+
+  public CacheStats getStats() {
+    return cache.stats();
+  }
+
+  @Override
+  public void onEvent( final EventIterator events ) {
+    Set<String> paths = new HashSet<String>();
+    while ( events.hasNext() ) {
+      Event event = events.nextEvent();
+      try {
+        if ( event.getType() == Event.NODE_MOVED ) {
+          paths.add( (String) event.getInfo().get( "srcAbsPath" ) ); //$NON-NLS-1$
+        } else {
+          paths.add( event.getPath() );
+        }
+      } catch ( RepositoryException e ) {
+        // without the path we cannot tell which entries are affected
+        cache.invalidateAll();
+        return;
+      }
+    }
+    invalidateAll( paths );
+  }
+
+  /**
+   * Drops the cached paths that are equal to or below one of {@code paths}, walking up from each cached path so that a
+   * large removal costs one pass over the cache.
+   */
+  private void invalidateAll( final Set<String> paths ) {
+    paths.remove( null );
+    if ( paths.isEmpty() || cache.size() == 0 ) {
+      return;
+    }
+    Iterator<String> keys = cache.asMap().keySet().iterator();
+    while ( keys.hasNext() ) {
+      String path = keys.next();
+      while ( path.length() > 0 ) {
+        if ( paths.contains( path ) ) {
+          keys.remove();
+          break;
+        }
+        path = path.substring( 0, path.lastIndexOf( SEPARATOR ) );
+      }
+    }
+  }
+
+  private void startObserving() {
+    if ( observing || sessionFactory == null ) {
+      return;
+    }
+    synchronized ( this ) {
+      if ( observing ) {
+        return;
+      }
+      // only try once; lookups stay correct without observation
+      observing = true;
+      try {
+        observationSession = sessionFactory.getAdminSession();
+        if ( observationSession != null ) {
+          observationSession.getWorkspace().getObservationManager().addEventListener( this,
+              Event.NODE_MOVED | Event.NODE_REMOVED, SEPARATOR, true, null, null, false );
+        }
+      } catch ( RepositoryException e ) {
+        logger.warn( "Could not observe the repository; cached paths are only checked when used", e ); //$NON-NLS-1$
+      }
+    }
+  }
+
+  /**
+   * Stops observing the workspace.
+   */
+  public synchronized void destroy() {
+    if ( observationSession != null ) {
+      try {
+        observationSession.getWorkspace().getObservationManager().removeEventListener( this );
+      } catch ( RepositoryException e ) {
+        logger.debug( "Could not remove the path cache listener", e ); //$NON-NLS-1$
+      }
+      observationSession.logout();
+      observationSession = null;
+    }
+  }
+}
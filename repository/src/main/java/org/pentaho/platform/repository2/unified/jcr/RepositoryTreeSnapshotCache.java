@@ -0,0 +1,390 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.repository2.unified.jcr;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.pentaho.platform.api.repository2.unified.RepositoryFile;
+import org.pentaho.platform.api.repository2.unified.RepositoryFileTree;
+import org.pentaho.platform.api.repository2.unified.RepositoryRequest;
+import org.pentaho.platform.repository2.ClientRepositoryPaths;
+import org.pentaho.platform.repository2.unified.jcr.sejcr.CredentialsStrategySessionFactory;
+import org.pentaho.platform.util.messages.LocaleHelper;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.observation.Event;
+import javax.jcr.observation.EventIterator;
+import javax.jcr.observation.EventListener;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Trees of the repository shared by all users with the same roles. A tree is computed the first time a user with a
+ * given role set (the permission fingerprint) asks for it, and given to every later user with the same roles and
+ * locale. Home folders are never shared: the children of the home folder are read for each user and merged into the
+ * shared tree, and trees at or below the home folder are not cached at all. Shared trees hold copies of the files, not
+ * the session bound proxies the repository returns.
+ * <p>
+ * Sharing a tree assumes that, outside home folders, what a user can read depends only on their roles. Only enable the
+ * cache if access outside home folders is not granted to individual users and no access voter decides per user.
+ * <p>
+ * The cache listens for changes in the workspace, including those reported by other cluster nodes, and drops only the
+ * trees that contain or lie below the changed node. Changes inside home folders do not drop anything. Dropped trees
+ * are computed again on their next request.
+ */
+public class RepositoryTreeSnapshotCache implements EventListener {
+
+  /**
+   * Computes a tree for the current user.
+   */
+  public interface TreeLoader {
+    RepositoryFileTree load( RepositoryRequest repositoryRequest );
+  }
+
+  private static final Log logger = LogFactory.getLog( RepositoryTreeSnapshotCache.class );
+
+  private static final String SEPARATOR = "/"; //$NON-NLS-1$
+
+  private static final String POLICY_NODE = SEPARATOR + "rep:policy"; //$NON-NLS-1$
+
+  private static final String ANY_NAME = "*"; //$NON-NLS-1$
+
+  private final Cache<List<Object>, Snapshot> cache;
+
+  private final boolean enabled;
+
+  /**
+   * Incremented on every change outside home folders, so that a tree computed while a change came in is not kept.
+   */
+  private final AtomicLong generation = new AtomicLong();
+
+  private final Set<String> homePaths = ConcurrentHashMap.newKeySet();
+
+  private CredentialsStrategySessionFactory sessionFactory;
+
+  private volatile boolean observing;
+
+  private Session observationSession;
+
+  /**
+   * @param maxEntries
+   *          maximum number of trees cached, or 0 to disable the cache
+   */
+  public RepositoryTreeSnapshotCache( final long maxEntries ) {
+    this.enabled = maxEntries > 0;
+    this.cache = CacheBuilder.newBuilder().maximumSize( Math.max( maxEntries, 0 ) ).recordStats().build();
+  }
+
+  /**
+   * Sets the factory of the session through which the cache observes the workspace. Without it, trees are never
+   * cached since they could not be dropped when the repository changes.
+   */
+  public void setSessionFactory( final CredentialsStrategySessionFactory sessionFactory ) {
+    this.sessionFactory = sessionFactory;
+  }
+
+  /**
+   * Returns the tree for {@code repositoryRequest}, from the cache if a user with the same roles asked for it before.
+   *
+   * @param encodedAbsPath
+   *          absolute, encoded path of the root of the tree
+   * @param encodedAbsHomePath
+   *          absolute, encoded path of the home folder of the current tenant
+   * @param loader
+   *          computes a tree for the current user
+   */
+  public RepositoryFileTree getTree( final RepositoryRequest repositoryRequest, final String encodedAbsPath,
+      final String encodedAbsHomePath, final TreeLoader loader ) {
+    List<Object> fingerprint = getPermissionFingerprint();
+    if ( !enabled || fingerprint == null || !isShareable( repositoryRequest ) || !startObserving() ) {
+      return loader.load( repositoryRequest );
+    }
+    homePaths.add( encodedAbsHomePath );
+
+    List<Object> key =
+        Arrays.<Object>asList( fingerprint, LocaleHelper.getLocale(), encodedAbsPath, repositoryRequest.getDepth(),
+            repositoryRequest.isShowHidden(), repositoryRequest.getTypes(), repositoryRequest
+                .isIncludeSystemFolders() );
+    Snapshot snapshot = cache.getIfPresent( key );
+    if ( snapshot == null ) {
+      long before = generation.get();
+      RepositoryFileTree tree = loader.load( repositoryRequest );
+      if ( tree == null ) {
+        return null;
+      }
+      snapshot = new Snapshot( detach( tree ), encodedAbsPath );
+      if ( generation.get() == before ) {
+        cache.put( key, snapshot );
+      }
+    }
+    return merge( snapshot, repositoryRequest, loader );
+  }
+
+  /**
+   * Copies {@code tree} with plain files. The loader may return {@link RepositoryFileProxy} instances, which read
+   * their attributes lazily through the session of the user who loaded them; a shared tree must not hold them. Every
+   * attribute is read here, while that user's session is still in use.
+   */
+  static RepositoryFileTree detach( final RepositoryFileTree tree ) {
+    List<RepositoryFileTree> children = null;
+    if ( tree.getChildren() != null ) {
+      children = new ArrayList<RepositoryFileTree>( tree.getChildren().size() );
+      for ( RepositoryFileTree child : tree.getChildren() ) {
+        children.add( detach( child ) );
+      }
+    }
+    RepositoryFileTree detached =
+        new RepositoryFileTree( new RepositoryFile.Builder( tree.getFile() ).build(), children );
+    detached.setVersioningEnabled( tree.getVersioningEnabled() );
+    detached.setVersionCommentEnabled( tree.getVersionCommentEnabled() );
+    return detached;
+  }
+
+  /**
+   * Trees filtered by name are not cached: whether a folder is part of them depends on the files below it, including
+   * those in the home folder.
+   */
+  private static boolean isShareable( final RepositoryRequest repositoryRequest ) {
+    String path = repositoryRequest.getPath();
+    String homePath = ClientRepositoryPaths.getHomeFolderPath();
+    String filter = repositoryRequest.getChildNodeFilter();
+    return !path.equals( homePath ) && !path.startsWith( homePath + SEPARATOR )
+        && ( filter == null || filter.equals( ANY_NAME ) );
+  }
+
+  /**
+   * The sorted role names of the current user, or {@code null} if nobody is authenticated.
+   */
+  private static List<Object> getPermissionFingerprint() {
+    Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+    if ( authentication == null || authentication.getAuthorities() == null ) {
+      return null;
+    }
+    Set<String> roles = new TreeSet<String>();
+    for ( GrantedAuthority authority : authentication.getAuthorities() ) {
+      roles.add( authority.getAuthority() );
+    }
+    return new ArrayList<Object>( roles );
+  }
+
+  /**
+   * Adds the home folder of the current user to a shared tree. The shared tree itself is never changed.
+   */
+  private static RepositoryFileTree merge( final Snapshot snapshot, final RepositoryRequest repositoryRequest,
+      final TreeLoader loader ) {
+    if ( snapshot.homeIndex < 0 ) {
+      return snapshot.tree;
+    }
+    RepositoryRequest homeRequest = new RepositoryRequest();
+    homeRequest.setPath( ClientRepositoryPaths.getHomeFolderPath() );
+    homeRequest.setDepth( repositoryRequest.getDepth() < 0 ? repositoryRequest.getDepth()
+        : repositoryRequest.getDepth() - 1 );
+    homeRequest.setShowHidden( repositoryRequest.isShowHidden() );
+    homeRequest.setTypes( repositoryRequest.getTypes() );
+    homeRequest.setIncludeSystemFolders( repositoryRequest.isIncludeSystemFolders() );
+    homeRequest.setChildNodeFilter( repositoryRequest.getChildNodeFilter() );
+    RepositoryFileTree home = loader.load( homeRequest );
+
+    List<RepositoryFileTree> children = new ArrayList<RepositoryFileTree>( snapshot.tree.getChildren() );
+    if ( home != null ) {
+      children.add( snapshot.homeIndex, home );
+    }
+    RepositoryFileTree merged = new RepositoryFileTree( snapshot.tree.getFile(), children );
+    merged.setVersioningEnabled( snapshot.tree.getVersioningEnabled() );
+    merged.setVersionCommentEnabled( snapshot.tree.getVersionCommentEnabled() );
+    return merged;
+  }
+
+  public void invalidateAll() {
+    cache.invalidateAll();
+    generation.incrementAndGet();
+  }
+
+  public long getSize() {
+    return cache.size();
+  }
+
+  public CacheStats getStats() {
+    return cache.stats();
+  }
+
+  @Override
+  public void onEvent( final EventIterator events ) {
+    Set<String> paths = new HashSet<String>();
+    while ( events.hasNext() ) {
+      Event event = events.nextEvent();
+      try {
+        if ( event.getType() == Event.NODE_MOVED ) {
+          paths.add( (String) event.getInfo().get( "srcAbsPath" ) ); //$NON-NLS-1$
+        }
+        paths.add( event.getPath() );
+      } catch ( RepositoryException e ) {
+        // without the path we cannot tell which trees are affected
+        invalidateAll();
+        return;
+      }
+    }
+    paths.remove( null );
+
+    Set<String> changed = new HashSet<String>();
+    for ( String path : paths ) {
+      // a change to an access control list affects the node that owns it
+      int policy = path.indexOf( POLICY_NODE );
+      String nodePath = policy >= 0 ? path.substring( 0, policy ) : path;
+      if ( !isInHomeFolder( nodePath ) ) {
+        changed.add( nodePath );
+      }
+    }
+    if ( changed.isEmpty() ) {
+      return;
+    }
+    generation.incrementAndGet();
+    Iterator<Snapshot> snapshots = cache.asMap().values().iterator();
+    while ( snapshots.hasNext() ) {
+      Snapshot snapshot = snapshots.next();
+      for ( String path : changed ) {
+        if ( snapshot.isAffectedBy( path ) ) {
+          snapshots.remove();
+          break;
+        }
+      }
+    }
+  }
+
+  private boolean isInHomeFolder( final String path ) {
+    for ( String homePath : homePaths ) {
+      if ( isAtOrBelow( path, homePath ) ) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean isAtOrBelow( final String path, final String ancestor ) {
+    return path.equals( ancestor ) || path.startsWith( ancestor.endsWith( SEPARATOR ) ? ancestor : ancestor
+        + SEPARATOR );
+  }
+
+  /**
+   * Starts observing the workspace the first time a tree is requested.
+   *
+   * @return {@code false} if the workspace cannot be observed, in which case nothing is cached
+   */
+  private boolean startObserving() {
+    if ( observing ) {
+      return observationSession != null;
+    }
+    synchronized ( this ) {
+      if ( !observing ) {
+        // only try once
+        observing = true;
+        if ( sessionFactory != null ) {
+          try {
+            Session session = sessionFactory.getAdminSession();
+            session.getWorkspace().getObservationManager().addEventListener( this,
+                Event.NODE_ADDED | Event.NODE_REMOVED | Event.NODE_MOVED | Event.PROPERTY_ADDED
+                    | Event.PROPERTY_CHANGED | Event.PROPERTY_REMOVED, SEPARATOR, true, null, null, false );
+            observationSession = session;
+          } catch ( RepositoryException e ) {
+            logger.warn( "Could not observe the repository; trees will not be shared", e ); //$NON-NLS-1$
+          }
+        }
+      }
+      return observationSession != null;
+    }
+  }
+
+  /**
+   * Stops observing the workspace.
+   */
+  public synchronized void destroy() {
+    if ( observationSession != null ) {
+      try {
+        observationSession.getWorkspace().getObservationManager().removeEventListener( this );
+      } catch ( RepositoryException e ) {
+        logger.debug( "Could not remove the tree snapshot listener", e ); //$NON-NLS-1$
+      }
+      observationSession.logout();
+      observationSession = null;
+    }
+  }
+
+  /**
+   * A shared tree, without the home folder of the user who computed it.
+   */
+  private static class Snapshot {
+
+    private final RepositoryFileTree tree;
+
+    /**
+     * Position of the home folder among the children of the root, or -1 if it is not a child of the root.
+     */
+    private final int homeIndex;
+
+    private final String encodedAbsPath;
+
+    Snapshot( final RepositoryFileTree tree, final String encodedAbsPath ) {
+      this.encodedAbsPath = encodedAbsPath;
+      String homePath = ClientRepositoryPaths.getHomeFolderPath();
+      List<RepositoryFileTree> children = tree.getChildren();
+      int index = -1;
+      if ( children != null ) {
+        for ( int i = 0; i < children.size() && index < 0; i++ ) {
+          if ( homePath.equals( children.get( i ).getFile().getPath() ) ) {
+            index = i;
+          }
+        }
+      }
+      this.homeIndex = index;
+      if ( index < 0 ) {
+        this.tree = tree;
+      } else {
+        List<RepositoryFileTree> shared = new ArrayList<RepositoryFileTree>( children );
+        shared.remove( index );
+        this.tree = new RepositoryFileTree( tree.getFile(), shared );
+        this.tree.setVersioningEnabled( tree.getVersioningEnabled() );
+        this.tree.setVersionCommentEnabled( tree.getVersionCommentEnabled() );
+      }
+    }
+
+    /**
+     * A change affects the tree if it is at or below its root, or to one of the ancestors of the root.
+     */
+    boolean isAffectedBy( final String changedPath ) {
+      return isAtOrBelow( changedPath, encodedAbsPath ) || isAtOrBelow( encodedAbsPath, changedPath );
+    }
+  }
+}
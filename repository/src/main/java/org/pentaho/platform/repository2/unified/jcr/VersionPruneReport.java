@@ -0,0 +1,165 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.repository2.unified.jcr;
+
+import javax.xml.bind.annotation.XmlRootElement;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Outcome of a {@link JcrVersionPruner} run. Counts are always exact; the list of removed versions is capped at
+ * {@link #MAX_DETAILS} entries of the form {@code path@versionName}.
+ */
+@XmlRootElement
+public class VersionPruneReport implements Serializable {
+
+  private static final long serialVersionUID = 3129583464203419541L;
+
+  public static final int MAX_DETAILS = 1000;
+
+  private boolean dryRun;
+
+  private boolean running;
+
+  private Date startTime;
+
+  private Date endTime;
+
+  private int filesScanned;
+
+  private int filesPruned;
+
+  private int versionsRemoved;
+
+  private int errors;
+
+  private List<String> removedVersions = new ArrayList<String>();
+
+  public VersionPruneReport() {
+  }
+
+  public VersionPruneReport( final boolean dryRun ) {
+    this.dryRun = dryRun;
+    this.running = true;
+    this.startTime = new Date();
+  }
+
+  void fileScanned() {
+    filesScanned++;
+  }
+
+  void versionsRemoved( final String path, final List<String> versionNames ) {
+    if ( versionNames.isEmpty() ) {
+      return;
+    }
+    filesPruned++;
+    versionsRemoved += versionNames.size();
+    for ( String versionName : versionNames ) {
+      if ( removedVersions.size() >= MAX_DETAILS ) {
+        break;
+      }
+      removedVersions.add( path + "@" + versionName );
+    }
+  }
+
+  void error() {
+    errors++;
+  }
+
+  void finish() {
+    running = false;
+    endTime = new Date();
+  }
+
+  public boolean isDryRun() {
+    return dryRun;
+  }
+
+  public void setDryRun( boolean dryRun ) {
+    this.dryRun = dryRun;
+  }
+
+  public boolean isRunning() {
+    return running;
+  }
+
+  public void setRunning( boolean running ) {
+    this.running = running;
+  }
+
+  public Date getStartTime() {
+    return startTime;
+  }
+
+  public void setStartTime( Date startTime ) {
+    this.startTime = startTime;
+  }
+
+  public Date getEndTime() {
+    return endTime;
+  }
+
+  public void setEndTime( Date endTime ) {
+    this.endTime = endTime;
+  }
+
+  public int getFilesScanned() {
+    return filesScanned;
+  }
+
+  public void setFilesScanned( int filesScanned ) {
+    this.filesScanned = filesScanned;
+  }
+
+  public int getFilesPruned() {
+    return filesPruned;
+  }
+
+  public void setFilesPruned( int filesPruned ) {
+    this.filesPruned = filesPruned;
+  }
+
+  public int getVersionsRemoved() {
+    return versionsRemoved;
+  }
+
+  public void setVersionsRemoved( int versionsRemoved ) {
+    this.versionsRemoved = versionsRemoved;
+  }
+
+  public int getErrors() {
+    return errors;
+  }
+
+  public void setErrors( int errors ) {
+    this.errors = errors;
+  }
+
+  public List<String> getRemovedVersions() {
+    return removedVersions;
+  }
+
+  public void setRemovedVersions( List<String> removedVersions ) {
+    this.removedVersions = removedVersions;
+  }
+}
@@ -0,0 +1,184 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.repository2.unified.jcr;
+
+import org.apache.commons.io.FilenameUtils;
+import org.pentaho.platform.api.repository2.unified.RepositoryFile;
+
+import javax.jcr.RepositoryException;
+import javax.jcr.version.Version;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Describes how many versions of a file are kept by {@link JcrVersionPruner}. A policy applies to the files below a
+ * folder, optionally restricted to a set of file extensions. The limits combine: a version must satisfy every limit
+ * that is set to be kept. The current (base) version of a file is always kept.
+ * <p/>
+ * <p>
+ * Example: keep at most 10 versions of reports in the public folder, and never more than one per day.
+ * </p>
+ *
+ * <pre>
+ * &lt;bean class="org.pentaho.platform.repository2.unified.jcr.VersionRetentionPolicy"&gt;
+ *   &lt;property name="folder" value="/public"/&gt;
+ *   &lt;property name="extensions" value="prpt,xanalyzer"/&gt;
+ *   &lt;property name="maxVersions" value="10"/&gt;
+ *   &lt;property name="onePerDay" value="true"/&gt;
+ * &lt;/bean&gt;
+ * </pre>
+ */
+public class VersionRetentionPolicy {
+
+  private String folder = RepositoryFile.SEPARATOR;
+
+  private Set<String> extensions = Collections.emptySet();
+
+  private int maxVersions;
+
+  private int maxAgeDays;
+
+  private boolean onePerDay;
+
+  /**
+   * @param path decoded repository path of a file, e.g. {@code /public/Steel Wheels/Sales.prpt}
+   */
+  public boolean appliesTo( final String path ) {
+    if ( !isInFolder( path ) ) {
+      return false;
+    }
+    return extensions.isEmpty() || extensions.contains( FilenameUtils.getExtension( path ).toLowerCase() );
+  }
+
+  private boolean isInFolder( final String path ) {
+    if ( RepositoryFile.SEPARATOR.equals( folder ) ) {
+      return true;
+    }
+    return path.startsWith( folder + RepositoryFile.SEPARATOR );
+  }
+
+  /**
+   * Returns the versions this policy does not keep.
+   *
+   * @param versions    the versions of a file, oldest first, without the root version
+   * @param baseVersion the current version of the file
+   * @param now         the time the policy is evaluated at
+   */
+  public List<Version> selectVersionsToRemove( final List<Version> versions, final Version baseVersion,
+                                               final Calendar now ) throws RepositoryException {
+    List<Version> toRemove = new ArrayList<Version>();
+    long maxAgeMillis = TimeUnit.DAYS.toMillis( maxAgeDays );
+    Set<String> days = new HashSet<String>();
+    int count = versions.size();
+    for ( int i = 0; i < count; i++ ) {
+      Version version = versions.get( i );
+      Calendar created = version.getCreated();
+      // the first version of each day is remembered even when it is removed for another reason, so later versions
+      // of the same day are never promoted to "first"
+      boolean firstOfDay = days.add( created.get( Calendar.YEAR ) + "-" + created.get( Calendar.DAY_OF_YEAR ) );
+      if ( version.getName().equals( baseVersion.getName() ) ) {
+        continue;
+      }
+      boolean remove = false;
+      if ( maxVersions > 0 && count - i > maxVersions ) {
+        remove = true;
+      }
+      if ( maxAgeDays > 0 && now.getTimeInMillis() - created.getTimeInMillis() > maxAgeMillis ) {
+        remove = true;
+      }
+      if ( onePerDay && !firstOfDay ) {
+        remove = true;
+      }
+      if ( remove ) {
+        toRemove.add( version );
+      }
+    }
+    return toRemove;
+  }
+
+  public String getFolder() {
+    return folder;
+  }
+
+  /**
+   * @param folder repository path of the folder the policy applies to, {@code /} for all files
+   */
+  public void setFolder( final String folder ) {
+    if ( folder == null || folder.isEmpty() || RepositoryFile.SEPARATOR.equals( folder ) ) {
+      this.folder = RepositoryFile.SEPARATOR;
+    } else {
+      this.folder = folder.endsWith( RepositoryFile.SEPARATOR ) ? folder.substring( 0, folder.length() - 1 ) : folder;
+    }
+  }
+
+  /**
+   * @param extensions comma separated file extensions without the dot; empty for all files
+   */
+  public void setExtensions( final String extensions ) {
+    Set<String> set = new HashSet<String>();
+    if ( extensions != null ) {
+      for ( String extension : extensions.split( "," ) ) {
+        if ( !extension.trim().isEmpty() ) {
+          set.add( extension.trim().toLowerCase() );
+        }
+      }
+    }
+    this.extensions = set;
+  }
+
+  public int getMaxVersions() {
+    return maxVersions;
+  }
+
+  /**
+   * @param maxVersions number of most recent versions to keep, 0 for no limit
+   */
+  public void setMaxVersions( final int maxVersions ) {
+    this.maxVersions = maxVersions;
+  }
+
+  public int getMaxAgeDays() {
+    return maxAgeDays;
+  }
+
+  /**
+   * @param maxAgeDays number of days a version is kept, 0 for no limit
+   */
+  public void setMaxAgeDays( final int maxAgeDays ) {
+    this.maxAgeDays = maxAgeDays;
+  }
+
+  public boolean isOnePerDay() {
+    return onePerDay;
+  }
+
+  /**
+   * @param onePerDay keep only the first version of each day
+   */
+  public void setOnePerDay( final boolean onePerDay ) {
+    this.onePerDay = onePerDay;
+  }
+}
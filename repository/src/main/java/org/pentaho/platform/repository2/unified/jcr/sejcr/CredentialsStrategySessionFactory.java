@@ -34,6 +34,7 @@ import org.springframework.extensions.jcr.SessionHolder;
 import org.springframework.extensions.jcr.SessionHolderProvider;
 import org.springframework.extensions.jcr.SessionHolderProviderManager;
 import org.springframework.extensions.jcr.jackrabbit.support.JackRabbitSessionHolderProvider;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
 import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.util.Assert;
 
@@ -362,7 +363,7 @@ public class CredentialsStrategySessionFactory implements InitializingBean, Disp
       LOG.debug( "using credentials:" + creds );
     }
     Session session = getSessionFactory().getSession( creds );
-    session = createSessionProxy( session );
+    session = createSessionProxy( session, getSessionFactory() );
     return addListeners( session );
   }
 
@@ -374,9 +375,21 @@ public class CredentialsStrategySessionFactory implements InitializingBean, Disp
    * @return
    */
   public Session createSessionProxy( Session session ) {
+    return createSessionProxy( session, null );
+  }
+
+  /**
+   * Same as {@link #createSessionProxy(Session)}, except that a logout hands the session back to the given factory,
+   * which may pool it, instead of logging it out.
+   *
+   * @param session
+   * @param sessionFactory factory the session was obtained from, null to log the session out
+   * @return
+   */
+  public Session createSessionProxy( Session session, PentahoJcrSessionFactory sessionFactory ) {
     return (Session) Proxy
         .newProxyInstance( this.getClass().getClassLoader(), new Class[] { Session.class, XASession.class },
-            new LogoutSuppressingInvocationHandler( session ) );
+            new LogoutSuppressingInvocationHandler( session, sessionFactory ) );
   }
 
 
@@ -632,9 +645,17 @@ public class CredentialsStrategySessionFactory implements InitializingBean, Disp
 
     private LogoutDelegate logoutDelegate = LogoutDelegate.DefaultLogoutDelegate;
     private final Session target;
+    private final PentahoJcrSessionFactory sessionFactory;
+    private volatile boolean released;
+    private boolean releaseScheduled;
 
     public LogoutSuppressingInvocationHandler( Session target ) {
+      this( target, null );
+    }
+
+    public LogoutSuppressingInvocationHandler( Session target, PentahoJcrSessionFactory sessionFactory ) {
       this.target = target;
+      this.sessionFactory = sessionFactory;
     }
 
     public void setLogoutDelegate(
@@ -648,10 +669,27 @@ public class CredentialsStrategySessionFactory implements InitializingBean, Disp
       } else if ( method.getName().equals( "hashCode" ) ) {
         return this.hashCode();
       } else if ( method.getName().equals( "logout" ) ) {
-        if ( logoutDelegate.shouldLogout() ) {
+        if ( sessionFactory != null ) {
+          // a pooled session always goes back, in a read-only transaction only once the transaction is over
+          if ( logoutDelegate.shouldLogout() || !TransactionSynchronizationManager.isSynchronizationActive() ) {
+            release();
+          } else if ( !releaseScheduled ) {
+            releaseScheduled = true;
+            TransactionSynchronizationManager.registerSynchronization( new TransactionSynchronizationAdapter() {
+              @Override public void afterCompletion( int status ) {
+                release();
+              }
+            } );
+          }
+        } else if ( logoutDelegate.shouldLogout() ) {
           target.logout();
         }
         return null;
+      } else if ( released ) {
+        if ( method.getName().equals( "isLive" ) ) {
+          return Boolean.FALSE;
+        }
+        throw new IllegalStateException( "Session has been logged out" );
       } else {
         try {
           Object ex = method.invoke( this.target, args );
@@ -662,6 +700,14 @@ public class CredentialsStrategySessionFactory implements InitializingBean, Disp
       }
     }
 
+    private synchronized void release() {
+      if ( !released ) {
+        // once released the session may be lent to another thread, so this proxy must not reach it again
+        released = true;
+        sessionFactory.releaseSession( target );
+      }
+    }
+
     public SessionImpl getSession() {
       return (SessionImpl) target;
     }
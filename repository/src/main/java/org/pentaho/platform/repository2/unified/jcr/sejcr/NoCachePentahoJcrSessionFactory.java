@@ -43,4 +43,11 @@ public class NoCachePentahoJcrSessionFactory implements PentahoJcrSessionFactory
   @Override public Session getSession( Credentials credentials ) throws RepositoryException {
     return repository.login( credentials, workspaceName );
   }
+
+  /**
+   * @return the workspace sessions are logged into, null for the default workspace
+   */
+  protected String getWorkspaceName() {
+    return workspaceName;
+  }
 }
@@ -30,4 +30,12 @@ import javax.jcr.Session;
  */
 public interface PentahoJcrSessionFactory {
   Session getSession( Credentials credentials ) throws RepositoryException;
+
+  /**
+   * Called when a session obtained from {@link #getSession(Credentials)} is logged out by its user. Pooling factories
+   * take the session back; by default it is logged out.
+   */
+  default void releaseSession( Session session ) {
+    session.logout();
+  }
 }
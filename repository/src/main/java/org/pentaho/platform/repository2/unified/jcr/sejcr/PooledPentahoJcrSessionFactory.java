@@ -0,0 +1,479 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.repository2.unified.jcr.sejcr;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.jcr.Credentials;
+import javax.jcr.Repository;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.SimpleCredentials;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * JCR Session Factory which pools Sessions by workspace and credentials, shared by all threads. Credentials are told
+ * apart by user id, password and attributes, so a session is only lent again for credentials that would have logged
+ * in the same way. A session is lent to one thread at a time
+ * and comes back to the pool when {@link CredentialsStrategySessionFactory}'s session proxy is logged out.
+ * <p>
+ * At most {@code maxActivePerUser} sessions of a user are lent at once; a thread that finds none left waits up to
+ * {@code maxWaitMillis} and then gets an unpooled session, so nested or leaked borrowing can slow a thread down but
+ * never block it. Sessions are refreshed when borrowed, idle sessions are logged out after {@code idleTimeoutSeconds},
+ * and sessions that are not given back within {@code maxBorrowSeconds} are written off and logged out. Hits, misses,
+ * waits and
+ * evictions are counted and logged at debug level on every eviction pass, and are published as an MBean on the
+ * platform MBean server when an {@link #setObjectName(String) object name} is configured.
+ */
+public class PooledPentahoJcrSessionFactory extends NoCachePentahoJcrSessionFactory
+  implements PentahoJcrSessionFactory, PooledPentahoJcrSessionFactoryMBean {
+
+  private static final AtomicLong evictorCount = new AtomicLong();
+
+  private final Logger logger = LoggerFactory.getLogger( getClass() );
+
+  private int maxActivePerUser = 50;
+  private int maxIdlePerUser = 20;
+  private long maxWaitMillis = 200;
+  private int idleTimeoutSeconds = 300;
+  private int maxBorrowSeconds = 600;
+
+  private final ConcurrentMap<PoolKey, UserPool> pools = new ConcurrentHashMap<PoolKey, UserPool>();
+  private final Map<Session, Borrowed> borrowed = Collections.synchronizedMap( new IdentityHashMap<Session, Borrowed>() );
+  private final ScheduledExecutorService evictor;
+  private volatile boolean closed;
+  private String objectName;
+  private ObjectName registeredName;
+
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong waits = new AtomicLong();
+  private final AtomicLong waitMillis = new AtomicLong();
+  private final AtomicLong timeouts = new AtomicLong();
+  private final AtomicLong evictions = new AtomicLong();
+  private final AtomicLong abandoned = new AtomicLong();
+
+  public PooledPentahoJcrSessionFactory( Repository repository, String workspace ) {
+    this( repository, workspace, 60 );
+  }
+
+  /**
+   * @param evictionIntervalSeconds how often idle and abandoned sessions are looked for, 0 to never
+   */
+  public PooledPentahoJcrSessionFactory( Repository repository, String workspace, int evictionIntervalSeconds ) {
+    super( repository, workspace );
+    if ( evictionIntervalSeconds > 0 ) {
+      evictor = Executors.newSingleThreadScheduledExecutor( new ThreadFactory() {
+        @Override public Thread newThread( Runnable r ) {
+          Thread thread = new Thread( r, "JCR Session Pool Evictor " + evictorCount.incrementAndGet() );
+          thread.setDaemon( true );
+          return thread;
+        }
+      } );
+      evictor.scheduleWithFixedDelay( new Runnable() {
+        @Override public void run() {
+          evict();
+        }
+      }, evictionIntervalSeconds, evictionIntervalSeconds, TimeUnit.SECONDS );
+    } else {
+      evictor = null;
+    }
+  }
+
+  @Override public Session getSession( Credentials creds ) throws RepositoryException {
+    if ( closed || !( creds instanceof SimpleCredentials ) ) {
+      return super.getSession( creds );
+    }
+    UserPool pool = getPool( new PoolKey( getWorkspaceName(), (SimpleCredentials) creds ) );
+
+    if ( !pool.permits.tryAcquire() ) {
+      long start = System.currentTimeMillis();
+      boolean acquired = false;
+      try {
+        acquired = pool.permits.tryAcquire( maxWaitMillis, TimeUnit.MILLISECONDS );
+      } catch ( InterruptedException e ) {
+        Thread.currentThread().interrupt();
+      }
+      waits.incrementAndGet();
+      waitMillis.addAndGet( System.currentTimeMillis() - start );
+      if ( !acquired ) {
+        timeouts.incrementAndGet();
+        if ( logger.isDebugEnabled() ) {
+          logger.debug( "Session pool exhausted, creating an unpooled session: " + creds );
+        }
+        return super.getSession( creds );
+      }
+    }
+
+    try {
+      Session session = borrowIdle( pool );
+      if ( session == null ) {
+        misses.incrementAndGet();
+        session = super.getSession( creds );
+      } else {
+        hits.incrementAndGet();
+      }
+      borrowed.put( session, new Borrowed( pool, session ) );
+      return session;
+    } catch ( RepositoryException e ) {
+      pool.permits.release();
+      throw e;
+    } catch ( RuntimeException e ) {
+      pool.permits.release();
+      throw e;
+    }
+  }
+
+  private UserPool getPool( PoolKey key ) {
+    UserPool pool = pools.get( key );
+    if ( pool == null ) {
+      UserPool created = new UserPool( maxActivePerUser );
+      pool = pools.putIfAbsent( key, created );
+      if ( pool == null ) {
+        pool = created;
+      }
+    }
+    return pool;
+  }
+
+  /**
+   * @return the most recently returned live session of the pool, refreshed, or null if there is none
+   */
+  private Session borrowIdle( UserPool pool ) {
+    Idle idle;
+    while ( ( idle = pool.idle.pollFirst() ) != null ) {
+      Session session = idle.session;
+      try {
+        if ( session.isLive() ) {
+          session.refresh( false );
+          return session;
+        }
+      } catch ( RepositoryException e ) {
+        logger.debug( "Discarding pooled session that cannot be refreshed", e );
+        session.logout();
+      }
+    }
+    return null;
+  }
+
+  @Override public void releaseSession( Session session ) {
+    Borrowed borrow = borrowed.remove( session );
+    if ( borrow == null ) {
+      // unpooled, or written off as abandoned and already logged out
+      session.logout();
+      return;
+    }
+    borrow.pool.permits.release();
+    if ( !session.isLive() ) {
+      return;
+    }
+    if ( closed || borrow.pool.idle.size() >= maxIdlePerUser ) {
+      session.logout();
+      return;
+    }
+    borrow.pool.idle.offerFirst( new Idle( session ) );
+  }
+
+  /**
+   * Logs out sessions idle for longer than the idle timeout, and writes off and logs out sessions borrowed for longer
+   * than the maximum borrow time.
+   */
+  void evict() {
+    long now = System.currentTimeMillis();
+    long idleLimit = now - TimeUnit.SECONDS.toMillis( idleTimeoutSeconds );
+    for ( UserPool pool : pools.values() ) {
+      for ( Iterator<Idle> it = pool.idle.descendingIterator(); it.hasNext(); ) {
+        Idle idle = it.next();
+        // the oldest are at the end; removal fails if a borrower took the session meanwhile
+        if ( idle.since < idleLimit && pool.idle.removeLastOccurrence( idle ) ) {
+          idle.session.logout();
+          evictions.incrementAndGet();
+        }
+      }
+    }
+
+    long borrowLimit = now - TimeUnit.SECONDS.toMillis( maxBorrowSeconds );
+    List<Borrowed> overdue = new ArrayList<Borrowed>();
+    synchronized ( borrowed ) {
+      for ( Iterator<Borrowed> it = borrowed.values().iterator(); it.hasNext(); ) {
+        Borrowed borrow = it.next();
+        if ( borrow.since < borrowLimit ) {
+          it.remove();
+          overdue.add( borrow );
+        }
+      }
+    }
+    for ( Borrowed borrow : overdue ) {
+      // a borrower still holding it gets an exception on its next call instead of a session nobody accounts for
+      borrow.pool.permits.release();
+      borrow.session.logout();
+      abandoned.incrementAndGet();
+    }
+    if ( !overdue.isEmpty() ) {
+      logger.warn( overdue.size() + " JCR sessions were not returned to the pool within " + maxBorrowSeconds
+        + " seconds" );
+    }
+
+    if ( logger.isDebugEnabled() ) {
+      logger.debug( String.format(
+        "JCR session pool: %d active, %d idle, %d hits, %d misses, %d waits (%d ms), %d timeouts, %d evicted, "
+          + "%d abandoned", getActiveCount(), getIdleCount(), hits.get(), misses.get(), waits.get(),
+        waitMillis.get(), timeouts.get(), evictions.get(), abandoned.get() ) );
+    }
+  }
+
+  /**
+   * Registers the pool statistics on the platform MBean server under the configured object name, if there is one.
+   * Failing to register is logged and does not affect the pool.
+   */
+  public synchronized void registerMBean() {
+    if ( objectName == null || registeredName != null ) {
+      return;
+    }
+    try {
+      ObjectName name = new ObjectName( objectName );
+      ManagementFactory.getPlatformMBeanServer().registerMBean( this, name );
+      registeredName = name;
+    } catch ( JMException e ) {
+      logger.warn( "Cannot register JCR session pool statistics as " + objectName, e );
+    }
+  }
+
+  private synchronized void unregisterMBean() {
+    if ( registeredName == null ) {
+      return;
+    }
+    try {
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      if ( server.isRegistered( registeredName ) ) {
+        server.unregisterMBean( registeredName );
+      }
+    } catch ( JMException e ) {
+      logger.debug( "Cannot unregister JCR session pool statistics " + registeredName, e );
+    }
+    registeredName = null;
+  }
+
+  /**
+   * Logs out all idle sessions. Borrowed sessions are logged out when they are returned.
+   */
+  public void close() {
+    closed = true;
+    if ( evictor != null ) {
+      evictor.shutdownNow();
+    }
+    unregisterMBean();
+    for ( UserPool pool : pools.values() ) {
+      Idle idle;
+      while ( ( idle = pool.idle.pollFirst() ) != null ) {
+        idle.session.logout();
+      }
+    }
+  }
+
+  /**
+   * @return number of sessions served from the pool
+   */
+  @Override public long getHitCount() {
+    return hits.get();
+  }
+
+  /**
+   * @return number of sessions created because the pool had none idle
+   */
+  @Override public long getMissCount() {
+    return misses.get();
+  }
+
+  /**
+   * @return number of times a thread had to wait for a session to be returned
+   */
+  @Override public long getWaitCount() {
+    return waits.get();
+  }
+
+  /**
+   * @return total time in milliseconds threads waited for a session
+   */
+  @Override public long getTotalWaitMillis() {
+    return waitMillis.get();
+  }
+
+  /**
+   * @return number of waits that ended with an unpooled session
+   */
+  @Override public long getTimeoutCount() {
+    return timeouts.get();
+  }
+
+  @Override public long getEvictionCount() {
+    return evictions.get();
+  }
+
+  @Override public long getAbandonedCount() {
+    return abandoned.get();
+  }
+
+  @Override public int getActiveCount() {
+    return borrowed.size();
+  }
+
+  @Override public int getIdleCount() {
+    int count = 0;
+    for ( UserPool pool : pools.values() ) {
+      count += pool.idle.size();
+    }
+    return count;
+  }
+
+  /**
+   * @return number of distinct workspace and credentials combinations sessions were pooled for
+   */
+  @Override public int getPoolCount() {
+    return pools.size();
+  }
+
+  /**
+   * @param objectName JMX object name the statistics are published under by {@link #registerMBean()}, such as
+   *                   {@code org.pentaho.platform:type=JcrSessionPool,name=user}
+   */
+  public void setObjectName( String objectName ) {
+    this.objectName = objectName;
+  }
+
+  /**
+   * Only applies to users whose pool is created afterwards; meant to be set at configuration time.
+   */
+  public void setMaxActivePerUser( int maxActivePerUser ) {
+    this.maxActivePerUser = maxActivePerUser;
+  }
+
+  public void setMaxIdlePerUser( int maxIdlePerUser ) {
+    this.maxIdlePerUser = maxIdlePerUser;
+  }
+
+  public void setMaxWaitMillis( long maxWaitMillis ) {
+    this.maxWaitMillis = maxWaitMillis;
+  }
+
+  public void setIdleTimeoutSeconds( int idleTimeoutSeconds ) {
+    this.idleTimeoutSeconds = idleTimeoutSeconds;
+  }
+
+  public void setMaxBorrowSeconds( int maxBorrowSeconds ) {
+    this.maxBorrowSeconds = maxBorrowSeconds;
+  }
+
+  /**
+   * What sessions are pooled by: the workspace and everything a login is made with.
+   */
+  private static final class PoolKey {
+    private final String workspace;
+    private final String userId;
+    private final char[] password;
+    private final Map<String, Object> attributes;
+    private final int hash;
+
+    private PoolKey( String workspace, SimpleCredentials creds ) {
+      this.workspace = workspace;
+      this.userId = creds.getUserID();
+      this.password = creds.getPassword() == null ? null : creds.getPassword().clone();
+      Map<String, Object> attributes = new HashMap<String, Object>();
+      for ( String name : creds.getAttributeNames() ) {
+        attributes.put( name, creds.getAttribute( name ) );
+      }
+      this.attributes = attributes;
+      this.hash = Arrays.hashCode( new Object[] { workspace, userId, Arrays.hashCode( password ), attributes } );
+    }
+
+    @Override public boolean equals( Object o ) {
+      if ( this == o ) {
+        return true;
+      }
+      if ( !( o instanceof PoolKey ) ) {
+        return false;
+      }
+      PoolKey other = (PoolKey) o;
+      return hash == other.hash
+        && ( workspace == null ? other.workspace == null : workspace.equals( other.workspace ) )
+        && ( userId == null ? other.userId == null : userId.equals( other.userId ) )
+        && Arrays.equals( password, other.password )
+        && attributes.equals( other.attributes );
+    }
+
+    @Override public int hashCode() {
+      return hash;
+    }
+  }
+
+  private static class UserPool {
+    private final Semaphore permits;
+    /**
+     * Most recently returned first, so the sessions at the end go idle and get evicted.
+     */
+    private final LinkedBlockingDeque<Idle> idle = new LinkedBlockingDeque<Idle>();
+
+    private UserPool( int maxActive ) {
+      this.permits = new Semaphore( maxActive );
+    }
+  }
+
+  private static class Idle {
+    private final Session session;
+    private final long since = System.currentTimeMillis();
+
+    private Idle( Session session ) {
+      this.session = session;
+    }
+  }
+
+  private static class Borrowed {
+    private final UserPool pool;
+    private final Session session;
+    private final long since = System.currentTimeMillis();
+
+    private Borrowed( UserPool pool, Session session ) {
+      this.pool = pool;
+      this.session = session;
+    }
+  }
+}
@@ -40,6 +40,7 @@ import static org.pentaho.platform.repository2.unified.jcr.sejcr.ntdproviders.No
 //     - pho:lastModified (date) mandatory ignore
 //     - pho:contentType (string) mandatory copy
 //     - pho:fileSize (long) copy
+//     - pho:contentHash (string) copy
 public class FileNtdProvider implements NodeTypeDefinitionProvider {
 
   @SuppressWarnings( "unchecked" )
@@ -52,6 +53,7 @@ public class FileNtdProvider implements NodeTypeDefinitionProvider {
     t.getPropertyDefinitionTemplates().add( getLastModifiedProperty( ntMgr, vFac ) );
     t.getPropertyDefinitionTemplates().add( getContentTypeProperty( ntMgr, vFac ) );
     t.getPropertyDefinitionTemplates().add( getFileSizeProperty( ntMgr, vFac ) );
+    t.getPropertyDefinitionTemplates().add( getContentHashProperty( ntMgr, vFac ) );
     return t;
   }
 
@@ -87,4 +89,14 @@ public class FileNtdProvider implements NodeTypeDefinitionProvider {
     return t;
   }
 
+  private PropertyDefinitionTemplate getContentHashProperty( final NodeTypeManager ntMgr, final ValueFactory vFac )
+    throws RepositoryException {
+    PropertyDefinitionTemplate t = ntMgr.createPropertyDefinitionTemplate();
+    t.setName( PHO + "contentHash" ); //$NON-NLS-1$
+    t.setRequiredType( PropertyType.STRING );
+    t.setOnParentVersion( OnParentVersionAction.COPY );
+    t.setMultiple( false );
+    return t;
+  }
+
 }
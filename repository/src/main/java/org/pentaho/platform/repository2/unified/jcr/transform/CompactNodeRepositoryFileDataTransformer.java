@@ -0,0 +1,122 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.repository2.unified.jcr.transform;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import javax.jcr.Node;
+import javax.jcr.NodeIterator;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.Value;
+import javax.jcr.ValueFactory;
+
+import org.pentaho.platform.api.repository2.unified.data.node.NodeRepositoryFileData;
+import org.pentaho.platform.repository2.unified.jcr.PentahoJcrConstants;
+
+/**
+ * Stores a {@link NodeRepositoryFileData} as a single binary property (see {@link DataNodeBinaryFormat}) on the content
+ * node instead of one JCR node per data node, which makes reads and writes of large data node trees a single property
+ * access. Files referenced from the tree are also listed in a multi-valued reference property so that referential
+ * integrity and referrer lookups keep working.
+ * <p>
+ * Both forms are readable by this transformer and by {@link NodeRepositoryFileDataTransformer}. Files in the old form
+ * are converted the next time they are written, or explicitly with {@link #migrateContentNode}, which
+ * {@link org.pentaho.platform.repository2.unified.jcr.CompactNodeDataMigrationSystemListener} runs over the whole
+ * repository at startup when enabled.
+ */
+public class CompactNodeRepositoryFileDataTransformer extends NodeRepositoryFileDataTransformer {
+
+  public CompactNodeRepositoryFileDataTransformer() {
+    super();
+  }
+
+  @Override
+  protected void createOrUpdateContentNode( final Session session, final PentahoJcrConstants pentahoJcrConstants,
+      final NodeRepositoryFileData data, final Node fileNode ) throws RepositoryException {
+    Node unstructuredNode = null;
+    if ( fileNode.hasNode( pentahoJcrConstants.getJCR_CONTENT() ) ) {
+      unstructuredNode = fileNode.getNode( pentahoJcrConstants.getJCR_CONTENT() );
+    } else {
+      unstructuredNode =
+          fileNode.addNode( pentahoJcrConstants.getJCR_CONTENT(), pentahoJcrConstants.getPHO_NT_INTERNALFOLDER() );
+    }
+
+    final String prefix = session.getNamespacePrefix( PentahoJcrConstants.PHO_NS ) + ":"; //$NON-NLS-1$
+    // drop data nodes written by NodeRepositoryFileDataTransformer
+    NodeIterator nodes = unstructuredNode.getNodes( prefix + "*" ); //$NON-NLS-1$
+    while ( nodes.hasNext() ) {
+      nodes.nextNode().remove();
+    }
+
+    Set<String> refIds = new LinkedHashSet<String>();
+    byte[] bytes;
+    try {
+      bytes = DataNodeBinaryFormat.toBytes( data.getNode(), refIds );
+    } catch ( IOException e ) {
+      throw new RepositoryException( e );
+    }
+    ValueFactory valueFactory = session.getValueFactory();
+    unstructuredNode.setProperty( prefix + COMPACT_DATA, valueFactory.createBinary( new ByteArrayInputStream(
+        bytes ) ) );
+
+    if ( refIds.isEmpty() ) {
+      removeProperty( unstructuredNode, prefix + COMPACT_DATA_REFS );
+    } else {
+      Value[] refs = new Value[ refIds.size() ];
+      int i = 0;
+      for ( String refId : refIds ) {
+        refs[ i++ ] = valueFactory.createValue( session.getNodeByIdentifier( refId ) );
+      }
+      unstructuredNode.setProperty( prefix + COMPACT_DATA_REFS, refs );
+    }
+  }
+
+  /**
+   * Whether the content of {@code fileNode} is already stored in the compact form.
+   */
+  public boolean isCompact( final Session session, final PentahoJcrConstants pentahoJcrConstants, final Node fileNode )
+    throws RepositoryException {
+    return fileNode.getNode( pentahoJcrConstants.getJCR_CONTENT() ).hasProperty( session.getNamespacePrefix(
+        PentahoJcrConstants.PHO_NS ) + ":" + COMPACT_DATA ); //$NON-NLS-1$
+  }
+
+  /**
+   * Rewrites the content of {@code fileNode} in the compact form if it is still stored as JCR nodes. The caller checks
+   * out the file if it is versioned and saves the session. References are resolved with the permissions of the
+   * session, so migration should run as a user who can read every referenced file.
+   *
+   * @return {@code true} if the content node was rewritten
+   */
+  public boolean migrateContentNode( final Session session, final PentahoJcrConstants pentahoJcrConstants,
+      final Node fileNode ) throws RepositoryException {
+    if ( isCompact( session, pentahoJcrConstants, fileNode ) ) {
+      return false;
+    }
+    createOrUpdateContentNode( session, pentahoJcrConstants, fromContentNode( session, pentahoJcrConstants, fileNode ),
+        fileNode );
+    return true;
+  }
+
+}
@@ -0,0 +1,193 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.repository2.unified.jcr.transform;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
+import org.pentaho.platform.api.repository2.unified.data.node.DataNode;
+import org.pentaho.platform.api.repository2.unified.data.node.DataNodeRef;
+import org.pentaho.platform.api.repository2.unified.data.node.DataProperty;
+
+/**
+ * Binary form of a {@link DataNode} tree, stored by {@link CompactNodeRepositoryFileDataTransformer} in a single
+ * property instead of one JCR node per data node. The first byte is the format version; a node is its name, its
+ * properties and its children, in order.
+ */
+public class DataNodeBinaryFormat {
+
+  /**
+   * Current version of the format, written as the first byte.
+   */
+  public static final int VERSION = 1;
+
+  private static final byte TYPE_STRING = 1;
+  private static final byte TYPE_BOOLEAN = 2;
+  private static final byte TYPE_DOUBLE = 3;
+  private static final byte TYPE_LONG = 4;
+  private static final byte TYPE_DATE = 5;
+  private static final byte TYPE_REF = 6;
+
+  private DataNodeBinaryFormat() {
+  }
+
+  /**
+   * Serializes {@code node} and its descendants. Properties without a value are left out, as they are when stored as
+   * JCR properties. The ids of referenced files are added to {@code refIds}.
+   */
+  public static byte[] toBytes( final DataNode node, final Collection<String> refIds ) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream( 1024 );
+    DataOutputStream out = new DataOutputStream( bytes );
+    out.writeByte( VERSION );
+    writeNode( out, node, refIds );
+    out.flush();
+    return bytes.toByteArray();
+  }
+
+  /**
+   * Reads a tree written by {@link #toBytes(DataNode, Collection)}.
+   *
+   * @throws IOException if the data is truncated or written by a newer version of the format
+   */
+  public static DataNode fromBytes( final InputStream data ) throws IOException {
+    DataInputStream in = new DataInputStream( data );
+    int version = in.readUnsignedByte();
+    if ( version > VERSION ) {
+      throw new IOException( "Unsupported data node format version " + version ); //$NON-NLS-1$
+    }
+    return readNode( in, null );
+  }
+
+  private static void writeNode( final DataOutputStream out, final DataNode node, final Collection<String> refIds )
+    throws IOException {
+    writeString( out, node.getName() );
+
+    List<DataProperty> properties = new ArrayList<DataProperty>();
+    for ( DataProperty property : node.getProperties() ) {
+      if ( property.getString() != null ) {
+        properties.add( property );
+      }
+    }
+    out.writeInt( properties.size() );
+    for ( DataProperty property : properties ) {
+      writeString( out, property.getName() );
+      switch ( property.getType() ) {
+        case STRING:
+          out.writeByte( TYPE_STRING );
+          writeString( out, property.getString() );
+          break;
+        case BOOLEAN:
+          out.writeByte( TYPE_BOOLEAN );
+          out.writeBoolean( property.getBoolean() );
+          break;
+        case DOUBLE:
+          out.writeByte( TYPE_DOUBLE );
+          out.writeDouble( property.getDouble() );
+          break;
+        case LONG:
+          out.writeByte( TYPE_LONG );
+          out.writeLong( property.getLong() );
+          break;
+        case DATE:
+          out.writeByte( TYPE_DATE );
+          out.writeLong( property.getDate().getTime() );
+          break;
+        case REF:
+          String refId = property.getRef().getId().toString();
+          out.writeByte( TYPE_REF );
+          writeString( out, refId );
+          refIds.add( refId );
+          break;
+        default:
+          throw new IllegalArgumentException();
+      }
+    }
+
+    List<DataNode> children = new ArrayList<DataNode>();
+    for ( DataNode child : node.getNodes() ) {
+      children.add( child );
+    }
+    out.writeInt( children.size() );
+    for ( DataNode child : children ) {
+      writeNode( out, child, refIds );
+    }
+  }
+
+  private static DataNode readNode( final DataInputStream in, final DataNode parent ) throws IOException {
+    String name = readString( in );
+    DataNode node = parent != null ? parent.addNode( name ) : new DataNode( name );
+
+    int propertyCount = in.readInt();
+    for ( int i = 0; i < propertyCount; i++ ) {
+      String propertyName = readString( in );
+      byte type = in.readByte();
+      switch ( type ) {
+        case TYPE_STRING:
+          node.setProperty( propertyName, readString( in ) );
+          break;
+        case TYPE_BOOLEAN:
+          node.setProperty( propertyName, in.readBoolean() );
+          break;
+        case TYPE_DOUBLE:
+          node.setProperty( propertyName, in.readDouble() );
+          break;
+        case TYPE_LONG:
+          node.setProperty( propertyName, in.readLong() );
+          break;
+        case TYPE_DATE:
+          node.setProperty( propertyName, new Date( in.readLong() ) );
+          break;
+        case TYPE_REF:
+          node.setProperty( propertyName, new DataNodeRef( readString( in ) ) );
+          break;
+        default:
+          throw new IOException( "Unknown data property type " + type ); //$NON-NLS-1$
+      }
+    }
+
+    int childCount = in.readInt();
+    for ( int i = 0; i < childCount; i++ ) {
+      readNode( in, node );
+    }
+    return node;
+  }
+
+  private static void writeString( final DataOutputStream out, final String value ) throws IOException {
+    byte[] bytes = value.getBytes( StandardCharsets.UTF_8 );
+    out.writeInt( bytes.length );
+    out.write( bytes );
+  }
+
+  private static String readString( final DataInputStream in ) throws IOException {
+    byte[] bytes = new byte[ in.readInt() ];
+    in.readFully( bytes );
+    return new String( bytes, StandardCharsets.UTF_8 );
+  }
+
+}
@@ -20,7 +20,13 @@
 
 package org.pentaho.platform.repository2.unified.jcr.transform;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.List;
+
+import javax.jcr.Binary;
 
 import javax.jcr.ItemNotFoundException;
 import javax.jcr.Node;
@@ -47,6 +53,18 @@ public class NodeRepositoryFileDataTransformer implements ITransformer<NodeRepos
   // ~ Static fields/initializers
   // ======================================================================================
 
+  /**
+   * Local name of the binary property that holds the whole data node tree when it is stored in the compact form.
+   *
+   * @see CompactNodeRepositoryFileDataTransformer
+   */
+  public static final String COMPACT_DATA = "compactData"; //$NON-NLS-1$
+
+  /**
+   * Local name of the multi-valued reference property listing the files referenced from the compact form.
+   */
+  public static final String COMPACT_DATA_REFS = "compactDataRefs"; //$NON-NLS-1$
+
   // ~ Instance fields
   // =================================================================================================
 
@@ -77,10 +95,20 @@ public class NodeRepositoryFileDataTransformer implements ITransformer<NodeRepos
     while ( nodes.hasNext() ) {
       nodes.nextNode().remove();
     }
+    // data written by the compact transformer is replaced as well
+    final String prefix = session.getNamespacePrefix( PentahoJcrConstants.PHO_NS ) + ":"; //$NON-NLS-1$
+    removeProperty( unstructuredNode, prefix + COMPACT_DATA );
+    removeProperty( unstructuredNode, prefix + COMPACT_DATA_REFS );
 
     internalCreateOrUpdate( session, pentahoJcrConstants, unstructuredNode, data.getNode() );
   }
 
+  protected static void removeProperty( final Node node, final String propName ) throws RepositoryException {
+    if ( node.hasProperty( propName ) ) {
+      node.getProperty( propName ).remove();
+    }
+  }
+
   public void createContentNode( final Session session, final PentahoJcrConstants pentahoJcrConstants,
       final NodeRepositoryFileData data, final Node fileNode ) throws RepositoryException {
     createOrUpdateContentNode( session, pentahoJcrConstants, data, fileNode );
@@ -152,12 +180,63 @@ public class NodeRepositoryFileDataTransformer implements ITransformer<NodeRepos
   public NodeRepositoryFileData fromContentNode( final Session session, final PentahoJcrConstants pentahoJcrConstants,
       final Node fileNode ) throws RepositoryException {
     Node unstructuredNode = fileNode.getNode( pentahoJcrConstants.getJCR_CONTENT() );
+    final String compactData =
+        session.getNamespacePrefix( PentahoJcrConstants.PHO_NS ) + ":" + COMPACT_DATA; //$NON-NLS-1$
+    if ( unstructuredNode.hasProperty( compactData ) ) {
+      return new NodeRepositoryFileData( readCompact( session, unstructuredNode.getProperty( compactData ) ) );
+    }
     final String pattern = session.getNamespacePrefix( PentahoJcrConstants.PHO_NS ) + ":" + "*"; //$NON-NLS-1$ //$NON-NLS-2$
     Assert.isTrue( unstructuredNode.getNodes( pattern ).getSize() == 1 );
     Node jcrNode = unstructuredNode.getNodes( pattern ).nextNode();
     return new NodeRepositoryFileData( internalRead( session, pentahoJcrConstants, jcrNode, null ) );
   }
 
+  /**
+   * Decodes a data node tree stored by {@link CompactNodeRepositoryFileDataTransformer}. Data nodes read this way have
+   * no id since they are not backed by JCR nodes.
+   */
+  protected DataNode readCompact( final Session session, final Property compactData ) throws RepositoryException {
+    Binary binary = compactData.getBinary();
+    DataNode dataNode;
+    try {
+      InputStream in = binary.getStream();
+      try {
+        dataNode = DataNodeBinaryFormat.fromBytes( in );
+      } finally {
+        in.close();
+      }
+    } catch ( IOException e ) {
+      throw new RepositoryException( e );
+    } finally {
+      binary.dispose();
+    }
+    resolveRefs( session, dataNode );
+    return dataNode;
+  }
+
+  /**
+   * Replaces references the current user cannot resolve with {@link DataNodeRef#REF_MISSING}, as
+   * {@link #internalRead} does for reference properties.
+   */
+  private void resolveRefs( final Session session, final DataNode dataNode ) throws RepositoryException {
+    List<String> missing = new ArrayList<String>();
+    for ( DataProperty dataProp : dataNode.getProperties() ) {
+      if ( dataProp.getType() == DataNode.DataPropertyType.REF ) {
+        try {
+          session.getNodeByIdentifier( dataProp.getRef().getId().toString() );
+        } catch ( ItemNotFoundException e ) {
+          missing.add( dataProp.getName() );
+        }
+      }
+    }
+    for ( String propName : missing ) {
+      dataNode.setProperty( propName, new DataNodeRef( DataNodeRef.REF_MISSING ) );
+    }
+    for ( DataNode child : dataNode.getNodes() ) {
+      resolveRefs( session, child );
+    }
+  }
+
   protected DataNode internalRead( final Session session, final PentahoJcrConstants pentahoJcrConstants,
       final Node jcrNode, final DataNode parentDataNode ) throws RepositoryException {
     final String prefix = session.getNamespacePrefix( PentahoJcrConstants.PHO_NS ) + ":"; //$NON-NLS-1$
@@ -20,31 +20,53 @@
 
 package org.pentaho.platform.repository2.unified.jcr.transform;
 
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.io.input.CountingInputStream;
+import org.apache.commons.lang.ObjectUtils;
 import org.pentaho.platform.api.repository2.unified.IRepositoryFileData;
 import org.pentaho.platform.api.repository2.unified.data.simple.SimpleRepositoryFileData;
+import org.pentaho.platform.repository2.unified.jcr.IContentHashingTransformer;
 import org.pentaho.platform.repository2.unified.jcr.ITransformer;
+import org.pentaho.platform.repository2.unified.jcr.JcrRepositoryFileUtils;
 import org.pentaho.platform.repository2.unified.jcr.PentahoJcrConstants;
 import org.springframework.util.StringUtils;
 
+import javax.jcr.Binary;
 import javax.jcr.Node;
 import javax.jcr.RepositoryException;
 import javax.jcr.Session;
+import java.io.IOException;
 import java.io.InputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Calendar;
 
 /**
- * An {@link ITransformer} that can read and write {@code nt:resource} nodes.
+ * An {@link ITransformer} that can read and write {@code nt:resource} nodes. A SHA-256 hash of the binary is stored
+ * in the file metadata on every write so that unchanged content can be detected on update.
  * 
  * @author mlowery
  */
-public class SimpleRepositoryFileDataTransformer implements ITransformer<SimpleRepositoryFileData> {
+public class SimpleRepositoryFileDataTransformer implements IContentHashingTransformer<SimpleRepositoryFileData> {
 
   // ~ Static fields/initializers
   // ======================================================================================
 
+  private static final String HASH_ALGORITHM = "SHA-256"; //$NON-NLS-1$
+
+  private static final int BUFFER_SIZE = 8192;
+
+  /**
+   * Largest content compared before an update, since a buffered stream keeps everything read past its mark in memory.
+   */
+  public static final int DEFAULT_MAX_COMPARED_SIZE = 16 * 1024 * 1024;
+
   // ~ Instance fields
   // =================================================================================================
 
+  private int maxComparedSize = DEFAULT_MAX_COMPARED_SIZE;
+
   // ~ Constructors
   // ====================================================================================================
 
@@ -55,6 +77,18 @@ public class SimpleRepositoryFileDataTransformer implements ITransformer<SimpleR
   // ~ Methods
   // =========================================================================================================
 
+  public int getMaxComparedSize() {
+    return maxComparedSize;
+  }
+
+  /**
+   * Sets the size in bytes above which incoming content is not compared with the stored content but written as a new
+   * version, so that comparing never buffers more than this much of a stream.
+   */
+  public void setMaxComparedSize( final int maxComparedSize ) {
+    this.maxComparedSize = maxComparedSize;
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -92,9 +126,14 @@ public class SimpleRepositoryFileDataTransformer implements ITransformer<SimpleR
     if ( StringUtils.hasText( data.getEncoding() ) ) {
       resourceNode.setProperty( pentahoJcrConstants.getJCR_ENCODING(), data.getEncoding() );
     }
+    CountingInputStream countingStream = new CountingInputStream( data.getStream() );
+    DigestInputStream digestStream = new DigestInputStream( countingStream, newMessageDigest() );
     resourceNode.setProperty( pentahoJcrConstants.getJCR_DATA(), session.getValueFactory().createBinary(
-        data.getStream() ) );
+        digestStream ) );
     resourceNode.setProperty( pentahoJcrConstants.getJCR_MIMETYPE(), data.getMimeType() );
+    JcrRepositoryFileUtils.setContentHash( session, pentahoJcrConstants, fileNode, toHex( digestStream ) );
+    // available() on the incoming stream is only an estimate; record the number of bytes actually stored
+    fileNode.setProperty( pentahoJcrConstants.getPHO_FILESIZE(), countingStream.getByteCount() );
   }
 
   /**
@@ -107,9 +146,10 @@ public class SimpleRepositoryFileDataTransformer implements ITransformer<SimpleR
     if ( resourceNode.hasProperty( pentahoJcrConstants.getJCR_ENCODING() ) ) {
       encoding = resourceNode.getProperty( pentahoJcrConstants.getJCR_ENCODING() ).getString();
     }
-    InputStream data = resourceNode.getProperty( pentahoJcrConstants.getJCR_DATA() ).getBinary().getStream();
+    Binary binary = resourceNode.getProperty( pentahoJcrConstants.getJCR_DATA() ).getBinary();
     String mimeType = resourceNode.getProperty( pentahoJcrConstants.getJCR_MIMETYPE() ).getString();
-    return new SimpleRepositoryFileData( data, encoding, mimeType );
+    // the size of the stored binary is exact, unlike pho:fileSize on files written before it was counted
+    return new SimpleRepositoryFileData( binary.getStream(), encoding, mimeType, binary.getSize() );
   }
 
   /**
@@ -125,9 +165,89 @@ public class SimpleRepositoryFileDataTransformer implements ITransformer<SimpleR
     if ( StringUtils.hasText( data.getEncoding() ) ) {
       resourceNode.setProperty( pentahoJcrConstants.getJCR_ENCODING(), data.getEncoding() );
     }
+    CountingInputStream countingStream = new CountingInputStream( data.getInputStream() );
+    DigestInputStream digestStream = new DigestInputStream( countingStream, newMessageDigest() );
     resourceNode.setProperty( pentahoJcrConstants.getJCR_DATA(), session.getValueFactory().createBinary(
-        data.getInputStream() ) );
+        digestStream ) );
     resourceNode.setProperty( pentahoJcrConstants.getJCR_MIMETYPE(), data.getMimeType() );
+    JcrRepositoryFileUtils.setContentHash( session, pentahoJcrConstants, fileNode, toHex( digestStream ) );
+    // available() on the incoming stream is only an estimate; record the number of bytes actually stored
+    fileNode.setProperty( pentahoJcrConstants.getPHO_FILESIZE(), countingStream.getByteCount() );
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * Only streams that support {@link InputStream#mark(int)} are hashed up front; any other stream is reported as
+   * changed so that it is consumed exactly once by {@link #updateContentNode}. Content larger than
+   * {@link #getMaxComparedSize()} is reported as changed too, without reading more than that much of it.
+   */
+  public boolean isContentUnchanged( final Session session, final PentahoJcrConstants pentahoJcrConstants,
+      final SimpleRepositoryFileData data, final Node fileNode ) throws RepositoryException {
+    InputStream stream = data.getInputStream();
+    if ( stream == null || !stream.markSupported() ) {
+      return false;
+    }
+    String storedHash = JcrRepositoryFileUtils.getContentHash( session, pentahoJcrConstants, fileNode );
+    if ( storedHash == null ) {
+      return false;
+    }
+    if ( fileNode.hasProperty( pentahoJcrConstants.getPHO_FILESIZE() )
+        && fileNode.getProperty( pentahoJcrConstants.getPHO_FILESIZE() ).getLong() > maxComparedSize ) {
+      // identical content would not fit either
+      return false;
+    }
+    Node resourceNode = fileNode.getNode( pentahoJcrConstants.getJCR_CONTENT() );
+    if ( !ObjectUtils.equals( data.getMimeType(), resourceNode.getProperty( pentahoJcrConstants.getJCR_MIMETYPE() )
+        .getString() ) ) {
+      return false;
+    }
+    if ( StringUtils.hasText( data.getEncoding() ) ) {
+      if ( !resourceNode.hasProperty( pentahoJcrConstants.getJCR_ENCODING() )
+          || !data.getEncoding().equals( resourceNode.getProperty( pentahoJcrConstants.getJCR_ENCODING() )
+              .getString() ) ) {
+        return false;
+      }
+    }
+
+    // reading one byte past the limit tells a stream of exactly maxComparedSize bytes from a larger one
+    stream.mark( maxComparedSize < Integer.MAX_VALUE ? maxComparedSize + 1 : Integer.MAX_VALUE );
+    try {
+      DigestInputStream digestStream = new DigestInputStream( stream, newMessageDigest() );
+      byte[] buffer = new byte[BUFFER_SIZE];
+      long read = 0;
+      int count;
+      while ( ( count = digestStream.read( buffer, 0, (int) Math.min( BUFFER_SIZE, maxComparedSize + 1L - read ) ) )
+          > 0 ) {
+        // digest is updated as a side effect of reading
+        read += count;
+        if ( read > maxComparedSize ) {
+          return false;
+        }
+      }
+      return storedHash.equals( toHex( digestStream ) );
+    } catch ( IOException e ) {
+      throw new RepositoryException( e );
+    } finally {
+      try {
+        stream.reset();
+      } catch ( IOException e ) {
+        throw new RepositoryException( e );
+      }
+    }
+  }
+
+  private static MessageDigest newMessageDigest() {
+    try {
+      return MessageDigest.getInstance( HASH_ALGORITHM );
+    } catch ( NoSuchAlgorithmException e ) {
+      // every JRE is required to provide SHA-256
+      throw new IllegalStateException( e );
+    }
+  }
+
+  private static String toHex( final DigestInputStream digestStream ) {
+    return new String( Hex.encodeHex( digestStream.getMessageDigest().digest() ) );
   }
 
 }
@@ -20,6 +20,8 @@
 
 package org.pentaho.platform.repository2.unified.lifecycle;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import org.apache.jackrabbit.api.JackrabbitWorkspace;
 import org.apache.jackrabbit.api.security.authorization.PrivilegeManager;
 import org.pentaho.platform.api.engine.IPentahoObjectFactory;
@@ -60,6 +62,12 @@ import javax.jcr.security.AccessControlException;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Default {@link IBackingRepositoryLifecycleManager} implementation.
@@ -68,6 +76,10 @@ import java.util.List;
  * <strong> Note: You must be careful when changing, overriding, or substituting this class. The configuration of
  * {@code DefaultPentahoJackrabbitAccessControlHelper} depends on the behavior of this class. </strong>
  * </p>
+ * <p>
+ * Users whose home folder has been checked are remembered for {@code initializedUsersExpireSeconds}, so that later
+ * logins skip the repository entirely, and concurrent logins of the same user share one check.
+ * </p>
  * 
  * @author mlowery
  */
@@ -76,6 +88,10 @@ public class DefaultBackingRepositoryLifecycleManager extends AbstractBackingRep
   // ~ Static fields/initializers
   // ======================================================================================
 
+  public static final long DEFAULT_INITIALIZED_USERS_MAX_ENTRIES = 10000;
+
+  public static final long DEFAULT_INITIALIZED_USERS_EXPIRE_SECONDS = 3600;
+
   // ~ Instance fields
   // =================================================================================================
   IUserRoleDao userRoleDao;
@@ -100,6 +116,21 @@ public class DefaultBackingRepositoryLifecycleManager extends AbstractBackingRep
 
   private IPasswordService passwordService;
 
+  private long initializedUsersMaxEntries = DEFAULT_INITIALIZED_USERS_MAX_ENTRIES;
+
+  private long initializedUsersExpireSeconds = DEFAULT_INITIALIZED_USERS_EXPIRE_SECONDS;
+
+  /**
+   * Tenant and user names whose home folder is known to exist.
+   */
+  private volatile Cache<String, Boolean> initializedUsers = buildInitializedUsers();
+
+  /**
+   * Home folder checks in progress, so that concurrent logins of one user wait for the same check.
+   */
+  private final ConcurrentMap<String, FutureTask<Void>> pendingUsers =
+      new ConcurrentHashMap<String, FutureTask<Void>>();
+
   // ~ Constructors
   // ====================================================================================================
 
@@ -140,12 +171,86 @@ public class DefaultBackingRepositoryLifecycleManager extends AbstractBackingRep
   }
 
   @Override
-  public synchronized void newUser( final ITenant tenant, final String username ) {
+  public void newUser( final ITenant tenant, final String username ) {
+    final String key = ( tenant != null ? tenant.getId() : "" ) + "/" + username; //$NON-NLS-1$ //$NON-NLS-2$
+    if ( initializedUsers.getIfPresent( key ) != null ) {
+      return;
+    }
+    FutureTask<Void> task = new FutureTask<Void>( new Callable<Void>() {
+      @Override
+      public Void call() throws Exception {
+        ensureUserHomeFolder( tenant, username );
+        initializedUsers.put( key, Boolean.TRUE );
+        return null;
+      }
+    } );
+    FutureTask<Void> pending = pendingUsers.putIfAbsent( key, task );
+    if ( pending == null ) {
+      try {
+        task.run();
+      } finally {
+        pendingUsers.remove( key, task );
+      }
+      pending = task;
+    }
+    try {
+      pending.get();
+    } catch ( InterruptedException e ) {
+      Thread.currentThread().interrupt();
+    } catch ( ExecutionException e ) {
+      if ( e.getCause() instanceof RuntimeException ) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new RuntimeException( e.getCause() );
+    }
+  }
+
+  /**
+   * Creates the home folder of the user unless it exists.
+   */
+  protected void ensureUserHomeFolder( final ITenant tenant, final String username ) {
     if ( getTenantManager().getUserHomeFolder( tenant, username ) == null ) {
       getTenantManager().createUserHomeFolder( tenant, username );
     }
   }
 
+  /**
+   * Forgets which users have been initialized, so that their home folders are checked again at their next login.
+   */
+  public void clearInitializedUsers() {
+    initializedUsers.invalidateAll();
+  }
+
+  public long getInitializedUsersMaxEntries() {
+    return initializedUsersMaxEntries;
+  }
+
+  /**
+   * Sets how many initialized users are remembered; 0 checks the home folder at every login.
+   */
+  public void setInitializedUsersMaxEntries( final long initializedUsersMaxEntries ) {
+    this.initializedUsersMaxEntries = initializedUsersMaxEntries;
+    this.initializedUsers = buildInitializedUsers();
+  }
+
+  public long getInitializedUsersExpireSeconds() {
+    return initializedUsersExpireSeconds;
+  }
+
+  /**
+   * Sets after how many seconds an initialized user's home folder is checked again, e.g. after the user was deleted
+   * and created again.
+   */
+  public void setInitializedUsersExpireSeconds( final long initializedUsersExpireSeconds ) {
+    this.initializedUsersExpireSeconds = initializedUsersExpireSeconds;
+    this.initializedUsers = buildInitializedUsers();
+  }
+
+  private Cache<String, Boolean> buildInitializedUsers() {
+    return CacheBuilder.newBuilder().maximumSize( Math.max( initializedUsersMaxEntries, 0 ) ).expireAfterWrite(
+        Math.max( initializedUsersExpireSeconds, 0 ), TimeUnit.SECONDS ).build();
+  }
+
   @Override
   public void newTenant() {
     newTenant( JcrTenantUtils.getTenant() );
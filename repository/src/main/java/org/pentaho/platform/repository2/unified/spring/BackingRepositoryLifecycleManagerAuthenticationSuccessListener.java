@@ -25,6 +25,7 @@ import org.apache.commons.logging.LogFactory;
 import org.pentaho.platform.api.engine.ISecurityHelper;
 import org.pentaho.platform.api.repository2.unified.IBackingRepositoryLifecycleManager;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
+import org.pentaho.platform.engine.core.system.ReadReplicaMode;
 import org.pentaho.platform.engine.security.SecurityHelper;
 import org.pentaho.platform.repository2.unified.jcr.JcrTenantUtils;
 import org.springframework.context.ApplicationEvent;
@@ -69,7 +70,8 @@ public class BackingRepositoryLifecycleManagerAuthenticationSuccessListener impl
   // =========================================================================================================
 
   public void onApplicationEvent( final ApplicationEvent event ) {
-    if ( event instanceof AuthenticationSuccessEvent || event instanceof InteractiveAuthenticationSuccessEvent ) {
+    if ( ( event instanceof AuthenticationSuccessEvent || event instanceof InteractiveAuthenticationSuccessEvent )
+        && !ReadReplicaMode.isEnabled() ) {
       logger.debug( "received AbstractAuthenticationEvent" ); //$NON-NLS-1$
 
       // Get the lifecycle manager for this event
@@ -106,6 +106,14 @@ public class DefaultUnifiedRepositoryWebService implements IUnifiedRepositoryWeb
     return marshalFiles( repo.getChildren( repositoryRequest ), repositoryRequest );
   }
 
+  /**
+   * Returns the children for {@code repositoryRequest} without converting them to DTOs, for callers that write them
+   * out themselves.
+   */
+  public List<RepositoryFile> getRepositoryFileChildren( RepositoryRequest repositoryRequest ) {
+    return repo.getChildren( repositoryRequest );
+  }
+
   @Deprecated
   public List<RepositoryFileDto> getChildren( String folderId ) {
     return getChildrenWithFilter( folderId, null );
@@ -172,6 +180,16 @@ public class DefaultUnifiedRepositoryWebService implements IUnifiedRepositoryWeb
   }
 
   public RepositoryFileTreeDto getTreeFromRequest( final RepositoryRequest repositoryRequest ) {
+    RepositoryFileTree tree = getRepositoryFileTree( repositoryRequest );
+
+    return new RepositoryFileTreeAdapter( repositoryRequest ).marshal( tree );
+  }
+
+  /**
+   * Returns the tree for {@code repositoryRequest} without converting it to DTOs, for callers that write it out
+   * themselves. System folders are left out for non-admin users, as in {@link #getTreeFromRequest(RepositoryRequest)}.
+   */
+  public RepositoryFileTree getRepositoryFileTree( final RepositoryRequest repositoryRequest ) {
     // RepositoryFileTree tree = repo.getTree( path, depth, filter, showHidden );
     IAuthorizationPolicy policy = PentahoSystem.get( IAuthorizationPolicy.class );
     boolean isAdmin = policy.isAllowed( AdministerSecurityAction.NAME );
@@ -181,9 +199,7 @@ public class DefaultUnifiedRepositoryWebService implements IUnifiedRepositoryWeb
       repositoryRequest.setIncludeSystemFolders( false ); //Non Admin users can never get system folders
       getLogger().warn( "User does not have administrator privileges; setting includeSystemFolders to false." );
     }
-    RepositoryFileTree tree = repo.getTree( repositoryRequest );
-
-    return new RepositoryFileTreeAdapter( repositoryRequest ).marshal( tree );
+    return repo.getTree( repositoryRequest );
   }
 
   protected List<RepositoryFileDto> marshalFiles( List<RepositoryFile> files ) {
@@ -241,6 +257,14 @@ public class DefaultUnifiedRepositoryWebService implements IUnifiedRepositoryWeb
     return marshalFiles( repo.getDeletedFiles() );
   }
 
+  /**
+   * One page of the deleted files of all users, most recently deleted first. Not part of the SOAP contract; non
+   * administrators only get their own deleted files.
+   */
+  public List<RepositoryFileDto> getAllDeletedFiles( int offset, int limit ) {
+    return marshalFiles( repo.getAllDeletedFiles( offset, limit ) );
+  }
+
   public List<RepositoryFileDto> getDeletedFilesInFolder( String folderPath ) {
     return marshalFiles( repo.getDeletedFiles( folderPath ) );
   }
@@ -88,7 +88,7 @@ public class RepositoryFileAdapter extends XmlAdapter<RepositoryFileDto, Reposit
     return toFileDto( repositoryFileTree, membersSet, exclude, includeAcls );
   }
 
-  private static boolean include( String key, Set<String> set, boolean exclude ) {
+  static boolean include( String key, Set<String> set, boolean exclude ) {
     return !exclude && ( set == null || set.contains( key ) ) || ( exclude && !set.contains( key ) );
   }
 
@@ -295,7 +295,8 @@ public class RepositoryFileAdapter extends XmlAdapter<RepositoryFileDto, Reposit
       .lockDate( unmarshalDate( v.getLockDate() ) ).locked( v.isLocked() ).lockMessage( v.getLockMessage() ).lockOwner( v.getLockOwner() )
       .title( v.getTitle() ).versioned( v.isVersioned() ).versionId( v.getVersionId() ).originalParentFolderPath(
             v.getOriginalParentFolderPath() ).deletedDate( unmarshalDate( v.getDeletedDate() ) ).hidden( v.isHidden() ).schedulable( !v
-                .isNotSchedulable() ).aclNode( v.isAclNode() ).build();
+                .isNotSchedulable() ).aclNode( v.isAclNode() ).interner( JcrRepositoryFileUtils.getFileInterner() )
+      .build();
   }
 
   public static Date unmarshalDate( String date ) {
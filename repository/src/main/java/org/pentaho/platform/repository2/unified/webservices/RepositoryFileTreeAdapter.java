@@ -63,7 +63,7 @@ public class RepositoryFileTreeAdapter extends XmlAdapter<RepositoryFileTreeDto,
 
     RepositoryFileDto file = RepositoryFileAdapter.toFileDto( v, membersSet, exclude, includeAcls );
     if ( file != null ) {
-      treeDto.setFile( RepositoryFileAdapter.toFileDto( v, membersSet, exclude, includeAcls ) );
+      treeDto.setFile( file );
       List<RepositoryFileTreeDto> children = null;
       if ( v.getChildren() != null ) {
         children = new ArrayList<RepositoryFileTreeDto>();
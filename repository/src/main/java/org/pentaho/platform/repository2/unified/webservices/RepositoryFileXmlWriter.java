@@ -0,0 +1,401 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.repository2.unified.webservices;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+import org.pentaho.platform.api.repository2.unified.IRepositoryVersionManager;
+import org.pentaho.platform.api.repository2.unified.RepositoryFile;
+import org.pentaho.platform.api.repository2.unified.RepositoryFileTree;
+import org.pentaho.platform.api.repository2.unified.RepositoryRequest;
+import org.pentaho.platform.repository2.unified.jcr.JcrRepositoryFileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes {@code RepositoryFile} listings and trees straight to XML, producing the same document JAXB produces for the
+ * {@link RepositoryFileDto} and {@link RepositoryFileTreeDto} built by {@link RepositoryFileAdapter} and
+ * {@link RepositoryFileTreeAdapter}, without building the DTO graph first. Member filters are honoured the same way;
+ * ACLs are not supported, callers that need them use the adapters.
+ *
+ * <p>
+ * Elements are written in the order JAXB uses for the DTOs, which is the alphabetical order of their properties. A
+ * file that can no longer be read is left out, like the adapters leave out its DTO.
+ * </p>
+ */
+public class RepositoryFileXmlWriter {
+
+  private static final Logger logger = LoggerFactory.getLogger( RepositoryFileXmlWriter.class );
+
+  private static final String XML_DECLARATION =
+      "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>"; //$NON-NLS-1$
+
+  private final Set<String> membersSet;
+
+  private final boolean exclude;
+
+  private final Comparator<String> titleOrder;
+
+  private final IRepositoryVersionManager repositoryVersionManager;
+
+  /**
+   * @param repositoryRequest the request the files were read with; its member filter applies
+   * @param titleOrder        order of siblings by title, or {@code null} to keep the order of the repository
+   */
+  public RepositoryFileXmlWriter( final RepositoryRequest repositoryRequest, final Comparator<String> titleOrder ) {
+    if ( repositoryRequest.getExcludeMemberSet() != null && !repositoryRequest.getExcludeMemberSet().isEmpty() ) {
+      this.exclude = true;
+      this.membersSet = repositoryRequest.getExcludeMemberSet();
+    } else {
+      this.exclude = false;
+      this.membersSet = repositoryRequest.getIncludeMemberSet();
+    }
+    this.titleOrder = titleOrder;
+    this.repositoryVersionManager = findRepositoryVersionManager();
+  }
+
+  public static Logger getLogger() {
+    return logger;
+  }
+
+  private static IRepositoryVersionManager findRepositoryVersionManager() {
+    try {
+      return JcrRepositoryFileUtils.getRepositoryVersionManager();
+    } catch ( NoClassDefFoundError ex ) {
+      // running outside of the platform (Spoon), versioning flags are not populated
+      return null;
+    }
+  }
+
+  /**
+   * Writes {@code tree} as a {@code repositoryFileTreeDto} document. Nothing is written when the root file can no
+   * longer be read.
+   */
+  public void writeTree( final RepositoryFileTree tree, final Writer out ) throws IOException {
+    FileValues root = tree != null ? read( tree ) : null;
+    if ( root != null ) {
+      out.write( XML_DECLARATION );
+      writeTree( "repositoryFileTreeDto", root, out ); //$NON-NLS-1$
+    }
+    out.flush();
+  }
+
+  /**
+   * Writes {@code files} as a {@code repositoryFileDtoes} document, the form used for lists of files.
+   */
+  public void writeFiles( final List<RepositoryFile> files, final Writer out ) throws IOException {
+    List<FileValues> values = new ArrayList<FileValues>( files.size() );
+    for ( RepositoryFile file : files ) {
+      FileValues fileValues = read( file, null );
+      if ( fileValues != null ) {
+        values.add( fileValues );
+      }
+    }
+    sort( values );
+    out.write( XML_DECLARATION );
+    out.write( "<repositoryFileDtoes>" ); //$NON-NLS-1$
+    for ( FileValues fileValues : values ) {
+      writeFile( "repositoryFileDto", fileValues, out ); //$NON-NLS-1$
+    }
+    out.write( "</repositoryFileDtoes>" ); //$NON-NLS-1$
+    out.flush();
+  }
+
+  private void writeTree( final String element, final FileValues node, final Writer out ) throws IOException {
+    startElement( element, out );
+    List<RepositoryFileTree> children = node.tree.getChildren();
+    if ( children != null && !children.isEmpty() ) {
+      // only the siblings of the current path are held, the subtrees are read as they are written
+      List<FileValues> childValues = new ArrayList<FileValues>( children.size() );
+      for ( RepositoryFileTree child : children ) {
+        FileValues fileValues = read( child );
+        if ( fileValues != null ) {
+          childValues.add( fileValues );
+        }
+      }
+      sort( childValues );
+      for ( FileValues child : childValues ) {
+        writeTree( "children", child, out ); //$NON-NLS-1$
+      }
+    }
+    writeFile( "file", node, out ); //$NON-NLS-1$
+    endElement( element, out );
+  }
+
+  private void sort( final List<FileValues> values ) {
+    if ( titleOrder != null && values.size() > 1 ) {
+      Collections.sort( values, new Comparator<FileValues>() {
+        @Override
+        public int compare( final FileValues first, final FileValues second ) {
+          return titleOrder.compare( first.title, second.title );
+        }
+      } );
+    }
+  }
+
+  private FileValues read( final RepositoryFileTree tree ) {
+    return read( tree.getFile(), tree );
+  }
+
+  /**
+   * Reads the values {@link RepositoryFileAdapter#toFileDto(RepositoryFile, Set, boolean, boolean)} would copy into
+   * the DTO, before anything is written, so that a file that disappears half way is skipped as a whole.
+   */
+  private FileValues read( final RepositoryFile v, final RepositoryFileTree tree ) {
+    if ( v == null ) {
+      return null;
+    }
+    FileValues f = new FileValues();
+    f.tree = tree;
+    try {
+      if ( include( "name" ) ) { //$NON-NLS-1$
+        f.name = v.getName();
+      }
+      if ( include( "path" ) ) { //$NON-NLS-1$
+        f.path = v.getPath();
+      }
+      if ( include( "hidden" ) ) { //$NON-NLS-1$
+        f.hidden = v.isHidden();
+      }
+      if ( include( "aclNode" ) ) { //$NON-NLS-1$
+        f.aclNode = v.isAclNode();
+      }
+      if ( include( "createDate" ) ) { //$NON-NLS-1$
+        f.createdDate = RepositoryFileAdapter.marshalDate( v.getCreatedDate() );
+      }
+      if ( include( "creatorId" ) ) { //$NON-NLS-1$
+        f.creatorId = v.getCreatorId();
+      }
+      if ( include( "fileSize" ) ) { //$NON-NLS-1$
+        f.fileSize = v.getFileSize();
+      }
+      if ( include( "description" ) ) { //$NON-NLS-1$
+        f.description = v.getDescription();
+      }
+      if ( include( "folder" ) ) { //$NON-NLS-1$
+        f.folder = v.isFolder();
+      }
+      // the id is always present, like in the adapter
+      Serializable id = v.getId();
+      if ( id != null ) {
+        f.id = id.toString();
+      }
+      if ( include( "lastModifiedDate" ) ) { //$NON-NLS-1$
+        f.lastModifiedDate = RepositoryFileAdapter.marshalDate( v.getLastModifiedDate() );
+      }
+      if ( include( "locale" ) ) { //$NON-NLS-1$
+        f.locale = v.getLocale();
+      }
+      if ( include( "originalParentFolderPath" ) ) { //$NON-NLS-1$
+        f.originalParentFolderPath = v.getOriginalParentFolderPath();
+      }
+      if ( include( "deletedDate" ) ) { //$NON-NLS-1$
+        f.deletedDate = RepositoryFileAdapter.marshalDate( v.getDeletedDate() );
+      }
+      if ( include( "lockDate" ) ) { //$NON-NLS-1$
+        f.lockDate = RepositoryFileAdapter.marshalDate( v.getLockDate() );
+      }
+      if ( include( "locked" ) ) { //$NON-NLS-1$
+        f.locked = v.isLocked();
+      }
+      if ( include( "lockMessage" ) ) { //$NON-NLS-1$
+        f.lockMessage = v.getLockMessage();
+      }
+      if ( include( "lockOwner" ) ) { //$NON-NLS-1$
+        f.lockOwner = v.getLockOwner();
+      }
+      if ( include( "title" ) ) { //$NON-NLS-1$
+        f.title = v.getTitle();
+      }
+      if ( include( "versioned" ) ) { //$NON-NLS-1$
+        f.versioned = v.isVersioned();
+      }
+      if ( include( "versionId" ) && v.getVersionId() != null ) { //$NON-NLS-1$
+        f.versionId = v.getVersionId().toString();
+      }
+    } catch ( NullPointerException e ) {
+      getLogger().warn( "NullPointerException while reading file attributes, skipping the file. Probable cause: File "
+        + "does not exist anymore" );
+      return null;
+    }
+
+    if ( include( "locales" ) ) { //$NON-NLS-1$
+      f.localePropertiesMap = v.getLocalePropertiesMap();
+    }
+
+    if ( repositoryVersionManager != null ) {
+      if ( include( "versioningEnabled" ) ) { //$NON-NLS-1$
+        f.versioningEnabled = repositoryVersionManager.isVersioningEnabled( v.getPath() );
+      }
+      if ( include( "versionCommentEnabled" ) ) { //$NON-NLS-1$
+        f.versionCommentEnabled = repositoryVersionManager.isVersionCommentEnabled( v.getPath() );
+      }
+    }
+    return f;
+  }
+
+  private boolean include( final String key ) {
+    return RepositoryFileAdapter.include( key, membersSet, exclude );
+  }
+
+  private void writeFile( final String element, final FileValues f, final Writer out ) throws IOException {
+    startElement( element, out );
+    writeElement( "aclNode", f.aclNode, out ); //$NON-NLS-1$
+    writeElement( "createdDate", f.createdDate, out ); //$NON-NLS-1$
+    writeElement( "creatorId", f.creatorId, out ); //$NON-NLS-1$
+    writeElement( "deletedDate", f.deletedDate, out ); //$NON-NLS-1$
+    writeElement( "description", f.description, out ); //$NON-NLS-1$
+    writeElement( "fileSize", Long.toString( f.fileSize ), out ); //$NON-NLS-1$
+    writeElement( "folder", f.folder, out ); //$NON-NLS-1$
+    writeElement( "hidden", f.hidden, out ); //$NON-NLS-1$
+    writeElement( "id", f.id, out ); //$NON-NLS-1$
+    writeElement( "lastModifiedDate", f.lastModifiedDate, out ); //$NON-NLS-1$
+    writeElement( "locale", f.locale, out ); //$NON-NLS-1$
+    if ( f.localePropertiesMap != null ) {
+      for ( Map.Entry<String, Properties> entry : f.localePropertiesMap.entrySet() ) {
+        startElement( "localePropertiesMapEntries", out ); //$NON-NLS-1$
+        writeElement( "locale", entry.getKey(), out ); //$NON-NLS-1$
+        Properties properties = entry.getValue();
+        if ( properties != null ) {
+          for ( String propertyName : properties.stringPropertyNames() ) {
+            startElement( "properties", out ); //$NON-NLS-1$
+            writeElement( "key", propertyName, out ); //$NON-NLS-1$
+            writeElement( "value", properties.getProperty( propertyName ), out ); //$NON-NLS-1$
+            endElement( "properties", out ); //$NON-NLS-1$
+          }
+        }
+        endElement( "localePropertiesMapEntries", out ); //$NON-NLS-1$
+      }
+    }
+    writeElement( "lockDate", f.lockDate, out ); //$NON-NLS-1$
+    writeElement( "lockMessage", f.lockMessage, out ); //$NON-NLS-1$
+    writeElement( "lockOwner", f.lockOwner, out ); //$NON-NLS-1$
+    writeElement( "locked", f.locked, out ); //$NON-NLS-1$
+    writeElement( "name", f.name, out ); //$NON-NLS-1$
+    // never set by the adapter, the DTO default is written
+    writeElement( "notSchedulable", !RepositoryFile.SCHEDULABLE_BY_DEFAULT, out ); //$NON-NLS-1$
+    writeElement( "originalParentFolderPath", f.originalParentFolderPath, out ); //$NON-NLS-1$
+    writeElement( "ownerType", "-1", out ); //$NON-NLS-1$ //$NON-NLS-2$
+    writeElement( "path", f.path, out ); //$NON-NLS-1$
+    writeElement( "title", f.title, out ); //$NON-NLS-1$
+    writeElement( "versionCommentEnabled", f.versionCommentEnabled, out ); //$NON-NLS-1$
+    writeElement( "versionId", f.versionId, out ); //$NON-NLS-1$
+    writeElement( "versioned", f.versioned, out ); //$NON-NLS-1$
+    writeElement( "versioningEnabled", f.versioningEnabled, out ); //$NON-NLS-1$
+    endElement( element, out );
+  }
+
+  private static void startElement( final String name, final Writer out ) throws IOException {
+    out.write( '<' );
+    out.write( name );
+    out.write( '>' );
+  }
+
+  private static void endElement( final String name, final Writer out ) throws IOException {
+    out.write( "</" ); //$NON-NLS-1$
+    out.write( name );
+    out.write( '>' );
+  }
+
+  private static void writeElement( final String name, final Boolean value, final Writer out ) throws IOException {
+    if ( value != null ) {
+      writeElement( name, value.booleanValue() ? "true" : "false", out ); //$NON-NLS-1$ //$NON-NLS-2$
+    }
+  }
+
+  private static void writeElement( final String name, final String value, final Writer out ) throws IOException {
+    if ( value == null ) {
+      return;
+    }
+    startElement( name, out );
+    writeText( value, out );
+    endElement( name, out );
+  }
+
+  /**
+   * Escapes text the way the JAXB reference implementation does for element content.
+   */
+  static void writeText( final String value, final Writer out ) throws IOException {
+    int start = 0;
+    int length = value.length();
+    for ( int i = 0; i < length; i++ ) {
+      String replacement;
+      switch ( value.charAt( i ) ) {
+        case '&':
+          replacement = "&amp;"; //$NON-NLS-1$
+          break;
+        case '<':
+          replacement = "&lt;"; //$NON-NLS-1$
+          break;
+        case '>':
+          replacement = "&gt;"; //$NON-NLS-1$
+          break;
+        default:
+          continue;
+      }
+      out.write( value, start, i - start );
+      out.write( replacement );
+      start = i + 1;
+    }
+    out.write( value, start, length - start );
+  }
+
+  /**
+   * The values of one file, read up front. Only the siblings on the path being written are held at any time.
+   */
+  private static final class FileValues {
+    private RepositoryFileTree tree;
+    private String name;
+    private String path;
+    private boolean hidden;
+    private boolean aclNode;
+    private String createdDate;
+    private String creatorId;
+    private long fileSize;
+    private String description;
+    private boolean folder;
+    private String id;
+    private String lastModifiedDate;
+    private String locale;
+    private String originalParentFolderPath;
+    private String deletedDate;
+    private String lockDate;
+    private boolean locked;
+    private String lockMessage;
+    private String lockOwner;
+    private String title;
+    private boolean versioned;
+    private String versionId;
+    private Map<String, Properties> localePropertiesMap;
+    private Boolean versioningEnabled;
+    private Boolean versionCommentEnabled;
+  }
+
+}
@@ -27,9 +27,11 @@ import org.pentaho.platform.api.repository2.unified.webservices.RepositoryFileAc
 import org.pentaho.platform.api.repository2.unified.webservices.RepositoryFileDto;
 
 import javax.jws.WebService;
+import javax.xml.ws.soap.MTOM;
 import java.util.ArrayList;
 import java.util.List;
 
+@MTOM
 @WebService(
     endpointInterface = "org.pentaho.platform.repository2.unified.webservices.jaxws.IUnifiedRepositoryJaxwsWebService",
     serviceName = "unifiedRepository", portName = "unifiedRepositoryPort",
@@ -30,6 +30,10 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.Properties;
 
+import javax.xml.ws.Binding;
+import javax.xml.ws.BindingProvider;
+import javax.xml.ws.soap.SOAPBinding;
+
 import org.pentaho.platform.api.locale.IPentahoLocale;
 import org.pentaho.platform.api.repository2.unified.IRepositoryFileData;
 import org.pentaho.platform.api.repository2.unified.IUnifiedRepository;
@@ -56,6 +60,8 @@ import org.pentaho.platform.repository2.unified.webservices.VersionSummaryAdapte
 import org.pentaho.platform.api.repository2.unified.webservices.VersionSummaryDto;
 import org.springframework.util.Assert;
 
+import com.sun.xml.ws.developer.JAXWSProperties;
+
 /**
  * Converts calls to {@link IUnifiedRepository} into {@link IUnifiedRepositoryWebService}. This is how client code
  * remains unaware of server code location.
@@ -64,6 +70,11 @@ import org.springframework.util.Assert;
  */
 public class UnifiedRepositoryToWebServiceAdapter implements IUnifiedRepository {
 
+  /**
+   * Chunk size used to stream request bodies when the port does not set one.
+   */
+  public static final int DEFAULT_STREAMING_CHUNK_SIZE = 8192;
+
   private volatile List<Character> cachedReservedChars; // make sure threads see up-to-date value
 
   private IUnifiedRepositoryJaxwsWebService repoWebService;
@@ -83,6 +94,27 @@ public class UnifiedRepositoryToWebServiceAdapter implements IUnifiedRepository
   public UnifiedRepositoryToWebServiceAdapter( IUnifiedRepositoryJaxwsWebService repoWebService ) {
     super();
     this.repoWebService = repoWebService;
+    enableStreaming( repoWebService );
+  }
+
+  /**
+   * Sends and receives file data as MTOM attachments instead of inline base64, and streams request bodies in chunks
+   * so that the HTTP client does not buffer a whole publish in memory to compute its length. Ports that are not JAX-WS
+   * proxies are left alone.
+   */
+  static void enableStreaming( final Object port ) {
+    if ( !( port instanceof BindingProvider ) ) {
+      return;
+    }
+    BindingProvider bindingProvider = (BindingProvider) port;
+    Map<String, Object> requestContext = bindingProvider.getRequestContext();
+    if ( !requestContext.containsKey( JAXWSProperties.HTTP_CLIENT_STREAMING_CHUNK_SIZE ) ) {
+      requestContext.put( JAXWSProperties.HTTP_CLIENT_STREAMING_CHUNK_SIZE, DEFAULT_STREAMING_CHUNK_SIZE );
+    }
+    Binding binding = bindingProvider.getBinding();
+    if ( binding instanceof SOAPBinding ) {
+      ( (SOAPBinding) binding ).setMTOMEnabled( true );
+    }
   }
 
   @Override
@@ -0,0 +1,168 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.repository2.unified;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.platform.api.engine.IPentahoSession;
+import org.pentaho.platform.api.engine.ISystemSettings;
+import org.pentaho.platform.api.repository2.unified.IRepositoryFileData;
+import org.pentaho.platform.api.repository2.unified.RepositoryFile;
+import org.pentaho.platform.api.repository2.unified.RepositoryFilePermission;
+import org.pentaho.platform.api.repository2.unified.UnifiedRepositoryAccessDeniedException;
+import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
+import org.pentaho.platform.engine.core.system.PentahoSystem;
+import org.pentaho.platform.engine.core.system.ReadReplicaMode;
+import org.pentaho.platform.engine.core.system.RequestScopedCache;
+
+import java.util.EnumSet;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class DefaultUnifiedRepositoryRequestCacheTest {
+
+  private static final String PATH = "/public/file.xml";
+
+  private IRepositoryFileDao fileDao;
+  private IRepositoryFileAclDao aclDao;
+  private DefaultUnifiedRepository repository;
+  private RepositoryFile file;
+
+  @Before
+  public void setUp() {
+    fileDao = mock( IRepositoryFileDao.class );
+    aclDao = mock( IRepositoryFileAclDao.class );
+    repository = new DefaultUnifiedRepository( fileDao, aclDao );
+    file = new RepositoryFile.Builder( "id", "file.xml" ).path( PATH ).build();
+    when( fileDao.getFile( PATH, false ) ).thenReturn( file );
+    when( fileDao.getFileById( "id", false ) ).thenReturn( file );
+    setUser( "joe" );
+  }
+
+  @After
+  public void tearDown() {
+    RequestScopedCache.end();
+    PentahoSessionHolder.removeSession();
+  }
+
+  @Test
+  public void testNoScope() {
+    repository.getFile( PATH );
+    repository.getFile( PATH );
+    verify( fileDao, times( 2 ) ).getFile( PATH, false );
+  }
+
+  @Test
+  public void testLookupsAreRemembered() {
+    RequestScopedCache.begin();
+    EnumSet<RepositoryFilePermission> read = EnumSet.of( RepositoryFilePermission.READ );
+    when( aclDao.hasAccess( PATH, read ) ).thenReturn( true );
+
+    assertSame( file, repository.getFile( PATH ) );
+    assertSame( file, repository.getFile( PATH, false ) );
+    assertSame( file, repository.getFileById( "id" ) );
+    assertSame( file, repository.getFileById( "id" ) );
+    assertTrue( repository.hasAccess( PATH, read ) );
+    assertTrue( repository.hasAccess( PATH, EnumSet.of( RepositoryFilePermission.READ ) ) );
+
+    verify( fileDao, times( 1 ) ).getFile( PATH, false );
+    verify( fileDao, times( 1 ) ).getFileById( "id", false );
+    verify( aclDao, times( 1 ) ).hasAccess( PATH, read );
+  }
+
+  @Test
+  public void testMissesAreNotRemembered() {
+    RequestScopedCache.begin();
+    assertNull( repository.getFile( "/home/joe" ) );
+    assertNull( repository.getFile( "/home/joe" ) );
+    verify( fileDao, times( 2 ) ).getFile( "/home/joe", false );
+  }
+
+  @Test
+  public void testDeniedAccessIsNotRemembered() {
+    RequestScopedCache.begin();
+    EnumSet<RepositoryFilePermission> write = EnumSet.of( RepositoryFilePermission.WRITE );
+    when( aclDao.hasAccess( PATH, write ) ).thenReturn( false, true );
+
+    assertFalse( repository.hasAccess( PATH, write ) );
+    assertTrue( repository.hasAccess( PATH, write ) );
+    assertTrue( repository.hasAccess( PATH, write ) );
+    verify( aclDao, times( 2 ) ).hasAccess( PATH, write );
+  }
+
+  @Test
+  public void testLookupsArePerUser() {
+    RequestScopedCache.begin();
+    repository.getFile( PATH );
+    setUser( "suzy" );
+    repository.getFile( PATH );
+    verify( fileDao, times( 2 ) ).getFile( PATH, false );
+  }
+
+  @Test
+  public void testWritesClearTheScope() {
+    RequestScopedCache.begin();
+    repository.getFile( PATH );
+    repository.updateFile( file, mock( IRepositoryFileData.class ), "msg" );
+    repository.getFile( PATH );
+    repository.deleteFile( "id", "msg" );
+    repository.getFile( PATH );
+    verify( fileDao, times( 3 ) ).getFile( PATH, false );
+    verify( fileDao ).updateFile( eq( file ), any( IRepositoryFileData.class ), anyString() );
+  }
+
+  @Test
+  public void testWritesAreRejectedOnReadReplica() {
+    ISystemSettings settings = mock( ISystemSettings.class );
+    when( settings.getSystemSetting( ReadReplicaMode.SETTING, "false" ) ).thenReturn( "true" );
+    PentahoSystem.setSystemSettingsService( settings );
+    try {
+      repository.updateFile( file, mock( IRepositoryFileData.class ), "msg" );
+      fail();
+    } catch ( UnifiedRepositoryAccessDeniedException e ) {
+      // expected
+    } finally {
+      PentahoSystem.setSystemSettingsService( null );
+    }
+    verify( fileDao, never() ).updateFile( any( RepositoryFile.class ), any( IRepositoryFileData.class ), anyString() );
+    // reads still work
+    assertSame( file, repository.getFile( PATH ) );
+  }
+
+  private void setUser( final String name ) {
+    IPentahoSession session = mock( IPentahoSession.class );
+    when( session.getName() ).thenReturn( name );
+    PentahoSessionHolder.setSession( session );
+  }
+}
@@ -0,0 +1,388 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.repository2.unified;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Test;
+import org.pentaho.platform.api.repository2.unified.IUnifiedRepository;
+import org.pentaho.platform.api.repository2.unified.RepositoryFile;
+import org.pentaho.platform.api.repository2.unified.RepositoryFileAcl;
+import org.pentaho.platform.api.repository2.unified.RepositoryFilePermission;
+import org.pentaho.platform.api.repository2.unified.RepositoryFileSid;
+import org.pentaho.platform.api.repository2.unified.RepositoryFileTree;
+import org.pentaho.platform.api.repository2.unified.RepositoryRequest;
+import org.pentaho.platform.api.repository2.unified.UnifiedRepositoryAccessDeniedException;
+import org.pentaho.platform.api.repository2.unified.data.simple.SimpleRepositoryFileData;
+import org.pentaho.platform.repository2.locale.PentahoLocale;
+
+import java.io.ByteArrayInputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Behaviour every {@link IUnifiedRepository} implementation has to share, written against the interface only so it
+ * can run against any of them. The cases follow {@code DefaultUnifiedRepositoryContentIT} and
+ * {@code DefaultUnifiedRepositoryAuthorizationIT}, which cover the JCR repository with its tenants and users.
+ * <p/>
+ * Subclasses create the repository with a writable {@link #getFolderPath() folder} before each test, and map the
+ * login methods to how their implementation identifies the current user.
+ */
+public abstract class UnifiedRepositoryContractBase {
+
+  protected static final String USERNAME_SUZY = "suzy";
+
+  protected static final String USERNAME_TIFFANY = "tiffany";
+
+  protected static final String AUTHENTICATED_ROLE = "Authenticated";
+
+  protected abstract IUnifiedRepository getRepository();
+
+  /**
+   * @return path of an existing folder the repository administrator can write to
+   */
+  protected abstract String getFolderPath();
+
+  protected abstract void loginAsRepositoryAdmin();
+
+  protected abstract void login( String username, String... roles );
+
+  protected abstract void logout();
+
+  @After
+  public void logoutAfterTest() {
+    logout();
+  }
+
+  @Test
+  public void testGetFileNotExist() throws Exception {
+    loginAsRepositoryAdmin();
+    assertNull( getRepository().getFile( getFolderPath() + "/doesnotexist" ) );
+  }
+
+  @Test
+  public void testCreateFolder() throws Exception {
+    loginAsRepositoryAdmin();
+    RepositoryFile parent = getRepository().getFile( getFolderPath() );
+    RepositoryFile newFolder = getRepository().createFolder( parent.getId(),
+        new RepositoryFile.Builder( "test" ).folder( true ).title( "Test Folder" ).build(), null );
+
+    assertNotNull( newFolder.getId() );
+    RepositoryFile foundFolder = getRepository().getFile( getFolderPath() + "/test" );
+    assertNotNull( foundFolder );
+    assertTrue( foundFolder.isFolder() );
+    assertEquals( getFolderPath() + "/test", foundFolder.getPath() );
+    assertEquals( "test", foundFolder.getName() );
+    assertEquals( "Test Folder", foundFolder.getTitle() );
+    assertEquals( foundFolder, getRepository().getFileById( newFolder.getId() ) );
+  }
+
+  @Test
+  public void testCreateSimpleFile() throws Exception {
+    loginAsRepositoryAdmin();
+    RepositoryFile newFile = createFile( getFolderPath(), "helloworld.xaction", "Hello World!" );
+
+    assertNotNull( newFile.getId() );
+    RepositoryFile foundFile = getRepository().getFile( getFolderPath() + "/helloworld.xaction" );
+    assertNotNull( foundFile );
+    assertFalse( foundFile.isFolder() );
+    assertEquals( "helloworld.xaction", foundFile.getName() );
+    assertEquals( newFile.getId(), foundFile.getId() );
+    SimpleRepositoryFileData data = getRepository().getDataForRead( foundFile.getId(), SimpleRepositoryFileData.class );
+    assertEquals( "Hello World!", IOUtils.toString( data.getInputStream(), "UTF-8" ) );
+  }
+
+  @Test
+  public void testGetChildren() throws Exception {
+    loginAsRepositoryAdmin();
+    createFolder( getFolderPath(), "sub" );
+    createFile( getFolderPath(), "a.prpt", "a" );
+    createFile( getFolderPath(), "b.xaction", "b" );
+
+    assertEquals( Arrays.asList( "a.prpt", "b.xaction", "sub" ), names( getChildren( "" ) ) );
+    assertEquals( Arrays.asList( "a.prpt" ), names( getChildren( "*.prpt" ) ) );
+    assertEquals( Arrays.asList( "a.prpt", "b.xaction" ), names( getChildren( "*.prpt|*.xaction" ) ) );
+
+    RepositoryRequest foldersOnly = new RepositoryRequest( getFolderPath(), true, -1, "*" );
+    foldersOnly.setTypes( RepositoryRequest.FILES_TYPE_FILTER.FOLDERS );
+    assertEquals( Arrays.asList( "sub" ), names( getRepository().getChildren( foldersOnly ) ) );
+
+    getRepository().deleteFile( getRepository().getFile( getFolderPath() + "/a.prpt" ).getId(), null );
+    assertEquals( Arrays.asList( "b.xaction", "sub" ), names( getChildren( "" ) ) );
+  }
+
+  @Test
+  public void testUpdateFolder() throws Exception {
+    loginAsRepositoryAdmin();
+    RepositoryFile folder = createFolder( getFolderPath(), "folder1" );
+    RepositoryFile updated =
+        new RepositoryFile.Builder( folder ).title( RepositoryFile.DEFAULT_LOCALE, "Folder One" ).build();
+    getRepository().updateFolder( updated, null );
+    assertEquals( "Folder One", getRepository().getFile( folder.getPath() ).getTitle() );
+  }
+
+  @Test
+  public void testMoveFile() throws Exception {
+    loginAsRepositoryAdmin();
+    RepositoryFile source = createFolder( getFolderPath(), "source" );
+    createFile( source.getPath(), "a.prpt", "a" );
+    createFolder( getFolderPath(), "target" );
+
+    getRepository().moveFile( source.getId(), getFolderPath() + "/target", null );
+    assertNull( getRepository().getFile( getFolderPath() + "/source" ) );
+    assertNotNull( getRepository().getFile( getFolderPath() + "/target/source" ) );
+    assertNotNull( getRepository().getFile( getFolderPath() + "/target/source/a.prpt" ) );
+  }
+
+  @Test
+  public void testCopyFile() throws Exception {
+    loginAsRepositoryAdmin();
+    RepositoryFile file = createFile( getFolderPath(), "a.prpt", "a" );
+    createFolder( getFolderPath(), "target" );
+
+    getRepository().copyFile( file.getId(), getFolderPath() + "/target", null );
+    RepositoryFile copy = getRepository().getFile( getFolderPath() + "/target/a.prpt" );
+    assertNotNull( copy );
+    assertNotNull( getRepository().getFile( getFolderPath() + "/a.prpt" ) );
+    SimpleRepositoryFileData data = getRepository().getDataForRead( copy.getId(), SimpleRepositoryFileData.class );
+    assertEquals( "a", IOUtils.toString( data.getInputStream(), "UTF-8" ) );
+  }
+
+  @Test
+  public void testGetTree() throws Exception {
+    loginAsRepositoryAdmin();
+    RepositoryFile sub = createFolder( getFolderPath(), "sub" );
+    createFile( sub.getPath(), "a.prpt", "a" );
+
+    RepositoryFileTree tree = getRepository().getTree( new RepositoryRequest( getFolderPath(), true, -1, null ) );
+    assertEquals( getFolderPath(), tree.getFile().getPath() );
+    assertEquals( 1, tree.getChildren().size() );
+    RepositoryFileTree subTree = tree.getChildren().get( 0 );
+    assertEquals( "sub", subTree.getFile().getName() );
+    assertEquals( "a.prpt", subTree.getChildren().get( 0 ).getFile().getName() );
+  }
+
+  @Test
+  public void testMetadata() throws Exception {
+    loginAsRepositoryAdmin();
+    RepositoryFile file = createFile( getFolderPath(), "helloworld.sample1", "sampleString1" );
+    Calendar date = Calendar.getInstance();
+
+    Map<String, Serializable> metadataMap = new HashMap<String, Serializable>();
+    metadataMap.put( "myMetadataString", "wseyler" );
+    metadataMap.put( "myMetadataBoolean", true );
+    metadataMap.put( "myMetadataDate", date );
+    metadataMap.put( "myMetadataDouble", 1234.378283293429 );
+    metadataMap.put( "myMetadataLong", 12345768L );
+    getRepository().setFileMetadata( file.getId(), metadataMap );
+
+    Map<String, Serializable> savedMap = getRepository().getFileMetadata( file.getId() );
+    assertEquals( "wseyler", savedMap.get( "myMetadataString" ) );
+    assertEquals( true, savedMap.get( "myMetadataBoolean" ) );
+    assertEquals( date.getTimeInMillis(), ( (Calendar) savedMap.get( "myMetadataDate" ) ).getTimeInMillis() );
+    assertEquals( 1234.378283293429, savedMap.get( "myMetadataDouble" ) );
+    assertEquals( 12345768L, savedMap.get( "myMetadataLong" ) );
+  }
+
+  @Test
+  public void testLocales() throws Exception {
+    loginAsRepositoryAdmin();
+    RepositoryFile file = createFile( getFolderPath(), "locale.sample", "test" );
+    assertEquals( "locale.sample", file.getTitle() );
+
+    PentahoLocale spanish = new PentahoLocale( new Locale( "es" ) );
+    PentahoLocale us = new PentahoLocale( Locale.US );
+    RepositoryFile.Builder builder = new RepositoryFile.Builder( file );
+    builder.title( us.toString(), "Locale Sample" );
+    builder.description( us.toString(), "This is a test for retrieving localized words" );
+    builder.title( spanish.toString(), "Muestra de Localizacion" );
+    builder.description( spanish.toString(), "Esta es una prueba para buscar palabras localizadas" );
+    getRepository().updateFile( builder.build(), new SimpleRepositoryFileData(
+        new ByteArrayInputStream( "blah".getBytes( "UTF-8" ) ), "UTF-8", "text/plain" ), null );
+
+    RepositoryFile updatedFile = getRepository().getFile( file.getPath(), true );
+    assertTrue( updatedFile.getLocalePropertiesMap().containsKey( us.toString() ) );
+    assertTrue( updatedFile.getLocalePropertiesMap().containsKey( spanish.toString() ) );
+
+    updatedFile = getRepository().getFile( file.getPath(), spanish );
+    assertEquals( "Muestra de Localizacion", updatedFile.getTitle() );
+    assertEquals( "Esta es una prueba para buscar palabras localizadas", updatedFile.getDescription() );
+    updatedFile = getRepository().getFile( file.getPath(), us );
+    assertEquals( "Locale Sample", updatedFile.getTitle() );
+  }
+
+  @Test
+  public void testUpdateAcl() throws Exception {
+    loginAsRepositoryAdmin();
+    RepositoryFile file = createFile( getFolderPath(), "a.prpt", "a" );
+    RepositoryFileAcl acl = new RepositoryFileAcl.Builder( getRepository().getAcl( file.getId() ) )
+        .entriesInheriting( false )
+        .ace( new RepositoryFileSid( USERNAME_SUZY ), RepositoryFilePermission.READ, RepositoryFilePermission.WRITE )
+        .build();
+    getRepository().updateAcl( acl );
+
+    RepositoryFileAcl foundAcl = getRepository().getAcl( file.getId() );
+    assertFalse( foundAcl.isEntriesInheriting() );
+    assertEquals( acl.getOwner(), foundAcl.getOwner() );
+    assertTrue( foundAcl.getAces().containsAll( acl.getAces() ) );
+  }
+
+  @Test
+  public void testHasAccess() throws Exception {
+    loginAsRepositoryAdmin();
+    RepositoryFile file = createFile( getFolderPath(), "a.prpt", "a" );
+    restrict( file, new RepositoryFileSid( USERNAME_SUZY ), RepositoryFilePermission.READ );
+
+    login( USERNAME_SUZY, AUTHENTICATED_ROLE );
+    assertTrue( getRepository().hasAccess( file.getPath(), EnumSet.of( RepositoryFilePermission.READ ) ) );
+    assertFalse( getRepository().hasAccess( file.getPath(), EnumSet.of( RepositoryFilePermission.WRITE ) ) );
+    assertFalse( getRepository().hasAccess( file.getPath(), EnumSet.of( RepositoryFilePermission.ALL ) ) );
+    assertFalse( getRepository().hasAccess( getFolderPath() + "/doesnotexist",
+        EnumSet.of( RepositoryFilePermission.READ ) ) );
+
+    login( USERNAME_TIFFANY, AUTHENTICATED_ROLE );
+    assertFalse( getRepository().hasAccess( file.getPath(), EnumSet.of( RepositoryFilePermission.READ ) ) );
+  }
+
+  @Test
+  public void testRoleGrantsAccess() throws Exception {
+    loginAsRepositoryAdmin();
+    RepositoryFile file = createFile( getFolderPath(), "a.prpt", "a" );
+    restrict( file, new RepositoryFileSid( AUTHENTICATED_ROLE, RepositoryFileSid.Type.ROLE ),
+        RepositoryFilePermission.ALL );
+
+    login( USERNAME_SUZY, AUTHENTICATED_ROLE );
+    assertTrue( getRepository().hasAccess( file.getPath(), EnumSet.of( RepositoryFilePermission.WRITE,
+        RepositoryFilePermission.DELETE ) ) );
+    login( USERNAME_SUZY );
+    assertNull( getRepository().getFile( file.getPath() ) );
+  }
+
+  @Test
+  public void testUnreadableFileIsNotReturned() throws Exception {
+    loginAsRepositoryAdmin();
+    RepositoryFile file = createFile( getFolderPath(), "secret.prpt", "secret" );
+    createFile( getFolderPath(), "public.prpt", "public" );
+    restrict( file, new RepositoryFileSid( USERNAME_TIFFANY ), RepositoryFilePermission.READ );
+
+    login( USERNAME_SUZY, AUTHENTICATED_ROLE );
+    assertNull( getRepository().getFile( file.getPath() ) );
+    assertNull( getRepository().getFileById( file.getId() ) );
+    assertEquals( Arrays.asList( "public.prpt" ), names( getChildren( "" ) ) );
+    RepositoryFileTree tree = getRepository().getTree( new RepositoryRequest( getFolderPath(), true, -1, null ) );
+    assertEquals( 1, tree.getChildren().size() );
+    try {
+      getRepository().getDataForRead( file.getId(), SimpleRepositoryFileData.class );
+      fail( "reading the data of an unreadable file must fail" );
+    } catch ( UnifiedRepositoryAccessDeniedException e ) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testChangesNeedWriteAccess() throws Exception {
+    loginAsRepositoryAdmin();
+    RepositoryFile folder = createFolder( getFolderPath(), "readonly" );
+    RepositoryFile file = createFile( folder.getPath(), "a.prpt", "a" );
+    restrict( folder, new RepositoryFileSid( USERNAME_SUZY ), RepositoryFilePermission.READ );
+
+    login( USERNAME_SUZY, AUTHENTICATED_ROLE );
+    try {
+      createFile( folder.getPath(), "b.prpt", "b" );
+      fail( "creating a file in a folder without write access must fail" );
+    } catch ( UnifiedRepositoryAccessDeniedException e ) {
+      // expected
+    }
+    try {
+      getRepository().updateFile( file, new SimpleRepositoryFileData(
+          new ByteArrayInputStream( "changed".getBytes( "UTF-8" ) ), "UTF-8", "text/plain" ), null );
+      fail( "updating a file without write access must fail" );
+    } catch ( UnifiedRepositoryAccessDeniedException e ) {
+      // expected
+    }
+    try {
+      getRepository().deleteFile( file.getId(), null );
+      fail( "deleting a file without delete access must fail" );
+    } catch ( UnifiedRepositoryAccessDeniedException e ) {
+      // expected
+    }
+    try {
+      getRepository().updateAcl( new RepositoryFileAcl.Builder( getRepository().getAcl( file.getId() ) )
+          .ace( new RepositoryFileSid( USERNAME_SUZY ), RepositoryFilePermission.ALL ).build() );
+      fail( "changing an ACL without ACL management access must fail" );
+    } catch ( UnifiedRepositoryAccessDeniedException e ) {
+      // expected
+    }
+
+    loginAsRepositoryAdmin();
+    SimpleRepositoryFileData data = getRepository().getDataForRead( file.getId(), SimpleRepositoryFileData.class );
+    assertEquals( "a", IOUtils.toString( data.getInputStream(), "UTF-8" ) );
+  }
+
+  /**
+   * Gives the file an ACL that does not inherit and grants the permissions to the sid only.
+   */
+  protected void restrict( final RepositoryFile file, final RepositoryFileSid sid,
+                           final RepositoryFilePermission... permissions ) {
+    RepositoryFileAcl.Builder acl = new RepositoryFileAcl.Builder( getRepository().getAcl( file.getId() ) )
+        .entriesInheriting( false ).clearAces();
+    acl.ace( sid, EnumSet.copyOf( Arrays.asList( permissions ) ) );
+    getRepository().updateAcl( acl.build() );
+  }
+
+  protected RepositoryFile createFolder( final String parentPath, final String name ) {
+    return getRepository().createFolder( getRepository().getFile( parentPath ).getId(),
+        new RepositoryFile.Builder( name ).folder( true ).build(), null );
+  }
+
+  protected RepositoryFile createFile( final String parentPath, final String name, final String content )
+    throws Exception {
+    return getRepository().createFile( getRepository().getFile( parentPath ).getId(),
+        new RepositoryFile.Builder( name ).build(), new SimpleRepositoryFileData(
+            new ByteArrayInputStream( content.getBytes( "UTF-8" ) ), "UTF-8", "text/plain" ), null );
+  }
+
+  private List<RepositoryFile> getChildren( final String filter ) {
+    return getRepository().getChildren( new RepositoryRequest( getFolderPath(), true, -1, filter ) );
+  }
+
+  protected static List<String> names( final List<RepositoryFile> files ) {
+    List<String> names = new ArrayList<String>();
+    for ( RepositoryFile file : files ) {
+      names.add( file.getName() );
+    }
+    return names;
+  }
+}
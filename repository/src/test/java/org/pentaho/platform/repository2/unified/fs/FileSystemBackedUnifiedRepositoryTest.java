@@ -0,0 +1,328 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.repository2.unified.fs;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.pentaho.platform.api.repository2.unified.IUnifiedRepository;
+import org.pentaho.platform.api.repository2.unified.RepositoryFile;
+import org.pentaho.platform.api.repository2.unified.RepositoryFileAce;
+import org.pentaho.platform.api.repository2.unified.RepositoryFileAcl;
+import org.pentaho.platform.api.repository2.unified.RepositoryFilePermission;
+import org.pentaho.platform.api.repository2.unified.RepositoryFileSid;
+import org.pentaho.platform.api.repository2.unified.RepositoryRequest;
+import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
+import org.pentaho.platform.engine.core.system.StandaloneSession;
+import org.pentaho.platform.repository2.locale.PentahoLocale;
+import org.pentaho.platform.repository2.unified.UnifiedRepositoryContractBase;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs the {@link UnifiedRepositoryContractBase repository contract} against an indexed file system repository, and
+ * covers what only the file system repository does: the index on disk and change detection.
+ */
+public class FileSystemBackedUnifiedRepositoryTest extends UnifiedRepositoryContractBase {
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private File rootDir;
+
+  private FileSystemBackedUnifiedRepository repository;
+
+  @Before
+  public void setUp() throws Exception {
+    rootDir = temporaryFolder.newFolder( "solution" );
+    repository = new FileSystemBackedUnifiedRepository( rootDir, true );
+    createFolder( "/", "public" );
+  }
+
+  @After
+  public void tearDown() {
+    repository.close();
+  }
+
+  @Override
+  protected IUnifiedRepository getRepository() {
+    return repository;
+  }
+
+  @Override
+  protected String getFolderPath() {
+    return "/public";
+  }
+
+  @Override
+  protected void loginAsRepositoryAdmin() {
+    // without a session, the repository is used as the single tenant administrator
+    logout();
+  }
+
+  @Override
+  protected void login( final String username, final String... roles ) {
+    StandaloneSession session = new StandaloneSession( username );
+    session.setAuthenticated( username );
+    PentahoSessionHolder.setSession( session );
+    List<GrantedAuthority> authorities = new ArrayList<GrantedAuthority>();
+    for ( String role : roles ) {
+      authorities.add( new SimpleGrantedAuthority( role ) );
+    }
+    SecurityContextHolder.getContext().setAuthentication(
+        new UsernamePasswordAuthenticationToken( username, null, authorities ) );
+  }
+
+  @Override
+  protected void logout() {
+    PentahoSessionHolder.removeSession();
+    SecurityContextHolder.clearContext();
+  }
+
+  @Test
+  public void testIndexFilesAreHidden() throws Exception {
+    RepositoryFile file = createFile( "/", "a.prpt", "a" );
+    repository.setLocalePropertiesForFile( file, "default", properties( "file.title", "A" ) );
+
+    assertTrue( new File( rootDir, FileSystemRepositoryIndex.INDEX_FOLDER_NAME ).isDirectory() );
+    assertEquals( Arrays.asList( "a.prpt", "public" ),
+        names( repository.getChildren( new RepositoryRequest( "/", true, -1, "" ) ) ) );
+    assertEquals( 2, repository.getTree( new RepositoryRequest( "/", true, -1, null ) ).getChildren().size() );
+  }
+
+  @Test
+  public void testIndexEntryIsVersionedText() throws Exception {
+    RepositoryFile file = createFile( "/public", "a.prpt", "a" );
+    repository.setLocalePropertiesForFile( file, "de", properties( "file.title", "Umsatz" ) );
+    repository.updateAcl( new RepositoryFileAcl.Builder( file.getId(), new RepositoryFileSid( "suzy" ) )
+        .ace( new RepositoryFileSid( "Authenticated", RepositoryFileSid.Type.ROLE ), RepositoryFilePermission.READ,
+            RepositoryFilePermission.WRITE ).build() );
+
+    File[] entryFiles = new File( rootDir, FileSystemRepositoryIndex.INDEX_FOLDER_NAME ).listFiles();
+    assertEquals( 1, entryFiles.length );
+    Properties entry = new Properties();
+    Reader in = new InputStreamReader( new FileInputStream( entryFiles[ 0 ] ), "UTF-8" );
+    try {
+      entry.load( in );
+    } finally {
+      in.close();
+    }
+    assertEquals( String.valueOf( FileSystemRepositoryIndex.FORMAT_VERSION ), entry.getProperty( "version" ) );
+    assertEquals( "/public/a.prpt", entry.getProperty( "path" ) );
+    assertEquals( "Umsatz", entry.getProperty( "locale.de.file.title" ) );
+    assertEquals( "USER:suzy", entry.getProperty( "acl.owner" ) );
+    assertEquals( "ROLE:Authenticated", entry.getProperty( "acl.ace.0" ) );
+    assertEquals( "READ,WRITE", entry.getProperty( "acl.ace.0.permissions" ) );
+  }
+
+  @Test
+  public void testOnlyChangedEntriesAreWritten() throws Exception {
+    RepositoryFile a = createFile( "/public", "a.prpt", "a" );
+    RepositoryFile b = createFile( "/public", "b.prpt", "b" );
+    repository.setLocalePropertiesForFile( a, "default", properties( "file.title", "A" ) );
+    repository.setLocalePropertiesForFile( b, "default", properties( "file.title", "B" ) );
+    File indexDir = new File( rootDir, FileSystemRepositoryIndex.INDEX_FOLDER_NAME );
+    Map<String, Object> before = fileKeys( indexDir );
+
+    repository.setLocalePropertiesForFile( b, "default", properties( "file.title", "Bee" ) );
+
+    Map<String, Object> after = fileKeys( indexDir );
+    assertEquals( before.keySet(), after.keySet() );
+    int rewritten = 0;
+    for ( Map.Entry<String, Object> entry : before.entrySet() ) {
+      if ( !entry.getValue().equals( after.get( entry.getKey() ) ) ) {
+        rewritten++;
+      }
+    }
+    assertEquals( 1, rewritten );
+  }
+
+  @Test
+  public void testLocalizedTitles() throws Exception {
+    RepositoryFile file = createFile( "/public", "sales.prpt", "content" );
+    repository.setLocalePropertiesForFile( file, "default", properties( "file.title", "Sales",
+        "file.description", "All sales" ) );
+    repository.setLocalePropertiesForFile( file, "de", properties( "file.title", "Umsatz" ) );
+
+    RepositoryFile german = repository.getFile( "/public/sales.prpt", new PentahoLocale( Locale.GERMAN ) );
+    assertEquals( "Umsatz", german.getTitle() );
+    assertEquals( "All sales", german.getDescription() );
+    RepositoryFile english = repository.getFile( "/public/sales.prpt", new PentahoLocale( Locale.ENGLISH ) );
+    assertEquals( "Sales", english.getTitle() );
+
+    assertEquals( 2, repository.getAvailableLocalesForFile( file ).size() );
+    assertEquals( "Umsatz", repository.getLocalePropertiesForFile( file, "de" ).getProperty( "file.title" ) );
+
+    repository.deleteLocalePropertiesForFile( file, "de" );
+    assertNull( repository.getLocalePropertiesForFile( file, "de" ) );
+    assertEquals( "Sales", repository.getFile( "/public/sales.prpt", new PentahoLocale( Locale.GERMAN ) ).getTitle() );
+  }
+
+  @Test
+  public void testIndexSurvivesRestart() throws Exception {
+    RepositoryFile folder = repository.getFile( "/public" );
+    repository.updateFolder(
+        new RepositoryFile.Builder( folder ).title( RepositoryFile.DEFAULT_LOCALE, "Public" ).build(), null );
+    RepositoryFile file = createFile( "/public", "a.prpt", "a" );
+    Map<String, Serializable> metadata = new HashMap<String, Serializable>();
+    metadata.put( "_PERM_SCHEDULABLE", "true" );
+    repository.setFileMetadata( file.getId(), metadata );
+    RepositoryFileAcl acl = new RepositoryFileAcl.Builder( file.getId(), new RepositoryFileSid( "suzy" ) )
+        .ace( new RepositoryFileSid( "Authenticated", RepositoryFileSid.Type.ROLE ), RepositoryFilePermission.READ )
+        .build();
+    repository.updateAcl( acl );
+
+    repository.close();
+    repository = new FileSystemBackedUnifiedRepository( rootDir, true );
+
+    assertEquals( "Public", repository.getFile( "/public" ).getTitle() );
+    assertEquals( metadata, repository.getFileMetadata( file.getId() ) );
+    assertEquals( acl, repository.getAcl( file.getId() ) );
+  }
+
+  @Test
+  public void testAclInheritance() throws Exception {
+    RepositoryFile folder = repository.getFile( "/public" );
+    RepositoryFile file = createFile( "/public", "a.prpt", "a" );
+
+    RepositoryFileAcl fileAcl = repository.getAcl( file.getId() );
+    assertTrue( fileAcl.isEntriesInheriting() );
+    assertTrue( repository.getEffectiveAces( file.getId() ).isEmpty() );
+
+    RepositoryFileAcl folderAcl = new RepositoryFileAcl.Builder( folder.getId(), new RepositoryFileSid( "admin" ) )
+        .ace( new RepositoryFileSid( "suzy" ), RepositoryFilePermission.READ ).build();
+    repository.updateAcl( folderAcl );
+
+    List<RepositoryFileAce> aces = repository.getEffectiveAces( file.getId() );
+    assertEquals( folderAcl.getAces(), aces );
+    assertEquals( new RepositoryFileSid( "admin" ), repository.getAcl( file.getId() ).getOwner() );
+  }
+
+  @Test
+  public void testDefaultOwnerIsSessionUser() throws Exception {
+    RepositoryFile file = createFile( "/public", "a.prpt", "a" );
+    assertEquals( new RepositoryFileSid( "admin" ), repository.getAcl( file.getId() ).getOwner() );
+
+    login( USERNAME_SUZY, AUTHENTICATED_ROLE );
+    assertEquals( new RepositoryFileSid( USERNAME_SUZY ), repository.getAcl( file.getId() ).getOwner() );
+  }
+
+  @Test
+  public void testMoveAndCopyKeepIndexEntries() throws Exception {
+    RepositoryFile source = createFolder( "/public", "source" );
+    repository.updateFolder(
+        new RepositoryFile.Builder( source ).title( RepositoryFile.DEFAULT_LOCALE, "Source" ).build(), null );
+    RepositoryFile file = createFile( "/public/source", "a.prpt", "a" );
+    repository.setLocalePropertiesForFile( file, "default", properties( "file.title", "A" ) );
+    repository.updateAcl( new RepositoryFileAcl.Builder( file.getId(), new RepositoryFileSid( "suzy" ) ).build() );
+    createFolder( "/public", "target" );
+
+    repository.moveFile( repository.getFile( "/public/source" ).getId(), "/public/target", null );
+    assertNull( repository.getFile( "/public/source" ) );
+    assertEquals( "Source", repository.getFile( "/public/target/source" ).getTitle() );
+    RepositoryFile moved = repository.getFile( "/public/target/source/a.prpt" );
+    assertEquals( "A", moved.getTitle() );
+    assertEquals( moved.getId(), repository.getAcl( moved.getId() ).getId() );
+
+    repository.copyFile( moved.getId(), "/b.prpt", null );
+    assertEquals( "A", repository.getFile( "/b.prpt" ).getTitle() );
+    assertEquals( "A", repository.getFile( "/public/target/source/a.prpt" ).getTitle() );
+  }
+
+  @Test
+  public void testExternalChangesInvalidateCache() throws Exception {
+    FileSystemRepositoryIndex index = new FileSystemRepositoryIndex( rootDir );
+    try {
+      File folder = new File( rootDir, "reports" );
+      assertTrue( folder.mkdir() );
+      assertEquals( 0, index.getChildNames( "/reports", folder ).size() );
+
+      FileUtils.write( new File( folder, "a.prpt" ), "a" );
+      // the watcher does this when the file system reports the change
+      index.invalidate( "/reports/a.prpt" );
+
+      assertEquals( Arrays.asList( "a.prpt" ), index.getChildNames( "/reports", folder ) );
+    } finally {
+      index.close();
+    }
+  }
+
+  @Test
+  public void testUnindexedRepositoryIsUnchanged() throws Exception {
+    repository.close();
+    repository = new FileSystemBackedUnifiedRepository( rootDir );
+    RepositoryFile folder = createFolder( "/", "reports" );
+    createFile( "/reports", "a.prpt", "a" );
+
+    assertFalse( new File( rootDir, FileSystemRepositoryIndex.INDEX_FOLDER_NAME ).exists() );
+    assertNotNull( repository.getFile( "/reports/a.prpt" ) );
+    assertEquals( "reports", repository.getFile( "/reports" ).getTitle() );
+    try {
+      repository.getAcl( folder.getId() );
+    } catch ( UnsupportedOperationException e ) {
+      return;
+    }
+    throw new AssertionError( "getAcl should not be supported" );
+  }
+
+  private static Map<String, Object> fileKeys( final File folder ) throws Exception {
+    Map<String, Object> keys = new HashMap<String, Object>();
+    for ( File file : folder.listFiles() ) {
+      // a rewritten entry is a new file that replaced the old one
+      keys.put( file.getName(), Files.readAttributes( file.toPath(), BasicFileAttributes.class ).fileKey() );
+    }
+    return keys;
+  }
+
+  private static Properties properties( final String... keysAndValues ) {
+    Properties properties = new Properties();
+    for ( int i = 0; i < keysAndValues.length; i += 2 ) {
+      properties.setProperty( keysAndValues[ i ], keysAndValues[ i + 1 ] );
+    }
+    return properties;
+  }
+}
@@ -71,6 +71,7 @@ import java.util.Random;
 
 import static org.junit.Assert.*;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.*;
@@ -343,10 +344,6 @@ public class DefaultDeleteHelperTest {
       protected boolean isAdmin() {
         return admin[0];
       }
-      @Override
-      protected List<String> getUserList() {
-        return Arrays.asList( "test", "other" );
-      }
     };
     when( session.getItem( endsWith( "/other" ) ) ).thenReturn( nodeOtherFolder );
     when( session.getItem( endsWith( "/test" ) ) ).thenReturn( nodeUserFolder );
@@ -357,13 +354,148 @@ public class DefaultDeleteHelperTest {
     assertEquals( 1, deletedFiles.size() );
     assertEquals( pathUsr, deletedFiles.get( 0 ).getOriginalParentFolderPath() );
 
-    // as admin
+    // as admin, the trash of every user is read with a single query
+    when( deletedNode1.getParent() ).thenReturn( nodeTrash );
+    when( deletedNode2.getParent() ).thenReturn( nodeTrash );
+    when( nodeTrash.getParent() ).thenReturn( nodeOtherFolder );
+    when( nodeOtherFolder.getName() ).thenReturn( "other" );
+    when( deletedNodeUsr.getParent() ).thenReturn( nodeTrashUsr );
+    when( nodeTrashUsr.getParent() ).thenReturn( nodeUserFolder );
+    when( nodeUserFolder.getName() ).thenReturn( "test" );
+
+    final Query query = mockTrashQuery( deletedNode1, deletedNode2, deletedNodeUsr );
+
     admin[0] = true;
     final List<RepositoryFile> deletedFilesAdmin = defaultDeleteHelper.getAllDeletedFiles( session, pentahoJcrConstants );
     assertNotNull( deletedFilesAdmin );
     assertEquals( 3, deletedFilesAdmin.size() );
+    assertEquals( "other", deletedFilesAdmin.get( 0 ).getCreatorId() );
+    assertEquals( "test", deletedFilesAdmin.get( 2 ).getCreatorId() );
+    verify( query, never() ).setOffset( anyLong() );
+    verify( query, never() ).setLimit( anyLong() );
+
+    final List<RepositoryFile> page = defaultDeleteHelper.getAllDeletedFiles( session, pentahoJcrConstants, 1, 1 );
+    assertEquals( 1, page.size() );
+    assertEquals( path2, page.get( 0 ).getOriginalParentFolderPath() );
+    assertEquals( 0, defaultDeleteHelper.getAllDeletedFiles( session, pentahoJcrConstants, 10, 5 ).size() );
+
+    // a trash file ID node that no longer holds its file neither counts toward the offset nor shortens the page
+    final Node emptyNode = mock( Node.class );
+    when( emptyNode.hasNodes() ).thenReturn( false );
+    mockTrashQuery( emptyNode, deletedNode1, emptyNode, deletedNode2, deletedNodeUsr );
+    final List<RepositoryFile> fullPage =
+        defaultDeleteHelper.getAllDeletedFiles( session, pentahoJcrConstants, 1, 2 );
+    assertEquals( 2, fullPage.size() );
+    assertEquals( path2, fullPage.get( 0 ).getOriginalParentFolderPath() );
+    assertEquals( pathUsr, fullPage.get( 1 ).getOriginalParentFolderPath() );
+    verify( query, never() ).setOffset( anyLong() );
+    verify( query, never() ).setLimit( anyLong() );
+  }
+
+  @Test
+  public void testGetAllDeletedFilesPageForRegularUser() throws Exception {
+    final Node deletedNode1 = createDeletedNode( "path1", Calendar.getInstance() );
+    final Node deletedNode2 = createDeletedNode( "path2", Calendar.getInstance() );
+    final Node deletedNode3 = createDeletedNode( "path3", Calendar.getInstance() );
+
+    final Node nodeTrash = mock( Node.class );
+    when( nodeTrash.getNodes() ).thenAnswer( invoc -> {
+      final NodeIterator nodeIterator = mock( NodeIterator.class );
+      when( nodeIterator.hasNext() ).thenReturn( true, true, true, false );
+      when( nodeIterator.nextNode() ).thenReturn( deletedNode1, deletedNode2, deletedNode3 );
+      return nodeIterator;
+    } );
+
+    final Node nodeUserFolder = mock( Node.class );
+    when( nodeUserFolder.hasNode( anyString() ) ).thenReturn( true );
+    when( nodeUserFolder.getNode( anyString() ) ).thenReturn( nodeTrash );
+    when( session.getItem( anyString() ) ).thenReturn( nodeUserFolder );
+
+    defaultDeleteHelper = new DefaultDeleteHelper( lockHelper, pathConversionHelper ) {
+      @Override
+      protected boolean isAdmin() {
+        return false;
+      }
+    };
+
+    assertEquals( 2, defaultDeleteHelper.getAllDeletedFiles( session, pentahoJcrConstants, 1, 5 ).size() );
+    assertEquals( 1, defaultDeleteHelper.getAllDeletedFiles( session, pentahoJcrConstants, 0, 1 ).size() );
+    assertEquals( 0, defaultDeleteHelper.getAllDeletedFiles( session, pentahoJcrConstants, 7, 1 ).size() );
+  }
+
+  @Test
+  public void testGetAllDeletedFilesForRegularUserMostRecentFirst() throws Exception {
+    final Calendar older = Calendar.getInstance();
+    older.add( Calendar.DAY_OF_MONTH, -2 );
+    final Calendar newest = Calendar.getInstance();
+    final Calendar middle = Calendar.getInstance();
+    middle.add( Calendar.DAY_OF_MONTH, -1 );
+    final Node deletedNode1 = createDeletedNode( "path1", older );
+    final Node deletedNode2 = createDeletedNode( "path2", newest );
+    final Node deletedNode3 = createDeletedNode( "path3", middle );
+
+    final Node nodeTrash = mock( Node.class );
+    when( nodeTrash.getNodes() ).thenAnswer( invoc -> {
+      final NodeIterator nodeIterator = mock( NodeIterator.class );
+      when( nodeIterator.hasNext() ).thenReturn( true, true, true, false );
+      when( nodeIterator.nextNode() ).thenReturn( deletedNode1, deletedNode2, deletedNode3 );
+      return nodeIterator;
+    } );
+
+    final Node nodeUserFolder = mock( Node.class );
+    when( nodeUserFolder.hasNode( anyString() ) ).thenReturn( true );
+    when( nodeUserFolder.getNode( anyString() ) ).thenReturn( nodeTrash );
+    when( session.getItem( anyString() ) ).thenReturn( nodeUserFolder );
+
+    defaultDeleteHelper = new DefaultDeleteHelper( lockHelper, pathConversionHelper ) {
+      @Override
+      protected boolean isAdmin() {
+        return false;
+      }
+    };
+
+    final List<RepositoryFile> deletedFiles = defaultDeleteHelper.getAllDeletedFiles( session, pentahoJcrConstants );
+    assertEquals( 3, deletedFiles.size() );
+    assertEquals( newest.getTime(), deletedFiles.get( 0 ).getDeletedDate() );
+    assertEquals( middle.getTime(), deletedFiles.get( 1 ).getDeletedDate() );
+    assertEquals( older.getTime(), deletedFiles.get( 2 ).getDeletedDate() );
+
+    final List<RepositoryFile> page = defaultDeleteHelper.getAllDeletedFiles( session, pentahoJcrConstants, 1, 1 );
+    assertEquals( 1, page.size() );
+    assertEquals( middle.getTime(), page.get( 0 ).getDeletedDate() );
   }
 
+  private Query mockTrashQuery( final Node... trashFileIdNodes ) throws RepositoryException {
+    final QueryObjectModel queryObjectModel = mock( QueryObjectModel.class );
+    final QueryObjectModelFactory qomFactory = mock( QueryObjectModelFactory.class );
+    when( qomFactory.createQuery( Matchers.<Source>any(), Matchers.<Constraint>any(), Matchers.<Ordering[]>any(),
+        Matchers.<Column[]>any() ) ).thenReturn( queryObjectModel );
+
+    final QueryResult queryResult = mock( QueryResult.class );
+    when( queryResult.getNodes() ).thenAnswer( invoc -> {
+      final NodeIterator nodeIterator = mock( NodeIterator.class );
+      // true once per node, then false
+      final Boolean[] hasNext = new Boolean[ trashFileIdNodes.length ];
+      Arrays.fill( hasNext, true );
+      hasNext[ hasNext.length - 1 ] = false;
+      when( nodeIterator.hasNext() ).thenReturn( true, hasNext );
+      when( nodeIterator.nextNode() ).thenReturn( trashFileIdNodes[ 0 ],
+          Arrays.copyOfRange( trashFileIdNodes, 1, trashFileIdNodes.length ) );
+      return nodeIterator;
+    } );
+
+    final Query query = mock( Query.class );
+    when( query.execute() ).thenReturn( queryResult );
+
+    final QueryManager queryManager = mock( QueryManager.class );
+    when( queryManager.getQOMFactory() ).thenReturn( qomFactory );
+    when( queryManager.createQuery( anyString(), anyString() ) ).thenReturn( query );
+
+    final Workspace workspace = mock( Workspace.class );
+    when( workspace.getQueryManager() ).thenReturn( queryManager );
+    when( session.getWorkspace() ).thenReturn( workspace );
+    return query;
+  }
 
   @Test
   public void testPermanentlyDeleteFile() throws Exception {
@@ -21,29 +21,42 @@
 package org.pentaho.platform.repository2.unified.jcr;
 
 import org.apache.jackrabbit.core.VersionManagerImpl;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.InOrder;
 import org.pentaho.platform.api.engine.IPentahoSession;
+import org.pentaho.platform.api.locale.IPentahoLocale;
 import org.pentaho.platform.api.repository2.unified.IRepositoryAccessVoterManager;
 import org.pentaho.platform.api.repository2.unified.IRepositoryFileData;
 import org.pentaho.platform.api.repository2.unified.IRepositoryVersionManager;
 import org.pentaho.platform.api.repository2.unified.RepositoryFile;
+import org.pentaho.platform.api.repository2.unified.RepositoryFileAcl;
 import org.pentaho.platform.api.repository2.unified.RepositoryFilePermission;
 import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
+import org.pentaho.platform.repository2.locale.PentahoLocale;
 import org.pentaho.platform.repository2.unified.IRepositoryFileAclDao;
+import org.powermock.reflect.Whitebox;
 import org.springframework.dao.DataAccessException;
 import org.springframework.extensions.jcr.JcrCallback;
 import org.springframework.extensions.jcr.JcrTemplate;
 
 import javax.jcr.AccessDeniedException;
+import javax.jcr.ItemNotFoundException;
 import javax.jcr.Node;
 import javax.jcr.RepositoryException;
 import javax.jcr.Session;
 import javax.jcr.Workspace;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Calendar;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Properties;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.fail;
 import static org.mockito.Mockito.*;
 
@@ -164,4 +177,104 @@ public class JcrRepositoryFileDaoTest {
       }
     }
   }
+
+  @After
+  public void tearDown() {
+    JcrRepositoryFileUtils.setLocaleCache( null );
+    Whitebox.setInternalState( JcrRepositoryFileUtils.class, "fileProxyFactory", (Object) null );
+  }
+
+  @Test
+  public void testGetLocalizedTitlesSkipsMissingAndMalformedIds() throws RepositoryException {
+    Session session = mock( Session.class );
+    Node fileNode = mock( Node.class );
+    when( session.getRootNode() ).thenReturn( mock( Node.class ) );
+    when( session.getNodeByIdentifier( "fileId" ) ).thenReturn( fileNode );
+    when( session.getNodeByIdentifier( "missingId" ) ).thenThrow( new ItemNotFoundException() );
+    when( session.getNodeByIdentifier( "not an id" ) ).thenThrow( new RepositoryException( "invalid identifier" ) );
+    RepositoryFile file = new RepositoryFile.Builder( "fileId", "sales.prpt" ).title( "Sales" ).build();
+    RepositoryFileProxyFactory proxyFactory = mock( RepositoryFileProxyFactory.class );
+    when( proxyFactory.getProxy( eq( fileNode ), (IPentahoLocale) anyObject() ) ).thenReturn( file );
+    Whitebox.setInternalState( JcrRepositoryFileUtils.class, "fileProxyFactory", proxyFactory );
+    when( accessVoterManager.hasAccess( eq( file ), eq( RepositoryFilePermission.READ ),
+        any( RepositoryFileAcl.class ), eq( pentahoSession ) ) ).thenReturn( true );
+
+    Map<Serializable, String> titles =
+        dao( session ).getLocalizedTitles( Arrays.<Serializable>asList( "missingId", "not an id", "fileId" ),
+            new PentahoLocale() );
+
+    assertEquals( Collections.<Serializable, String>singletonMap( "fileId", "Sales" ), titles );
+  }
+
+  @Test
+  public void testSetLocalePropertiesInvalidatesCacheAfterSave() throws RepositoryException {
+    Session session = mock( Session.class );
+    Node fileNode = unversionedFileWithLocale( session );
+    Node localeNode = fileNode.getNode( "pho:locales" ).getNode( "en" );
+    RepositoryFileLocaleCache cache = mock( RepositoryFileLocaleCache.class );
+    JcrRepositoryFileUtils.setLocaleCache( cache );
+    Properties properties = new Properties();
+    properties.setProperty( "file.title", "Sales" );
+
+    dao( session ).setLocalePropertiesForFile( new RepositoryFile.Builder( "fileId", "sales.prpt" ).build(), "en",
+        properties );
+
+    verify( localeNode ).setProperty( "file.title", "Sales" );
+    // the new modification time changes the version token the cache of other cluster nodes compares against
+    verify( fileNode ).setProperty( eq( "pho:lastModified" ), any( Calendar.class ) );
+    InOrder inOrder = inOrder( session, cache );
+    inOrder.verify( session, atLeastOnce() ).save();
+    inOrder.verify( cache ).invalidate( "fileId" );
+  }
+
+  @Test
+  public void testDeleteLocalePropertiesInvalidatesCacheAfterSave() throws RepositoryException {
+    Session session = mock( Session.class );
+    Node fileNode = unversionedFileWithLocale( session );
+    Node localeNode = fileNode.getNode( "pho:locales" ).getNode( "en" );
+    RepositoryFileLocaleCache cache = mock( RepositoryFileLocaleCache.class );
+    JcrRepositoryFileUtils.setLocaleCache( cache );
+
+    dao( session ).deleteLocalePropertiesForFile( new RepositoryFile.Builder( "fileId", "sales.prpt" ).build(), "en" );
+
+    verify( localeNode ).remove();
+    verify( fileNode ).setProperty( eq( "pho:lastModified" ), any( Calendar.class ) );
+    InOrder inOrder = inOrder( session, cache );
+    inOrder.verify( session, atLeastOnce() ).save();
+    inOrder.verify( cache ).invalidate( "fileId" );
+  }
+
+  /**
+   * Returns the node of an unversioned file {@code fileId} with an {@code en} locale and a last modification time.
+   */
+  private Node unversionedFileWithLocale( final Session session ) throws RepositoryException {
+    when( session.getNamespacePrefix( anyString() ) ).thenReturn( "pho" );
+    when( session.getWorkspace() ).thenReturn( mock( Workspace.class ) );
+    Node fileNode = mock( Node.class );
+    Node localesNode = mock( Node.class );
+    Node localeNode = mock( Node.class );
+    when( session.getNodeByIdentifier( "fileId" ) ).thenReturn( fileNode );
+    when( fileNode.getParent() ).thenThrow( new ItemNotFoundException() );
+    when( fileNode.hasNode( "pho:locales" ) ).thenReturn( true );
+    when( fileNode.getNode( "pho:locales" ) ).thenReturn( localesNode );
+    when( fileNode.hasProperty( "pho:lastModified" ) ).thenReturn( true );
+    when( localesNode.getNode( "en" ) ).thenReturn( localeNode );
+    return fileNode;
+  }
+
+  private JcrRepositoryFileDao dao( final Session session ) {
+    JcrTemplate jcrTemplate = new JcrTemplate() {
+      @Override
+      public Object execute( JcrCallback callback ) throws DataAccessException {
+        try {
+          return callback.doInJcr( session );
+        } catch ( Exception e ) {
+          throw new RuntimeException( e );
+        }
+      }
+    };
+    List<ITransformer<IRepositoryFileData>> transformerList = Collections.emptyList();
+    return new JcrRepositoryFileDao( jcrTemplate, transformerList, mock( ILockHelper.class ), null,
+        new DefaultPathConversionHelper(), mock( IRepositoryFileAclDao.class ), null, accessVoterManager );
+  }
 }
@@ -20,12 +20,16 @@
 
 package org.pentaho.platform.repository2.unified.jcr;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.Matchers.anyObject;
 import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -36,6 +40,7 @@ import java.util.List;
 
 import javax.jcr.AccessDeniedException;
 import javax.jcr.Node;
+import javax.jcr.Property;
 import javax.jcr.RepositoryException;
 import javax.jcr.Session;
 import javax.jcr.UnsupportedRepositoryOperationException;
@@ -45,6 +50,7 @@ import javax.jcr.version.VersionHistory;
 import javax.jcr.version.VersionManager;
 
 import org.apache.commons.lang.mutable.MutableBoolean;
+import org.apache.jackrabbit.commons.iterator.NodeIteratorAdapter;
 import org.apache.jackrabbit.core.VersionManagerImpl;
 import org.junit.Before;
 import org.junit.Rule;
@@ -52,7 +58,9 @@ import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.junit.runner.RunWith;
 import org.pentaho.platform.api.engine.IPentahoSession;
+import org.pentaho.platform.api.locale.IPentahoLocale;
 import org.pentaho.platform.api.repository2.unified.IRepositoryAccessVoterManager;
+import org.pentaho.platform.api.repository2.unified.IRepositoryFileData;
 import org.pentaho.platform.api.repository2.unified.IRepositoryVersionManager;
 import org.pentaho.platform.api.repository2.unified.RepositoryFile;
 import org.pentaho.platform.api.repository2.unified.RepositoryFileTree;
@@ -62,6 +70,7 @@ import org.pentaho.platform.engine.core.system.PentahoSystem;
 import org.powermock.api.mockito.PowerMockito;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
+import org.powermock.reflect.Whitebox;
 
 /**
  * @author Tatsiana_Kasiankova
@@ -298,4 +307,115 @@ public class JcrRepositoryFileUtilsTest {
     }
   }
 
+  @Test
+  public void testGetChildrenConvertsOnlyMatchingChildrenOfLargeFolder() throws Exception {
+    RepositoryFileProxyFactory proxyFactory = largeFolder( 2000 );
+    RepositoryRequest request = new RepositoryRequest();
+    request.setPath( "folderId" );
+    request.setTypes( RepositoryRequest.FILES_TYPE_FILTER.FILES );
+
+    try {
+      List<RepositoryFile> children =
+          JcrRepositoryFileUtils.getChildren( sessionMock, pJcrConstMock, new DefaultPathConversionHelper(),
+              mock( ILockHelper.class ), request );
+
+      // every 100th child is a folder, every 10th file is hidden and child 1 is an ACL node
+      assertEquals( 1799, children.size() );
+      for ( RepositoryFile child : children ) {
+        assertFalse( child.isFolder() );
+      }
+      verify( proxyFactory, times( 1799 ) ).getProxy( (Node) anyObject(), (IPentahoLocale) anyObject() );
+    } finally {
+      Whitebox.setInternalState( JcrRepositoryFileUtils.class, "fileProxyFactory", (RepositoryFileProxyFactory) null );
+    }
+  }
+
+  @Test
+  public void testGetChildrenFoldersWithHidden() throws Exception {
+    RepositoryFileProxyFactory proxyFactory = largeFolder( 2000 );
+    RepositoryRequest request = new RepositoryRequest();
+    request.setPath( "folderId" );
+    request.setShowHidden( true );
+    request.setTypes( RepositoryRequest.FILES_TYPE_FILTER.FOLDERS );
+
+    try {
+      List<RepositoryFile> children =
+          JcrRepositoryFileUtils.getChildren( sessionMock, pJcrConstMock, new DefaultPathConversionHelper(),
+              mock( ILockHelper.class ), request );
+
+      assertEquals( 20, children.size() );
+      for ( RepositoryFile child : children ) {
+        assertTrue( child.isFolder() );
+      }
+      verify( proxyFactory, times( 20 ) ).getProxy( (Node) anyObject(), (IPentahoLocale) anyObject() );
+    } finally {
+      Whitebox.setInternalState( JcrRepositoryFileUtils.class, "fileProxyFactory", (RepositoryFileProxyFactory) null );
+    }
+  }
+
+  /**
+   * Builds a folder of {@code size} children in which every 100th child is a folder, every 10th other child is hidden
+   * and the second child is an ACL node, and returns the proxy factory that converts them.
+   */
+  private RepositoryFileProxyFactory largeFolder( final int size ) throws Exception {
+    when( pJcrConstMock.getNT_FROZENNODE() ).thenReturn( "nt:frozenNode" );
+    when( pJcrConstMock.getPHO_NT_PENTAHOFILE() ).thenReturn( "pho_nt:pentahoFile" );
+    when( pJcrConstMock.getPHO_NT_PENTAHOFOLDER() ).thenReturn( "pho_nt:pentahoFolder" );
+    when( pJcrConstMock.getPHO_HIDDEN() ).thenReturn( "pho:hidden" );
+    when( pJcrConstMock.getPHO_ACLNODE() ).thenReturn( "pho:aclNode" );
+
+    Property trueProperty = mock( Property.class );
+    when( trueProperty.getBoolean() ).thenReturn( true );
+    List<Node> nodes = new ArrayList<Node>();
+    RepositoryFileProxyFactory proxyFactory = mock( RepositoryFileProxyFactory.class );
+    for ( int i = 0; i < size; i++ ) {
+      Node child = mock( Node.class );
+      boolean folder = i % 100 == 0;
+      when( child.isNodeType( folder ? "pho_nt:pentahoFolder" : "pho_nt:pentahoFile" ) ).thenReturn( true );
+      if ( !folder && i % 10 == 0 ) {
+        when( child.hasProperty( "pho:hidden" ) ).thenReturn( true );
+        when( child.getProperty( "pho:hidden" ) ).thenReturn( trueProperty );
+      }
+      if ( i == 1 ) {
+        when( child.hasProperty( "pho:aclNode" ) ).thenReturn( true );
+        when( child.getProperty( "pho:aclNode" ) ).thenReturn( trueProperty );
+      }
+      RepositoryFile file =
+          new RepositoryFile.Builder( String.valueOf( i ), String.format( "child%05d", i ) ).folder( folder ).build();
+      when( proxyFactory.getProxy( eq( child ), (IPentahoLocale) anyObject() ) )
+          .thenReturn( file );
+      nodes.add( child );
+    }
+
+    Node folderNode = mock( Node.class );
+    when( folderNode.isNodeType( "pho_nt:pentahoFolder" ) ).thenReturn( true );
+    when( folderNode.getNodes() ).thenReturn( new NodeIteratorAdapter( nodes ) );
+    when( sessionMock.getNodeByIdentifier( "folderId" ) ).thenReturn( folderNode );
+    when( sessionMock.getRootNode() ).thenReturn( mock( Node.class ) );
+    Whitebox.setInternalState( JcrRepositoryFileUtils.class, "fileProxyFactory", proxyFactory );
+    return proxyFactory;
+  }
+
+  @Test
+  @SuppressWarnings( "unchecked" )
+  public void testIsFileNodeUnchanged_RejectsStaleVersion() throws Exception {
+    IContentHashingTransformer<IRepositoryFileData> transformer = mock( IContentHashingTransformer.class );
+    RepositoryFile file = new RepositoryFile.Builder( "file.txt" ).id( "fileId" ).versionId( "1.0" ).build();
+    when( sessionMock.getNodeByIdentifier( "fileId" ) ).thenReturn( nodeMock );
+    when( pJcrConstMock.getPHO_MIX_VERSIONABLE() ).thenReturn( "pho_mix:versionable" );
+    when( nodeMock.isNodeType( "pho_mix:versionable" ) ).thenReturn( true );
+    when( nodeMock.getPath() ).thenReturn( "/file.txt" );
+    Version baseVersion = mock( Version.class );
+    when( baseVersion.getName() ).thenReturn( "1.1" );
+    when( vmanagerMock.getBaseVersion( "/file.txt" ) ).thenReturn( baseVersion );
+
+    try {
+      JcrRepositoryFileUtils.isFileNodeUnchanged( sessionMock, pJcrConstMock, file, mock( IRepositoryFileData.class ),
+          transformer );
+      fail( "an update from a stale version must not be treated as unchanged" );
+    } catch ( IllegalStateException e ) {
+      // expected
+    }
+    verify( transformer, times( 0 ) ).isContentUnchanged( anyObject(), anyObject(), anyObject(), anyObject() );
+  }
 }
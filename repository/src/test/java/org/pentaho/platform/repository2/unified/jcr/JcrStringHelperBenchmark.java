@@ -0,0 +1,135 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.repository2.unified.jcr;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Times {@link JcrStringHelper#pathEncode(String, boolean)} and {@link JcrStringHelper#pathDecode(String, boolean)}
+ * against the split based conversion they replaced, on three sets of paths: plain paths that take the fast path,
+ * escaped paths that repeat and hit the path caches, and escaped paths that are all different and miss them. Bytes
+ * allocated per call are reported where the JVM can measure them. Not run by the build; run it from the test
+ * classpath.
+ */
+public class JcrStringHelperBenchmark {
+
+  private static final int PATHS = 50000;
+
+  private static final int ROUNDS = 20;
+
+  private static final String SEPARATOR = "/";
+
+  public static void main( final String[] args ) {
+    String[] plain = new String[PATHS];
+    String[] repeated = new String[PATHS];
+    String[] distinct = new String[PATHS];
+    for ( int i = 0; i < PATHS; i++ ) {
+      plain[i] = "/public/folder" + ( i % 100 ) + "/subfolder" + ( i % 10 ) + "/report" + i + ".prpt";
+      repeated[i] = "/public/Sales: " + ( i % 100 ) + "/report [" + ( i % 10 ) + "].prpt";
+      distinct[i] = "/public/Sales: " + ( i % 100 ) + "/report [" + i + "].prpt";
+    }
+    for ( boolean multiByte : new boolean[] { false, true } ) {
+      System.out.println( "multi-byte encoding " + multiByte );
+      run( "plain", plain, multiByte );
+      run( "escaped, repeated", repeated, multiByte );
+      run( "escaped, distinct", distinct, multiByte );
+    }
+  }
+
+  private static void run( final String label, final String[] paths, final boolean multiByte ) {
+    String[] encoded = new String[paths.length];
+    for ( int i = 0; i < paths.length; i++ ) {
+      encoded[i] = splitConvert( paths[i], multiByte, true );
+    }
+    report( label + ", encode", paths, multiByte, true );
+    report( label + ", decode", encoded, multiByte, false );
+  }
+
+  private static void report( final String label, final String[] paths, final boolean multiByte,
+      final boolean encode ) {
+    // warm up both implementations before measuring either
+    measure( paths, multiByte, encode, false );
+    measure( paths, multiByte, encode, true );
+    long[] split = measure( paths, multiByte, encode, false );
+    long[] helper = measure( paths, multiByte, encode, true );
+    long calls = (long) paths.length * ROUNDS;
+    System.out.println( String.format( "  %-26s split %,8d ns %,6d B   helper %,8d ns %,6d B",
+        label, split[0] / calls, perCall( split[1], calls ), helper[0] / calls, perCall( helper[1], calls ) ) );
+  }
+
+  private static long perCall( final long total, final long calls ) {
+    return total < 0 ? -1 : total / calls;
+  }
+
+  /**
+   * @return the elapsed nanoseconds and the bytes allocated by this thread, or -1 bytes when they are not measured
+   */
+  private static long[] measure( final String[] paths, final boolean multiByte, final boolean encode,
+      final boolean helper ) {
+    long allocated = allocatedBytes();
+    long start = System.nanoTime();
+    int sink = 0;
+    for ( int round = 0; round < ROUNDS; round++ ) {
+      for ( String path : paths ) {
+        String converted;
+        if ( helper ) {
+          converted = encode ? JcrStringHelper.pathEncode( path, multiByte ) : JcrStringHelper.pathDecode( path,
+              multiByte );
+        } else {
+          converted = splitConvert( path, multiByte, encode );
+        }
+        sink += converted.length();
+      }
+    }
+    long elapsed = System.nanoTime() - start;
+    long bytes = allocated < 0 ? -1 : allocatedBytes() - allocated;
+    if ( sink == 0 ) {
+      System.out.println();
+    }
+    return new long[] { elapsed, bytes };
+  }
+
+  /**
+   * The conversion {@link JcrStringHelper} used before the fast paths: split on the separator and convert every name.
+   */
+  private static String splitConvert( final String path, final boolean multiByte, final boolean encode ) {
+    String[] folders = path.split( SEPARATOR );
+    StringBuilder converted = new StringBuilder( path.length() * 2 );
+    for ( int i = 0; i < folders.length; i++ ) {
+      converted.append( encode ? JcrStringHelper.fileNameEncode( folders[i], multiByte ) : JcrStringHelper
+          .fileNameDecode( folders[i], multiByte ) );
+      if ( i != folders.length - 1 || path.endsWith( SEPARATOR ) ) {
+        converted.append( SEPARATOR );
+      }
+    }
+    return converted.toString();
+  }
+
+  private static long allocatedBytes() {
+    ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    if ( threads instanceof com.sun.management.ThreadMXBean ) {
+      return ( (com.sun.management.ThreadMXBean) threads ).getThreadAllocatedBytes( Thread.currentThread().getId() );
+    }
+    return -1;
+  }
+
+}
@@ -25,6 +25,7 @@ import org.pentaho.platform.engine.core.system.boot.PlatformInitializationExcept
 import org.pentaho.test.platform.engine.core.MicroPlatform;
 
 import static junit.framework.Assert.assertTrue;
+import static org.junit.Assert.assertSame;
 import static junit.framework.TestCase.assertEquals;
 import static junit.framework.TestCase.assertFalse;
 
@@ -136,6 +137,55 @@ public class JcrStringHelperTest {
     assertTrue( JcrStringHelper.isEncoded( PATH_TO_REPORT_ENCODED ) );
   }
 
+  @Test
+  public void testPlainPathIsReturnedAsIs() {
+    String path = "/public/Steel Wheels/Sales-2019/report_1.prpt";
+    assertSame( path, JcrStringHelper.pathEncode( path, false ) );
+    assertSame( path, JcrStringHelper.pathDecode( path, false ) );
+    assertSame( path, JcrStringHelper.pathDecode( path, true ) );
+  }
+
+  @Test
+  public void testEncodedPathIsCached() {
+    String path = "/public/[cached]/a*b";
+    String encodedPath = JcrStringHelper.pathEncode( path, false );
+    assertEquals( "/public/%5Bcached%5D/a%2Ab", encodedPath );
+    assertSame( encodedPath, JcrStringHelper.pathEncode( new String( path ), false ) );
+    assertEquals( path, JcrStringHelper.pathDecode( encodedPath, false ) );
+  }
+
+  @Test
+  public void testPathConversionMatchesNameConversion() {
+    String[] paths = { "", "/", "//", "a//", "/a//", "//a", "a//b", "/a/b/", "a", ".", "..", "/a/./b", "/a/../b",
+      "a.b", "ab.", " ab", "ab ", "a b", "/ a/b /", "3err", "/asdf/3err", "_x0033_err", "/a_b/_x", "-a", "a-b",
+      "/a%/b%25", "/x/%5Bx%5D", "a:b", "a|b", "a*b", "[a]", "/\u00e9t\u00e9/r\u00e9sum\u00e9", "a\tb", "\u4e2d\u6587/b",
+      PATH_TO_REPORT_NOT_ENCODED, PATH_TO_REPORT_ENCODED };
+    for ( String path : paths ) {
+      for ( boolean useMultiByte : new boolean[] { false, true } ) {
+        assertEquals( path, splitConvert( path, useMultiByte, true ), JcrStringHelper.pathEncode( path,
+            useMultiByte ) );
+        assertEquals( path, splitConvert( path, useMultiByte, false ), JcrStringHelper.pathDecode( path,
+            useMultiByte ) );
+      }
+    }
+  }
+
+  /**
+   * The original conversion: split the path and convert every name.
+   */
+  private static String splitConvert( String path, boolean useMultiByte, boolean encode ) {
+    String[] folders = path.split( "/" );
+    StringBuilder convertedPath = new StringBuilder();
+    for ( int i = 0; i < folders.length; i++ ) {
+      convertedPath.append( encode ? JcrStringHelper.fileNameEncode( folders[i], useMultiByte ) : JcrStringHelper
+          .fileNameDecode( folders[i], useMultiByte ) );
+      if ( i != folders.length - 1 || path.endsWith( "/" ) ) {
+        convertedPath.append( "/" );
+      }
+    }
+    return convertedPath.toString();
+  }
+
   protected String getSolutionPath() {
     return SOLUTION_PATH;
   }
@@ -22,13 +22,24 @@ package org.pentaho.platform.repository2.unified.jcr;
 
 import org.apache.jackrabbit.core.IPentahoSystemSessionFactory;
 import org.apache.jackrabbit.core.RepositoryImpl;
+import org.apache.jackrabbit.core.data.DataStore;
 import org.apache.jackrabbit.core.gc.GarbageCollector;
 import org.junit.Test;
 import org.pentaho.test.platform.engine.core.MicroPlatform;
 
+import javax.jcr.Node;
+import javax.jcr.NodeIterator;
+import javax.jcr.Property;
+import javax.jcr.PropertyIterator;
+import javax.jcr.PropertyType;
 import javax.jcr.Repository;
 import javax.jcr.Session;
+import javax.jcr.Workspace;
+import javax.jcr.observation.ObservationManager;
+import java.io.File;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.mockito.Mockito.*;
 
 /**
@@ -65,6 +76,87 @@ public class RepositoryCleanerTest {
     verify( collector, times( 1 ) ).mark();
     verify( collector, times( 1 ) ).sweep();
     verify( collector, times( 1 ) ).close();
+    assertEquals( RepositoryGcStatus.Phase.COMPLETED, cleaner.getStatus().getPhase() );
+  }
+
+  @Test
+  public void incrementalGc() throws Exception {
+    DataStore store = mock( DataStore.class );
+    when( store.deleteAllOlderThan( anyLong() ) ).thenReturn( 3 );
+    RepositoryImpl repository = mock( RepositoryImpl.class );
+    when( repository.getDataStore() ).thenReturn( store );
+
+    Property binary = mock( Property.class );
+    when( binary.getType() ).thenReturn( PropertyType.BINARY );
+    Node child = mockNode( "/file", binary, null );
+    Node root = mockNode( "/", null, child );
+    Node versionStorage = mock( Node.class );
+    when( versionStorage.getName() ).thenReturn( "jcr:versionStorage" );
+
+    Session systemSession = mock( Session.class );
+    Workspace workspace = mock( Workspace.class );
+    when( systemSession.getWorkspace() ).thenReturn( workspace );
+    when( systemSession.getRootNode() ).thenReturn( root );
+    when( systemSession.getNode( "/jcr:system/jcr:versionStorage" ) ).thenReturn( versionStorage );
+    when( versionStorage.getNodes() ).thenReturn( mock( NodeIterator.class ) );
+    when( workspace.getAccessibleWorkspaceNames() ).thenReturn( new String[] { "default" } );
+    when( workspace.getObservationManager() ).thenReturn( mock( ObservationManager.class ) );
+    IPentahoSystemSessionFactory sessionFactory = mock( IPentahoSystemSessionFactory.class );
+    when( sessionFactory.create( repository ) ).thenReturn( systemSession );
+    when( sessionFactory.create( repository, "default" ) ).thenReturn( systemSession );
+
+    MicroPlatform mp = new MicroPlatform( getSolutionPath() );
+    mp.defineInstance( Repository.class, repository );
+    mp.defineInstance( "jcrRepository", repository );
+    mp.start();
+
+    File checkpoint = File.createTempFile( "gc-checkpoint", ".properties" );
+    checkpoint.delete();
+    RepositoryCleaner cleaner = new RepositoryCleaner();
+    cleaner.setSystemSessionFactory( sessionFactory );
+    cleaner.setIncremental( true );
+    cleaner.setCheckpointFile( checkpoint.getAbsolutePath() );
+    try {
+      cleaner.gc();
+    } finally {
+      mp.stop();
+    }
+
+    verify( repository, never() ).createDataStoreGarbageCollector();
+    // marking starts, and is switched off after the sweep
+    verify( store, times( 2 ) ).updateModifiedDateOnAccess( anyLong() );
+    verify( store ).updateModifiedDateOnAccess( 0 );
+    verify( binary ).getLength();
+    verify( store ).deleteAllOlderThan( anyLong() );
+
+    RepositoryGcStatus status = cleaner.getStatus();
+    assertEquals( RepositoryGcStatus.Phase.COMPLETED, status.getPhase() );
+    assertEquals( 2, status.getNodesScanned() );
+    assertEquals( 1, status.getBinariesMarked() );
+    assertEquals( 3, status.getBinariesDeleted() );
+    assertFalse( checkpoint.exists() );
+  }
+
+  private Node mockNode( String path, Property property, Node child ) throws Exception {
+    Node node = mock( Node.class );
+    when( node.getPath() ).thenReturn( path );
+    PropertyIterator properties = mock( PropertyIterator.class );
+    if ( property == null ) {
+      when( properties.hasNext() ).thenReturn( false );
+    } else {
+      when( properties.hasNext() ).thenReturn( true, false );
+      when( properties.nextProperty() ).thenReturn( property );
+    }
+    when( node.getProperties() ).thenReturn( properties );
+    NodeIterator iterator = mock( NodeIterator.class );
+    if ( child == null ) {
+      when( iterator.hasNext() ).thenReturn( false );
+    } else {
+      when( iterator.hasNext() ).thenReturn( true, false );
+      when( iterator.nextNode() ).thenReturn( child );
+    }
+    when( node.getNodes() ).thenReturn( iterator );
+    return node;
   }
 
   protected String getSolutionPath() {
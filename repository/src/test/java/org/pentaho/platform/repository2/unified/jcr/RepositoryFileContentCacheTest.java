@@ -0,0 +1,105 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.repository2.unified.jcr;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.platform.api.repository2.unified.data.simple.SimpleRepositoryFileData;
+
+import java.io.ByteArrayInputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class RepositoryFileContentCacheTest {
+
+  private static final byte[] SMALL = "<schema/>".getBytes();
+
+  private RepositoryFileContentCache cache;
+
+  @Before
+  public void setUp() {
+    cache = new RepositoryFileContentCache( 1024, 16 );
+  }
+
+  @Test
+  public void testHitReturnsFreshStream() throws Exception {
+    SimpleRepositoryFileData returned = cache.put( "id", "1.0", data( SMALL ) );
+    assertArrayEquals( SMALL, IOUtils.toByteArray( returned.getInputStream() ) );
+
+    SimpleRepositoryFileData first = cache.get( "id", "1.0" );
+    SimpleRepositoryFileData second = cache.get( "id", "1.0" );
+    assertArrayEquals( SMALL, IOUtils.toByteArray( first.getInputStream() ) );
+    assertArrayEquals( SMALL, IOUtils.toByteArray( second.getInputStream() ) );
+    assertEquals( "UTF-8", first.getEncoding() );
+    assertEquals( "text/xml", first.getMimeType() );
+  }
+
+  @Test
+  public void testOtherVersionMisses() throws Exception {
+    cache.put( "id", "1.0", data( SMALL ) );
+    assertNull( cache.get( "id", "1.1" ) );
+  }
+
+  @Test
+  public void testLargeFileIsNotCachedButFullyReadable() throws Exception {
+    byte[] large = new byte[100];
+    for ( int i = 0; i < large.length; i++ ) {
+      large[i] = (byte) i;
+    }
+    SimpleRepositoryFileData returned = cache.put( "id", "1.0", data( large ) );
+    assertArrayEquals( large, IOUtils.toByteArray( returned.getInputStream() ) );
+    assertNull( cache.get( "id", "1.0" ) );
+  }
+
+  @Test
+  public void testInvalidateDropsAllVersions() throws Exception {
+    cache.put( "id", "1.0", data( SMALL ) );
+    cache.put( "id", "1.1", data( SMALL ) );
+    cache.put( "other", "1.0", data( SMALL ) );
+
+    cache.invalidate( "id" );
+
+    assertNull( cache.get( "id", "1.0" ) );
+    assertNull( cache.get( "id", "1.1" ) );
+    assertNotNull( cache.get( "other", "1.0" ) );
+  }
+
+  @Test
+  public void testZeroTotalBytesDisablesCache() throws Exception {
+    cache = new RepositoryFileContentCache( 0, 16 );
+    SimpleRepositoryFileData data = data( SMALL );
+
+    assertFalse( cache.isEnabled() );
+    assertSame( data, cache.put( "id", "1.0", data ) );
+    assertEquals( SMALL.length, data.getInputStream().available() );
+    assertNull( cache.get( "id", "1.0" ) );
+  }
+
+  private static SimpleRepositoryFileData data( byte[] bytes ) {
+    return new SimpleRepositoryFileData( new ByteArrayInputStream( bytes ), "UTF-8", "text/xml" );
+  }
+}
@@ -0,0 +1,131 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.repository2.unified.jcr;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class RepositoryFileLocaleCacheTest {
+
+  private RepositoryFileLocaleCache cache;
+
+  @Before
+  public void setUp() {
+    cache = new RepositoryFileLocaleCache( 100, 0 );
+  }
+
+  @Test
+  public void testHitReturnsCopy() {
+    cache.put( "id", "1.0", locales( "Sales" ), cache.getInvalidationStamp() );
+
+    Map<String, Properties> first = cache.get( "id", "1.0" );
+    assertEquals( "Sales", first.get( "default" ).getProperty( "file.title" ) );
+    first.get( "default" ).setProperty( "file.title", "Changed" );
+    first.remove( "default" );
+
+    assertEquals( "Sales", cache.get( "id", "1.0" ).get( "default" ).getProperty( "file.title" ) );
+  }
+
+  @Test
+  public void testPutCopies() {
+    Map<String, Properties> locales = locales( "Sales" );
+    cache.put( "id", "1.0", locales, cache.getInvalidationStamp() );
+    locales.get( "default" ).setProperty( "file.title", "Changed" );
+
+    assertEquals( "Sales", cache.get( "id", "1.0" ).get( "default" ).getProperty( "file.title" ) );
+  }
+
+  @Test
+  public void testOtherVersionMisses() {
+    cache.put( "id", "1.0", locales( "Sales" ), cache.getInvalidationStamp() );
+    assertNull( cache.get( "id", "1.1" ) );
+    assertEquals( 1, cache.getStats().missCount() );
+  }
+
+  @Test
+  public void testInvalidateDropsAllVersions() {
+    cache.put( "id", "1.0", locales( "Sales" ), cache.getInvalidationStamp() );
+    cache.put( "id", "1.1", locales( "Sales" ), cache.getInvalidationStamp() );
+    cache.put( "other", "", locales( "Other" ), cache.getInvalidationStamp() );
+
+    cache.invalidate( "id" );
+
+    assertNull( cache.get( "id", "1.0" ) );
+    assertNull( cache.get( "id", "1.1" ) );
+    assertNotNull( cache.get( "other", "" ) );
+  }
+
+  @Test
+  public void testNewVersionReplacesEntry() {
+    cache.put( "id", "1.0", locales( "Sales" ), cache.getInvalidationStamp() );
+    cache.put( "id", "1.1", locales( "Revenue" ), cache.getInvalidationStamp() );
+
+    assertEquals( 1, cache.getSize() );
+    assertNull( cache.get( "id", "1.0" ) );
+    assertEquals( "Revenue", cache.get( "id", "1.1" ).get( "default" ).getProperty( "file.title" ) );
+  }
+
+  @Test
+  public void testPutAfterInvalidationIsDropped() {
+    // a reader reads the old properties, then a save invalidates the file before the reader puts them
+    long stamp = cache.getInvalidationStamp();
+    cache.invalidate( "id" );
+    cache.put( "id", "", locales( "Sales" ), stamp );
+
+    assertNull( cache.get( "id", "" ) );
+    assertEquals( 0, cache.getSize() );
+
+    cache.put( "id", "", locales( "Revenue" ), cache.getInvalidationStamp() );
+    assertEquals( "Revenue", cache.get( "id", "" ).get( "default" ).getProperty( "file.title" ) );
+  }
+
+  @Test
+  public void testInvalidateAllDropsPendingPuts() {
+    long stamp = cache.getInvalidationStamp();
+    cache.invalidateAll();
+    cache.put( "id", "1.0", locales( "Sales" ), stamp );
+
+    assertNull( cache.get( "id", "1.0" ) );
+  }
+
+  @Test
+  public void testZeroEntriesDisablesCache() {
+    cache = new RepositoryFileLocaleCache( 0, 0 );
+    cache.put( "id", "1.0", locales( "Sales" ), cache.getInvalidationStamp() );
+    assertNull( cache.get( "id", "1.0" ) );
+  }
+
+  private static Map<String, Properties> locales( String title ) {
+    Properties properties = new Properties();
+    properties.setProperty( "file.title", title );
+    Map<String, Properties> locales = new HashMap<String, Properties>();
+    locales.put( "default", properties );
+    return locales;
+  }
+}
@@ -0,0 +1,158 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.repository2.unified.jcr;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.jcr.Item;
+import javax.jcr.ItemNotFoundException;
+import javax.jcr.Node;
+import javax.jcr.PathNotFoundException;
+import javax.jcr.Session;
+import javax.jcr.observation.Event;
+import javax.jcr.observation.EventIterator;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class RepositoryPathCacheTest {
+
+  private RepositoryPathCache cache;
+
+  private Session session;
+
+  @Before
+  public void setUp() throws Exception {
+    cache = new RepositoryPathCache( 100 );
+    session = mock( Session.class );
+  }
+
+  @Test
+  public void testHitResolvesByIdentifier() throws Exception {
+    Node node = node( "id1", "/pentaho/tenant0/public" );
+    when( session.getItem( "/pentaho/tenant0/public" ) ).thenReturn( node );
+    when( session.getNodeByIdentifier( "id1" ) ).thenReturn( node );
+
+    assertSame( node, cache.getItem( session, "/pentaho/tenant0/public" ) );
+    assertSame( node, cache.getItem( session, "/pentaho/tenant0/public" ) );
+
+    verify( session, times( 1 ) ).getItem( "/pentaho/tenant0/public" );
+    verify( session, times( 1 ) ).getNodeByIdentifier( "id1" );
+    assertEquals( 1, cache.getSize() );
+  }
+
+  @Test
+  public void testStalePathFallsBack() throws Exception {
+    Node moved = node( "id1", "/pentaho/tenant0/other" );
+    Node current = node( "id2", "/pentaho/tenant0/public" );
+    cache.getItem( sessionReturning( "/pentaho/tenant0/public", moved ), "/pentaho/tenant0/public" );
+    when( session.getNodeByIdentifier( "id1" ) ).thenReturn( moved );
+    when( session.getItem( "/pentaho/tenant0/public" ) ).thenReturn( current );
+
+    assertSame( current, cache.getItem( session, "/pentaho/tenant0/public" ) );
+    when( session.getNodeByIdentifier( "id2" ) ).thenReturn( current );
+    assertSame( current, cache.getItem( session, "/pentaho/tenant0/public" ) );
+    verify( session, times( 1 ) ).getItem( "/pentaho/tenant0/public" );
+  }
+
+  @Test
+  public void testUnreadableHitFallsBack() throws Exception {
+    Node node = node( "id1", "/pentaho/tenant0/home/suzy" );
+    cache.getItem( sessionReturning( "/pentaho/tenant0/home/suzy", node ), "/pentaho/tenant0/home/suzy" );
+    when( session.getNodeByIdentifier( "id1" ) ).thenThrow( new ItemNotFoundException() );
+    when( session.getItem( "/pentaho/tenant0/home/suzy" ) ).thenThrow( new PathNotFoundException() );
+
+    try {
+      cache.getItem( session, "/pentaho/tenant0/home/suzy" );
+      fail();
+    } catch ( PathNotFoundException e ) {
+      // the caller's session decides
+    }
+    assertEquals( 0, cache.getSize() );
+  }
+
+  @Test
+  public void testInvalidateDropsSubtree() throws Exception {
+    put( "id1", "/pentaho/tenant0/public" );
+    put( "id2", "/pentaho/tenant0/public/a" );
+    put( "id3", "/pentaho/tenant0/public/a/b" );
+    put( "id4", "/pentaho/tenant0/public2" );
+
+    cache.invalidate( "/pentaho/tenant0/public/a" );
+
+    assertEquals( 2, cache.getSize() );
+  }
+
+  @Test
+  public void testMoveEventDropsSource() throws Exception {
+    put( "id1", "/pentaho/tenant0/public/a" );
+    put( "id2", "/pentaho/tenant0/public/a/b" );
+    put( "id3", "/pentaho/tenant0/public/c" );
+    Event event = mock( Event.class );
+    when( event.getType() ).thenReturn( Event.NODE_MOVED );
+    when( event.getInfo() ).thenReturn( Collections.singletonMap( "srcAbsPath", "/pentaho/tenant0/public/a" ) );
+    EventIterator events = mock( EventIterator.class );
+    when( events.hasNext() ).thenReturn( true, false );
+    when( events.nextEvent() ).thenReturn( event );
+
+    cache.onEvent( events );
+
+    assertEquals( 1, cache.getSize() );
+  }
+
+  @Test
+  public void testDisabled() throws Exception {
+    cache = new RepositoryPathCache( 0 );
+    Node node = node( "id1", "/pentaho" );
+    when( session.getItem( "/pentaho" ) ).thenReturn( node );
+
+    assertSame( node, cache.getItem( session, "/pentaho" ) );
+
+    assertEquals( 0, cache.getSize() );
+    verify( session, never() ).getNodeByIdentifier( "id1" );
+  }
+
+  private void put( final String id, final String path ) throws Exception {
+    cache.getItem( sessionReturning( path, node( id, path ) ), path );
+  }
+
+  private Session sessionReturning( final String path, final Item item ) throws Exception {
+    Session other = mock( Session.class );
+    when( other.getItem( path ) ).thenReturn( item );
+    return other;
+  }
+
+  private Node node( final String id, final String path ) throws Exception {
+    Node node = mock( Node.class );
+    when( node.isNode() ).thenReturn( true );
+    when( node.getIdentifier() ).thenReturn( id );
+    when( node.getPath() ).thenReturn( path );
+    return node;
+  }
+}
@@ -0,0 +1,213 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.repository2.unified.jcr;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.platform.api.repository2.unified.RepositoryFile;
+import org.pentaho.platform.api.repository2.unified.RepositoryFileTree;
+import org.pentaho.platform.api.repository2.unified.RepositoryRequest;
+import org.pentaho.platform.repository2.unified.jcr.sejcr.CredentialsStrategySessionFactory;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import javax.jcr.Session;
+import javax.jcr.Workspace;
+import javax.jcr.observation.Event;
+import javax.jcr.observation.EventIterator;
+import javax.jcr.observation.ObservationManager;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class RepositoryTreeSnapshotCacheTest {
+
+  private static final String ROOT = "/pentaho/tenant0";
+
+  private static final String HOME = "/pentaho/tenant0/home";
+
+  private RepositoryTreeSnapshotCache cache;
+
+  private CountingLoader loader;
+
+  @Before
+  public void setUp() throws Exception {
+    ObservationManager observationManager = mock( ObservationManager.class );
+    Workspace workspace = mock( Workspace.class );
+    when( workspace.getObservationManager() ).thenReturn( observationManager );
+    Session session = mock( Session.class );
+    when( session.getWorkspace() ).thenReturn( workspace );
+    CredentialsStrategySessionFactory sessionFactory = mock( CredentialsStrategySessionFactory.class );
+    when( sessionFactory.getAdminSession() ).thenReturn( session );
+
+    cache = new RepositoryTreeSnapshotCache( 100 );
+    cache.setSessionFactory( sessionFactory );
+    loader = new CountingLoader();
+  }
+
+  @After
+  public void tearDown() {
+    SecurityContextHolder.clearContext();
+  }
+
+  @Test
+  public void testUsersWithSameRolesShareTree() {
+    login( "suzy", "Authenticated", "Power User" );
+    RepositoryFileTree suzyTree = cache.getTree( request( "/" ), ROOT, HOME, loader );
+    login( "tiffany", "Power User", "Authenticated" );
+    RepositoryFileTree tiffanyTree = cache.getTree( request( "/" ), ROOT, HOME, loader );
+
+    // the root was loaded once; each user got their own home folder
+    assertEquals( Arrays.asList( "/", "/home", "/home" ), loader.paths );
+    assertEquals( 1, cache.getSize() );
+    assertSame( suzyTree.getChildren().get( 0 ), tiffanyTree.getChildren().get( 0 ) );
+    assertEquals( "/home/suzy", suzyTree.getChildren().get( 1 ).getChildren().get( 0 ).getFile().getPath() );
+    assertEquals( "/home/tiffany", tiffanyTree.getChildren().get( 1 ).getChildren().get( 0 ).getFile().getPath() );
+  }
+
+  @Test
+  public void testUsersWithDifferentRolesDoNotShareTree() {
+    login( "suzy", "Authenticated", "Power User" );
+    cache.getTree( request( "/" ), ROOT, HOME, loader );
+    login( "admin", "Authenticated", "Administrator" );
+    cache.getTree( request( "/" ), ROOT, HOME, loader );
+
+    assertEquals( 2, cache.getSize() );
+  }
+
+  @Test
+  public void testHomeFolderIsNotShared() {
+    login( "suzy", "Authenticated" );
+    cache.getTree( request( "/home" ), ROOT + "/home", HOME, loader );
+    cache.getTree( request( "/home" ), ROOT + "/home", HOME, loader );
+
+    assertEquals( 2, loader.paths.size() );
+    assertEquals( 0, cache.getSize() );
+  }
+
+  @Test
+  public void testChangeDropsAffectedTrees() {
+    login( "suzy", "Authenticated" );
+    cache.getTree( request( "/" ), ROOT, HOME, loader );
+    cache.getTree( request( "/public" ), ROOT + "/public", HOME, loader );
+    cache.getTree( request( "/etc" ), ROOT + "/etc", HOME, loader );
+
+    cache.onEvent( events( ROOT + "/home/suzy/report.prpt" ) );
+    assertEquals( 3, cache.getSize() );
+
+    cache.onEvent( events( ROOT + "/public/report.prpt/jcr:content" ) );
+    assertEquals( 1, cache.getSize() );
+
+    // access control changes on an ancestor affect everything below it
+    cache.onEvent( events( ROOT + "/rep:policy/allow" ) );
+    assertEquals( 0, cache.getSize() );
+  }
+
+  @Test
+  public void testDetachCopiesEveryFile() {
+    RepositoryFileTree tree = folder( "/public", folder( "/public/reports" ) );
+    tree.setVersioningEnabled( true );
+
+    RepositoryFileTree detached = RepositoryTreeSnapshotCache.detach( tree );
+
+    assertNotSame( tree.getFile(), detached.getFile() );
+    assertEquals( tree.getFile(), detached.getFile() );
+    assertEquals( Boolean.TRUE, detached.getVersioningEnabled() );
+    RepositoryFile child = detached.getChildren().get( 0 ).getFile();
+    assertNotSame( tree.getChildren().get( 0 ).getFile(), child );
+    assertEquals( "/public/reports", child.getPath() );
+  }
+
+  @Test
+  public void testDisabled() {
+    cache = new RepositoryTreeSnapshotCache( 0 );
+    login( "suzy", "Authenticated" );
+    cache.getTree( request( "/" ), ROOT, HOME, loader );
+    cache.getTree( request( "/" ), ROOT, HOME, loader );
+
+    assertEquals( Arrays.asList( "/", "/" ), loader.paths );
+  }
+
+  private static RepositoryRequest request( final String path ) {
+    return new RepositoryRequest( path, false, -1, null );
+  }
+
+  private static void login( final String user, final String... roles ) {
+    List<GrantedAuthority> authorities = new ArrayList<GrantedAuthority>();
+    for ( String role : roles ) {
+      authorities.add( new SimpleGrantedAuthority( role ) );
+    }
+    SecurityContextHolder.getContext().setAuthentication(
+        new UsernamePasswordAuthenticationToken( user, null, authorities ) );
+  }
+
+  private static EventIterator events( final String path ) {
+    Event event;
+    try {
+      event = mock( Event.class );
+      when( event.getType() ).thenReturn( Event.PROPERTY_CHANGED );
+      when( event.getPath() ).thenReturn( path );
+    } catch ( Exception e ) {
+      throw new RuntimeException( e );
+    }
+    EventIterator events = mock( EventIterator.class );
+    when( events.hasNext() ).thenReturn( true, false );
+    when( events.nextEvent() ).thenReturn( event );
+    return events;
+  }
+
+  private static RepositoryFileTree folder( final String path, final RepositoryFileTree... children ) {
+    String name = path.substring( path.lastIndexOf( '/' ) + 1 );
+    RepositoryFile file = new RepositoryFile.Builder( path, name ).path( path ).folder( true ).build();
+    return new RepositoryFileTree( file, Arrays.asList( children ) );
+  }
+
+  /**
+   * Returns the public folder and the home folder of the current user below the root.
+   */
+  private static class CountingLoader implements RepositoryTreeSnapshotCache.TreeLoader {
+
+    private final List<String> paths = new ArrayList<String>();
+
+    @Override
+    public RepositoryFileTree load( final RepositoryRequest repositoryRequest ) {
+      paths.add( repositoryRequest.getPath() );
+      String user = SecurityContextHolder.getContext().getAuthentication().getName();
+      RepositoryFileTree home = folder( "/home", folder( "/home/" + user ) );
+      if ( "/home".equals( repositoryRequest.getPath() ) ) {
+        return home;
+      }
+      if ( "/".equals( repositoryRequest.getPath() ) ) {
+        return folder( "/", folder( "/public" ), home );
+      }
+      return folder( repositoryRequest.getPath(), new RepositoryFileTree[ 0 ] );
+    }
+  }
+}
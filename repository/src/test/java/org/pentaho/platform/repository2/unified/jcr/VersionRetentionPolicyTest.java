@@ -0,0 +1,116 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.repository2.unified.jcr;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.jcr.version.Version;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class VersionRetentionPolicyTest {
+
+  private Calendar now;
+
+  private VersionRetentionPolicy policy;
+
+  @Before
+  public void setUp() {
+    now = Calendar.getInstance();
+    now.set( 2018, Calendar.JUNE, 30, 12, 0, 0 );
+    policy = new VersionRetentionPolicy();
+  }
+
+  @Test
+  public void testAppliesTo() {
+    assertTrue( policy.appliesTo( "/public/a.prpt" ) );
+
+    policy.setFolder( "/public/" );
+    policy.setExtensions( "PRPT, xanalyzer" );
+    assertTrue( policy.appliesTo( "/public/a.prpt" ) );
+    assertTrue( policy.appliesTo( "/public/sub/b.xanalyzer" ) );
+    assertFalse( policy.appliesTo( "/public/c.xaction" ) );
+    assertFalse( policy.appliesTo( "/publicity/a.prpt" ) );
+    assertFalse( policy.appliesTo( "/home/admin/a.prpt" ) );
+  }
+
+  @Test
+  public void testMaxVersions() throws Exception {
+    List<Version> versions = versions( 1, 2, 3, 4, 5 );
+    policy.setMaxVersions( 2 );
+    assertEquals( versions.subList( 0, 3 ), policy.selectVersionsToRemove( versions, versions.get( 4 ), now ) );
+  }
+
+  @Test
+  public void testMaxAgeDays() throws Exception {
+    List<Version> versions = versions( 1, 20, 28, 29 );
+    policy.setMaxAgeDays( 7 );
+    assertEquals( versions.subList( 0, 2 ), policy.selectVersionsToRemove( versions, versions.get( 3 ), now ) );
+  }
+
+  @Test
+  public void testOnePerDay() throws Exception {
+    List<Version> versions = versions( 27, 27, 28, 28, 28 );
+    policy.setOnePerDay( true );
+    assertEquals( Arrays.asList( versions.get( 1 ), versions.get( 3 ) ),
+      policy.selectVersionsToRemove( versions, versions.get( 4 ), now ) );
+  }
+
+  @Test
+  public void testBaseVersionIsKept() throws Exception {
+    List<Version> versions = versions( 1, 2, 3 );
+    policy.setMaxVersions( 1 );
+    // a restored older version is the base version
+    assertEquals( Arrays.asList( versions.get( 1 ), versions.get( 2 ) ),
+      policy.selectVersionsToRemove( versions, versions.get( 0 ), now ) );
+  }
+
+  @Test
+  public void testNoLimitsKeepsEverything() throws Exception {
+    List<Version> versions = versions( 1, 1, 2 );
+    assertTrue( policy.selectVersionsToRemove( versions, versions.get( 2 ), now ).isEmpty() );
+  }
+
+  /**
+   * Creates one version per given day of June 2018, an hour apart, named 1.0, 1.1, ...
+   */
+  private List<Version> versions( final int... daysOfJune ) throws Exception {
+    List<Version> versions = new ArrayList<Version>();
+    for ( int i = 0; i < daysOfJune.length; i++ ) {
+      Calendar created = Calendar.getInstance();
+      created.set( 2018, Calendar.JUNE, daysOfJune[ i ], i, 0, 0 );
+      Version version = mock( Version.class );
+      when( version.getName() ).thenReturn( "1." + i );
+      when( version.getCreated() ).thenReturn( created );
+      versions.add( version );
+    }
+    return versions;
+  }
+}
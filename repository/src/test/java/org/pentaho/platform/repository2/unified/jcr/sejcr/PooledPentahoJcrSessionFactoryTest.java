@@ -0,0 +1,251 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.repository2.unified.jcr.sejcr;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+
+import javax.jcr.Repository;
+import javax.jcr.Session;
+import javax.jcr.SimpleCredentials;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class PooledPentahoJcrSessionFactoryTest {
+
+  private static final SimpleCredentials ADMIN = new SimpleCredentials( "admin", new char[ 0 ] );
+
+  private Repository repository;
+
+  private PooledPentahoJcrSessionFactory factory;
+
+  @Before
+  public void setUp() throws Exception {
+    repository = mock( Repository.class );
+    when( repository.login( any( SimpleCredentials.class ), anyString() ) ).then( invocation -> {
+      Session session = mock( Session.class );
+      when( session.isLive() ).thenReturn( true );
+      return session;
+    } );
+    factory = new PooledPentahoJcrSessionFactory( repository, null, 0 );
+  }
+
+  @Test
+  public void testReturnedSessionIsReusedByAnotherThread() throws Exception {
+    Session session = factory.getSession( ADMIN );
+    factory.releaseSession( session );
+
+    AtomicReference<Session> other = new AtomicReference<Session>();
+    Thread thread = new Thread( () -> {
+      try {
+        other.set( factory.getSession( ADMIN ) );
+      } catch ( Exception e ) {
+        throw new RuntimeException( e );
+      }
+    } );
+    thread.start();
+    thread.join();
+
+    assertSame( session, other.get() );
+    verify( session ).refresh( false );
+    verify( session, never() ).logout();
+    assertEquals( 1, factory.getHitCount() );
+    assertEquals( 1, factory.getMissCount() );
+  }
+
+  @Test
+  public void testBorrowedSessionIsNotShared() throws Exception {
+    Session first = factory.getSession( ADMIN );
+    Session second = factory.getSession( ADMIN );
+    assertNotSame( first, second );
+    assertEquals( 2, factory.getActiveCount() );
+  }
+
+  @Test
+  public void testExhaustedPoolFallsBackToUnpooledSession() throws Exception {
+    factory.setMaxActivePerUser( 1 );
+    factory.setMaxWaitMillis( 10 );
+    Session pooled = factory.getSession( ADMIN );
+    Session unpooled = factory.getSession( ADMIN );
+    assertEquals( 1, factory.getWaitCount() );
+    assertEquals( 1, factory.getTimeoutCount() );
+
+    factory.releaseSession( unpooled );
+    verify( unpooled ).logout();
+    factory.releaseSession( pooled );
+    verify( pooled, never() ).logout();
+    assertEquals( 1, factory.getIdleCount() );
+  }
+
+  @Test
+  public void testIdleSessionsAreEvicted() throws Exception {
+    factory.setIdleTimeoutSeconds( -1 );
+    Session session = factory.getSession( ADMIN );
+    factory.releaseSession( session );
+    factory.evict();
+    verify( session ).logout();
+    assertEquals( 0, factory.getIdleCount() );
+    assertEquals( 1, factory.getEvictionCount() );
+  }
+
+  @Test
+  public void testDeadSessionIsNotLent() throws Exception {
+    Session session = factory.getSession( ADMIN );
+    factory.releaseSession( session );
+    when( session.isLive() ).thenReturn( false );
+    assertNotSame( session, factory.getSession( ADMIN ) );
+  }
+
+  @Test
+  public void testAbandonedSessionIsWrittenOff() throws Exception {
+    factory.setMaxActivePerUser( 1 );
+    factory.setMaxWaitMillis( 0 );
+    factory.setMaxBorrowSeconds( -1 );
+    Session leaked = factory.getSession( ADMIN );
+    factory.evict();
+    assertEquals( 1, factory.getAbandonedCount() );
+    assertEquals( 0, factory.getActiveCount() );
+    verify( leaked ).logout();
+
+    // the permit is back, and the leaked session never goes back to the pool
+    Session next = factory.getSession( ADMIN );
+    assertNotSame( leaked, next );
+    assertEquals( 0, factory.getTimeoutCount() );
+    factory.releaseSession( leaked );
+    assertEquals( 0, factory.getIdleCount() );
+    factory.releaseSession( next );
+  }
+
+  @Test
+  public void testLogoutOfProxyReturnsSessionOnce() throws Exception {
+    CredentialsStrategySessionFactory strategyFactory =
+      new CredentialsStrategySessionFactory( repository, mock( CredentialsStrategy.class ) );
+    Session session = factory.getSession( ADMIN );
+    Session proxy = strategyFactory.createSessionProxy( session, factory );
+
+    proxy.logout();
+    proxy.logout();
+    assertFalse( proxy.isLive() );
+    assertEquals( 1, factory.getIdleCount() );
+    verify( session, never() ).logout();
+  }
+
+  @Test
+  public void testLogoutOfProxyInReadOnlyTransactionReturnsSessionAfterCompletion() throws Exception {
+    factory.setMaxActivePerUser( 1 );
+    factory.setMaxWaitMillis( 0 );
+    CredentialsStrategySessionFactory strategyFactory =
+      new CredentialsStrategySessionFactory( repository, mock( CredentialsStrategy.class ) );
+
+    TransactionSynchronizationManager.initSynchronization();
+    TransactionSynchronizationManager.setCurrentTransactionReadOnly( true );
+    List<TransactionSynchronization> synchronizations;
+    Session session;
+    try {
+      session = factory.getSession( ADMIN );
+      Session proxy = strategyFactory.createSessionProxy( session, factory );
+      proxy.logout();
+      proxy.logout();
+
+      // still usable until the transaction is over
+      assertTrue( proxy.isLive() );
+      assertEquals( 1, factory.getActiveCount() );
+      synchronizations = TransactionSynchronizationManager.getSynchronizations();
+      assertEquals( 1, synchronizations.size() );
+    } finally {
+      TransactionSynchronizationManager.setCurrentTransactionReadOnly( false );
+      TransactionSynchronizationManager.clearSynchronization();
+    }
+    TransactionSynchronizationUtils
+      .invokeAfterCompletion( synchronizations, TransactionSynchronization.STATUS_COMMITTED );
+
+    assertEquals( 0, factory.getActiveCount() );
+    assertEquals( 1, factory.getIdleCount() );
+    verify( session, never() ).logout();
+    // the permit came back
+    assertSame( session, factory.getSession( ADMIN ) );
+    assertEquals( 0, factory.getTimeoutCount() );
+  }
+
+  @Test
+  public void testSessionIsOnlyReusedForEqualCredentials() throws Exception {
+    Session session = factory.getSession( ADMIN );
+    factory.releaseSession( session );
+
+    SimpleCredentials otherPassword = new SimpleCredentials( "admin", "secret".toCharArray() );
+    assertNotSame( session, factory.getSession( otherPassword ) );
+    SimpleCredentials otherAttribute = new SimpleCredentials( "admin", new char[ 0 ] );
+    otherAttribute.setAttribute( "token", "x" );
+    assertNotSame( session, factory.getSession( otherAttribute ) );
+    assertEquals( 3, factory.getPoolCount() );
+
+    // a new credentials object equal to the first one shares its pool
+    assertSame( session, factory.getSession( new SimpleCredentials( "admin", new char[ 0 ] ) ) );
+    assertEquals( 3, factory.getPoolCount() );
+  }
+
+  @Test
+  public void testSessionsArePooledPerWorkspace() throws Exception {
+    PooledPentahoJcrSessionFactory other = new PooledPentahoJcrSessionFactory( repository, "other", 0 );
+    Session session = other.getSession( ADMIN );
+    verify( repository ).login( ADMIN, "other" );
+    other.releaseSession( session );
+    assertSame( session, other.getSession( ADMIN ) );
+    verify( repository, never() ).login( any( SimpleCredentials.class ), eq( (String) null ) );
+  }
+
+  @Test
+  public void testStatisticsArePublishedOverJmx() throws Exception {
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    ObjectName name = new ObjectName( "org.pentaho.platform:type=JcrSessionPool,name=test" );
+    factory.setObjectName( name.toString() );
+    factory.registerMBean();
+    try {
+      factory.releaseSession( factory.getSession( ADMIN ) );
+      factory.getSession( ADMIN );
+      assertEquals( 1L, server.getAttribute( name, "HitCount" ) );
+      assertEquals( 1L, server.getAttribute( name, "MissCount" ) );
+      assertEquals( 1, server.getAttribute( name, "ActiveCount" ) );
+    } finally {
+      factory.close();
+    }
+    assertFalse( server.isRegistered( name ) );
+  }
+}
@@ -0,0 +1,142 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.repository2.unified.jcr.transform;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.pentaho.platform.api.repository2.unified.data.node.DataNode;
+import org.pentaho.platform.api.repository2.unified.data.node.DataNodeRef;
+import org.pentaho.platform.api.repository2.unified.data.node.NodeRepositoryFileData;
+import org.pentaho.platform.repository2.unified.jcr.PentahoJcrConstants;
+
+import javax.jcr.Binary;
+import javax.jcr.ItemNotFoundException;
+import javax.jcr.Node;
+import javax.jcr.NodeIterator;
+import javax.jcr.Property;
+import javax.jcr.Session;
+import javax.jcr.Value;
+import javax.jcr.ValueFactory;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class CompactNodeRepositoryFileDataTransformerTest {
+
+  private static final String REF_ID = "a2b0e4b6-5f1c-4d3e-8a53-000000000001";
+
+  private CompactNodeRepositoryFileDataTransformer transformer;
+
+  private Session session;
+
+  private PentahoJcrConstants constants;
+
+  private ValueFactory valueFactory;
+
+  private Node contentNode;
+
+  private Node fileNode;
+
+  @Before
+  public void setUp() throws Exception {
+    transformer = new CompactNodeRepositoryFileDataTransformer();
+    session = mock( Session.class );
+    when( session.getNamespacePrefix( PentahoJcrConstants.PHO_NS ) ).thenReturn( "pho" );
+    valueFactory = mock( ValueFactory.class );
+    when( session.getValueFactory() ).thenReturn( valueFactory );
+    constants = mock( PentahoJcrConstants.class );
+    when( constants.getJCR_CONTENT() ).thenReturn( "jcr:content" );
+
+    contentNode = mock( Node.class );
+    when( contentNode.getNodes( anyString() ) ).thenReturn( mock( NodeIterator.class ) );
+    fileNode = mock( Node.class );
+    when( fileNode.hasNode( "jcr:content" ) ).thenReturn( true );
+    when( fileNode.getNode( "jcr:content" ) ).thenReturn( contentNode );
+  }
+
+  private byte[] write( final DataNode node ) throws Exception {
+    ArgumentCaptor<InputStream> stream = ArgumentCaptor.forClass( InputStream.class );
+    Binary binary = mock( Binary.class );
+    when( valueFactory.createBinary( stream.capture() ) ).thenReturn( binary );
+    transformer.createContentNode( session, constants, new NodeRepositoryFileData( node ), fileNode );
+    verify( contentNode ).setProperty( "pho:compactData", binary );
+    return IOUtils.toByteArray( stream.getValue() );
+  }
+
+  private void storeCompactData( final byte[] bytes ) throws Exception {
+    Binary binary = mock( Binary.class );
+    when( binary.getStream() ).thenReturn( new ByteArrayInputStream( bytes ) );
+    Property property = mock( Property.class );
+    when( property.getBinary() ).thenReturn( binary );
+    when( contentNode.hasProperty( "pho:compactData" ) ).thenReturn( true );
+    when( contentNode.getProperty( "pho:compactData" ) ).thenReturn( property );
+  }
+
+  @Test
+  public void testWriteAndRead() throws Exception {
+    DataNode node = new DataNode( "chart" );
+    node.setProperty( "type", "bar" );
+    node.addNode( "series" ).setProperty( "size", 10L );
+
+    storeCompactData( write( node ) );
+
+    assertEquals( node, transformer.fromContentNode( session, constants, fileNode ).getNode() );
+    verify( contentNode, never() ).setProperty( eq( "pho:compactDataRefs" ), any( Value[].class ) );
+  }
+
+  @Test
+  public void testReferencesAreKept() throws Exception {
+    Node referenced = mock( Node.class );
+    Value refValue = mock( Value.class );
+    when( session.getNodeByIdentifier( REF_ID ) ).thenReturn( referenced );
+    when( valueFactory.createValue( referenced ) ).thenReturn( refValue );
+    DataNode node = new DataNode( "dashboard" );
+    node.setProperty( "source", new DataNodeRef( REF_ID ) );
+
+    storeCompactData( write( node ) );
+
+    verify( contentNode ).setProperty( "pho:compactDataRefs", new Value[] { refValue } );
+    assertEquals( REF_ID, transformer.fromContentNode( session, constants, fileNode ).getNode().getProperty( "source" )
+        .getRef().getId() );
+  }
+
+  @Test
+  public void testUnreadableReferenceIsMissing() throws Exception {
+    DataNode node = new DataNode( "dashboard" );
+    node.setProperty( "source", new DataNodeRef( REF_ID ) );
+    storeCompactData( DataNodeBinaryFormat.toBytes( node, new ArrayList<String>() ) );
+    when( session.getNodeByIdentifier( REF_ID ) ).thenThrow( new ItemNotFoundException() );
+
+    assertEquals( DataNodeRef.REF_MISSING, transformer.fromContentNode( session, constants, fileNode ).getNode()
+        .getProperty( "source" ).getRef().getId() );
+  }
+}
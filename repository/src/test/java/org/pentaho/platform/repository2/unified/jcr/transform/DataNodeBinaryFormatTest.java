@@ -0,0 +1,101 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.repository2.unified.jcr.transform;
+
+import org.junit.Test;
+import org.pentaho.platform.api.repository2.unified.data.node.DataNode;
+import org.pentaho.platform.api.repository2.unified.data.node.DataNodeRef;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class DataNodeBinaryFormatTest {
+
+  private static DataNode createTree() {
+    DataNode root = new DataNode( "report" );
+    root.setProperty( "title", "Sales über alles" );
+    root.setProperty( "visible", true );
+    root.setProperty( "ratio", 0.75 );
+    root.setProperty( "rows", 42L );
+    root.setProperty( "created", new Date( 1234567890L ) );
+    DataNode columns = root.addNode( "columns" );
+    for ( int i = 0; i < 3; i++ ) {
+      DataNode column = columns.addNode( "column" + i );
+      column.setProperty( "name", "col" + i );
+    }
+    root.addNode( "source" ).setProperty( "file", new DataNodeRef( "a2b0e4b6-5f1c-4d3e-8a53-000000000001" ) );
+    return root;
+  }
+
+  @Test
+  public void testRoundTrip() throws Exception {
+    DataNode tree = createTree();
+    List<String> refIds = new ArrayList<String>();
+    byte[] bytes = DataNodeBinaryFormat.toBytes( tree, refIds );
+
+    DataNode read = DataNodeBinaryFormat.fromBytes( new ByteArrayInputStream( bytes ) );
+    assertEquals( tree, read );
+    assertEquals( Arrays.asList( "a2b0e4b6-5f1c-4d3e-8a53-000000000001" ), refIds );
+  }
+
+  @Test
+  public void testChildOrderIsKept() throws Exception {
+    DataNode tree = createTree();
+    byte[] bytes = DataNodeBinaryFormat.toBytes( tree, new ArrayList<String>() );
+
+    Iterator<DataNode> columns =
+        DataNodeBinaryFormat.fromBytes( new ByteArrayInputStream( bytes ) ).getNode( "columns" ).getNodes().iterator();
+    assertEquals( "column0", columns.next().getName() );
+    assertEquals( "column1", columns.next().getName() );
+    assertEquals( "column2", columns.next().getName() );
+    assertFalse( columns.hasNext() );
+  }
+
+  @Test
+  public void testNullValuesAreSkipped() throws Exception {
+    DataNode node = new DataNode( "node" );
+    node.setProperty( "empty", (String) null );
+    byte[] bytes = DataNodeBinaryFormat.toBytes( node, new ArrayList<String>() );
+
+    assertFalse( DataNodeBinaryFormat.fromBytes( new ByteArrayInputStream( bytes ) ).hasProperty( "empty" ) );
+  }
+
+  @Test( expected = IOException.class )
+  public void testNewerVersionIsRejected() throws Exception {
+    byte[] bytes = DataNodeBinaryFormat.toBytes( new DataNode( "node" ), new ArrayList<String>() );
+    bytes[ 0 ] = (byte) ( DataNodeBinaryFormat.VERSION + 1 );
+    DataNodeBinaryFormat.fromBytes( new ByteArrayInputStream( bytes ) );
+  }
+
+  @Test( expected = IOException.class )
+  public void testTruncatedDataIsRejected() throws Exception {
+    byte[] bytes = DataNodeBinaryFormat.toBytes( createTree(), new ArrayList<String>() );
+    DataNodeBinaryFormat.fromBytes( new ByteArrayInputStream( Arrays.copyOf( bytes, bytes.length / 2 ) ) );
+  }
+}
@@ -0,0 +1,155 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.repository2.unified.jcr.transform;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.jcr.NamespaceRegistry;
+import javax.jcr.Node;
+import javax.jcr.Repository;
+import javax.jcr.Session;
+import javax.jcr.SimpleCredentials;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.jackrabbit.core.TransientRepository;
+import org.pentaho.platform.api.repository2.unified.data.node.DataNode;
+import org.pentaho.platform.api.repository2.unified.data.node.NodeRepositoryFileData;
+import org.pentaho.platform.repository2.unified.jcr.PentahoJcrConstants;
+import org.pentaho.platform.repository2.unified.jcr.sejcr.ntdproviders.InternalFolderNtdProvider;
+
+/**
+ * Times writing and reading node data with {@link NodeRepositoryFileDataTransformer}, which stores one JCR node per
+ * data node, and with {@link CompactNodeRepositoryFileDataTransformer}, which stores one binary property. Files with
+ * data trees of 10, 100 and 1,000 data nodes of 5 properties each are written to a Jackrabbit repository created in a
+ * temporary folder, one save per file, and read back from a new session. Not run by the build; run it from the test
+ * classpath.
+ */
+public class NodeDataStorageBenchmark {
+
+  private static final int[] TREE_SIZES = { 10, 100, 1000 };
+
+  private static final int FILES = 50;
+
+  private static final int FAN_OUT = 10;
+
+  private static final SimpleCredentials CREDENTIALS = new SimpleCredentials( "admin", "admin".toCharArray() );
+
+  public static void main( final String[] args ) throws Exception {
+    File home = new File( System.getProperty( "java.io.tmpdir" ), "node-data-benchmark-" + System.nanoTime() );
+    TransientRepository repository = new TransientRepository( home );
+    // keeps the repository running between the measuring sessions
+    Session setupSession = repository.login( CREDENTIALS );
+    try {
+      setUp( setupSession );
+      // warm up so that class loading and node type caches do not count against the first run
+      run( repository, "warm-up", new NodeRepositoryFileDataTransformer(), 10, false );
+      run( repository, "warm-up", new CompactNodeRepositoryFileDataTransformer(), 10, false );
+      for ( int treeSize : TREE_SIZES ) {
+        run( repository, "nodes", new NodeRepositoryFileDataTransformer(), treeSize, true );
+        run( repository, "compact", new CompactNodeRepositoryFileDataTransformer(), treeSize, true );
+      }
+    } finally {
+      setupSession.logout();
+      repository.shutdown();
+      FileUtils.deleteQuietly( home );
+    }
+  }
+
+  private static void setUp( final Session session ) throws Exception {
+    NamespaceRegistry registry = session.getWorkspace().getNamespaceRegistry();
+    registry.registerNamespace( "pho", PentahoJcrConstants.PHO_NS );
+    registry.registerNamespace( "pho_nt", PentahoJcrConstants.PHO_NT_NS );
+    registry.registerNamespace( "pho_mix", PentahoJcrConstants.PHO_MIX_NS );
+    session.getWorkspace().getNodeTypeManager().registerNodeType( new InternalFolderNtdProvider()
+        .getNodeTypeDefinition( session.getWorkspace().getNodeTypeManager(), session.getValueFactory() ), true );
+  }
+
+  private static void run( final Repository repository, final String label,
+      final NodeRepositoryFileDataTransformer transformer, final int treeSize, final boolean report )
+    throws Exception {
+    NodeRepositoryFileData data = new NodeRepositoryFileData( createTree( treeSize ) );
+    String folderName = label + "-" + treeSize + "-" + System.nanoTime();
+
+    Session session = repository.login( CREDENTIALS );
+    List<String> fileIds = new ArrayList<String>();
+    long writeStart = System.nanoTime();
+    try {
+      PentahoJcrConstants pentahoJcrConstants = new PentahoJcrConstants( session );
+      Node folder = session.getRootNode().addNode( folderName );
+      session.save();
+      for ( int i = 0; i < FILES; i++ ) {
+        Node fileNode = folder.addNode( "file" + i );
+        fileNode.addMixin( "mix:referenceable" );
+        transformer.createContentNode( session, pentahoJcrConstants, data, fileNode );
+        session.save();
+        fileIds.add( fileNode.getIdentifier() );
+      }
+    } finally {
+      session.logout();
+    }
+    long writeTime = System.nanoTime() - writeStart;
+
+    session = repository.login( CREDENTIALS );
+    long readStart = System.nanoTime();
+    try {
+      PentahoJcrConstants pentahoJcrConstants = new PentahoJcrConstants( session );
+      for ( String fileId : fileIds ) {
+        DataNode read = transformer.fromContentNode( session, pentahoJcrConstants, session.getNodeByIdentifier(
+            fileId ) ).getNode();
+        if ( read.getName() == null ) {
+          System.out.println();
+        }
+      }
+    } finally {
+      session.logout();
+    }
+    long readTime = System.nanoTime() - readStart;
+
+    if ( report ) {
+      System.out.println( String.format( "%-8s %,6d data nodes   write %,10d us/file   read %,10d us/file", label,
+          treeSize, writeTime / FILES / 1000, readTime / FILES / 1000 ) );
+    }
+  }
+
+  /**
+   * Builds a tree of {@code size} data nodes, {@link #FAN_OUT} children per node, breadth first.
+   */
+  private static DataNode createTree( final int size ) {
+    DataNode root = new DataNode( "dashboard" );
+    List<DataNode> nodes = new ArrayList<DataNode>();
+    nodes.add( root );
+    for ( int i = 0; i < nodes.size(); i++ ) {
+      DataNode node = nodes.get( i );
+      node.setProperty( "title", "Component " + i );
+      node.setProperty( "type", i % 2 == 0 ? "chart" : "table" );
+      node.setProperty( "width", 100L + i );
+      node.setProperty( "ratio", i / 7.0 );
+      node.setProperty( "visible", i % 3 != 0 );
+      for ( int j = 0; j < FAN_OUT && nodes.size() < size; j++ ) {
+        nodes.add( node.addNode( "component" + nodes.size() ) );
+      }
+    }
+    return root;
+  }
+
+}
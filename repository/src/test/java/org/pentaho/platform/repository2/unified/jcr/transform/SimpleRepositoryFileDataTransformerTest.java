@@ -0,0 +1,165 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.repository2.unified.jcr.transform;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.platform.api.repository2.unified.data.simple.SimpleRepositoryFileData;
+import org.pentaho.platform.repository2.unified.jcr.PentahoJcrConstants;
+
+import javax.jcr.Node;
+import javax.jcr.Property;
+import javax.jcr.Session;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.InputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class SimpleRepositoryFileDataTransformerTest {
+
+  private static final byte[] CONTENT = "<action-sequence/>".getBytes();
+
+  private SimpleRepositoryFileDataTransformer transformer;
+
+  private Session session;
+
+  private PentahoJcrConstants constants;
+
+  private Node fileNode;
+
+  @Before
+  public void setUp() throws Exception {
+    transformer = new SimpleRepositoryFileDataTransformer();
+    session = mock( Session.class );
+    when( session.getNamespacePrefix( PentahoJcrConstants.PHO_NS ) ).thenReturn( "pho" );
+    constants = mock( PentahoJcrConstants.class );
+    when( constants.getPHO_CONTENTHASH() ).thenReturn( "pho:contentHash" );
+    when( constants.getJCR_CONTENT() ).thenReturn( "jcr:content" );
+    when( constants.getJCR_MIMETYPE() ).thenReturn( "jcr:mimeType" );
+    when( constants.getJCR_ENCODING() ).thenReturn( "jcr:encoding" );
+
+    Property mimeTypeProperty = mock( Property.class );
+    when( mimeTypeProperty.getString() ).thenReturn( "text/xml" );
+    Property encodingProperty = mock( Property.class );
+    when( encodingProperty.getString() ).thenReturn( "UTF-8" );
+    Node resourceNode = mock( Node.class );
+    when( resourceNode.getProperty( "jcr:mimeType" ) ).thenReturn( mimeTypeProperty );
+    when( resourceNode.hasProperty( "jcr:encoding" ) ).thenReturn( true );
+    when( resourceNode.getProperty( "jcr:encoding" ) ).thenReturn( encodingProperty );
+
+    Property hashProperty = mock( Property.class );
+    when( hashProperty.getString() ).thenReturn( DigestUtils.sha256Hex( CONTENT ) );
+
+    fileNode = mock( Node.class );
+    when( fileNode.getNode( "jcr:content" ) ).thenReturn( resourceNode );
+    when( fileNode.hasProperty( "pho:contentHash" ) ).thenReturn( true );
+    when( fileNode.getProperty( "pho:contentHash" ) ).thenReturn( hashProperty );
+  }
+
+  @Test
+  public void testIsContentUnchanged_SameContent() throws Exception {
+    SimpleRepositoryFileData data =
+        new SimpleRepositoryFileData( new ByteArrayInputStream( CONTENT ), "UTF-8", "text/xml" );
+    assertTrue( transformer.isContentUnchanged( session, constants, data, fileNode ) );
+    // the stream must still be readable for the caller
+    assertArrayEquals( CONTENT, IOUtils.toByteArray( data.getInputStream() ) );
+  }
+
+  @Test
+  public void testIsContentUnchanged_DifferentContent() throws Exception {
+    SimpleRepositoryFileData data =
+        new SimpleRepositoryFileData( new ByteArrayInputStream( "<other/>".getBytes() ), "UTF-8", "text/xml" );
+    assertFalse( transformer.isContentUnchanged( session, constants, data, fileNode ) );
+  }
+
+  @Test
+  public void testIsContentUnchanged_DifferentMimeType() throws Exception {
+    SimpleRepositoryFileData data =
+        new SimpleRepositoryFileData( new ByteArrayInputStream( CONTENT ), "UTF-8", "text/plain" );
+    assertFalse( transformer.isContentUnchanged( session, constants, data, fileNode ) );
+  }
+
+  @Test
+  public void testIsContentUnchanged_NoStoredHash() throws Exception {
+    when( fileNode.hasProperty( "pho:contentHash" ) ).thenReturn( false );
+    SimpleRepositoryFileData data =
+        new SimpleRepositoryFileData( new ByteArrayInputStream( CONTENT ), "UTF-8", "text/xml" );
+    assertFalse( transformer.isContentUnchanged( session, constants, data, fileNode ) );
+  }
+
+  @Test
+  public void testIsContentUnchanged_StreamNotMarkable() throws Exception {
+    InputStream unmarkable = new FilterInputStream( new ByteArrayInputStream( CONTENT ) ) {
+      @Override
+      public boolean markSupported() {
+        return false;
+      }
+    };
+    SimpleRepositoryFileData data = new SimpleRepositoryFileData( unmarkable, "UTF-8", "text/xml" );
+    assertFalse( transformer.isContentUnchanged( session, constants, data, fileNode ) );
+    assertArrayEquals( CONTENT, IOUtils.toByteArray( data.getInputStream() ) );
+  }
+
+  @Test
+  public void testIsContentUnchanged_ContentOfMaxComparedSize() throws Exception {
+    transformer.setMaxComparedSize( CONTENT.length );
+    SimpleRepositoryFileData data =
+        new SimpleRepositoryFileData( new ByteArrayInputStream( CONTENT ), "UTF-8", "text/xml" );
+    assertTrue( transformer.isContentUnchanged( session, constants, data, fileNode ) );
+  }
+
+  @Test
+  public void testIsContentUnchanged_ContentLargerThanMaxComparedSize() throws Exception {
+    transformer.setMaxComparedSize( CONTENT.length - 1 );
+    SimpleRepositoryFileData data = new SimpleRepositoryFileData(
+        new BufferedInputStream( new ByteArrayInputStream( CONTENT ), 4 ), "UTF-8", "text/xml" );
+    assertFalse( transformer.isContentUnchanged( session, constants, data, fileNode ) );
+    // the stream is reset to where it was, so the new version is written in full
+    assertArrayEquals( CONTENT, IOUtils.toByteArray( data.getInputStream() ) );
+  }
+
+  @Test
+  public void testIsContentUnchanged_StoredFileLargerThanMaxComparedSize() throws Exception {
+    when( constants.getPHO_FILESIZE() ).thenReturn( "pho:fileSize" );
+    Property sizeProperty = mock( Property.class );
+    when( sizeProperty.getLong() )
+        .thenReturn( (long) SimpleRepositoryFileDataTransformer.DEFAULT_MAX_COMPARED_SIZE + 1 );
+    when( fileNode.hasProperty( "pho:fileSize" ) ).thenReturn( true );
+    when( fileNode.getProperty( "pho:fileSize" ) ).thenReturn( sizeProperty );
+    InputStream stream = mock( InputStream.class );
+    when( stream.markSupported() ).thenReturn( true );
+
+    SimpleRepositoryFileData data = new SimpleRepositoryFileData( stream, "UTF-8", "text/xml" );
+    assertFalse( transformer.isContentUnchanged( session, constants, data, fileNode ) );
+    verify( stream, never() ).mark( anyInt() );
+  }
+}
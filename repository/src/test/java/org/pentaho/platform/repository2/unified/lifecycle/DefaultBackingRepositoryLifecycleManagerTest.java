@@ -0,0 +1,162 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.repository2.unified.lifecycle;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.pentaho.platform.api.mt.ITenant;
+import org.pentaho.platform.api.mt.ITenantManager;
+import org.pentaho.platform.api.repository2.unified.RepositoryFile;
+import org.pentaho.platform.api.util.IPasswordService;
+import org.pentaho.platform.repository2.unified.IRepositoryFileAclDao;
+import org.pentaho.platform.repository2.unified.IRepositoryFileDao;
+import org.pentaho.platform.repository2.unified.jcr.IPathConversionHelper;
+import org.springframework.extensions.jcr.JcrTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class DefaultBackingRepositoryLifecycleManagerTest {
+
+  private DefaultBackingRepositoryLifecycleManager lifecycleManager;
+
+  private ITenantManager tenantManager;
+
+  private ITenant tenant;
+
+  @Before
+  public void setUp() {
+    lifecycleManager =
+        new DefaultBackingRepositoryLifecycleManager( mock( IRepositoryFileDao.class ), mock(
+            IRepositoryFileAclDao.class ), mock( TransactionTemplate.class ), "pentahoRepoAdmin", "system", "password",
+            "Administrator", "Authenticated", "Anonymous", mock( IPasswordService.class ), mock( JcrTemplate.class ),
+            mock( IPathConversionHelper.class ) );
+    tenantManager = mock( ITenantManager.class );
+    lifecycleManager.setTenantManager( tenantManager );
+    tenant = mock( ITenant.class );
+    when( tenant.getId() ).thenReturn( "/pentaho/tenant0" );
+  }
+
+  @Test
+  public void testLaterLoginsSkipRepository() {
+    lifecycleManager.newUser( tenant, "suzy" );
+    lifecycleManager.newUser( tenant, "suzy" );
+
+    verify( tenantManager, times( 1 ) ).getUserHomeFolder( tenant, "suzy" );
+    verify( tenantManager, times( 1 ) ).createUserHomeFolder( tenant, "suzy" );
+  }
+
+  @Test
+  public void testExistingHomeFolderIsNotCreated() {
+    when( tenantManager.getUserHomeFolder( tenant, "suzy" ) ).thenReturn( mock( RepositoryFile.class ) );
+
+    lifecycleManager.newUser( tenant, "suzy" );
+    lifecycleManager.newUser( tenant, "suzy" );
+
+    verify( tenantManager, times( 1 ) ).getUserHomeFolder( tenant, "suzy" );
+    verify( tenantManager, never() ).createUserHomeFolder( any( ITenant.class ), anyString() );
+  }
+
+  @Test
+  public void testConcurrentLoginsShareOneCheck() throws Exception {
+    final CountDownLatch started = new CountDownLatch( 1 );
+    final CountDownLatch release = new CountDownLatch( 1 );
+    when( tenantManager.getUserHomeFolder( tenant, "suzy" ) ).thenAnswer( new Answer<RepositoryFile>() {
+      @Override
+      public RepositoryFile answer( InvocationOnMock invocation ) throws Throwable {
+        started.countDown();
+        release.await( 10, TimeUnit.SECONDS );
+        return mock( RepositoryFile.class );
+      }
+    } );
+
+    List<Thread> logins = new ArrayList<Thread>();
+    for ( int i = 0; i < 5; i++ ) {
+      Thread login = new Thread( new Runnable() {
+        @Override
+        public void run() {
+          lifecycleManager.newUser( tenant, "suzy" );
+        }
+      } );
+      logins.add( login );
+      login.start();
+    }
+    assertTrue( started.await( 10, TimeUnit.SECONDS ) );
+    release.countDown();
+    for ( Thread login : logins ) {
+      login.join( 10000 );
+    }
+
+    verify( tenantManager, times( 1 ) ).getUserHomeFolder( tenant, "suzy" );
+  }
+
+  @Test
+  public void testFailedCheckIsRepeated() {
+    doThrow( new IllegalStateException() ).doReturn( null ).when( tenantManager ).createUserHomeFolder( tenant,
+        "suzy" );
+
+    try {
+      lifecycleManager.newUser( tenant, "suzy" );
+      fail();
+    } catch ( IllegalStateException e ) {
+      // expected
+    }
+    lifecycleManager.newUser( tenant, "suzy" );
+    lifecycleManager.newUser( tenant, "suzy" );
+
+    verify( tenantManager, times( 2 ) ).createUserHomeFolder( tenant, "suzy" );
+  }
+
+  @Test
+  public void testUsersAreNotRememberedWhenDisabled() {
+    lifecycleManager.setInitializedUsersMaxEntries( 0 );
+
+    lifecycleManager.newUser( tenant, "suzy" );
+    lifecycleManager.newUser( tenant, "suzy" );
+
+    verify( tenantManager, times( 2 ) ).getUserHomeFolder( tenant, "suzy" );
+  }
+
+  @Test
+  public void testClearInitializedUsers() {
+    lifecycleManager.newUser( tenant, "suzy" );
+    lifecycleManager.clearInitializedUsers();
+    lifecycleManager.newUser( tenant, "suzy" );
+
+    verify( tenantManager, times( 2 ) ).getUserHomeFolder( tenant, "suzy" );
+  }
+}
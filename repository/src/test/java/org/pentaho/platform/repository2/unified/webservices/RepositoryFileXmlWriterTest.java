@@ -0,0 +1,247 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.repository2.unified.webservices;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.Marshaller;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.platform.api.repository2.unified.IRepositoryVersionManager;
+import org.pentaho.platform.api.repository2.unified.RepositoryFile;
+import org.pentaho.platform.api.repository2.unified.RepositoryFileTree;
+import org.pentaho.platform.api.repository2.unified.RepositoryRequest;
+import org.pentaho.platform.api.repository2.unified.webservices.RepositoryFileDto;
+import org.pentaho.platform.api.repository2.unified.webservices.RepositoryFileTreeDto;
+import org.pentaho.platform.repository2.unified.jcr.JcrRepositoryFileUtils;
+
+/**
+ * The writer must reproduce the JAXB output of the adapters' DTOs byte for byte. The checked-in documents next to
+ * this class pin that output, so a reordering of the DTO properties fails here instead of changing the response.
+ */
+public class RepositoryFileXmlWriterTest {
+
+  private static final String XML_DECLARATION = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>";
+
+  private static final Comparator<String> TITLE_ORDER = new Comparator<String>() {
+    @Override
+    public int compare( String title1, String title2 ) {
+      return title1.compareTo( title2 );
+    }
+  };
+
+  @Before
+  public void setUp() {
+    IRepositoryVersionManager versionManager = mock( IRepositoryVersionManager.class );
+    when( versionManager.isVersioningEnabled( anyString() ) ).thenReturn( true );
+    when( versionManager.isVersionCommentEnabled( anyString() ) ).thenReturn( false );
+    JcrRepositoryFileUtils.setRepositoryVersionManager( versionManager );
+  }
+
+  @After
+  public void tearDown() {
+    JcrRepositoryFileUtils.setRepositoryVersionManager( null );
+  }
+
+  @Test
+  public void testTreeMatchesJaxb() throws Exception {
+    RepositoryFileTree tree = createTree( false );
+    RepositoryRequest request = new RepositoryRequest( "/public", true, -1, null );
+
+    StringWriter out = new StringWriter();
+    new RepositoryFileXmlWriter( request, null ).writeTree( tree, out );
+
+    assertEquals( marshal( new RepositoryFileTreeAdapter( request ).marshal( tree ) ), out.toString() );
+  }
+
+  @Test
+  public void testTreeMatchesGoldenFile() throws Exception {
+    RepositoryFileTree tree = createTree( false );
+    RepositoryRequest request = new RepositoryRequest( "/public", true, -1, null );
+
+    StringWriter out = new StringWriter();
+    new RepositoryFileXmlWriter( request, null ).writeTree( tree, out );
+
+    String expected = golden( "tree.xml" );
+    assertEquals( expected, out.toString() );
+    assertEquals( expected, marshal( new RepositoryFileTreeAdapter( request ).marshal( tree ) ) );
+  }
+
+  @Test
+  public void testTreeWithMemberFilterMatchesGoldenFile() throws Exception {
+    RepositoryFileTree tree = createTree( false );
+    RepositoryRequest request =
+        new RepositoryRequest( "/public", true, -1, "*|FILES_FOLDERS|includeMembers=name,title" );
+
+    StringWriter out = new StringWriter();
+    new RepositoryFileXmlWriter( request, null ).writeTree( tree, out );
+
+    String expected = golden( "tree-members.xml" );
+    assertEquals( expected, out.toString() );
+    assertEquals( expected, marshal( new RepositoryFileTreeAdapter( request ).marshal( tree ) ) );
+  }
+
+  @Test
+  public void testTreeWithMemberFilterMatchesJaxb() throws Exception {
+    RepositoryFileTree tree = createTree( false );
+    RepositoryRequest request =
+        new RepositoryRequest( "/public", true, -1, "*|FILES_FOLDERS|includeMembers=name,title" );
+
+    StringWriter out = new StringWriter();
+    new RepositoryFileXmlWriter( request, null ).writeTree( tree, out );
+
+    assertEquals( marshal( new RepositoryFileTreeAdapter( request ).marshal( tree ) ), out.toString() );
+
+    request = new RepositoryRequest( "/public", true, -1, null );
+    request.setExcludeMemberSet( new HashSet<String>( Arrays.asList( "locales", "createDate", "path" ) ) );
+    out = new StringWriter();
+    new RepositoryFileXmlWriter( request, null ).writeTree( tree, out );
+
+    assertEquals( marshal( new RepositoryFileTreeAdapter( request ).marshal( tree ) ), out.toString() );
+  }
+
+  @Test
+  public void testTreeIsSortedByTitle() throws Exception {
+    RepositoryRequest request = new RepositoryRequest( "/public", true, -1, null );
+
+    StringWriter out = new StringWriter();
+    new RepositoryFileXmlWriter( request, TITLE_ORDER ).writeTree( createTree( true ), out );
+
+    assertEquals( marshal( new RepositoryFileTreeAdapter( request ).marshal( createTree( false ) ) ), out.toString() );
+  }
+
+  @Test
+  public void testFilesMatchJaxb() throws Exception {
+    RepositoryRequest request = new RepositoryRequest( "/public/reports", true, 0, null );
+    List<RepositoryFile> files = Arrays.asList( createFile( "a & b.prpt", "A <b>", true ), createFile( "c.prpt",
+        null, false ) );
+
+    StringWriter out = new StringWriter();
+    new RepositoryFileXmlWriter( request, null ).writeFiles( files, out );
+
+    RepositoryFileAdapter adapter = new RepositoryFileAdapter( request );
+    StringBuilder expected = new StringBuilder( XML_DECLARATION ).append( "<repositoryFileDtoes>" );
+    for ( RepositoryFile file : files ) {
+      expected.append( marshalFragment( adapter.marshal( file ) ) );
+    }
+    expected.append( "</repositoryFileDtoes>" );
+    assertEquals( expected.toString(), out.toString() );
+  }
+
+  @Test
+  public void testFilesMatchGoldenFile() throws Exception {
+    RepositoryRequest request = new RepositoryRequest( "/public/reports", true, 0, null );
+    List<RepositoryFile> files = Arrays.asList( createFile( "a & b.prpt", "A <b>", true ), createFile( "c.prpt",
+        null, false ) );
+
+    StringWriter out = new StringWriter();
+    new RepositoryFileXmlWriter( request, null ).writeFiles( files, out );
+
+    assertEquals( golden( "files.xml" ), out.toString() );
+  }
+
+  @Test
+  public void testEscaping() throws Exception {
+    StringWriter out = new StringWriter();
+    RepositoryFileXmlWriter.writeText( "a&b<c>d\"e", out );
+    assertEquals( "a&amp;b&lt;c&gt;d\"e", out.toString() );
+  }
+
+  private RepositoryFileTree createTree( boolean reversed ) {
+    List<RepositoryFileTree> reports = new ArrayList<RepositoryFileTree>();
+    reports.add( new RepositoryFileTree( createFile( "a & b.prpt", "A <b>", true ),
+        Collections.<RepositoryFileTree>emptyList() ) );
+    reports.add( new RepositoryFileTree( createFile( "c.prpt", null, false ),
+        Collections.<RepositoryFileTree>emptyList() ) );
+    if ( reversed ) {
+      Collections.reverse( reports );
+    }
+    List<RepositoryFileTree> children = new ArrayList<RepositoryFileTree>();
+    children.add( new RepositoryFileTree( createFolder( "/public/reports" ), reports ) );
+    children.add( new RepositoryFileTree( createFolder( "/public/samples" ), null ) );
+    if ( reversed ) {
+      Collections.reverse( children );
+    }
+    return new RepositoryFileTree( createFolder( "/public" ), children );
+  }
+
+  private RepositoryFile createFolder( String path ) {
+    String name = path.substring( path.lastIndexOf( '/' ) + 1 );
+    return new RepositoryFile.Builder( path.hashCode() + "", name ).path( path ).folder( true ).createdDate(
+        new Date( 1405356318621L ) ).creatorId( "admin" ).build();
+  }
+
+  private RepositoryFile createFile( String name, String title, boolean locales ) {
+    RepositoryFile.Builder builder = new RepositoryFile.Builder( name.hashCode() + "", name ).path( "/public/reports/"
+        + name ).createdDate( new Date( 1405356406448L ) ).lastModificationDate( new Date( 1405356406448L ) )
+        .fileSize( 10477 ).versioned( true ).versionId( "1.0" ).locale( "en" ).description( "a \"report\"" )
+        .lockOwner( "suzy" ).lockMessage( "editing" ).locked( true ).lockDate( new Date( 1406573914167L ) );
+    if ( title != null ) {
+      builder.title( title );
+    }
+    if ( locales ) {
+      Properties properties = new Properties();
+      properties.setProperty( RepositoryFile.FILE_TITLE, title );
+      properties.setProperty( RepositoryFile.FILE_DESCRIPTION, "" );
+      builder.localeProperties( RepositoryFile.DEFAULT_LOCALE, properties );
+      builder.localeProperties( "de", new Properties() );
+    }
+    return builder.build();
+  }
+
+  private static String golden( String name ) throws Exception {
+    return IOUtils.toString( RepositoryFileXmlWriterTest.class.getResourceAsStream( name ), "UTF-8" );
+  }
+
+  private static String marshal( RepositoryFileTreeDto dto ) throws Exception {
+    Marshaller marshaller = JAXBContext.newInstance( RepositoryFileTreeDto.class ).createMarshaller();
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    marshaller.marshal( dto, out );
+    return out.toString( "UTF-8" );
+  }
+
+  private static String marshalFragment( RepositoryFileDto dto ) throws Exception {
+    Marshaller marshaller = JAXBContext.newInstance( RepositoryFileDto.class ).createMarshaller();
+    marshaller.setProperty( Marshaller.JAXB_FRAGMENT, true );
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    marshaller.marshal( dto, out );
+    return out.toString( "UTF-8" );
+  }
+
+}
@@ -0,0 +1,77 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.repository2.unified.webservices.jaxws;
+
+import com.sun.xml.ws.developer.JAXWSProperties;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.xml.ws.BindingProvider;
+import javax.xml.ws.soap.SOAPBinding;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+public class UnifiedRepositoryToWebServiceAdapterTest {
+
+  private IUnifiedRepositoryJaxwsWebService port;
+
+  private Map<String, Object> requestContext;
+
+  private SOAPBinding binding;
+
+  @Before
+  public void setUp() {
+    port = mock( IUnifiedRepositoryJaxwsWebService.class, withSettings().extraInterfaces( BindingProvider.class ) );
+    requestContext = new HashMap<String, Object>();
+    binding = mock( SOAPBinding.class );
+    when( ( (BindingProvider) port ).getRequestContext() ).thenReturn( requestContext );
+    when( ( (BindingProvider) port ).getBinding() ).thenReturn( binding );
+  }
+
+  @Test
+  public void testStreamingIsEnabledOnProxy() {
+    new UnifiedRepositoryToWebServiceAdapter( port );
+
+    verify( binding ).setMTOMEnabled( true );
+    assertEquals( UnifiedRepositoryToWebServiceAdapter.DEFAULT_STREAMING_CHUNK_SIZE, requestContext.get(
+        JAXWSProperties.HTTP_CLIENT_STREAMING_CHUNK_SIZE ) );
+  }
+
+  @Test
+  public void testConfiguredChunkSizeIsKept() {
+    requestContext.put( JAXWSProperties.HTTP_CLIENT_STREAMING_CHUNK_SIZE, 65536 );
+
+    new UnifiedRepositoryToWebServiceAdapter( port );
+
+    assertEquals( 65536, requestContext.get( JAXWSProperties.HTTP_CLIENT_STREAMING_CHUNK_SIZE ) );
+  }
+
+  @Test
+  public void testPlainImplementationIsAccepted() {
+    new UnifiedRepositoryToWebServiceAdapter( mock( IUnifiedRepositoryJaxwsWebService.class ) );
+  }
+}
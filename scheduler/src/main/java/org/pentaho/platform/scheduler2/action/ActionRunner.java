@@ -36,6 +36,7 @@ import org.pentaho.platform.api.repository2.unified.RepositoryFile;
 import org.pentaho.platform.api.scheduler2.IBackgroundExecutionStreamProvider;
 import org.pentaho.platform.engine.core.output.FileContentItem;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
+import org.pentaho.platform.engine.core.system.RequestScopedCache;
 import org.pentaho.platform.engine.services.solution.ActionSequenceCompatibilityFormatter;
 import org.pentaho.platform.scheduler2.messsages.Messages;
 import org.pentaho.platform.scheduler2.quartz.SchedulerOutputPathResolver;
@@ -74,6 +75,7 @@ public class ActionRunner implements Callable<Boolean> {
 
   public Boolean call() throws ActionInvocationException {
     final String workItemName = ActionUtil.extractName( params );
+    final boolean cacheOpened = RequestScopedCache.begin();
     try {
       final ExecutionResult result = callImpl();
       if ( result.isSuccess() ) {
@@ -92,6 +94,10 @@ public class ActionRunner implements Callable<Boolean> {
       // should result in a rethrow of the exception
       throw new ActionInvocationException( Messages.getInstance().getActionFailedToExecute( actionBean //$NON-NLS-1$
         .getClass().getName() ), t );
+    } finally {
+      if ( cacheOpened ) {
+        RequestScopedCache.end();
+      }
     }
   }
 
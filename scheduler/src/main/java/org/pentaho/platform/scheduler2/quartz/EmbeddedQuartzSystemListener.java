@@ -43,6 +43,7 @@ import org.pentaho.platform.api.engine.IPentahoSystemListener;
 import org.pentaho.platform.api.engine.ObjectFactoryException;
 import org.pentaho.platform.api.scheduler2.IScheduler;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
+import org.pentaho.platform.engine.core.system.ReadReplicaMode;
 import org.pentaho.platform.engine.services.connection.datasource.dbcp.JndiDatasourceService;
 import org.pentaho.platform.scheduler2.messsages.Messages;
 import org.quartz.SchedulerException;
@@ -112,7 +113,12 @@ public class EmbeddedQuartzSystemListener implements IPentahoSystemListener {
         if ( logger.isDebugEnabled() ) {
           logger.debug( scheduler.getQuartzScheduler().getSchedulerName() );
         }
-        scheduler.start();
+        if ( ReadReplicaMode.isEnabled() ) {
+          // the job store stays readable, but jobs only fire on the other servers
+          logger.info( "Read replica; the scheduler is not started" ); //$NON-NLS-1$
+        } else {
+          scheduler.start();
+        }
       }
     } catch ( IOException ex ) {
       result = false;
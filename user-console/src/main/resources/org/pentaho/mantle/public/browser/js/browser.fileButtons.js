@@ -162,34 +162,14 @@ define([
     },
 
     updateFilePermissionButtons: function (permissions) {
-      if (permissions != false) {
-
-        for (var i = 0; i < permissions.setting.length; i++) {
-          //Delete permission
-          if (permissions.setting[i].name == "2") {
-            if (permissions.setting[i].value == "true") {
-              $("#deleteButton").prop("disabled", false);
-              $("#cutbutton").prop("disabled", false);
-            }
-            else {
-              $("#deleteButton").prop("disabled", true);
-              $("#cutbutton").prop("disabled", true);
-            }
-          }
-          else {
-            $("#deleteButton").prop("disabled", true);
-            $("#cutbutton").prop("disabled", true);
-          }
-          //Write Permission
-          if (permissions.setting[i].name == "1") {
-            if (permissions.setting[i].value == "true") {
-              $("#renameButton").prop("disabled", false);
-            }
-            else {
-              $("#renameButton").prop("disabled", true);
-            }
-          }
-        }
+      if (permissions !== false) {
+        //Delete permission has mask value 4
+        var canDelete = (permissions & 4) != 0;
+        $("#deleteButton").prop("disabled", !canDelete);
+        $("#cutbutton").prop("disabled", !canDelete);
+
+        //Write Permission has mask value 2
+        $("#renameButton").prop("disabled", (permissions & 2) == 0);
       }
     },
 
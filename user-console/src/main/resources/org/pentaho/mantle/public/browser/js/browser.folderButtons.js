@@ -132,17 +132,10 @@ define([
     },
 
     updateFolderPermissionButtons: function (permissions, multiSelectItems, renameAllowed) {
-      if (permissions != false) {
-
-        var writePerm = "false";
-        for (var i = 0; i < permissions.setting.length; i++) {
-          //Write Permission
-          if (permissions.setting[i].name == "1") {
-            writePerm = permissions.setting[i].value;
-          }
-        }
+      if (permissions !== false) {
 
-        if (writePerm == "true") {
+        //Write Permission has mask value 2
+        if ((permissions & 2) != 0) {
           var disabled = (multiSelectItems.length > 0) ? false : true;
           $("#pasteButton").prop("disabled", disabled);
           $("#renameButton").prop("disabled", !renameAllowed);
@@ -91,6 +91,40 @@ define([
     return Encoder.encode("{0}", path);
   };
 
+  /**
+   * Gets the permission bit masks of several repository paths in one request. A mask holds the mask value of every
+   * permission the user has, which is 1 shifted left by the ordinal of the permission (READ = 1, WRITE = 2,
+   * DELETE = 4, ACL_MANAGEMENT = 8, ALL = 16). The masks are passed to the success callback in the order of the paths.
+   **/
+  FileBrowser.getAccessMasks = function (paths, permissions, success, error) {
+    var body = "<stringListWrapper>";
+    for (var i = 0; i < paths.length; i++) {
+      body += "<strings>" + $("<div/>").text(Encoder.encodeRepositoryPath(paths[i])).html() + "</strings>";
+    }
+    body += "</stringListWrapper>";
+
+    $.ajax({
+      url: CONTEXT_PATH + "api/repo/files/accessMasks?permissions=" + encodeURIComponent(permissions),
+      type: "POST",
+      contentType: "application/xml",
+      data: body,
+      beforeSend: function (request) {
+        request.setRequestHeader('accept', 'application/json');
+      },
+      async: true,
+      cache: false,
+      success: function (response) {
+        var settings = (response && response.setting) ? [].concat(response.setting) : [];
+        var masks = [];
+        for (var i = 0; i < settings.length; i++) {
+          masks.push(parseInt(settings[i].value, 10) || 0);
+        }
+        success(masks);
+      },
+      error: error
+    });
+  };
+
   FileBrowser.setShowHiddenFiles = function (value) {
     this.showHiddenFiles = value;
   };
@@ -356,22 +390,11 @@ define([
       }
     });
 
-        //Ajax request to check write permissions for folder
-      $.ajax({
-        url: CONTEXT_PATH + 'api/repo/files/' + FileBrowser.encodePathComponents(folderPath) + '/canAccessMap',
-        type: "GET",
-        beforeSend: function (request) {
-          request.setRequestHeader('accept', 'application/json');
-        },
-        data: {"permissions": "1"}, //check write permissions for the given folder
-        async: true,
-        cache: false,
-        success: function (response) {
-          folderButtons.updateFolderPermissionButtons(response, model.get('browserUtils').multiSelectItems, !(folderPath == userHomePath));
-        },
-        error: function (response) {
-          folderButtons.updateFolderPermissionButtons(false, model.get('browserUtils').multiSelectItems, false);
-        }
+      //check write permissions for the given folder
+      FileBrowser.getAccessMasks([_folderPath], "1", function (masks) {
+        folderButtons.updateFolderPermissionButtons(masks.length > 0 ? masks[0] : 0, model.get('browserUtils').multiSelectItems, !(folderPath == userHomePath));
+      }, function (response) {
+        folderButtons.updateFolderPermissionButtons(false, model.get('browserUtils').multiSelectItems, false);
       });
 	},
 
@@ -386,25 +409,24 @@ define([
       }
       fileButtons.canDownload(this.get("canDownload"));
       //TODO handle file button press
-      var filePath = clickedFile.obj.attr("path");
-      filePath = Encoder.encodeRepositoryPath(filePath);
+      var fileListModel = this.get("fileListModel");
+      var selectedItems = FileBrowser.concatArray([clickedFile], fileListModel.get("multiSelect") || []);
+      selectedItems = FileBrowser.concatArray(selectedItems, fileListModel.get("shiftLasso") || []);
+      var filePaths = [];
+      for (var i = 0; i < selectedItems.length; i++) {
+        filePaths.push(selectedItems[i].obj.attr("path"));
+      }
 
-      //Ajax request to check write permissions for file
-      $.ajax({
-        url: CONTEXT_PATH + 'api/repo/files/' + FileBrowser.encodePathComponents(filePath) + '/canAccessMap',
-        type: "GET",
-        beforeSend: function (request) {
-          request.setRequestHeader('accept', 'application/json');
-        },
-        data: {"permissions": "1|2"}, //check write and delete permissions for the given file
-        async: true,
-        cache: false,
-        success: function (response) {
-          fileButtons.updateFilePermissionButtons(response);
-        },
-        error: function (response) {
-          fileButtons.updateFilePermissionButtons(false);
+      //check write and delete permissions for all selected files in one request; a button is enabled only when
+      //every selected file allows it
+      FileBrowser.getAccessMasks(filePaths, "1|2", function (masks) {
+        var mask = masks.length > 0 ? masks[0] : 0;
+        for (var i = 1; i < masks.length; i++) {
+          mask &= masks[i];
         }
+        fileButtons.updateFilePermissionButtons(mask);
+      }, function (response) {
+        fileButtons.updateFilePermissionButtons(false);
       });
     },
 